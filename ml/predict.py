@@ -41,17 +41,7 @@ def build_recommendation(row: dict, pred: str, confidence: float) -> dict:
     return {"summary": summary, "actions": actions}
 
 
-def main():
-    parser = argparse.ArgumentParser()
-    parser.add_argument("--model", required=True)
-    args = parser.parse_args()
-
-    rows = load_input()
-    if rows is None:
-        print(json.dumps({"error": "empty input"}))
-        return
-
-    model = joblib.load(args.model)
+def predict_rows(model, rows):
     df = pd.DataFrame(rows)
 
     preds = model.predict(df)
@@ -66,12 +56,61 @@ def main():
     for i, row in enumerate(rows):
         recommendations.append(build_recommendation(row, preds[i], proba[i]))
 
-    out = {
+    return {
         "predictions": preds.tolist(),
         "confidence": proba,
         "recommendations": recommendations
     }
-    print(json.dumps(out))
+
+
+def serve(model):
+    """Worker mode: one JSON request per stdin line, one JSON response per stdout line.
+
+    Request:  {"id": 1, "payload": {...} | [...]}   or   {"id": 2, "ping": true}
+    Response: {"id": 1, "result": {...}} | {"id": 1, "error": "..."} | {"id": 2, "pong": true}
+    """
+    for line in sys.stdin:
+        line = line.strip()
+        if not line:
+            continue
+        req_id = None
+        try:
+            req = json.loads(line)
+            req_id = req.get("id")
+            if req.get("ping"):
+                resp = {"id": req_id, "pong": True}
+            else:
+                data = req.get("payload")
+                rows = [data] if isinstance(data, dict) else data
+                if not rows:
+                    resp = {"id": req_id, "error": "empty input"}
+                else:
+                    resp = {"id": req_id, "result": predict_rows(model, rows)}
+        except Exception as exc:
+            resp = {"id": req_id, "error": str(exc)}
+        sys.stdout.write(json.dumps(resp) + "\n")
+        sys.stdout.flush()
+
+
+def main():
+    parser = argparse.ArgumentParser()
+    parser.add_argument("--model", required=True)
+    parser.add_argument("--serve", action="store_true",
+                        help="long-lived worker reading newline-delimited JSON requests on stdin")
+    args = parser.parse_args()
+
+    if args.serve:
+        # Model loaded once for the lifetime of the worker
+        serve(joblib.load(args.model))
+        return
+
+    rows = load_input()
+    if rows is None:
+        print(json.dumps({"error": "empty input"}))
+        return
+
+    model = joblib.load(args.model)
+    print(json.dumps(predict_rows(model, rows)))
 
 
 if __name__ == "__main__":
@@ -0,0 +1,34 @@
+-- ==================================================================================
+-- OPTIONAL DATABASE MIGRATION: Verification checkpoints for batch_events chains
+-- ==================================================================================
+--
+-- Stores, per batch, the last event whose hash chain was verified. BatchEventService
+-- then only rehashes events appended after that checkpoint instead of the whole chain
+-- on every provenance view / blockchain export.
+--
+-- IMPORTANT: The system works WITHOUT this table (every verification rehashes the
+--            full chain).
+--
+-- Status: OPTIONAL
+-- ==================================================================================
+
+USE greenledger;
+
+CREATE TABLE IF NOT EXISTS batch_event_checkpoints (
+    batch_id INT NOT NULL PRIMARY KEY,
+    last_event_id BIGINT NOT NULL COMMENT 'Newest verified batch_events.id',
+    last_event_hash CHAR(64) NOT NULL COMMENT 'event_hash of last_event_id when it was verified',
+    event_count INT NOT NULL COMMENT 'Number of events verified up to last_event_id',
+    verified_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+) ENGINE=InnoDB;
+
+-- Loading the events after a checkpoint
+ALTER TABLE batch_events
+ADD INDEX IF NOT EXISTS idx_batch_events_batch_id (batch_id, id);
+
+-- ==================================================================================
+-- Verification Query
+-- ==================================================================================
+-- SELECT c.batch_id, c.event_count, COUNT(e.id) AS total_events
+-- FROM batch_event_checkpoints c JOIN batch_events e ON e.batch_id = c.batch_id
+-- GROUP BY c.batch_id, c.event_count;
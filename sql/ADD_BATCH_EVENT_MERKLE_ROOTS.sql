@@ -0,0 +1,46 @@
+-- ==================================================================================
+-- OPTIONAL DATABASE MIGRATION: Merkle roots over batch_events
+-- ==================================================================================
+--
+-- BatchMerkleService periodically stores Merkle roots over the event hashes:
+--   BATCH  : all events of one batch (ordered by id, up to last_event_id)
+--   WINDOW : events of all batches created in [window_start, window_end)
+-- A root lets an auditor or an external registry check that one event belongs to a
+-- history with an O(log n) inclusion proof (GET /api/batch-events/proof?eventId=...)
+-- instead of replaying the whole chain.
+--
+-- IMPORTANT: The system works WITHOUT this table (no roots, no proofs).
+--
+-- Status: OPTIONAL
+-- ==================================================================================
+
+USE greenledger;
+
+CREATE TABLE IF NOT EXISTS batch_event_merkle_roots (
+    id BIGINT NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    scope VARCHAR(10) NOT NULL COMMENT 'BATCH or WINDOW',
+    batch_id INT NULL COMMENT 'BATCH roots only',
+    window_start TIMESTAMP NULL DEFAULT NULL COMMENT 'WINDOW roots only, inclusive',
+    window_end TIMESTAMP NULL DEFAULT NULL COMMENT 'WINDOW roots only, exclusive',
+    first_event_id BIGINT NOT NULL,
+    last_event_id BIGINT NOT NULL,
+    leaf_count INT NOT NULL,
+    merkle_root CHAR(64) NOT NULL COMMENT 'RFC 6962 SHA-256 root, leaves = raw event_hash bytes',
+    anchor_reference VARCHAR(255) NULL COMMENT 'External anchoring (registry entry, blockchain tx)',
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    INDEX idx_merkle_roots_batch (scope, batch_id, last_event_id),
+    INDEX idx_merkle_roots_window (scope, window_start, window_end)
+) ENGINE=InnoDB;
+
+-- Loading the events of a batch / of a time window
+ALTER TABLE batch_events
+ADD INDEX IF NOT EXISTS idx_batch_events_batch_id (batch_id, id);
+
+ALTER TABLE batch_events
+ADD INDEX IF NOT EXISTS idx_batch_events_created_at (created_at, id);
+
+-- ==================================================================================
+-- Verification Query
+-- ==================================================================================
+-- SELECT scope, COUNT(*) AS roots, SUM(leaf_count) AS leaves, MAX(created_at) AS last_root
+-- FROM batch_event_merkle_roots GROUP BY scope;
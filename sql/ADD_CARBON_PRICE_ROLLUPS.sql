@@ -0,0 +1,65 @@
+-- ==================================================================================
+-- OPTIONAL DATABASE MIGRATION: OHLC rollups of carbon_price_history
+-- ==================================================================================
+--
+-- Hourly and daily open/high/low/close buckets per credit type, maintained by
+-- CarbonPriceTimeseries on every stored price snapshot (same transaction). Price
+-- charts (/api/marketplace/pricing/history/{days}, marketplace dashboard) read one
+-- row per bucket instead of every raw snapshot of the period.
+--
+-- Buckets are aligned on UTC hours / UTC days (epoch based).
+--
+-- IMPORTANT: The system works WITHOUT this table (charts read the raw snapshots).
+--
+-- Status: OPTIONAL
+-- ==================================================================================
+
+USE greenledger;
+
+CREATE TABLE IF NOT EXISTS carbon_price_rollups (
+    credit_type VARCHAR(100) NOT NULL,
+    resolution ENUM('HOUR', 'DAY') NOT NULL,
+    bucket_start TIMESTAMP NOT NULL,
+    open_usd DECIMAL(10,4) NOT NULL,
+    high_usd DECIMAL(10,4) NOT NULL,
+    low_usd DECIMAL(10,4) NOT NULL,
+    close_usd DECIMAL(10,4) NOT NULL,
+    sample_count INT NOT NULL DEFAULT 0,
+    first_at TIMESTAMP(3) NOT NULL COMMENT 'Time of the snapshot giving open_usd',
+    last_at TIMESTAMP(3) NOT NULL COMMENT 'Time of the snapshot giving close_usd',
+    PRIMARY KEY (credit_type, resolution, bucket_start)
+) ENGINE=InnoDB;
+
+-- As-of lookups (getPriceAt) and range scans on the raw snapshots
+ALTER TABLE carbon_price_history
+ADD INDEX IF NOT EXISTS idx_price_history_type_time (credit_type, timestamp);
+
+-- Backfill from the existing snapshots (rows already rolled up are kept)
+INSERT INTO carbon_price_rollups
+    (credit_type, resolution, bucket_start, open_usd, high_usd, low_usd, close_usd, sample_count, first_at, last_at)
+SELECT credit_type, 'HOUR', FROM_UNIXTIME(FLOOR(UNIX_TIMESTAMP(timestamp) / 3600) * 3600) AS bucket,
+       CAST(SUBSTRING_INDEX(GROUP_CONCAT(usd_per_ton ORDER BY timestamp ASC, id ASC), ',', 1) AS DECIMAL(10,4)),
+       MAX(usd_per_ton), MIN(usd_per_ton),
+       CAST(SUBSTRING_INDEX(GROUP_CONCAT(usd_per_ton ORDER BY timestamp DESC, id DESC), ',', 1) AS DECIMAL(10,4)),
+       COUNT(*), MIN(timestamp), MAX(timestamp)
+FROM carbon_price_history
+GROUP BY credit_type, bucket
+ON DUPLICATE KEY UPDATE sample_count = sample_count;
+
+INSERT INTO carbon_price_rollups
+    (credit_type, resolution, bucket_start, open_usd, high_usd, low_usd, close_usd, sample_count, first_at, last_at)
+SELECT credit_type, 'DAY', FROM_UNIXTIME(FLOOR(UNIX_TIMESTAMP(timestamp) / 86400) * 86400) AS bucket,
+       CAST(SUBSTRING_INDEX(GROUP_CONCAT(usd_per_ton ORDER BY timestamp ASC, id ASC), ',', 1) AS DECIMAL(10,4)),
+       MAX(usd_per_ton), MIN(usd_per_ton),
+       CAST(SUBSTRING_INDEX(GROUP_CONCAT(usd_per_ton ORDER BY timestamp DESC, id DESC), ',', 1) AS DECIMAL(10,4)),
+       COUNT(*), MIN(timestamp), MAX(timestamp)
+FROM carbon_price_history
+GROUP BY credit_type, bucket
+ON DUPLICATE KEY UPDATE sample_count = sample_count;
+
+-- ==================================================================================
+-- Verification Query
+-- ==================================================================================
+-- SELECT r.credit_type, r.resolution, SUM(r.sample_count) AS rolled_up,
+--        (SELECT COUNT(*) FROM carbon_price_history h WHERE h.credit_type = r.credit_type) AS snapshots
+-- FROM carbon_price_rollups r GROUP BY r.credit_type, r.resolution;
@@ -0,0 +1,41 @@
+-- ==================================================================================
+-- OPTIONAL DATABASE MIGRATION: Listing search indexes
+-- ==================================================================================
+--
+-- Backs MarketplaceListingService.searchListingsPage (marketplace browse and
+-- GET /api/marketplace/listings?pageSize=&cursor=):
+--
+--   * idx_listings_search: asset type filter. Equality columns (status, expires_at,
+--     asset_type) first, then (created_at, id) so rows come out in ORDER BY order and
+--     the keyset cursor is a range on the index; price_per_unit last so the price
+--     range is checked on index entries before any row is read.
+--   * idx_listings_browse: unfiltered browse, rows already in ORDER BY created_at DESC,
+--     id DESC order; a page stops after pageSize + 1 index entries (no filesort).
+--
+-- IMPORTANT: The queries work WITHOUT these indexes, only slower on large tables.
+--
+-- Status: OPTIONAL
+-- ==================================================================================
+
+USE greenledger;
+
+ALTER TABLE marketplace_listings
+DROP INDEX IF EXISTS idx_listings_search;
+
+ALTER TABLE marketplace_listings
+ADD INDEX idx_listings_search (status, expires_at, asset_type, created_at, id, price_per_unit);
+
+ALTER TABLE marketplace_listings
+ADD INDEX IF NOT EXISTS idx_listings_browse (status, expires_at, created_at, id);
+
+-- ==================================================================================
+-- Verification Query
+-- ==================================================================================
+-- EXPLAIN SELECT id, price_per_unit, created_at FROM marketplace_listings
+--  WHERE status = 'ACTIVE' AND expires_at IS NULL
+--  ORDER BY created_at DESC, id DESC LIMIT 51;
+--
+-- EXPLAIN SELECT id, price_per_unit, created_at FROM marketplace_listings
+--  WHERE status = 'ACTIVE' AND expires_at IS NULL AND asset_type = 'CARBON_CREDITS'
+--    AND price_per_unit BETWEEN 0 AND 1000
+--  ORDER BY created_at DESC, id DESC LIMIT 51;
@@ -0,0 +1,48 @@
+-- ==================================================================================
+-- OPTIONAL DATABASE MIGRATION: Payment outbox for marketplace orders
+-- ==================================================================================
+--
+-- MarketplaceOrderService.placeOrder commits the order (PENDING) together with a row
+-- of this table; PaymentOutboxService workers then create the Stripe payment intent
+-- (with retries and an idempotency key) and move the order to PAYMENT_PROCESSING,
+-- or CANCELLED when the payment cannot be initiated. Placing an order is a single
+-- local commit instead of a commit held open across the Stripe call.
+--
+-- IMPORTANT: The system works WITHOUT this table (or with PAYMENT_OUTBOX=false):
+--            placeOrder then inserts the order and calls Stripe in one transaction,
+--            holding a pooled connection for the whole Stripe round trip. The order
+--            is committed as PAYMENT_PROCESSING once the intent exists, and rolled
+--            back (no row left behind) if the payment cannot be initiated.
+--
+-- Status: OPTIONAL
+-- ==================================================================================
+
+USE greenledger;
+
+CREATE TABLE IF NOT EXISTS payment_outbox (
+    id BIGINT NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    order_id INT NOT NULL,
+    idempotency_key VARCHAR(64) NOT NULL COMMENT 'Sent as Stripe Idempotency-Key on every attempt',
+    amount_usd DECIMAL(15,2) NOT NULL,
+    buyer_id INT NOT NULL,
+    seller_id INT NOT NULL,
+    description VARCHAR(255) NULL,
+    status ENUM('PENDING', 'IN_FLIGHT', 'SENT', 'CONFIRMED', 'FAILED') NOT NULL DEFAULT 'PENDING',
+    attempts INT NOT NULL DEFAULT 0,
+    next_attempt_at TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+    locked_until TIMESTAMP(3) NULL COMMENT 'Lease of the worker processing an IN_FLIGHT row',
+    stripe_payment_id VARCHAR(255) NULL,
+    last_error VARCHAR(500) NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    UNIQUE KEY uk_payment_outbox_key (idempotency_key),
+    INDEX idx_payment_outbox_due (status, next_attempt_at),
+    INDEX idx_payment_outbox_lease (status, locked_until),
+    INDEX idx_payment_outbox_order (order_id)
+) ENGINE=InnoDB;
+
+-- ==================================================================================
+-- Verification Query
+-- ==================================================================================
+-- SELECT status, COUNT(*) AS entries, MAX(attempts) AS max_attempts
+-- FROM payment_outbox GROUP BY status;
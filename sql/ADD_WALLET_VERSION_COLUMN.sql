@@ -0,0 +1,29 @@
+-- ==================================================================================
+-- OPTIONAL DATABASE MIGRATION: Add version column to wallet
+-- ==================================================================================
+--
+-- Enables WALLET_CONCURRENCY_MODE=OPTIMISTIC in WalletService: balance updates become
+-- compare-and-set on wallet.version and the transaction is replayed on conflict.
+-- A wallet row also guards the carbon_credit_batches it owns, so a single version
+-- column per wallet covers both tables.
+--
+-- IMPORTANT: The system works WITHOUT this column (PESSIMISTIC row locks,
+--            SELECT ... FOR UPDATE in wallet id order).
+--
+-- Status: OPTIONAL
+-- ==================================================================================
+
+USE greenledger;
+
+ALTER TABLE wallet
+ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0
+    COMMENT 'Incremented on every balance or batch change (optimistic locking)';
+
+-- Batches are read by owning wallet under the wallet guard
+ALTER TABLE carbon_credit_batches
+ADD INDEX IF NOT EXISTS idx_batches_wallet_remaining (wallet_id, remaining_amount);
+
+-- ==================================================================================
+-- Verification Query
+-- ==================================================================================
+-- SELECT id, available_credits, retired_credits, version FROM wallet LIMIT 10;
@@ -0,0 +1,78 @@
+package benchmarks;
+
+import Models.BatchEvent;
+import Models.BatchEventType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of {@link BatchEvent#computeHash()}: run on every event append and again for each event
+ * when a chain is verified ({@code isValid}).
+ *
+ * {@code legacyComputeHash} is the former implementation (new MessageDigest, String.format,
+ * getBytes, HexFormat per call), kept as the baseline of the streamed encoding.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BatchEventHashBenchmark {
+
+    /** Size of the event JSON payload in characters. */
+    @Param({"200", "4000"})
+    public int payloadChars;
+
+    private BatchEvent event;
+
+    @Setup
+    public void setUp() {
+        StringBuilder json = new StringBuilder("{\"amount\":125.5,\"wallet_id\":42,\"note\":\"");
+        while (json.length() < payloadChars - 2) {
+            json.append("retirement for Q3 offsetting ");
+        }
+        json.setLength(Math.max(0, payloadChars - 2));
+        json.append("\"}");
+        event = new BatchEvent(1842, BatchEventType.values()[0], json.toString(),
+            "9f2c4e0b7d1a3f5e8c6b2a4d0e9f7c1b3a5d8e2f4c6b0a9d7e1f3c5b8a2d4e6f", "wallet-service");
+    }
+
+    @Benchmark
+    public String computeHash() {
+        return event.computeHash();
+    }
+
+    @Benchmark
+    public boolean isValid() {
+        return event.isValid();
+    }
+
+    @Benchmark
+    public String legacyComputeHash() throws NoSuchAlgorithmException {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        String toHash = String.format("%d|%s|%s|%s|%s|%s",
+            event.getBatchId(),
+            event.getEventType() != null ? event.getEventType().name() : "",
+            event.getEventDataJson() != null ? event.getEventDataJson() : "",
+            event.getPreviousEventHash() != null ? event.getPreviousEventHash() : "GENESIS",
+            event.getActor() != null ? event.getActor() : "",
+            event.getCreatedAt() != null ? event.getCreatedAt().toString() : "");
+        return HexFormat.of().formatHex(digest.digest(toHash.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,75 @@
+package benchmarks;
+
+import Models.FraudDetectionResult;
+import Models.TypeUtilisateur;
+import Models.User;
+import Services.FraudDetectionService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link FraudDetectionService#analyzeRegistration} on a rotating set of sign-ups (clean,
+ * disposable email, suspicious name, incomplete profile).
+ *
+ * The service logs every analysis to System.out; the output is discarded during the trial so the
+ * benchmark measures the analysis, not the console.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FraudDetectionBenchmark {
+
+    private FraudDetectionService service;
+    private User[] users;
+    private int next;
+    private PrintStream console;
+
+    @Setup
+    public void setUp() {
+        service = new FraudDetectionService();
+        users = new User[] {
+            user("Ben Salah", "Amira", "amira.bensalah@greenledger.tn", "+21620123456", "12 rue de Marseille, Tunis", TypeUtilisateur.INVESTISSEUR),
+            user("Dupont", "Marc", "marc@mailinator.com", "+33612345678", "8 avenue Victor Hugo, Lyon", TypeUtilisateur.PORTEUR_PROJET),
+            user("Test", "Fake", "test.fake@example.com", "123", "n/a", TypeUtilisateur.INVESTISSEUR),
+            user("Trabelsi", "Youssef", "yt@gmail.com", null, null, TypeUtilisateur.EXPERT_CARBONE),
+        };
+        console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.setOut(console);
+    }
+
+    @Benchmark
+    public FraudDetectionResult analyzeRegistration() {
+        User user = users[next];
+        next = (next + 1) % users.length;
+        return service.analyzeRegistration(user);
+    }
+
+    private static User user(String nom, String prenom, String email, String telephone, String adresse, TypeUtilisateur type) {
+        User user = new User(nom, prenom, email, type);
+        user.setId(1000L + email.length());
+        user.setTelephone(telephone);
+        user.setAdresse(adresse);
+        return user;
+    }
+}
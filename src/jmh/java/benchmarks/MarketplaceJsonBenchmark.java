@@ -0,0 +1,77 @@
+package benchmarks;
+
+import Models.MarketplaceListing;
+import Models.MarketplaceOrder;
+import com.google.gson.Gson;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gson serialization of listing and order pages, as sent by MarketplaceAPIServer
+ * ({@code sendJsonResponse}, same plain {@code new Gson()}).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MarketplaceJsonBenchmark {
+
+    /** Items per response. */
+    @Param({"50", "1000"})
+    public int items;
+
+    private final Gson gson = new Gson();
+    private List<MarketplaceListing> listings;
+    private List<MarketplaceOrder> orders;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        listings = new ArrayList<>(items);
+        orders = new ArrayList<>(items);
+        for (int id = 1; id <= items; id++) {
+            double price = 10 + random.nextInt(2000) / 100.0;
+            MarketplaceListing listing = new MarketplaceListing(id % 97, "CARBON_CREDITS", id % 50,
+                1 + random.nextInt(500), price, price * 0.9, price * 1.1,
+                "Verified Gold Standard credits, reforestation project #" + id);
+            listing.setId(id);
+            listing.setUpdatedAt(now);
+            listings.add(listing);
+
+            MarketplaceOrder order = new MarketplaceOrder(id, 1000 + id % 31, id % 97, 1 + random.nextInt(50), price);
+            order.setId(id);
+            order.setStripePaymentId("pi_" + Long.toHexString(random.nextLong()));
+            order.setStatus("COMPLETED");
+            order.setCompletionDate(now);
+            orders.add(order);
+        }
+    }
+
+    @Benchmark
+    public String listingsToJson() {
+        return gson.toJson(listings);
+    }
+
+    @Benchmark
+    public String ordersToJson() {
+        return gson.toJson(orders);
+    }
+}
@@ -0,0 +1,53 @@
+package benchmarks;
+
+import Services.NlpMlService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * E/S/G scoring of a criterion comment by {@link NlpMlService#categorizeWithScores} (tokenize,
+ * Naive Bayes, sort). The model is trained once in the setup, as at application start.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NlpCategorizeBenchmark {
+
+    private static final String[] TEXTS = {
+        "Réduction des émissions de CO2 grâce au passage à une énergie renouvelable sur le site de production",
+        "Formation santé et sécurité des employés, diversité et inclusion dans les équipes locales",
+        "Audit interne annuel, comité de conformité et politique anti-corruption validée par le conseil",
+        "Recyclage des déchets et gestion de l'eau",
+    };
+
+    private NlpMlService service;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        service = NlpMlService.getInstance();
+        service.initializeIfNeeded();
+    }
+
+    @Benchmark
+    public Map<String, Double> categorizeWithScores() {
+        String text = TEXTS[next];
+        next = (next + 1) % TEXTS.length;
+        return service.categorizeWithScores(text);
+    }
+}
@@ -0,0 +1,87 @@
+package benchmarks;
+
+import Services.OrderBook;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Match throughput of {@link OrderBook} (in memory, no database).
+ *
+ * {@code match} only walks the asks; {@code matchAndApply} also consumes the fills and re-lists
+ * the same quantity at the same prices, so the book keeps its depth across iterations.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OrderBookBenchmark {
+
+    private static final long BUYER = -1;
+
+    @Param({"1000", "50000"})
+    public int listings;
+
+    @Param({"200"})
+    public int priceLevels;
+
+    /** Buy order size in tCO2e (most orders cross several listings). */
+    @Param({"25"})
+    public int orderQuantity;
+
+    private OrderBook book;
+    private Random random;
+    private int nextListingId;
+    private long wanted;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        random = new Random(42);
+        book = new OrderBook("CARBON_CREDITS");
+        for (nextListingId = 0; nextListingId < listings; nextListingId++) {
+            book.addAsk(nextListingId, nextListingId % 500, randomPrice(), OrderBook.toQuantity(1 + random.nextInt(20)));
+        }
+        wanted = OrderBook.toQuantity(orderQuantity);
+    }
+
+    @Benchmark
+    public List<OrderBook.Fill> match() {
+        return book.match(BUYER, wanted, OrderBook.MARKET);
+    }
+
+    @Benchmark
+    public void matchAndApply(Blackhole bh) {
+        List<OrderBook.Fill> fills = book.match(BUYER, wanted, OrderBook.MARKET);
+        book.apply(fills);
+        for (OrderBook.Fill fill : fills) {
+            book.addAsk(nextListingId++, fill.sellerId(), fill.priceTicks(), fill.quantity());
+        }
+        bh.consume(fills);
+    }
+
+    @Benchmark
+    public List<OrderBook.Fill> limitMatch() {
+        return book.match(BUYER, wanted, OrderBook.toTicks(15.0));
+    }
+
+    private long randomPrice() {
+        // $10.00 - $30.00 in 10 cent steps
+        return OrderBook.toTicks(10.0) + (long) random.nextInt(priceLevels) * 1_000;
+    }
+}
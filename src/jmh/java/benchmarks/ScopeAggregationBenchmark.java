@@ -0,0 +1,93 @@
+package benchmarks;
+
+import Models.climatiq.EmissionResult;
+import Services.ClimatiqApiService;
+import Services.ScopeEmissionCalculator;
+import Services.ScopeEmissionCalculator.ProcurementRecord;
+import Services.ScopeEmissionCalculator.Scope1Activity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import reactor.core.publisher.Flux;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scope 1 and Scope 3 aggregation of {@link ScopeEmissionCalculator} (parallel map, factor lookup,
+ * reduce with uncertainty propagation) over an in-memory workload.
+ *
+ * No network during the measurement: without CLIMATIQ_API_KEY the fallback factors are used, with
+ * a key the factors are fetched once in the setup and then served from the factor cache. The
+ * per-calculation audit log (System.out) is discarded during the trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ScopeAggregationBenchmark {
+
+    private static final String[] FUELS = {"diesel", "gasoline", "natural_gas", "propane"};
+    private static final String[] UNSPSC = {"25101500", "15101500", "25171500", "44101500", "72141100", "78111500", "43211500"};
+    private static final String[] CURRENCIES = {"USD", "EUR", "GBP"};
+
+    /** Activity records per calculation. */
+    @Param({"1000"})
+    public int records;
+
+    private ScopeEmissionCalculator calculator;
+    private List<Scope1Activity> scope1;
+    private List<ProcurementRecord> scope3;
+    private PrintStream console;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        scope1 = new ArrayList<>(records);
+        scope3 = new ArrayList<>(records);
+        for (int i = 0; i < records; i++) {
+            scope1.add(new Scope1Activity(FUELS[i % FUELS.length], BigDecimal.valueOf(10 + random.nextInt(990)), "L"));
+            ProcurementRecord record = new ProcurementRecord(BigDecimal.valueOf(100 + random.nextInt(50_000)),
+                CURRENCIES[i % CURRENCIES.length], UNSPSC[i % UNSPSC.length]);
+            record.supplierRegion = "FR";
+            scope3.add(record);
+        }
+
+        console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        calculator = new ScopeEmissionCalculator(new ClimatiqApiService());
+        calculator.prefetchScope3Factors(scope3).block();
+        calculator.calculateScope1Reactive(Flux.fromIterable(scope1)).block();
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.setOut(console);
+    }
+
+    @Benchmark
+    public EmissionResult scope1() {
+        return calculator.calculateScope1Reactive(Flux.fromIterable(scope1)).block();
+    }
+
+    @Benchmark
+    public EmissionResult scope3() {
+        return calculator.calculateScope3Reactive(Flux.fromIterable(scope3)).block();
+    }
+}
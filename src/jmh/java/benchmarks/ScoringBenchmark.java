@@ -0,0 +1,67 @@
+package benchmarks;
+
+import Models.CritereReference;
+import Models.EvaluationResult;
+import Models.ScoreExplanation;
+import Services.ScoringService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Weighted score and per-criterion explanation of {@link ScoringService} for one evaluation. The
+ * criteria reference table is injected ({@code setReferences}), no database involved.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ScoringBenchmark {
+
+    /** Criteria scored in the evaluation. */
+    @Param({"10", "200"})
+    public int criteria;
+
+    private ScoringService scoringService;
+    private List<EvaluationResult> results;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        List<CritereReference> references = new ArrayList<>();
+        results = new ArrayList<>();
+        for (int id = 1; id <= criteria; id++) {
+            CritereReference reference = new CritereReference("Critère " + id, "Référence " + id, 1 + random.nextInt(5));
+            reference.setIdCritere(id);
+            references.add(reference);
+            results.add(new EvaluationResult(id, "Critère " + id, random.nextInt(11), "", random.nextInt(4) != 0));
+        }
+        scoringService = new ScoringService();
+        scoringService.setReferences(references);
+    }
+
+    @Benchmark
+    public double calculateScore() {
+        return scoringService.calculateScore(results);
+    }
+
+    @Benchmark
+    public List<ScoreExplanation> explainScore() {
+        return scoringService.explainScore(results);
+    }
+}
@@ -0,0 +1,63 @@
+package benchmarks;
+
+import Models.CarbonCreditBatch;
+import Services.WalletService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * FIFO allocation of a retirement across a wallet's batches ({@link WalletService#allocateFifo}),
+ * the in-memory part of {@code retireCredits}: the amount retired covers about half of the
+ * wallet, so the loop walks half of the batches.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WalletFifoBenchmark {
+
+    /** Available batches in the wallet (oldest first). */
+    @Param({"10", "1000"})
+    public int batches;
+
+    private List<CarbonCreditBatch> available;
+    private double amount;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        available = new ArrayList<>(batches);
+        double total = 0;
+        for (int id = 1; id <= batches; id++) {
+            BigDecimal size = BigDecimal.valueOf(1 + random.nextInt(500));
+            CarbonCreditBatch batch = new CarbonCreditBatch(7, 3, size);
+            batch.setId(id);
+            batch.setRemainingAmount(size);
+            available.add(batch);
+            total += size.doubleValue();
+        }
+        amount = total / 2;
+    }
+
+    @Benchmark
+    public List<WalletService.BatchRetirementInfo> allocateFifo() {
+        return WalletService.allocateFifo(available, amount);
+    }
+}
@@ -10,6 +10,9 @@ import Services.EvaluationService;
 import Services.PdfService;
 import Services.PdfRestService;
 
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpServer;
 
@@ -24,7 +27,10 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 
 /**
@@ -41,6 +47,8 @@ public class ApiServer {
     private final AdvancedEvaluationFacade facade = new AdvancedEvaluationFacade();
     private final CritereImpactService critereService = new CritereImpactService();
     private final EvaluationService evaluationService = new EvaluationService();
+    private PythonWorkerPool predictorPool;
+    private HttpServerExecutor executor;
 
     public static void main(String[] args) throws IOException {
         new ApiServer().start(8080);
@@ -48,25 +56,33 @@ public class ApiServer {
 
     public void start(int port) throws IOException {
         HttpServer server = HttpServer.create(new InetSocketAddress(port), 0);
-
-        server.createContext("/api/criteres/references", this::handleListReferences);
-        server.createContext("/api/evaluations/score-preview", this::handleScorePreview);
-        server.createContext("/api/ai/evaluations/suggest-decision", this::handleSuggestDecision);
-        server.createContext("/api/evaluations/pdf", this::handleEvaluationPdf);
-        server.createContext("/api/ai/doccat", this::handleDoccat); // ML debug endpoint
-        server.createContext("/api/ai/evaluations/predict", this::handlePredictDecision);
-        server.createContext("/predict", this::handlePredictDecision);
+        // API_HTTP_MODE / API_HTTP_THREADS / API_HTTP_QUEUE / API_HTTP_LIMITS (see HttpServerExecutor)
+        executor = HttpServerExecutor.fromEnv("api", "API", 32, 128);
+
+        executor.register(server, "/api/criteres/references", this::handleListReferences);
+        executor.register(server, "/api/evaluations/score-preview", this::handleScorePreview);
+        executor.register(server, "/api/ai/evaluations/suggest-decision", this::handleSuggestDecision);
+        executor.register(server, "/api/evaluations/pdf", this::handleEvaluationPdf, 4);
+        executor.register(server, "/api/ai/doccat", this::handleDoccat); // ML debug endpoint
+        executor.register(server, "/api/ai/evaluations/predict", this::handlePredictDecision);
+        executor.register(server, "/predict", this::handlePredictDecision);
+        executor.register(server, "/api/ai/workers", this::handlePredictorStats); // ML worker pool metrics
+        executor.register(server, "/api/http/stats", this::handleHttpStats); // executor metrics
         // New endpoint: extract text from a PDF file using external pdfrest API with local fallback
-        server.createContext("/api/pdf/extract", this::handlePdfExtract);
+        executor.register(server, "/api/pdf/extract", this::handlePdfExtract, 4);
         // New endpoint: upload PDF bytes (POST) and extract text
-        server.createContext("/api/pdf/upload-extract", this::handlePdfUploadExtract);
-        server.createContext("/webhooks/stripe", this::handleStripeWebhook); // Stripe webhook endpoint
+        executor.register(server, "/api/pdf/upload-extract", this::handlePdfUploadExtract, 4);
+        executor.register(server, "/webhooks/stripe", this::handleStripeWebhook); // Stripe webhook endpoint
 
-        server.setExecutor(java.util.concurrent.Executors.newCachedThreadPool());
+        server.setExecutor(executor);
         System.out.println("API server started on http://localhost:" + port);
         server.start();
     }
 
+    private void handleHttpStats(HttpExchange exchange) throws IOException {
+        send(exchange, 200, executor.stats().toString());
+    }
+
     /**
      * GET /api/pdf/extract?path={localPath}
      * Responds with JSON: { success: bool, text: string|null, error: string|null }
@@ -368,59 +384,42 @@ public class ApiServer {
             }
         }
 
-        String python = resolvePythonExecutable();
-        if (python == null) {
+        JsonElement payload;
+        try {
+            payload = JsonParser.parseString(body);
+        } catch (JsonParseException ex) {
+            send(exchange, 400, "{\"error\":\"Invalid JSON body\"}");
+            System.out.println("[ML] /predict failed: invalid JSON");
+            return;
+        }
+
+        PythonWorkerPool pool;
+        try {
+            pool = predictorPool(rootDir, modelFile);
+        } catch (IOException ioEx) {
             String msg = "Python introuvable. Définissez PYTHON avec le chemin complet (ex: C:\\Users\\Mega-PC\\AppData\\Local\\Programs\\Python\\Python312\\python.exe).";
             send(exchange, 500, "{\"error\":\"" + escape(msg) + "\"}");
             System.out.println("[ML] /predict failed: python not found");
             return;
         }
 
-        File scriptFile = new File(rootDir, "ml/predict.py");
-        ProcessBuilder pb = new ProcessBuilder(
-                python,
-                scriptFile.getAbsolutePath(),
-                "--model",
-                modelFile.getAbsolutePath()
-        );
-        pb.directory(rootDir);
-        pb.redirectErrorStream(true);
-
         try {
-            Process proc = pb.start();
-            proc.getOutputStream().write(body.getBytes(StandardCharsets.UTF_8));
-            proc.getOutputStream().flush();
-            proc.getOutputStream().close();
-
-            BufferedReader br = new BufferedReader(new InputStreamReader(proc.getInputStream(), StandardCharsets.UTF_8));
-            StringBuilder out = new StringBuilder();
-            String line;
-            while ((line = br.readLine()) != null) {
-                out.append(line);
-            }
-
-            boolean finished = proc.waitFor(8, TimeUnit.SECONDS);
-            if (!finished) {
-                proc.destroyForcibly();
+            String result = pool.submit(payload).get();
+            send(exchange, 200, result);
+            System.out.println("[ML] /predict success");
+        } catch (RejectedExecutionException ex) {
+            send(exchange, 503, "{\"error\":\"Predictor busy, retry later\"}");
+            System.out.println("[ML] /predict rejected: queue full");
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof TimeoutException) {
                 send(exchange, 500, "{\"error\":\"Predictor timeout\"}");
                 System.out.println("[ML] /predict failed: timeout");
-                return;
-            }
-
-            int exit = proc.exitValue();
-            if (exit != 0) {
-                String err = out.length() == 0 ? "Predictor failed" : out.toString();
+            } else {
+                String err = cause != null && cause.getMessage() != null ? cause.getMessage() : "Predictor failed";
                 send(exchange, 500, "{\"error\":\"" + escape(err) + "\"}");
-                System.out.println("[ML] /predict failed: exit=" + exit);
-                return;
+                System.out.println("[ML] /predict failed: " + err);
             }
-
-            send(exchange, 200, out.toString());
-            System.out.println("[ML] /predict success");
-        } catch (IOException ioEx) {
-            String msg = "Python introuvable. Définissez PYTHON avec le chemin complet (ex: C:\\Users\\Mega-PC\\AppData\\Local\\Programs\\Python\\Python312\\python.exe).";
-            send(exchange, 500, "{\"error\":\"" + escape(msg) + "\"}");
-            System.out.println("[ML] /predict failed: python not found");
         } catch (InterruptedException ex) {
             Thread.currentThread().interrupt();
             send(exchange, 500, "{\"error\":\"Predictor interrupted\"}");
@@ -428,6 +427,49 @@ public class ApiServer {
         }
     }
 
+    /**
+     * Pool de workers ml/predict.py --serve, démarré à la première prédiction (le modèle est
+     * chargé une fois par worker au lieu d'une fois par requête).
+     * Taille et limites : ML_WORKERS (2), ML_PREDICT_TIMEOUT_MS (8000), ML_MAX_IN_FLIGHT (64).
+     */
+    private synchronized PythonWorkerPool predictorPool(File rootDir, File modelFile) throws IOException {
+        if (predictorPool == null) {
+            File scriptFile = new File(rootDir, "ml/predict.py");
+            List<String> command = List.of(
+                    resolvePythonExecutable(),
+                    scriptFile.getAbsolutePath(),
+                    "--model",
+                    modelFile.getAbsolutePath(),
+                    "--serve"
+            );
+            predictorPool = new PythonWorkerPool(command, rootDir,
+                    intEnv("ML_WORKERS", 2),
+                    intEnv("ML_PREDICT_TIMEOUT_MS", 8000),
+                    intEnv("ML_MAX_IN_FLIGHT", 64));
+        }
+        return predictorPool;
+    }
+
+    private void handlePredictorStats(HttpExchange exchange) throws IOException {
+        PythonWorkerPool pool;
+        synchronized (this) {
+            pool = predictorPool;
+        }
+        send(exchange, 200, pool != null ? pool.stats().toString() : "{\"workers\":0,\"started\":false}");
+    }
+
+    private static int intEnv(String key, int defaultValue) {
+        String value = System.getenv(key);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException ex) {
+            return defaultValue;
+        }
+    }
+
     private File resolveModelFile(File rootDir) {
         String modelPath = System.getenv().getOrDefault("CARBON_MODEL_PATH", "models/carbon_model.joblib");
         File modelFile = new File(modelPath);
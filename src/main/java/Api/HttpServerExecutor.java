@@ -0,0 +1,282 @@
+package Api;
+
+import Utils.EnvLoader;
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Executor for the com.sun.net.httpserver servers (ApiServer, MarketplaceAPIServer).
+ *
+ * Two modes, chosen with {@code <PREFIX>_HTTP_MODE}:
+ * <ul>
+ *   <li>{@code bounded} (default): {@code <PREFIX>_HTTP_THREADS} workers and a queue of
+ *       {@code <PREFIX>_HTTP_QUEUE} requests. When the queue is full the request is answered
+ *       503 right away on the dispatcher thread instead of piling up.</li>
+ *   <li>{@code virtual}: one virtual thread per request (Java 21+), at most THREADS + QUEUE
+ *       requests in flight, the rest get a 503. Falls back to {@code bounded} on older JVMs.</li>
+ * </ul>
+ * Handlers registered through {@link #register} can also get their own concurrency limit
+ * (code default, overridden by {@code <PREFIX>_HTTP_LIMITS=/path=4,/other=16}), so that a slow
+ * endpoint (PDF, Stripe...) cannot take every worker. In-flight, queued and rejected counters
+ * are available from {@link #stats()}.
+ */
+public final class HttpServerExecutor implements Executor, AutoCloseable {
+
+    private static final String LOG_TAG = "[HTTP]";
+    private static final String BUSY_BODY = "{\"error\":\"Server busy, retry later\",\"statusCode\":503}";
+
+    public enum Mode { BOUNDED, VIRTUAL }
+
+    // Set while a request rejected by the pool runs on the dispatcher thread: the handler only sends a 503
+    private static final ThreadLocal<Boolean> SHED = new ThreadLocal<>();
+
+    private final String name;
+    private final Mode mode;
+    private final int threads;
+    private final int queueCapacity;
+    private final ExecutorService delegate;
+    private final ThreadPoolExecutor pool; // null in VIRTUAL mode
+    private final Semaphore virtualPermits; // null in BOUNDED mode
+    private final Map<String, Integer> limitOverrides;
+    private final Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    private static final class Endpoint {
+        final Semaphore permits; // null = no per-endpoint limit
+        final int limit;
+        final AtomicInteger inFlight = new AtomicInteger();
+        final LongAdder rejected = new LongAdder();
+
+        Endpoint(int limit) {
+            this.limit = limit;
+            this.permits = limit > 0 ? new Semaphore(limit) : null;
+        }
+    }
+
+    public HttpServerExecutor(String name, Mode mode, int threads, int queueCapacity, Map<String, Integer> limitOverrides) {
+        this.name = name;
+        this.threads = Math.max(1, threads);
+        this.queueCapacity = Math.max(0, queueCapacity);
+        this.limitOverrides = Map.copyOf(limitOverrides);
+
+        ExecutorService virtual = mode == Mode.VIRTUAL ? newVirtualThreadExecutor() : null;
+        if (virtual != null) {
+            this.mode = Mode.VIRTUAL;
+            this.delegate = virtual;
+            this.pool = null;
+            this.virtualPermits = new Semaphore(this.threads + this.queueCapacity);
+        } else {
+            if (mode == Mode.VIRTUAL) {
+                System.err.println(LOG_TAG + " " + name + ": virtual threads need Java 21, using a bounded pool");
+            }
+            this.mode = Mode.BOUNDED;
+            AtomicInteger ids = new AtomicInteger();
+            this.pool = new ThreadPoolExecutor(this.threads, this.threads, 60, TimeUnit.SECONDS,
+                    this.queueCapacity > 0 ? new LinkedBlockingQueue<>(this.queueCapacity) : new SynchronousQueue<>(),
+                    r -> new Thread(r, name + "-http-" + ids.incrementAndGet()),
+                    (r, executor) -> shed(r));
+            this.pool.allowCoreThreadTimeOut(true);
+            this.delegate = pool;
+            this.virtualPermits = null;
+        }
+        System.out.println(LOG_TAG + " " + name + ": " + this.mode.name().toLowerCase(Locale.ROOT)
+                + " executor, threads=" + this.threads + ", queue=" + this.queueCapacity);
+    }
+
+    /**
+     * Executor configured from {@code <PREFIX>_HTTP_MODE}, {@code <PREFIX>_HTTP_THREADS},
+     * {@code <PREFIX>_HTTP_QUEUE} and {@code <PREFIX>_HTTP_LIMITS}.
+     */
+    public static HttpServerExecutor fromEnv(String name, String prefix, int defaultThreads, int defaultQueue) {
+        String modeValue = EnvLoader.get(prefix + "_HTTP_MODE", "bounded").trim().toUpperCase(Locale.ROOT);
+        Mode mode = "VIRTUAL".equals(modeValue) ? Mode.VIRTUAL : Mode.BOUNDED;
+        return new HttpServerExecutor(name, mode,
+                readInt(prefix + "_HTTP_THREADS", defaultThreads),
+                readInt(prefix + "_HTTP_QUEUE", defaultQueue),
+                parseLimits(EnvLoader.get(prefix + "_HTTP_LIMITS", "")));
+    }
+
+    /**
+     * {@code server.createContext(path, handler)} with request counting, overload shedding and,
+     * when {@code maxConcurrent > 0}, a per-endpoint concurrency limit.
+     */
+    public void register(HttpServer server, String path, HttpHandler handler, int maxConcurrent) {
+        int limit = limitOverrides.getOrDefault(path, maxConcurrent);
+        Endpoint endpoint = new Endpoint(limit);
+        endpoints.put(path, endpoint);
+        server.createContext(path, exchange -> handle(endpoint, handler, exchange));
+    }
+
+    public void register(HttpServer server, String path, HttpHandler handler) {
+        register(server, path, handler, 0);
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        delegate.execute(command);
+    }
+
+    private void shed(Runnable request) {
+        // Run the exchange here so the client gets a 503 instead of a dropped connection
+        SHED.set(Boolean.TRUE);
+        try {
+            request.run();
+        } finally {
+            SHED.remove();
+        }
+    }
+
+    private void handle(Endpoint endpoint, HttpHandler handler, HttpExchange exchange) throws IOException {
+        if (Boolean.TRUE.equals(SHED.get())) {
+            rejected.increment();
+            sendBusy(exchange);
+            return;
+        }
+        if (virtualPermits != null && !virtualPermits.tryAcquire()) {
+            rejected.increment();
+            sendBusy(exchange);
+            return;
+        }
+        try {
+            if (endpoint.permits != null && !endpoint.permits.tryAcquire()) {
+                endpoint.rejected.increment();
+                rejected.increment();
+                sendBusy(exchange);
+                return;
+            }
+            inFlight.incrementAndGet();
+            endpoint.inFlight.incrementAndGet();
+            try {
+                handler.handle(exchange);
+            } finally {
+                endpoint.inFlight.decrementAndGet();
+                inFlight.decrementAndGet();
+                completed.increment();
+                if (endpoint.permits != null) {
+                    endpoint.permits.release();
+                }
+            }
+        } finally {
+            if (virtualPermits != null) {
+                virtualPermits.release();
+            }
+        }
+    }
+
+    private static void sendBusy(HttpExchange exchange) throws IOException {
+        byte[] bytes = BUSY_BODY.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.getResponseHeaders().set("Retry-After", "1");
+        exchange.sendResponseHeaders(503, bytes.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(bytes);
+        }
+    }
+
+    /**
+     * Counters: inFlight, queued, completed, rejected (pool full + endpoint limits) and per endpoint.
+     */
+    public JsonObject stats() {
+        JsonObject stats = new JsonObject();
+        stats.addProperty("name", name);
+        stats.addProperty("mode", mode.name().toLowerCase(Locale.ROOT));
+        stats.addProperty("threads", threads);
+        stats.addProperty("queueCapacity", queueCapacity);
+        stats.addProperty("inFlight", inFlight.get());
+        stats.addProperty("queued", pool != null ? pool.getQueue().size() : 0);
+        stats.addProperty("activeThreads", pool != null ? pool.getActiveCount() : inFlight.get());
+        stats.addProperty("completed", completed.sum());
+        stats.addProperty("rejected", rejected.sum());
+
+        JsonObject perEndpoint = new JsonObject();
+        endpoints.forEach((path, endpoint) -> {
+            JsonObject e = new JsonObject();
+            e.addProperty("limit", endpoint.limit);
+            e.addProperty("inFlight", endpoint.inFlight.get());
+            e.addProperty("rejected", endpoint.rejected.sum());
+            perEndpoint.add(path, e);
+        });
+        stats.add("endpoints", perEndpoint);
+        return stats;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    @Override
+    public void close() {
+        delegate.shutdown();
+        try {
+            if (!delegate.awaitTermination(5, TimeUnit.SECONDS)) {
+                delegate.shutdownNow();
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            delegate.shutdownNow();
+        }
+    }
+
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            // Looked up reflectively: the project still targets Java 17
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            return null;
+        }
+    }
+
+    static Map<String, Integer> parseLimits(String raw) {
+        Map<String, Integer> limits = new ConcurrentHashMap<>();
+        if (raw == null || raw.isBlank()) {
+            return limits;
+        }
+        for (String entry : raw.split(",")) {
+            int idx = entry.lastIndexOf('=');
+            if (idx <= 0) {
+                continue;
+            }
+            try {
+                limits.put(entry.substring(0, idx).trim(), Integer.parseInt(entry.substring(idx + 1).trim()));
+            } catch (NumberFormatException ex) {
+                System.err.println(LOG_TAG + " Invalid endpoint limit: " + entry);
+            }
+        }
+        return limits;
+    }
+
+    private static int readInt(String key, int defaultValue) {
+        String value = EnvLoader.get(key);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            System.err.println(LOG_TAG + " Invalid value for " + key + ": " + value);
+            return defaultValue;
+        }
+    }
+}
@@ -18,17 +18,22 @@ import java.util.*;
  * Provides external access to marketplace features (mobile app, third-party integrations)
  * 
  * Endpoints:
- * GET  /api/marketplace/listings - Browse listings with filters
+ * GET  /api/marketplace/listings - Browse listings with filters (?pageSize=&cursor= for keyset pages)
  * POST /api/marketplace/listings - Create new listing
  * GET  /api/marketplace/listings/{id} - Get listing details
- * POST /api/marketplace/orders - Place order
+ * POST /api/marketplace/orders - Place order (listingId, or assetType=CARBON_CREDITS + optional limitPrice to match the order book)
+ * GET  /api/marketplace/orderbook - Ask/bid depth of the CARBON_CREDITS book (?levels=)
  * GET  /api/marketplace/orders/{userId} - Get order history
  * GET  /api/marketplace/pricing/current - Current carbon price
- * GET  /api/marketplace/pricing/history/{days} - Price history
+ * GET  /api/marketplace/pricing/history/{days}?type=&resolution=hour|day - Price history (OHLC candles with resolution)
  * POST /api/marketplace/trades - Initiate P2P trade
  * GET  /api/marketplace/trades/{userId} - Get user trades
  * GET  /api/user/{id}/marketplace/profile - Get user marketplace profile
  * GET  /api/user/{id}/marketplace/ratings - Get user ratings
+ * GET  /api/batch-events/proof?eventId=&scope=batch|window - Merkle inclusion proof of a batch event
+ * GET  /api/export/batch-events?format=ndjson|json&batchId=&since=&limit= - Streamed event export (resume with since=last id)
+ * GET  /api/export/provenance?batchId= or ?format=&since=&limit= - Streamed provenance of one batch / of every batch
+ * GET  /api/health - Health check with connection pool and HTTP executor metrics
  */
 public class MarketplaceAPIServer {
     private static final String LOG_TAG = "[MarketplaceAPIServer]";
@@ -36,19 +41,24 @@ public class MarketplaceAPIServer {
     private static final Gson gson = new Gson();
 
     private final HttpServer server;
+    private final HttpServerExecutor executor;
     private final MarketplaceListingService listingService;
     private final MarketplaceOrderService orderService;
     private final PeerTradeService tradeService;
     private final CarbonPricingService pricingService;
+    private final OrderBookService orderBookService;
     private final MarketplaceRatingService ratingService;
     private final UserMarketplaceKYCService kycService;
 
     public MarketplaceAPIServer() throws Exception {
         this.server = HttpServer.create(new InetSocketAddress(PORT), 0);
+        // MARKETPLACE_HTTP_MODE / _THREADS / _QUEUE / _LIMITS (see HttpServerExecutor)
+        this.executor = HttpServerExecutor.fromEnv("marketplace", "MARKETPLACE", 32, 256);
         this.listingService = MarketplaceListingService.getInstance();
         this.orderService = MarketplaceOrderService.getInstance();
         this.tradeService = PeerTradeService.getInstance();
         this.pricingService = CarbonPricingService.getInstance();
+        this.orderBookService = OrderBookService.getInstance();
         this.ratingService = MarketplaceRatingService.getInstance();
         this.kycService = UserMarketplaceKYCService.getInstance();
 
@@ -60,23 +70,126 @@ public class MarketplaceAPIServer {
      */
     private void setupRoutes() {
         // Listings endpoints
-        server.createContext("/api/marketplace/listings", new ListingsHandler());
+        executor.register(server, "/api/marketplace/listings", new ListingsHandler());
 
-        // Orders endpoints
-        server.createContext("/api/marketplace/orders", new OrdersHandler());
+        // Orders endpoints (DB transactions + Stripe: capped so reads keep some workers)
+        executor.register(server, "/api/marketplace/orders", new OrdersHandler(), 16);
+
+        // Order book depth: ?assetType=CARBON_CREDITS&levels=10
+        executor.register(server, "/api/marketplace/orderbook", exchange -> {
+            Map<String, String> params = parseQueryString(exchange.getRequestURI().getQuery());
+            String assetType = params.getOrDefault("assetType", OrderBookService.BOOK_ASSET_TYPE);
+            int levels;
+            try {
+                levels = Integer.parseInt(params.getOrDefault("levels", "10"));
+            } catch (NumberFormatException e) {
+                sendError(exchange, 400, "levels must be a number");
+                return;
+            }
+            if (levels <= 0 || !OrderBookService.supportsAssetType(assetType)) {
+                sendError(exchange, 400, "Order book only available for " + OrderBookService.BOOK_ASSET_TYPE
+                    + " with levels > 0");
+                return;
+            }
+            JsonObject book = new JsonObject();
+            book.addProperty("assetType", assetType);
+            book.add("asks", gson.toJsonTree(orderBookService.getAskDepth(assetType, levels)));
+            book.add("bids", gson.toJsonTree(orderBookService.getBidDepth(assetType, levels)));
+            sendResponse(exchange, 200, gson.toJson(book));
+        });
 
         // Pricing endpoints
-        server.createContext("/api/marketplace/pricing", new PricingHandler());
+        executor.register(server, "/api/marketplace/pricing", new PricingHandler());
 
         // Trades endpoints
-        server.createContext("/api/marketplace/trades", new TradesHandler());
+        executor.register(server, "/api/marketplace/trades", new TradesHandler(), 16);
 
         // User profile endpoints
-        server.createContext("/api/user", new UserHandler());
+        executor.register(server, "/api/user", new UserHandler());
+
+        // Merkle inclusion proof of a batch event: ?eventId=123[&scope=batch|window]
+        executor.register(server, "/api/batch-events/proof", exchange -> {
+            Map<String, String> params = parseQueryString(exchange.getRequestURI().getQuery());
+            long eventId;
+            BatchMerkleService.RootScope scope;
+            try {
+                eventId = Long.parseLong(params.getOrDefault("eventId", ""));
+                scope = BatchMerkleService.RootScope.valueOf(params.getOrDefault("scope", "batch").toUpperCase());
+            } catch (IllegalArgumentException e) {
+                sendError(exchange, 400, "eventId (number) and scope (batch or window) expected");
+                return;
+            }
+            try {
+                BatchMerkleService.InclusionProof proof = BatchMerkleService.getInstance().getInclusionProof(eventId, scope);
+                if (proof == null) {
+                    sendError(exchange, 404, "No Merkle root covers event " + eventId + " yet");
+                } else {
+                    sendJsonResponse(exchange, 200, proof);
+                }
+            } catch (IllegalStateException e) {
+                sendError(exchange, 409, e.getMessage());
+            }
+        });
+
+        // Streamed registry exports (chunked): ?format=ndjson|json&batchId=&since=<last id received>&limit=
+        // Each export holds a pooled connection while it streams: capped
+        executor.register(server, "/api/export/batch-events", exchange -> {
+            Map<String, String> params = parseQueryString(exchange.getRequestURI().getQuery());
+            BatchExportService.Format format;
+            Integer batchId;
+            long since;
+            int limit;
+            try {
+                format = BatchExportService.Format.valueOf(params.getOrDefault("format", "ndjson").toUpperCase());
+                batchId = params.containsKey("batchId") ? Integer.valueOf(params.get("batchId")) : null;
+                since = Long.parseLong(params.getOrDefault("since", "0"));
+                limit = Integer.parseInt(params.getOrDefault("limit", "0"));
+            } catch (IllegalArgumentException e) {
+                sendError(exchange, 400, "format (ndjson or json), batchId, since and limit (numbers) expected");
+                return;
+            }
+            sendStream(exchange, format.contentType(),
+                os -> BatchExportService.getInstance().exportEvents(os, format, batchId, since, limit));
+        }, 4);
+
+        // ?batchId= for one document, otherwise every batch: ?format=ndjson|json&since=<last batch id>&limit=
+        executor.register(server, "/api/export/provenance", exchange -> {
+            Map<String, String> params = parseQueryString(exchange.getRequestURI().getQuery());
+            BatchExportService.Format format;
+            Integer batchId;
+            int since;
+            int limit;
+            try {
+                format = BatchExportService.Format.valueOf(params.getOrDefault("format", "ndjson").toUpperCase());
+                batchId = params.containsKey("batchId") ? Integer.valueOf(params.get("batchId")) : null;
+                since = Integer.parseInt(params.getOrDefault("since", "0"));
+                limit = Integer.parseInt(params.getOrDefault("limit", "0"));
+            } catch (IllegalArgumentException e) {
+                sendError(exchange, 400, "format (ndjson or json), batchId, since and limit (numbers) expected");
+                return;
+            }
+            BatchExportService exports = BatchExportService.getInstance();
+            if (batchId == null) {
+                sendStream(exchange, format.contentType(), os -> exports.exportProvenance(os, format, since, limit));
+            } else if (!exports.batchExists(batchId)) {
+                sendError(exchange, 404, "Batch " + batchId + " not found");
+            } else {
+                sendStream(exchange, "application/json", os -> exports.exportBatchProvenance(os, batchId));
+            }
+        }, 4);
 
         // Health check
-        server.createContext("/api/health", exchange -> {
-            sendResponse(exchange, 200, "{\"status\": \"ok\"}");
+        executor.register(server, "/api/health", exchange -> {
+            JsonObject health = new JsonObject();
+            health.addProperty("status", "ok");
+            health.add("dbPool", gson.toJsonTree(DataBase.MyConnection.getPoolStats()));
+            health.add("http", executor.stats());
+            health.add("payments", PaymentOutboxService.getInstance().stats());
+            health.add("escrowScheduler", EscrowReleaseScheduler.getInstance().stats());
+            health.add("priceCache", CarbonPricingService.getInstance().cacheStats());
+            health.add("merkleRoots", BatchMerkleService.getInstance().stats());
+            health.add("auditLog", AuditLogWriter.getInstance().stats());
+            sendResponse(exchange, 200, gson.toJson(health));
         });
 
         System.out.println(LOG_TAG + " Routes configured");
@@ -86,8 +199,12 @@ public class MarketplaceAPIServer {
      * Start the API server
      */
     public void start() {
-        server.setExecutor(java.util.concurrent.Executors.newFixedThreadPool(10));
+        server.setExecutor(executor);
         server.start();
+        // Payments queued before a restart are picked up here
+        PaymentOutboxService.getInstance().start();
+        EscrowReleaseScheduler.getInstance().start();
+        BatchMerkleService.getInstance().start();
         System.out.println(LOG_TAG + " Server started on port " + PORT);
     }
 
@@ -96,6 +213,10 @@ public class MarketplaceAPIServer {
      */
     public void stop() {
         server.stop(0);
+        executor.close();
+        PaymentOutboxService.getInstance().stop();
+        EscrowReleaseScheduler.getInstance().stop();
+        BatchMerkleService.getInstance().stop();
         System.out.println(LOG_TAG + " Server stopped");
     }
 
@@ -129,7 +250,44 @@ public class MarketplaceAPIServer {
             String assetType = params.getOrDefault("assetType", null);
             Double minPrice = parseDouble(params.get("minPrice"));
             Double maxPrice = parseDouble(params.get("maxPrice"));
-            int limit = Integer.parseInt(params.getOrDefault("limit", "100"));
+
+            // Keyset pagination: ?pageSize=50&cursor=<nextCursor of the previous page>
+            if (params.containsKey("cursor") || params.containsKey("pageSize")) {
+                int pageSize;
+                try {
+                    pageSize = Integer.parseInt(params.getOrDefault("pageSize",
+                        String.valueOf(MarketplaceListingService.DEFAULT_PAGE_SIZE)));
+                } catch (NumberFormatException e) {
+                    sendError(exchange, 400, "pageSize must be a number");
+                    return;
+                }
+                if (pageSize <= 0 || pageSize > MarketplaceListingService.MAX_PAGE_SIZE) {
+                    sendError(exchange, 400, "pageSize must be between 1 and " + MarketplaceListingService.MAX_PAGE_SIZE);
+                    return;
+                }
+                MarketplaceListingService.ListingPage page;
+                try {
+                    page = listingService.searchListingsPage(assetType, minPrice, maxPrice, params.get("cursor"), pageSize);
+                } catch (IllegalArgumentException e) {
+                    sendError(exchange, 400, "Invalid cursor");
+                    return;
+                }
+                sendJsonResponse(exchange, 200, page);
+                return;
+            }
+
+            // Legacy: plain array of the first "limit" listings
+            int limit;
+            try {
+                limit = Integer.parseInt(params.getOrDefault("limit", "100"));
+            } catch (NumberFormatException e) {
+                sendError(exchange, 400, "limit must be a number");
+                return;
+            }
+            if (limit <= 0) {
+                sendError(exchange, 400, "limit must be > 0");
+                return;
+            }
 
             List<MarketplaceListing> listings = listingService.searchListings(assetType, minPrice, maxPrice, limit);
 
@@ -190,6 +348,12 @@ public class MarketplaceAPIServer {
             String body = readRequestBody(exchange);
             JsonObject json = gson.fromJson(body, JsonObject.class);
 
+            // No listingId: match against the order book of the asset type
+            if (!json.has("listingId") && json.has("assetType")) {
+                handleMatchOrder(exchange, json);
+                return;
+            }
+
             int listingId = json.get("listingId").getAsInt();
             int buyerId = json.get("buyerId").getAsInt();
             double quantity = json.get("quantity").getAsDouble();
@@ -204,6 +368,35 @@ public class MarketplaceAPIServer {
             }
         }
 
+        /**
+         * {"assetType", "buyerId", "quantity", "limitPrice"?}: market order, or limit order
+         * (immediate-or-cancel) when limitPrice is given.
+         */
+        private void handleMatchOrder(HttpExchange exchange, JsonObject json) throws IOException {
+            String assetType = json.get("assetType").getAsString();
+            int buyerId = json.get("buyerId").getAsInt();
+            double quantity = json.get("quantity").getAsDouble();
+
+            if (!OrderBookService.supportsAssetType(assetType)) {
+                sendError(exchange, 400, "Order-book buys only available for " + OrderBookService.BOOK_ASSET_TYPE);
+                return;
+            }
+            if (!orderBookService.isMatchingEnabled()) {
+                sendError(exchange, 503, "Order-book buys need the payment outbox (sql/ADD_PAYMENT_OUTBOX.sql)");
+                return;
+            }
+
+            OrderBookService.MatchResult result = json.has("limitPrice")
+                ? orderBookService.placeLimitBuy(assetType, buyerId, quantity, json.get("limitPrice").getAsDouble())
+                : orderBookService.placeMarketBuy(assetType, buyerId, quantity);
+
+            if (result.orderIds().isEmpty()) {
+                sendError(exchange, 409, "No matching listings");
+            } else {
+                sendJsonResponse(exchange, 201, result);
+            }
+        }
+
         private void handleGetOrders(HttpExchange exchange) throws IOException {
             String path = exchange.getRequestURI().getPath();
             String userId = path.substring(path.lastIndexOf("/") + 1);
@@ -254,8 +447,23 @@ public class MarketplaceAPIServer {
             String path = exchange.getRequestURI().getPath();
             String[] parts = path.split("/");
             int days = Integer.parseInt(parts[parts.length - 1]);
+            Map<String, String> params = parseQueryString(exchange.getRequestURI().getQuery());
+            String creditType = params.getOrDefault("type", "VOLUNTARY_CARBON_MARKET");
+
+            // ?resolution=hour|day returns OHLC candles, otherwise one closing price per bucket
+            String resolution = params.get("resolution");
+            if (resolution != null) {
+                CarbonPriceTimeseries.Resolution res;
+                try {
+                    res = CarbonPriceTimeseries.Resolution.valueOf(resolution.toUpperCase(Locale.ROOT));
+                } catch (IllegalArgumentException e) {
+                    sendError(exchange, 400, "resolution must be hour or day");
+                    return;
+                }
+                sendJsonResponse(exchange, 200, pricingService.getPriceCandles(creditType, days, res));
+                return;
+            }
 
-            String creditType = "VOLUNTARY_CARBON_MARKET";
             List<CarbonPriceSnapshot> history = pricingService.getPriceHistory(creditType, days);
 
             sendJsonResponse(exchange, 200, history);
@@ -416,6 +624,25 @@ public class MarketplaceAPIServer {
         }
     }
 
+    /**
+     * Body written progressively to the response stream.
+     */
+    @FunctionalInterface
+    private interface StreamBody {
+        void writeTo(OutputStream os) throws IOException;
+    }
+
+    /**
+     * Utility: Send a 200 response with chunked transfer (length 0), the body written as it is produced
+     */
+    private void sendStream(HttpExchange exchange, String contentType, StreamBody body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(200, 0);
+        try (OutputStream os = exchange.getResponseBody()) {
+            body.writeTo(os);
+        }
+    }
+
     /**
      * Utility: Send error response
      */
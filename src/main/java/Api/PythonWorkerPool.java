@@ -0,0 +1,384 @@
+package Api;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool de workers Python longue durée (ml/predict.py --serve).
+ *
+ * Chaque worker charge le modèle une seule fois puis traite des requêtes JSON, une par ligne sur
+ * stdin, et répond une ligne JSON par requête sur stdout. Les requêtes portent un id : plusieurs
+ * requêtes peuvent être en vol sur le même worker (multiplexage), la réponse est routée par id.
+ *
+ * - timeout par requête, file d'attente bornée (au-delà : RejectedExecutionException)
+ * - health check périodique (ping/pong), redémarrage automatique d'un worker mort ou bloqué ; un
+ *   worker occupé (requêtes en attente) ou qui a répondu depuis le dernier contrôle n'est pas pingé,
+ *   le ping attendrait derrière ses requêtes
+ * - métriques : requêtes en vol, terminées, échecs, timeouts, rejets, redémarrages
+ */
+public class PythonWorkerPool implements AutoCloseable {
+
+    private static final String LOG_TAG = "[ML-POOL]";
+    private static final long HEALTH_CHECK_INTERVAL_MS = 15_000;
+    private static final long PING_TIMEOUT_MS = 5_000;
+    private static final long RESTART_DELAY_MS = 1_000;
+
+    private final List<String> command;
+    private final File workDir;
+    private final long requestTimeoutMs;
+    private final int maxInFlight;
+    private final Worker[] workers;
+    private final ScheduledExecutorService scheduler;
+
+    private final AtomicLong nextRequestId = new AtomicLong();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong restarts = new AtomicLong();
+    private final AtomicLong totalLatencyMicros = new AtomicLong();
+    private volatile boolean closed;
+
+    /**
+     * Réponse d'erreur renvoyée par le script Python ({"error": ...}) ou worker indisponible.
+     */
+    public static class PredictorException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        public PredictorException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * @param command          commande du worker (python, script, arguments)
+     * @param workDir          répertoire de travail des processus
+     * @param size             nombre de processus Python
+     * @param requestTimeoutMs délai maximal d'une requête
+     * @param maxInFlight      nombre maximal de requêtes en vol (tous workers confondus)
+     * @throws IOException si aucun worker ne peut démarrer
+     */
+    public PythonWorkerPool(List<String> command, File workDir, int size, long requestTimeoutMs, int maxInFlight)
+            throws IOException {
+        this.command = List.copyOf(command);
+        this.workDir = workDir;
+        this.requestTimeoutMs = requestTimeoutMs;
+        this.maxInFlight = maxInFlight;
+        this.workers = new Worker[Math.max(1, size)];
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "ml-pool-health");
+            t.setDaemon(true);
+            return t;
+        });
+
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new Worker(i);
+            workers[i].start();
+        }
+        scheduler.scheduleWithFixedDelay(this::healthCheck, HEALTH_CHECK_INTERVAL_MS,
+            HEALTH_CHECK_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        System.out.println(LOG_TAG + " " + workers.length + " worker(s) démarré(s): " + String.join(" ", command));
+    }
+
+    /**
+     * Envoie {@code payload} au worker le moins chargé.
+     *
+     * @return le champ "result" de la réponse, sérialisé en JSON
+     * @throws RejectedExecutionException si la file d'attente est pleine
+     */
+    public CompletableFuture<String> submit(JsonElement payload) {
+        if (closed) {
+            return CompletableFuture.failedFuture(new PredictorException("Worker pool closed"));
+        }
+        if (inFlight.incrementAndGet() > maxInFlight) {
+            inFlight.decrementAndGet();
+            rejected.incrementAndGet();
+            throw new RejectedExecutionException("Prediction queue full (" + maxInFlight + " requests in flight)");
+        }
+
+        long start = System.nanoTime();
+        JsonObject request = new JsonObject();
+        request.addProperty("id", nextRequestId.incrementAndGet());
+        request.add("payload", payload);
+
+        CompletableFuture<JsonObject> response = leastLoaded().send(request, requestTimeoutMs);
+        return response.handle((json, error) -> {
+            inFlight.decrementAndGet();
+            totalLatencyMicros.addAndGet((System.nanoTime() - start) / 1_000);
+            if (error != null) {
+                failed.incrementAndGet();
+                throw new CompletionException(unwrap(error));
+            }
+            if (json.has("error")) {
+                failed.incrementAndGet();
+                throw new CompletionException(
+                    new PredictorException(json.get("error").getAsString()));
+            }
+            completed.incrementAndGet();
+            return json.has("result") ? json.get("result").toString() : "{}";
+        });
+    }
+
+    /**
+     * Métriques du pool (exposées par /api/ai/workers).
+     */
+    public JsonObject stats() {
+        JsonObject stats = new JsonObject();
+        stats.addProperty("workers", workers.length);
+        stats.addProperty("inFlight", inFlight.get());
+        stats.addProperty("maxInFlight", maxInFlight);
+        stats.addProperty("completed", completed.get());
+        stats.addProperty("failed", failed.get());
+        stats.addProperty("timeouts", timeouts.get());
+        stats.addProperty("rejected", rejected.get());
+        stats.addProperty("restarts", restarts.get());
+        long done = completed.get() + failed.get();
+        stats.addProperty("avgLatencyMs", done == 0 ? 0 : totalLatencyMicros.get() / 1000.0 / done);
+        int alive = 0;
+        JsonArray queueDepths = new JsonArray();
+        for (Worker worker : workers) {
+            if (worker.isAlive()) {
+                alive++;
+            }
+            queueDepths.add(worker.pending.size());
+        }
+        stats.addProperty("alive", alive);
+        stats.add("queueDepth", queueDepths);
+        return stats;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        scheduler.shutdownNow();
+        for (Worker worker : workers) {
+            worker.stop(new PredictorException("Worker pool closed"));
+        }
+    }
+
+    private Worker leastLoaded() {
+        Worker best = null;
+        for (Worker worker : workers) {
+            if (worker.isAlive() && (best == null || worker.pending.size() < best.pending.size())) {
+                best = worker;
+            }
+        }
+        // Aucun worker vivant : la requête part sur le premier, elle échouera ou attendra son redémarrage
+        return best != null ? best : workers[0];
+    }
+
+    private void healthCheck() {
+        for (Worker worker : workers) {
+            if (!worker.isAlive() || worker.isBusyOrRecent()) {
+                continue;
+            }
+            JsonObject ping = new JsonObject();
+            ping.addProperty("id", nextRequestId.incrementAndGet());
+            ping.addProperty("ping", true);
+            worker.send(ping, PING_TIMEOUT_MS).whenComplete((pong, error) -> {
+                if (error != null) {
+                    System.err.println(LOG_TAG + " Worker " + worker.index + " ne répond pas au ping, redémarrage");
+                    worker.restart(new PredictorException("Worker unresponsive"));
+                }
+            });
+        }
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        Throwable cause = error;
+        while (cause instanceof CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+
+    /**
+     * Un processus Python et les requêtes en attente de sa réponse.
+     */
+    private final class Worker {
+
+        final int index;
+        final Map<Long, CompletableFuture<JsonObject>> pending = new ConcurrentHashMap<>();
+        private volatile Process process;
+        private volatile BufferedWriter stdin;
+        private final AtomicInteger generation = new AtomicInteger();
+        private final AtomicBoolean restarting = new AtomicBoolean();
+        private volatile long lastResponseNanos = System.nanoTime();
+
+        Worker(int index) {
+            this.index = index;
+        }
+
+        synchronized void start() throws IOException {
+            ProcessBuilder pb = new ProcessBuilder(command);
+            pb.directory(workDir);
+            Process proc = pb.start();
+            process = proc;
+            stdin = new BufferedWriter(new OutputStreamWriter(proc.getOutputStream(), StandardCharsets.UTF_8));
+            int gen = generation.incrementAndGet();
+            lastResponseNanos = System.nanoTime();
+            restarting.set(false);
+
+            Thread reader = new Thread(() -> readResponses(proc, gen), "ml-worker-" + index + "-out");
+            reader.setDaemon(true);
+            reader.start();
+
+            Thread errors = new Thread(() -> drainErrors(proc), "ml-worker-" + index + "-err");
+            errors.setDaemon(true);
+            errors.start();
+        }
+
+        boolean isAlive() {
+            Process proc = process;
+            return proc != null && proc.isAlive();
+        }
+
+        /**
+         * Vrai si des requêtes attendent leur réponse (elles expirent d'elles-mêmes si le worker est
+         * bloqué) ou si une réponse est arrivée depuis le dernier contrôle : pas besoin de ping.
+         */
+        boolean isBusyOrRecent() {
+            return !pending.isEmpty()
+                || System.nanoTime() - lastResponseNanos < TimeUnit.MILLISECONDS.toNanos(HEALTH_CHECK_INTERVAL_MS);
+        }
+
+        CompletableFuture<JsonObject> send(JsonObject request, long timeoutMs) {
+            long id = request.get("id").getAsLong();
+            CompletableFuture<JsonObject> future = new CompletableFuture<>();
+            pending.put(id, future);
+            future.orTimeout(timeoutMs, TimeUnit.MILLISECONDS).whenComplete((json, error) -> {
+                pending.remove(id);
+                if (error instanceof TimeoutException) {
+                    timeouts.incrementAndGet();
+                }
+            });
+
+            try {
+                synchronized (this) {
+                    BufferedWriter out = stdin;
+                    if (out == null || !isAlive()) {
+                        throw new IOException("worker " + index + " not running");
+                    }
+                    out.write(request.toString());
+                    out.write('\n');
+                    out.flush();
+                }
+            } catch (IOException ex) {
+                future.completeExceptionally(new PredictorException("Predictor unavailable: " + ex.getMessage()));
+                restart(ex);
+            }
+            return future;
+        }
+
+        private void readResponses(Process proc, int gen) {
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(proc.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    dispatch(line);
+                }
+            } catch (IOException ignored) {
+                // Flux fermé : le processus est mort ou a été arrêté
+            }
+            if (generation.get() == gen && !closed) {
+                System.err.println(LOG_TAG + " Worker " + index + " arrêté (exit="
+                    + (proc.isAlive() ? "?" : proc.exitValue()) + "), redémarrage");
+                restart(new PredictorException("Predictor process exited"));
+            }
+        }
+
+        private void dispatch(String line) {
+            JsonObject json;
+            try {
+                json = JsonParser.parseString(line).getAsJsonObject();
+            } catch (RuntimeException ex) {
+                System.err.println(LOG_TAG + " Worker " + index + " sortie ignorée: " + line);
+                return;
+            }
+            lastResponseNanos = System.nanoTime();
+            if (!json.has("id") || json.get("id").isJsonNull()) {
+                System.err.println(LOG_TAG + " Worker " + index + " réponse sans id: " + line);
+                return;
+            }
+            CompletableFuture<JsonObject> future = pending.remove(json.get("id").getAsLong());
+            if (future != null) {
+                future.complete(json);
+            }
+        }
+
+        private void drainErrors(Process proc) {
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(proc.getErrorStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    System.err.println(LOG_TAG + " [worker " + index + "] " + line);
+                }
+            } catch (IOException ignored) {
+                // Processus terminé
+            }
+        }
+
+        /**
+         * Tue le processus courant, fait échouer ses requêtes en vol et en relance un après un court délai.
+         */
+        void restart(Throwable cause) {
+            // Crash détecté à la fois par le lecteur et par un envoi : un seul redémarrage
+            if (!restarting.compareAndSet(false, true)) {
+                return;
+            }
+            stop(cause);
+            if (closed) {
+                return;
+            }
+            restarts.incrementAndGet();
+            scheduler.schedule(() -> {
+                try {
+                    start();
+                } catch (IOException ex) {
+                    System.err.println(LOG_TAG + " Échec du redémarrage du worker " + index + ": " + ex.getMessage());
+                    restarting.set(false);
+                    restart(ex);
+                }
+            }, RESTART_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+
+        void stop(Throwable cause) {
+            Process proc = process;
+            stdin = null;
+            if (proc != null) {
+                proc.destroyForcibly();
+            }
+            List<CompletableFuture<JsonObject>> failedRequests = new ArrayList<>(pending.values());
+            pending.clear();
+            for (CompletableFuture<JsonObject> future : failedRequests) {
+                future.completeExceptionally(cause instanceof PredictorException
+                    ? cause : new PredictorException("Predictor restarted: " + cause.getMessage()));
+            }
+        }
+    }
+}
@@ -4,6 +4,7 @@ import Models.MarketplaceOrder;
 import Services.*;
 import com.stripe.model.Event;
 import com.stripe.model.EventDataObjectDeserializer;
+import com.stripe.model.PaymentIntent;
 import com.stripe.model.StripeObject;
 import com.stripe.net.Webhook;
 
@@ -88,10 +89,8 @@ public class StripeWebhookHandler {
                 return false;
             }
 
-            // Extract payment intent details - using property access instead of getId()
-            String paymentIntentId = stripeObject.getClass().getSimpleName();  // Use class name as fallback
-            // Metadata will be handled via order service lookup if needed
-            Object metadataObj = null;
+            String paymentIntentId = stripeObject instanceof PaymentIntent pi ? pi.getId() : null;
+            Object metadataObj = stripeObject instanceof PaymentIntent pi ? pi.getMetadata() : null;
             
             // Extract order ID from metadata - using null safe default to -1
             Integer orderId = extractOrderIdFromMetadata(metadataObj);
@@ -101,6 +100,8 @@ public class StripeWebhookHandler {
                 return false;
             }
 
+            PaymentOutboxService.getInstance().onPaymentConfirmed(orderId, paymentIntentId);
+
             // Complete the order
             boolean completed = orderService.completeOrder(orderId, paymentIntentId);
             if (completed) {
@@ -136,8 +137,8 @@ public class StripeWebhookHandler {
                 return false;
             }
 
-            String paymentIntentId = stripeObject.getClass().getSimpleName();  // Use class name as fallback
-            Object metadataObj = null;
+            String paymentIntentId = stripeObject instanceof PaymentIntent pi ? pi.getId() : null;
+            Object metadataObj = stripeObject instanceof PaymentIntent pi ? pi.getMetadata() : null;
             
             Integer orderId = extractOrderIdFromMetadata(metadataObj);
             if (orderId == null || orderId <= 0) {
@@ -145,6 +146,8 @@ public class StripeWebhookHandler {
                 return false;
             }
 
+            PaymentOutboxService.getInstance().onPaymentFailed(orderId, paymentIntentId);
+
             // Mark order as failed
             MarketplaceOrder order = orderService.getOrderById(orderId);
             if (order != null) {
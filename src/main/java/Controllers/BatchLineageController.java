@@ -15,7 +15,9 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.net.URL;
 import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.ResourceBundle;
 
@@ -199,6 +201,8 @@ public class BatchLineageController implements Initializable {
         TreeItem<String> root = new TreeItem<>("Batch Lineage");
         root.setExpanded(true);
 
+        // Lineage is ordered by depth: a parent is always placed before its children
+        Map<Integer, TreeItem<String>> itemsById = new HashMap<>();
         for (CarbonCreditBatch batch : lineage) {
             String label = String.format("Batch #%d - %s - %.2f tCO2 (%s)",
                 batch.getId(),
@@ -208,39 +212,15 @@ public class BatchLineageController implements Initializable {
             
             TreeItem<String> item = new TreeItem<>(label);
             item.setExpanded(true);
+            itemsById.put(batch.getId(), item);
             
-            if (batch.getId() == batchId) {
-                root.getChildren().add(item);
-            } else if (batch.getParentBatchId() != null) {
-                // Find parent and add as child
-                findAndAddChild(root, batch.getParentBatchId(), item);
-            } else {
-                root.getChildren().add(item);
-            }
+            TreeItem<String> parent = batch.getParentBatchId() != null ? itemsById.get(batch.getParentBatchId()) : null;
+            (parent != null ? parent : root).getChildren().add(item);
         }
 
         lineageTreeView.setRoot(root);
     }
 
-    /**
-     * Helper to build tree structure.
-     */
-    private boolean findAndAddChild(TreeItem<String> node, int parentId, TreeItem<String> child) {
-        String nodeText = node.getValue();
-        if (nodeText.contains("Batch #" + parentId)) {
-            node.getChildren().add(child);
-            return true;
-        }
-
-        for (TreeItem<String> childNode : node.getChildren()) {
-            if (findAndAddChild(childNode, parentId, child)) {
-                return true;
-            }
-        }
-
-        return false;
-    }
-
     /**
      * Load events table.
      */
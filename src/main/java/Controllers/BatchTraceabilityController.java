@@ -223,7 +223,7 @@ public class BatchTraceabilityController {
         }
 
         List<BatchEvent> events = eventService.getBatchEvents(batchId);
-        boolean chainValid = eventService.validateEventChain(batchId);
+        boolean chainValid = eventService.validateEventChain(batchId, events);
         List<CarbonCreditBatch> lineage = walletService.getBatchLineage(batchId);
         List<CarbonCreditBatch> children = walletService.getChildBatches(batchId);
 
@@ -495,6 +495,7 @@ public class ComprehensiveTestController {
                     log("  URL: " + meta.getURL());
                     log("  Driver: " + meta.getDriverName());
                     log("  Version: " + meta.getDriverVersion());
+                    log("  Pool: " + MyConnection.getPoolStats());
                     return true;
                 }
             } catch (Exception e) {
@@ -14,6 +14,7 @@ import Models.climatiq.EmissionResult;
 import Models.dto.external.CarbonEstimateResponse;
 import Models.dto.external.AirPollutionResponse;
 import Models.dto.external.AirQualityData;
+import Utils.MappedRecordCache;
 import Utils.SessionManager;
 import javafx.application.Platform;
 import javafx.event.ActionEvent;
@@ -61,14 +62,19 @@ public class GreenWalletController extends BaseController {
     private AirQualityService airQualityService;    private Wallet currentWallet;
     
     // Air quality data cache (disk + memory, 4 hour refresh for performance)
-    private java.util.Map<String, CachedAirQuality> airQualityCache = new java.util.HashMap<>();
+    // Written by the airQualityExecutor threads, read by the FX thread
+    private java.util.Map<String, CachedAirQuality> airQualityCache = new java.util.concurrent.ConcurrentHashMap<>();
     private static final long CACHE_DURATION_MS = 14400000; // 4 hours (minimize API calls)
-    private static final String CACHE_FILE = "air_quality_cache.json";
+    private static final String CACHE_FILE = "air_quality_cache.bin";
+    private static final String LEGACY_CACHE_FILE = "air_quality_cache.json"; // old serialized HashMap
+    private static final int CACHE_KEY_BYTES = 32;
+    private static final int CACHE_VALUE_BYTES = Integer.BYTES + Long.BYTES + 2 * Double.BYTES;
+    private MappedRecordCache airQualityStore;
     private java.util.concurrent.ExecutorService airQualityExecutor = 
             java.util.concurrent.Executors.newFixedThreadPool(3); // Max 3 concurrent API calls
     
     /**
-     * Cache entry for air quality data (serializable)
+     * Cache entry for air quality data (serializable for the legacy cache file)
      */
     private static class CachedAirQuality implements java.io.Serializable {
         private static final long serialVersionUID = 1L;
@@ -78,8 +84,12 @@ public class GreenWalletController extends BaseController {
         final double lon;
         
         CachedAirQuality(int aqi, double lat, double lon) {
+            this(aqi, System.currentTimeMillis(), lat, lon);
+        }
+
+        CachedAirQuality(int aqi, long timestamp, double lat, double lon) {
             this.aqi = aqi;
-            this.timestamp = System.currentTimeMillis();
+            this.timestamp = timestamp;
             this.lat = lat;
             this.lon = lon;
         }
@@ -599,44 +609,60 @@ public class GreenWalletController extends BaseController {
     }
 
     /**
-     * Load air quality cache from disk (persists between app restarts)
+     * Load air quality cache from disk (persists between app restarts).
+     * The cache file is memory-mapped: every fetched zone is written in place and flushed
+     * in the background, the old serialized cache is imported once.
      */
     private void loadCacheFromDisk() {
         try {
-            java.io.File cacheFile = new java.io.File(CACHE_FILE);
-            if (cacheFile.exists()) {
-                try (java.io.ObjectInputStream ois = new java.io.ObjectInputStream(
-                        new java.io.FileInputStream(cacheFile))) {
-                    @SuppressWarnings("unchecked")
-                    java.util.Map<String, CachedAirQuality> loaded = 
-                            (java.util.Map<String, CachedAirQuality>) ois.readObject();
-                    
-                    // Only load non-expired entries
-                    long validCount = 0;
-                    for (java.util.Map.Entry<String, CachedAirQuality> entry : loaded.entrySet()) {
-                        if (!entry.getValue().isExpired()) {
-                            airQualityCache.put(entry.getKey(), entry.getValue());
-                            validCount++;
-                        }
-                    }
-                    System.out.println("[AIR QUALITY] Loaded " + validCount + " cached entries from disk");
+            airQualityStore = MappedRecordCache.open(java.nio.file.Paths.get(CACHE_FILE),
+                    CACHE_KEY_BYTES, CACHE_VALUE_BYTES, 128);
+            airQualityStore.forEach((key, value) -> {
+                CachedAirQuality entry = new CachedAirQuality(
+                        value.getInt(), value.getLong(), value.getDouble(), value.getDouble());
+                if (!entry.isExpired()) {
+                    airQualityCache.put(key, entry);
                 }
-            }
+            });
+            importLegacyCache();
+            System.out.println("[AIR QUALITY] Loaded " + airQualityCache.size() + " cached entries from disk");
         } catch (Exception e) {
             System.err.println("[AIR QUALITY] Could not load cache from disk: " + e.getMessage());
         }
     }
-    
+
+    private void importLegacyCache() {
+        java.io.File legacyFile = new java.io.File(LEGACY_CACHE_FILE);
+        if (!legacyFile.exists()) {
+            return;
+        }
+        try (java.io.ObjectInputStream ois = new java.io.ObjectInputStream(
+                new java.io.FileInputStream(legacyFile))) {
+            @SuppressWarnings("unchecked")
+            java.util.Map<String, CachedAirQuality> loaded =
+                    (java.util.Map<String, CachedAirQuality>) ois.readObject();
+            for (java.util.Map.Entry<String, CachedAirQuality> entry : loaded.entrySet()) {
+                if (!entry.getValue().isExpired() && !airQualityCache.containsKey(entry.getKey())) {
+                    cacheAirQuality(entry.getKey(), entry.getValue());
+                }
+            }
+        } catch (Exception e) {
+            System.err.println("[AIR QUALITY] Ignoring unreadable " + LEGACY_CACHE_FILE + ": " + e.getMessage());
+        }
+        legacyFile.delete();
+    }
+
     /**
-     * Save air quality cache to disk (persist between app restarts)
+     * Cache an entry in memory and in the mapped cache file (in-place write, no disk wait)
      */
-    private void saveCacheToDisk() {
+    private void cacheAirQuality(String cacheKey, CachedAirQuality entry) {
+        airQualityCache.put(cacheKey, entry);
+        if (airQualityStore == null) {
+            return;
+        }
         try {
-            try (java.io.ObjectOutputStream oos = new java.io.ObjectOutputStream(
-                    new java.io.FileOutputStream(CACHE_FILE))) {
-                oos.writeObject(airQualityCache);
-                System.out.println("[AIR QUALITY] Saved " + airQualityCache.size() + " entries to disk cache");
-            }
+            airQualityStore.put(cacheKey, value -> value.putInt(entry.aqi).putLong(entry.timestamp)
+                    .putDouble(entry.lat).putDouble(entry.lon));
         } catch (Exception e) {
             System.err.println("[AIR QUALITY] Could not save cache to disk: " + e.getMessage());
         }
@@ -685,18 +711,13 @@ public class GreenWalletController extends BaseController {
                     int owmAqi = data.getMain().getAqi();
                     int usEpaAqi = convertOwmAqiToUsEpa(owmAqi, data);
                     
-                    // Cache the result
-                    airQualityCache.put(cacheKey, new CachedAirQuality(usEpaAqi, lat, lon));
+                    // Cache the result (memory + disk)
+                    cacheAirQuality(cacheKey, new CachedAirQuality(usEpaAqi, lat, lon));
                     System.out.println(String.format("[AIR QUALITY] ✓ %s: %.2f,%.2f → AQI %d", 
                             zoneLabel, lat, lon, usEpaAqi));
                     
                     // Update map zone color in JavaFX thread
                     Platform.runLater(() -> updateMapZone(lat, lon, usEpaAqi));
-                    
-                    // Periodically save to disk
-                    if (airQualityCache.size() % 10 == 0) {
-                        saveCacheToDisk();
-                    }
                 }
             } catch (Exception e) {
                 System.err.println("[AIR QUALITY] Error fetching " + zoneLabel + ": " + e.getMessage());
@@ -57,6 +57,7 @@ public class MarketplaceController extends BaseController {
     @FXML private Button refreshPriceButton;
     @FXML private Button testPaymentButton;
     @FXML private Button buyButton;
+    @FXML private Button loadMoreListingsButton;
 
     // My Listings Tab
     @FXML private TableView<MarketplaceListing> myListingsTable;
@@ -120,6 +121,10 @@ public class MarketplaceController extends BaseController {
     private ObservableList<MarketplaceOrder> ordersData = FXCollections.observableArrayList();
     private ObservableList<MarketplaceOffer> offersReceivedData = FXCollections.observableArrayList();
     private ObservableList<MarketplaceOffer> offersSentData = FXCollections.observableArrayList();
+    // Keyset cursor of the next browse page (null on the last page), only touched on the JavaFX thread
+    private String listingsCursor;
+    // Bumped when the filters change so that pages of an older search are dropped
+    private int listingsGeneration;
 
     @Override
     public void initialize() {
@@ -353,62 +358,59 @@ public class MarketplaceController extends BaseController {
     }
 
     /**
-     * Load all active listings from marketplace
+     * Load the first page of active listings matching the filters
      */
     @FXML
     private void loadListings() {
+        listingsGeneration++;
+        listingsCursor = null;
+        fetchListingsPage(null);
+    }
+
+    /**
+     * Append the next page of active listings
+     */
+    @FXML
+    private void handleLoadMoreListings() {
+        if (listingsCursor != null) {
+            fetchListingsPage(listingsCursor);
+        }
+    }
+
+    private void fetchListingsPage(String cursor) {
+        // Get filter values on JavaFX thread
+        final String assetTypeValue = assetTypeFilter.getValue();
+        final double minPrice = priceMinSlider.getValue();
+        final double maxPrice = priceMaxSlider.getValue();
+        final int generation = listingsGeneration;
+        loadMoreListingsButton.setDisable(true);
+
         new Thread(() -> {
             try {
-                // Get all active listings
-                List<MarketplaceListing> listings = listingService.getActiveListings();
-                System.out.println(LOG_TAG + " ===== DEBUG: loadListings() START =====");
-                System.out.println(LOG_TAG + " Total active listings from DB: " + listings.size());
-                
-                // Get filter values on JavaFX thread
-                final String assetTypeValue = assetTypeFilter.getValue();
-                final double minPrice = priceMinSlider.getValue();
-                final double maxPrice = priceMaxSlider.getValue();
-                
-                System.out.println(LOG_TAG + " Filter - Asset Type: " + assetTypeValue);
-                System.out.println(LOG_TAG + " Filter - Price Range: $" + minPrice + " - $" + maxPrice);
-                
-                // Debug: Print all listings before filtering
-                for (MarketplaceListing listing : listings) {
-                    System.out.println(LOG_TAG + "   Listing #" + listing.getId() + 
-                        ": " + listing.getAssetType() + 
-                        ", Price: $" + listing.getPricePerUnit() + 
-                        ", Seller: " + listing.getSellerId());
-                }
-                
-                // Apply asset type filter
-                if (assetTypeValue != null && !"All Types".equals(assetTypeValue)) {
-                    int beforeCount = listings.size();
-                    listings.removeIf(l -> !assetTypeValue.equals(l.getAssetType()));
-                    System.out.println(LOG_TAG + " Asset type filter: " + beforeCount + " -> " + listings.size());
-                }
-                
-                // Apply price range filter
-                int beforePriceFilter = listings.size();
-                listings.removeIf(l -> {
-                    double price = l.getPricePerUnit();
-                    boolean filtered = price < minPrice || price > maxPrice;
-                    if (filtered) {
-                        System.out.println(LOG_TAG + " FILTERED OUT Listing #" + l.getId() + 
-                            " - Price $" + price + " outside range");
-                    }
-                    return filtered;
-                });
-                System.out.println(LOG_TAG + " Price filter: " + beforePriceFilter + " -> " + listings.size());
-                
-                final int finalCount = listings.size();
+                // Filters are applied by the query (prepared statement + listing index)
+                String assetType = assetTypeValue != null && !"All Types".equals(assetTypeValue) ? assetTypeValue : null;
+                MarketplaceListingService.ListingPage page = listingService.searchListingsPage(
+                    assetType, minPrice, maxPrice, cursor, MarketplaceListingService.DEFAULT_PAGE_SIZE);
+                System.out.println(LOG_TAG + " Filter - Asset Type: " + assetTypeValue
+                    + ", Price Range: $" + minPrice + " - $" + maxPrice + " -> " + page.listings().size()
+                    + " listings" + (page.hasMore() ? " (more available)" : ""));
+
                 javafx.application.Platform.runLater(() -> {
-                    listingsData.clear();
-                    listingsData.addAll(listings);
-                    System.out.println(LOG_TAG + " ===== Loaded " + finalCount + " listings to table =====");
+                    if (generation != listingsGeneration) {
+                        return;
+                    }
+                    if (cursor == null) {
+                        listingsData.clear();
+                    }
+                    listingsData.addAll(page.listings());
+                    listingsCursor = page.nextCursor();
+                    loadMoreListingsButton.setDisable(listingsCursor == null);
+                    System.out.println(LOG_TAG + " ===== Loaded " + listingsData.size() + " listings to table =====");
                 });
             } catch (Exception e) {
                 System.err.println(LOG_TAG + " ERROR loading listings: " + e.getMessage());
                 e.printStackTrace();
+                javafx.application.Platform.runLater(() -> loadMoreListingsButton.setDisable(listingsCursor == null));
             }
         }).start();
     }
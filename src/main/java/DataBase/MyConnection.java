@@ -1,64 +1,178 @@
 package DataBase;
 
+import Utils.EnvLoader;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+
+import javax.sql.DataSource;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * Point d'accès unique à la base de données.
+ *
+ * Les connexions proviennent d'un pool HikariCP : chaque appel à {@link #getConnection()}
+ * emprunte une connexion au pool et la fermeture (try-with-resources) la restitue.
+ *
+ * Variables de configuration (.env, propriétés système ou environnement) :
+ * - DB_URL, DB_USER, DB_PASSWORD
+ * - DB_POOL_MAX_SIZE (défaut 20), DB_POOL_MIN_IDLE (défaut 5)
+ * - DB_POOL_CONNECTION_TIMEOUT_MS (défaut 10000)
+ * - DB_POOL_LEAK_DETECTION_MS (défaut 20000, 0 pour désactiver)
+ * - DB_PREP_STMT_CACHE_SIZE (défaut 250)
+ */
 public class MyConnection {
 
-    private Connection conn;
-    private static MyConnection instance;
+    private static final String LOG_TAG = "[DB]";
+
+    private static final String DEFAULT_URL = "jdbc:mysql://localhost:3306/greenledger";
+    private static final String DEFAULT_USER = "root";
+    private static final String DEFAULT_PASSWORD = "";
 
-    private String url = "jdbc:mysql://localhost:3306/greenledger";
-    private String user = "root";
-    private String pwd = "";
+    private final HikariDataSource dataSource;
+
+    private final LongAdder acquiredCount = new LongAdder();
+    private final LongAdder failedCount = new LongAdder();
+    private final LongAdder totalAcquireNanos = new LongAdder();
+    private final AtomicLong maxAcquireNanos = new AtomicLong();
 
     private MyConnection() {
-        try {
-            conn = DriverManager.getConnection(url, user, pwd);
-            System.out.println("Connexion établie !");
-        } catch (SQLException e) {
-            System.out.println("Erreur connexion DB: " + e.getMessage());
-        }
+        HikariConfig config = new HikariConfig();
+        config.setPoolName("greenledger-pool");
+        config.setJdbcUrl(EnvLoader.get("DB_URL", DEFAULT_URL));
+        config.setUsername(EnvLoader.get("DB_USER", DEFAULT_USER));
+        config.setPassword(EnvLoader.get("DB_PASSWORD", DEFAULT_PASSWORD));
+
+        config.setMaximumPoolSize(readInt("DB_POOL_MAX_SIZE", 20));
+        config.setMinimumIdle(readInt("DB_POOL_MIN_IDLE", 5));
+        config.setConnectionTimeout(readInt("DB_POOL_CONNECTION_TIMEOUT_MS", 10000));
+        config.setLeakDetectionThreshold(readInt("DB_POOL_LEAK_DETECTION_MS", 20000));
+        config.setRegisterMbeans(true);
+        // Ne pas bloquer le démarrage si MySQL n'est pas encore disponible
+        config.setInitializationFailTimeout(-1);
+
+        // Cache des requêtes préparées côté driver MySQL
+        config.addDataSourceProperty("cachePrepStmts", "true");
+        config.addDataSourceProperty("prepStmtCacheSize", String.valueOf(readInt("DB_PREP_STMT_CACHE_SIZE", 250)));
+        config.addDataSourceProperty("prepStmtCacheSqlLimit", "2048");
+        config.addDataSourceProperty("useServerPrepStmts", "true");
+        config.addDataSourceProperty("useLocalSessionState", "true");
+        config.addDataSourceProperty("rewriteBatchedStatements", "true");
+        config.addDataSourceProperty("cacheResultSetMetadata", "true");
+        config.addDataSourceProperty("cacheServerConfiguration", "true");
+        config.addDataSourceProperty("elideSetAutoCommits", "true");
+        config.addDataSourceProperty("maintainTimeStats", "false");
+        // Curseur serveur pour les requêtes avec setFetchSize (exports en flux) : sans cela le
+        // driver charge tout le ResultSet en mémoire. useCursorFetch impose useServerPrepStmts,
+        // déjà activé ci-dessus : les autres requêtes gardent donc leur comportement actuel.
+        config.addDataSourceProperty("useCursorFetch", "true");
+
+        this.dataSource = new HikariDataSource(config);
+        System.out.println(LOG_TAG + " Pool de connexions initialisé (max=" + config.getMaximumPoolSize() + ")");
+    }
+
+    private static class Holder {
+        private static final MyConnection INSTANCE = new MyConnection();
     }
 
     public static MyConnection getInstance() {
-        if (instance == null) {
-            instance = new MyConnection();
-        }
-        return instance;
+        return Holder.INSTANCE;
     }
 
+    /**
+     * Emprunte une connexion au pool. L'appelant doit la fermer pour la restituer.
+     *
+     * @return une connexion, ou null si le pool n'a pas pu en fournir
+     */
     public static Connection getConnection() {
-        MyConnection instance = MyConnection.getInstance();
         try {
-            return DriverManager.getConnection(instance.url, instance.user, instance.pwd);
+            return openConnection();
         } catch (SQLException e) {
-            System.err.println("[DB] Erreur lors de l'ouverture de connexion: " + e.getMessage());
+            System.err.println(LOG_TAG + " Erreur lors de l'ouverture de connexion: " + e.getMessage());
             return null;
         }
     }
 
-    // Fermer la connexion (déconseillé pour le singleton)
+    /**
+     * Variante de {@link #getConnection()} qui lève une SQLException au lieu de renvoyer null,
+     * à utiliser dans un try-with-resources.
+     */
+    public static Connection openConnection() throws SQLException {
+        MyConnection instance = MyConnection.getInstance();
+        long start = System.nanoTime();
+        try {
+            Connection connection = instance.dataSource.getConnection();
+            instance.recordAcquire(System.nanoTime() - start);
+            return connection;
+        } catch (SQLException e) {
+            instance.failedCount.increment();
+            throw e;
+        }
+    }
+
+    /**
+     * DataSource partagée, pour les composants qui gèrent eux-mêmes leurs connexions.
+     */
+    public static DataSource getDataSource() {
+        return getInstance().dataSource;
+    }
+
+    /**
+     * Instantané des métriques du pool (connexions actives, inactives, threads en attente...).
+     */
+    public static PoolStats getPoolStats() {
+        MyConnection instance = getInstance();
+        HikariPoolMXBean pool = instance.dataSource.getHikariPoolMXBean();
+        long acquired = instance.acquiredCount.sum();
+        return new PoolStats(
+            pool != null ? pool.getActiveConnections() : 0,
+            pool != null ? pool.getIdleConnections() : 0,
+            pool != null ? pool.getTotalConnections() : 0,
+            pool != null ? pool.getThreadsAwaitingConnection() : 0,
+            instance.dataSource.getMaximumPoolSize(),
+            acquired,
+            instance.failedCount.sum(),
+            acquired == 0 ? 0.0 : instance.totalAcquireNanos.sum() / (double) acquired / 1_000_000.0,
+            instance.maxAcquireNanos.get() / 1_000_000.0
+        );
+    }
+
+    // Fermer le pool (à appeler à l'arrêt de l'application)
     public void closeConnection() {
-        if (conn != null) {
-            try {
-                conn.close();
-                System.out.println("[DB] Connexion fermée");
-                conn = null;
-            } catch (SQLException e) {
-                System.err.println("[DB] Erreur lors de la fermeture de la connexion: " + e.getMessage());
-                e.printStackTrace();
-            }
+        if (!dataSource.isClosed()) {
+            dataSource.close();
+            System.out.println("[DB] Pool de connexions fermé");
         }
     }
 
     // Tester la connexion
     public boolean testConnection() {
-        try (Connection c = DriverManager.getConnection(url, user, pwd)) {
-            return c != null && !c.isClosed();
+        try (Connection c = dataSource.getConnection()) {
+            return c != null && c.isValid(2);
         } catch (SQLException e) {
             return false;
         }
     }
+
+    private void recordAcquire(long nanos) {
+        acquiredCount.increment();
+        totalAcquireNanos.add(nanos);
+        maxAcquireNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    private static int readInt(String key, int defaultValue) {
+        String value = EnvLoader.get(key);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            System.err.println(LOG_TAG + " Valeur invalide pour " + key + ": " + value);
+            return defaultValue;
+        }
+    }
 }
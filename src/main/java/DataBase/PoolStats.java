@@ -0,0 +1,74 @@
+package DataBase;
+
+/**
+ * Instantané immuable des métriques du pool de connexions.
+ */
+public class PoolStats {
+
+    private final int activeConnections;
+    private final int idleConnections;
+    private final int totalConnections;
+    private final int threadsAwaiting;
+    private final int maxPoolSize;
+    private final long acquiredCount;
+    private final long failedCount;
+    private final double avgAcquireMillis;
+    private final double maxAcquireMillis;
+
+    public PoolStats(int activeConnections, int idleConnections, int totalConnections, int threadsAwaiting,
+                     int maxPoolSize, long acquiredCount, long failedCount,
+                     double avgAcquireMillis, double maxAcquireMillis) {
+        this.activeConnections = activeConnections;
+        this.idleConnections = idleConnections;
+        this.totalConnections = totalConnections;
+        this.threadsAwaiting = threadsAwaiting;
+        this.maxPoolSize = maxPoolSize;
+        this.acquiredCount = acquiredCount;
+        this.failedCount = failedCount;
+        this.avgAcquireMillis = avgAcquireMillis;
+        this.maxAcquireMillis = maxAcquireMillis;
+    }
+
+    public int getActiveConnections() {
+        return activeConnections;
+    }
+
+    public int getIdleConnections() {
+        return idleConnections;
+    }
+
+    public int getTotalConnections() {
+        return totalConnections;
+    }
+
+    public int getThreadsAwaiting() {
+        return threadsAwaiting;
+    }
+
+    public int getMaxPoolSize() {
+        return maxPoolSize;
+    }
+
+    public long getAcquiredCount() {
+        return acquiredCount;
+    }
+
+    public long getFailedCount() {
+        return failedCount;
+    }
+
+    public double getAvgAcquireMillis() {
+        return avgAcquireMillis;
+    }
+
+    public double getMaxAcquireMillis() {
+        return maxAcquireMillis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("PoolStats{active=%d, idle=%d, total=%d/%d, awaiting=%d, acquired=%d, failed=%d, avgAcquire=%.2fms, maxAcquire=%.2fms}",
+            activeConnections, idleConnections, totalConnections, maxPoolSize, threadsAwaiting,
+            acquiredCount, failedCount, avgAcquireMillis, maxAcquireMillis);
+    }
+}
@@ -0,0 +1,184 @@
+package DataBase;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Exécute une unité de travail dans sa propre transaction.
+ *
+ * Chaque appel emprunte une connexion au pool, désactive l'autocommit, exécute le callback puis
+ * valide (commit) ou annule (rollback) avant de restituer la connexion. Aucune connexion n'est
+ * partagée entre appelants : deux opérations lancées en parallèle depuis des threads différents
+ * ont chacune leur propre transaction.
+ *
+ * Les deadlocks et dépassements de délai de verrou signalés par MySQL (SQLState 40001, codes 1213
+ * et 1205) sont rejoués automatiquement : le callback doit donc pouvoir être réexécuté.
+ *
+ * Un callback peut abandonner son travail sans lever d'exception en appelant
+ * {@link #setRollbackOnly(Connection)} avant de retourner : le template annule alors la transaction
+ * au lieu de la valider et notifie les synchronisations avec {@code afterCompletion(false)}.
+ * Ne pas appeler {@code conn.rollback()} directement dans un callback : le template validerait
+ * ensuite la transaction et publierait les synchronisations comme si le travail avait été validé.
+ *
+ * Du code appelé dans le callback peut s'abonner à la fin de la transaction courante avec
+ * {@link #registerSynchronization(Connection, Synchronization)} (publication d'un cache après commit, etc.).
+ */
+public final class TransactionTemplate {
+
+    private static final String LOG_TAG = "[TX]";
+    private static final int DEFAULT_MAX_ATTEMPTS = 3;
+
+    private static final int MYSQL_LOCK_WAIT_TIMEOUT = 1205;
+    private static final int MYSQL_DEADLOCK = 1213;
+
+    @FunctionalInterface
+    public interface TransactionCallback<T> {
+        T doInTransaction(Connection conn) throws SQLException;
+    }
+
+    /**
+     * Notifiée une seule fois, après le commit ou le rollback de la tentative en cours.
+     */
+    @FunctionalInterface
+    public interface Synchronization {
+        void afterCompletion(boolean committed);
+    }
+
+    private static final class ActiveTransaction {
+        final Connection conn;
+        final List<Synchronization> synchronizations = new ArrayList<>();
+        boolean rollbackOnly;
+
+        ActiveTransaction(Connection conn) {
+            this.conn = conn;
+        }
+    }
+
+    private static final ThreadLocal<ActiveTransaction> ACTIVE = new ThreadLocal<>();
+
+    private TransactionTemplate() {
+    }
+
+    public static <T> T execute(TransactionCallback<T> work) throws SQLException {
+        return execute(DEFAULT_MAX_ATTEMPTS, work);
+    }
+
+    /**
+     * @param maxAttempts nombre maximal d'exécutions en cas de deadlock
+     * @param work        unité de travail, exécutée sur une connexion dédiée
+     * @return la valeur retournée par le callback
+     */
+    public static <T> T execute(int maxAttempts, TransactionCallback<T> work) throws SQLException {
+        for (int attempt = 1; ; attempt++) {
+            try (Connection conn = MyConnection.openConnection()) {
+                conn.setAutoCommit(false);
+                ActiveTransaction previous = ACTIVE.get();
+                ActiveTransaction tx = new ActiveTransaction(conn);
+                ACTIVE.set(tx);
+                boolean committed = false;
+                try {
+                    T result = work.doInTransaction(conn);
+                    if (tx.rollbackOnly) {
+                        conn.rollback();
+                    } else {
+                        conn.commit();
+                        committed = true;
+                    }
+                    return result;
+                } catch (SQLException e) {
+                    rollbackQuietly(conn);
+                    if (attempt >= maxAttempts || !isRetryable(e)) {
+                        throw e;
+                    }
+                    System.err.println(LOG_TAG + " Conflit de verrou (tentative " + attempt + "/" + maxAttempts
+                        + "), nouvelle tentative: " + e.getMessage());
+                } catch (RuntimeException e) {
+                    rollbackQuietly(conn);
+                    throw e;
+                } finally {
+                    restore(previous);
+                    fireAfterCompletion(tx, committed);
+                }
+            }
+            backoff(attempt);
+        }
+    }
+
+    /**
+     * Abonne {@code sync} à la fin de la transaction gérée par ce template sur {@code conn}.
+     *
+     * @return false si {@code conn} n'est pas la connexion d'une transaction en cours sur ce thread
+     *         (autocommit, transaction gérée à la main...) : l'appelant doit alors se débrouiller seul
+     */
+    public static boolean registerSynchronization(Connection conn, Synchronization sync) {
+        ActiveTransaction tx = ACTIVE.get();
+        if (tx == null || tx.conn != conn) {
+            return false;
+        }
+        tx.synchronizations.add(sync);
+        return true;
+    }
+
+    /**
+     * Marque la transaction gérée par ce template sur {@code conn} pour annulation : le callback
+     * peut retourner normalement, le template fera un rollback au lieu du commit.
+     *
+     * @throws IllegalStateException si {@code conn} n'est pas la connexion d'une transaction en cours sur ce thread
+     */
+    public static void setRollbackOnly(Connection conn) {
+        ActiveTransaction tx = ACTIVE.get();
+        if (tx == null || tx.conn != conn) {
+            throw new IllegalStateException("Aucune transaction gérée par TransactionTemplate sur cette connexion");
+        }
+        tx.rollbackOnly = true;
+    }
+
+    private static void restore(ActiveTransaction previous) {
+        if (previous == null) {
+            ACTIVE.remove();
+        } else {
+            ACTIVE.set(previous);
+        }
+    }
+
+    private static void fireAfterCompletion(ActiveTransaction tx, boolean committed) {
+        for (Synchronization sync : tx.synchronizations) {
+            try {
+                sync.afterCompletion(committed);
+            } catch (RuntimeException e) {
+                System.err.println(LOG_TAG + " Erreur dans une synchronisation de fin de transaction: " + e.getMessage());
+            }
+        }
+    }
+
+    static boolean isRetryable(SQLException e) {
+        for (SQLException ex = e; ex != null; ex = ex.getNextException()) {
+            if ("40001".equals(ex.getSQLState())
+                || ex.getErrorCode() == MYSQL_DEADLOCK
+                || ex.getErrorCode() == MYSQL_LOCK_WAIT_TIMEOUT) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void backoff(int attempt) throws SQLException {
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(5, 20) * attempt);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Transaction interrompue", ie);
+        }
+    }
+
+    private static void rollbackQuietly(Connection conn) {
+        try {
+            conn.rollback();
+        } catch (SQLException e) {
+            System.err.println(LOG_TAG + " Erreur lors du rollback: " + e.getMessage());
+        }
+    }
+}
@@ -1,13 +1,15 @@
 package Models;
 
+import Utils.Sha256Writer;
 import com.google.gson.Gson;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.stream.JsonWriter;
 
-import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import java.io.IOException;
+import java.io.StringWriter;
 import java.time.LocalDateTime;
-import java.util.HexFormat;
 import java.util.Objects;
 
 /**
@@ -53,26 +55,13 @@ public class BatchEvent {
     /**
      * Compute SHA-256 hash of event data for immutability verification.
      * Hash components: batchId + eventType + eventData + previousHash + actor + timestamp
+     * 
+     * Canonical form (unchanged, stored hashes depend on it): UTF-8 of
+     * "batchId|eventType|eventData|previousHash|actor|timestamp", streamed into the thread's
+     * {@link Sha256Writer} instead of being built with String.format.
      */
     public String computeHash() {
-        try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            
-            String toHash = String.format("%d|%s|%s|%s|%s|%s",
-                batchId,
-                eventType != null ? eventType.name() : "",
-                eventDataJson != null ? eventDataJson : "",
-                previousEventHash != null ? previousEventHash : "GENESIS",
-                actor != null ? actor : "",
-                createdAt != null ? createdAt.toString() : "");
-            
-            byte[] hashBytes = digest.digest(toHash.getBytes(StandardCharsets.UTF_8));
-            return HexFormat.of().formatHex(hashBytes);
-            
-        } catch (NoSuchAlgorithmException e) {
-            System.err.println("SHA-256 algorithm not available: " + e.getMessage());
-            return "";
-        }
+        return writeCanonical(Sha256Writer.begin()).toHex();
     }
     
     /**
@@ -83,8 +72,19 @@ public class BatchEvent {
         if (eventHash == null || eventHash.isEmpty()) {
             return false;
         }
-        String currentHash = computeHash();
-        return eventHash.equals(currentHash);
+        return writeCanonical(Sha256Writer.begin()).matchesHex(eventHash);
+    }
+    
+    private Sha256Writer writeCanonical(Sha256Writer writer) {
+        writer.append(batchId).append('|')
+            .append(eventType != null ? eventType.name() : "").append('|')
+            .append(eventDataJson != null ? eventDataJson : "").append('|')
+            .append(previousEventHash != null ? previousEventHash : "GENESIS").append('|')
+            .append(actor != null ? actor : "").append('|');
+        if (createdAt != null) {
+            writer.append(createdAt);
+        }
+        return writer;
     }
     
     /**
@@ -98,23 +98,45 @@ public class BatchEvent {
      * Get blockchain-ready payload for export
      */
     public String toBlockchainPayload() {
-        JsonObject payload = new JsonObject();
-        payload.addProperty("batch_id", batchId);
-        payload.addProperty("event_type", eventType.name());
-        payload.addProperty("event_hash", eventHash);
-        payload.addProperty("previous_hash", previousEventHash != null ? previousEventHash : "GENESIS");
-        payload.addProperty("actor", actor);
-        payload.addProperty("timestamp", createdAt.toString());
+        StringWriter out = new StringWriter();
+        try {
+            JsonWriter writer = gson.newJsonWriter(out);
+            writer.beginObject();
+            writeBlockchainFields(writer);
+            writer.endObject();
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // StringWriter does not throw
+        }
+        return out.toString();
+    }
+    
+    /**
+     * Write the blockchain payload fields into an object already opened on {@code writer}
+     * (streamed exports write events one by one, without a JsonObject per event).
+     * The writer should come from {@code Gson.newJsonWriter} so null fields are omitted.
+     */
+    public void writeBlockchainFields(JsonWriter writer) throws IOException {
+        writer.name("batch_id").value(batchId);
+        writer.name("event_type").value(eventType != null ? eventType.name() : null);
+        writer.name("event_hash").value(eventHash);
+        writer.name("previous_hash").value(previousEventHash != null ? previousEventHash : "GENESIS");
+        writer.name("actor").value(actor);
+        writer.name("timestamp").value(createdAt != null ? createdAt.toString() : null);
         
         if (eventDataJson != null) {
+            JsonElement data;
             try {
-                payload.add("event_data", gson.fromJson(eventDataJson, JsonObject.class));
+                data = gson.fromJson(eventDataJson, JsonObject.class);
             } catch (Exception e) {
-                payload.addProperty("event_data", eventDataJson);
+                data = new JsonPrimitive(eventDataJson);
+            }
+            writer.name("event_data");
+            if (data == null) {
+                writer.nullValue();
+            } else {
+                gson.toJson(data, writer);
             }
         }
-        
-        return gson.toJson(payload);
     }
     
     /**
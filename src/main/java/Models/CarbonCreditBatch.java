@@ -35,6 +35,7 @@ public class CarbonCreditBatch {
     // Batch lineage (for splits/subdivisions)
     private Integer parentBatchId;        // If split from larger batch
     private String lineageJson;           // Child batch IDs as JSON array
+    private Integer lineageDepth;         // Set by the recursive lineage query (null otherwise)
 
     // Optional fields for marketplace display
     private String projectName;           // Name of the project (for display)
@@ -106,11 +107,18 @@ public class CarbonCreditBatch {
     
     /**
      * Get lineage depth (0 = root, 1 = first generation child, etc.).
-     * Requires recursive query to calculate fully, returns 0 or 1 here based on parent.
+     * Exact when loaded through the recursive lineage query, otherwise 0 or 1 based on parent.
      */
     public int getLineageDepth() {
+        if (lineageDepth != null) {
+            return lineageDepth;
+        }
         return parentBatchId != null ? 1 : 0;
     }
+
+    public void setLineageDepth(Integer lineageDepth) {
+        this.lineageDepth = lineageDepth;
+    }
     
     /**
      * Get batch type badge for UI display.
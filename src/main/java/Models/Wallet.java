@@ -17,6 +17,7 @@ public class Wallet {
     private double availableCredits;      // Credits available for use (double)
     private double retiredCredits;        // Credits permanently retired (double)
     private LocalDateTime createdAt;
+    private long version;                 // Optimistic locking counter (0 if column absent)
 
     // Constructors
     public Wallet() {
@@ -95,6 +96,14 @@ public class Wallet {
         this.createdAt = createdAt;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
     // Utility methods
     public double getTotalCredits() {
         return availableCredits + retiredCredits;
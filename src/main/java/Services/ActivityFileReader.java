@@ -0,0 +1,150 @@
+package Services;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.SynchronousSink;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads a large activity file (CSV with a header line, or JSON Lines) as a {@link Flux} of line
+ * chunks, for {@link StreamingScopeCalculator}.
+ *
+ * The file is pulled on demand ({@link Flux#generate}): a chunk of {@code chunkLines} lines is only
+ * read when the subscriber requests it, so the memory held is bounded by the downstream
+ * concurrency, not by the file size. Blank lines are skipped; the CSV header is returned by
+ * {@link #readHeader} and never emitted. Reading runs on {@link Schedulers#boundedElastic()}.
+ */
+public final class ActivityFileReader {
+
+    public enum Format {
+        CSV, JSONL;
+
+        /** JSONL for .jsonl / .ndjson files, CSV otherwise. */
+        public static Format of(Path file) {
+            String name = file.getFileName().toString().toLowerCase();
+            return name.endsWith(".jsonl") || name.endsWith(".ndjson") ? JSONL : CSV;
+        }
+    }
+
+    /**
+     * Lines read from the file.
+     *
+     * @param firstLine line number (1-based) of {@code lines.get(0)} in the file
+     * @param bytesRead bytes consumed from the file so far (read-ahead buffer included)
+     */
+    public record LineChunk(List<String> lines, long firstLine, long bytesRead) {
+    }
+
+    private ActivityFileReader() {
+    }
+
+    /**
+     * First line of a CSV file (column names), null for JSONL or an empty file.
+     */
+    public static String readHeader(Path file) throws IOException {
+        if (Format.of(file) != Format.CSV) {
+            return null;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return reader.readLine();
+        }
+    }
+
+    public static Flux<LineChunk> read(Path file, int chunkLines) {
+        boolean skipHeader = Format.of(file) == Format.CSV;
+        int size = Math.max(1, chunkLines);
+        return Flux.generate(
+                () -> new State(file, skipHeader),
+                (State state, SynchronousSink<LineChunk> sink) -> {
+                    try {
+                        LineChunk chunk = state.next(size);
+                        if (chunk == null) {
+                            sink.complete();
+                        } else {
+                            sink.next(chunk);
+                        }
+                    } catch (IOException e) {
+                        sink.error(new UncheckedIOException("Error reading " + file + " near line " + state.lineNumber, e));
+                    }
+                    return state;
+                },
+                State::close)
+            .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private static final class State {
+        final CountingInputStream counter;
+        final BufferedReader reader;
+        long lineNumber;
+
+        State(Path file, boolean skipHeader) throws IOException {
+            counter = new CountingInputStream(Files.newInputStream(file));
+            reader = new BufferedReader(new InputStreamReader(counter, StandardCharsets.UTF_8), 1 << 16);
+            if (skipHeader && reader.readLine() != null) {
+                lineNumber = 1;
+            }
+        }
+
+        LineChunk next(int size) throws IOException {
+            List<String> lines = new ArrayList<>(size);
+            long first = -1;
+            String line;
+            while (lines.size() < size && (line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                if (first < 0) {
+                    first = lineNumber;
+                }
+                lines.add(line);
+            }
+            return lines.isEmpty() ? null : new LineChunk(lines, first, counter.count);
+        }
+
+        void close() {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                System.err.println("[ActivityFileReader] Error closing file: " + e.getMessage());
+            }
+        }
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+        long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+    }
+}
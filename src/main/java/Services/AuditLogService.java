@@ -30,10 +30,11 @@ public class AuditLogService {
     /**
      * Enregistre une action dans le journal
      * Cette méthode est appelée AUTOMATIQUEMENT par les autres services
+     * L'INSERT est fait par lots par AuditLogWriter, hors du thread appelant
      */
     public void log(AuditLog auditLog) {
         try {
-            auditLogDAO.log(auditLog);
+            AuditLogWriter.getInstance().submit(auditLog);
             System.out.println("[AUDIT] " + auditLog.toString());
         } catch (Exception e) {
             System.err.println("[AUDIT] Erreur lors de l'enregistrement: " + e.getMessage());
@@ -0,0 +1,252 @@
+package Services;
+
+import Models.AuditLog;
+import Utils.EnvLoader;
+import com.google.gson.JsonObject;
+import dao.AuditLogDAO;
+import dao.AuditLogDAOImpl;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Écriture asynchrone et groupée du journal d'activité.
+ *
+ * {@link #submit(AuditLog)} dépose l'entrée dans une file bornée sans verrou (ConcurrentLinkedQueue
+ * et compteur atomique) et rend la main : la connexion, le CAPTCHA ou l'action admin n'attendent
+ * plus l'INSERT. Un seul thread d'écriture vide la file par lots JDBC (une transaction, un INSERT
+ * multi-lignes) dès que {@code AUDIT_LOG_BATCH_SIZE} entrées attendent, sinon toutes les
+ * {@code AUDIT_LOG_FLUSH_MS} ms.
+ *
+ * File pleine ({@code AUDIT_LOG_QUEUE_CAPACITY}), selon {@code AUDIT_LOG_OVERFLOW} :
+ * - caller (défaut) : l'appelant écrit l'entrée lui-même, rien n'est perdu (contre-pression)
+ * - drop : l'entrée est abandonnée et comptée dans les métriques
+ *
+ * Un lot refusé par la base (ou sans connexion disponible) est réécrit entrée par entrée, une
+ * ligne invalide ne fait pas perdre les autres ; les entrées qui échouent encore sont comptées
+ * dans {@code failed}. {@link #stop()} (et un hook d'arrêt de la JVM) vide la file avant la fermeture du
+ * pool. Tant que {@link #start()} n'a pas été appelé, submit écrit de façon synchrone.
+ */
+public class AuditLogWriter {
+    private static final String LOG_TAG = "[AUDIT]";
+    private static final long STOP_TIMEOUT_MS = 10_000;
+
+    private static AuditLogWriter instance;
+
+    private final AuditLogDAO auditLogDAO;
+    private final int capacity;
+    private final int batchSize;
+    private final long flushNanos;
+    private final boolean dropOnOverflow;
+
+    private final ConcurrentLinkedQueue<AuditLog> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private volatile Thread writer;
+    private volatile boolean running;
+    private Thread shutdownHook;
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder batchedEntries = new LongAdder();
+    private final LongAdder batchNanos = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder callerWrites = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final AtomicInteger maxPending = new AtomicInteger();
+
+    private AuditLogWriter() {
+        this.auditLogDAO = new AuditLogDAOImpl();
+        this.capacity = Math.max(1, readInt("AUDIT_LOG_QUEUE_CAPACITY", 10_000));
+        this.batchSize = Math.max(1, readInt("AUDIT_LOG_BATCH_SIZE", 200));
+        this.flushNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, readInt("AUDIT_LOG_FLUSH_MS", 200)));
+        this.dropOnOverflow = "drop".equalsIgnoreCase(EnvLoader.get("AUDIT_LOG_OVERFLOW", "caller").trim());
+    }
+
+    public static synchronized AuditLogWriter getInstance() {
+        if (instance == null) {
+            instance = new AuditLogWriter();
+        }
+        return instance;
+    }
+
+    /**
+     * Démarre le thread d'écriture. Idempotent.
+     */
+    public synchronized void start() {
+        if (writer != null) {
+            return;
+        }
+        running = true;
+        Thread t = new Thread(this::runWriter, "audit-log-writer");
+        t.setDaemon(true);
+        writer = t;
+        t.start();
+        shutdownHook = new Thread(this::stop, "audit-log-flush");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+        System.out.println(LOG_TAG + " Écriture asynchrone démarrée (lot=" + batchSize + ", flush="
+            + TimeUnit.NANOSECONDS.toMillis(flushNanos) + "ms, file=" + capacity + ")");
+    }
+
+    /**
+     * Arrête le thread d'écriture et écrit tout ce qui reste dans la file (à appeler avant la
+     * fermeture du pool de connexions).
+     */
+    public synchronized void stop() {
+        Thread t = writer;
+        if (t == null) {
+            return;
+        }
+        // writer à null d'abord : un submit concurrent videra lui-même la file (voir submit)
+        writer = null;
+        running = false;
+        LockSupport.unpark(t);
+        try {
+            t.join(STOP_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        drainAndWrite(new ArrayList<>(batchSize));
+        if (shutdownHook != null && Thread.currentThread() != shutdownHook) {
+            try {
+                Runtime.getRuntime().removeShutdownHook(shutdownHook);
+            } catch (IllegalStateException e) {
+                // arrêt de la JVM déjà en cours
+            }
+        }
+        shutdownHook = null;
+        System.out.println(LOG_TAG + " Écriture asynchrone arrêtée, " + written.sum() + " entrées écrites");
+    }
+
+    /**
+     * Met l'entrée en file pour le prochain lot (écriture synchrone si le writer n'est pas démarré).
+     */
+    public void submit(AuditLog auditLog) {
+        Thread t = writer;
+        if (t == null) {
+            writeOne(auditLog);
+            return;
+        }
+        int size = pending.incrementAndGet();
+        if (size > capacity) {
+            pending.decrementAndGet();
+            if (dropOnOverflow) {
+                dropped.increment();
+            } else {
+                callerWrites.increment();
+                writeOne(auditLog);
+            }
+            return;
+        }
+        queue.offer(auditLog);
+        submitted.increment();
+        maxPending.accumulateAndGet(size, Math::max);
+        if (writer == null) {
+            // stop() est passé entre-temps : ne pas laisser l'entrée dans la file
+            drainAndWrite(new ArrayList<>(batchSize));
+        } else if (size == batchSize) {
+            LockSupport.unpark(t);
+        }
+    }
+
+    private void runWriter() {
+        List<AuditLog> batch = new ArrayList<>(batchSize);
+        while (running) {
+            if (pending.get() < batchSize) {
+                LockSupport.parkNanos(this, flushNanos);
+            }
+            try {
+                drainAndWrite(batch);
+            } catch (RuntimeException e) {
+                System.err.println(LOG_TAG + " Erreur du thread d'écriture: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Vide la file par lots de batchSize. Plusieurs threads peuvent l'appeler en même temps (poll).
+     */
+    private void drainAndWrite(List<AuditLog> batch) {
+        while (true) {
+            batch.clear();
+            AuditLog auditLog;
+            while (batch.size() < batchSize && (auditLog = queue.poll()) != null) {
+                batch.add(auditLog);
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+            pending.addAndGet(-batch.size());
+            writeBatch(batch);
+        }
+    }
+
+    private void writeBatch(List<AuditLog> batch) {
+        long start = System.nanoTime();
+        try {
+            auditLogDAO.logBatch(batch);
+            written.add(batch.size());
+            batches.increment();
+            batchedEntries.add(batch.size());
+            batchNanos.add(System.nanoTime() - start);
+        } catch (SQLException | RuntimeException e) {
+            System.err.println(LOG_TAG + " Lot de " + batch.size() + " entrées refusé (" + e.getMessage()
+                + "), écriture une par une");
+            for (AuditLog auditLog : batch) {
+                writeOne(auditLog);
+            }
+        }
+    }
+
+    private void writeOne(AuditLog auditLog) {
+        try {
+            auditLogDAO.logBatch(Collections.singletonList(auditLog));
+            written.increment();
+        } catch (SQLException | RuntimeException e) {
+            failed.increment();
+            System.err.println(LOG_TAG + " Erreur lors de l'enregistrement du log: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Métriques pour /api/health : file, lots, contre-pression et pertes.
+     */
+    public JsonObject stats() {
+        JsonObject stats = new JsonObject();
+        long batchCount = batches.sum();
+        stats.addProperty("running", writer != null);
+        stats.addProperty("queued", pending.get());
+        stats.addProperty("maxQueued", maxPending.get());
+        stats.addProperty("capacity", capacity);
+        stats.addProperty("overflow", dropOnOverflow ? "drop" : "caller");
+        stats.addProperty("submitted", submitted.sum());
+        stats.addProperty("written", written.sum());
+        stats.addProperty("batches", batchCount);
+        stats.addProperty("avgBatchSize", batchCount == 0 ? 0.0 : (double) batchedEntries.sum() / batchCount);
+        stats.addProperty("avgBatchMs", batchCount == 0 ? 0.0 : batchNanos.sum() / (double) batchCount / 1_000_000.0);
+        stats.addProperty("callerWrites", callerWrites.sum());
+        stats.addProperty("dropped", dropped.sum());
+        stats.addProperty("failed", failed.sum());
+        return stats;
+    }
+
+    private static int readInt(String key, int defaultValue) {
+        String value = EnvLoader.get(key);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            System.err.println(LOG_TAG + " Valeur invalide pour " + key + ": " + value);
+            return defaultValue;
+        }
+    }
+}
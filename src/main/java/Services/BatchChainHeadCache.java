@@ -0,0 +1,192 @@
+package Services;
+
+import DataBase.TransactionTemplate;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.common.util.concurrent.Striped;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Shared cache of batch_events chain heads (hash of the latest event of each batch).
+ *
+ * Appends to one batch are serialized by a striped lock keyed by batch ID, appends to different
+ * batches run in parallel. Inside a {@link TransactionTemplate} transaction the lock is held until
+ * commit/rollback: a concurrent writer can never chain onto a hash that is later rolled back, and
+ * the new head is only published once committed. Heads are seeded lazily from the database and an
+ * evicted (or invalidated) head simply falls back to the SELECT.
+ *
+ * The cache and its locks are per JVM: another process appending to the same batch is not seen
+ * here. BatchEventService therefore locks the batch row and checks the cached head against the
+ * stored one on every append, unless BATCH_EVENTS_SINGLE_WRITER declares this the only writer.
+ */
+final class BatchChainHeadCache {
+
+    private static final String LOG_TAG = "[CHAIN]";
+    private static final int STRIPES = 256;
+    private static final long MAX_HEADS = 50_000;
+    private static final long LOCK_TIMEOUT_MS = 2_000;
+
+    // Caffeine does not store null values: marker for "batch has no event yet"
+    private static final String NO_EVENT = "";
+
+    private static final BatchChainHeadCache INSTANCE = new BatchChainHeadCache();
+
+    private final Striped<Lock> locks = Striped.lock(STRIPES);
+    private final Cache<Integer, String> heads = Caffeine.newBuilder()
+        .maximumSize(MAX_HEADS)
+        .build();
+
+    // Append state of the TransactionTemplate transaction running on this thread
+    private final ThreadLocal<Append> transactional = new ThreadLocal<>();
+
+    /**
+     * Loads the current chain heads of batches missing from the cache (absent = no event yet).
+     */
+    @FunctionalInterface
+    interface HeadLoader {
+        Map<Integer, String> load(Connection conn, Collection<Integer> batchIds) throws SQLException;
+    }
+
+    private BatchChainHeadCache() {
+    }
+
+    static BatchChainHeadCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Lock the chains of {@code batchIds} for an append on {@code conn}.
+     * The returned Append must be closed (try-with-resources); inside a TransactionTemplate transaction
+     * closing is a no-op and everything is released when the transaction ends.
+     *
+     * @throws SQLException SQLState 40001 if a lock cannot be taken in time (retried by TransactionTemplate)
+     */
+    Append begin(Connection conn, Collection<Integer> batchIds) throws SQLException {
+        Append append = transactional.get();
+        if (append == null || append.conn != conn) {
+            append = new Append(conn);
+            if (TransactionTemplate.registerSynchronization(conn, append::complete)) {
+                append.bound = true;
+                transactional.set(append);
+            }
+        }
+        append.lock(batchIds);
+        return append;
+    }
+
+    /** Forget a head, e.g. after an append whose outcome is unknown. */
+    void invalidate(int batchId) {
+        heads.invalidate(batchId);
+    }
+
+    long size() {
+        return heads.estimatedSize();
+    }
+
+    /**
+     * Chain heads being appended on one connection: locks held, heads written but not committed.
+     */
+    final class Append implements AutoCloseable {
+
+        private final Connection conn;
+        private final List<Lock> held = new ArrayList<>();
+        private final Map<Integer, String> pending = new HashMap<>();
+        private boolean bound;
+
+        private Append(Connection conn) {
+            this.conn = conn;
+        }
+
+        private void lock(Collection<Integer> batchIds) throws SQLException {
+            // bulkGet returns the stripes in a fixed order: no lock-order inversion within one call
+            for (Lock lock : locks.bulkGet(batchIds)) {
+                boolean acquired;
+                try {
+                    acquired = lock.tryLock(LOCK_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw new SQLException("Interrupted while waiting for batch chain lock", ie);
+                }
+                if (!acquired) {
+                    throw new SQLException("Timed out waiting for batch chain lock " + batchIds, "40001");
+                }
+                held.add(lock);
+            }
+        }
+
+        /**
+         * Previous hash for each batch (null when the batch has no event yet): heads appended earlier
+         * on this connection first, then the cache, then one loader call for all the misses.
+         */
+        Map<Integer, String> previousHashes(Set<Integer> batchIds, HeadLoader loader) throws SQLException {
+            Map<Integer, String> previous = new HashMap<>();
+            List<Integer> misses = new ArrayList<>();
+            for (Integer batchId : batchIds) {
+                String hash = pending.containsKey(batchId) ? pending.get(batchId) : heads.getIfPresent(batchId);
+                if (hash == null) {
+                    misses.add(batchId);
+                } else if (!NO_EVENT.equals(hash)) {
+                    previous.put(batchId, hash);
+                }
+            }
+            if (!misses.isEmpty()) {
+                previous.putAll(loader.load(conn, misses));
+            }
+            return previous;
+        }
+
+        String previousHash(int batchId, HeadLoader loader) throws SQLException {
+            return previousHashes(Set.of(batchId), loader).get(batchId);
+        }
+
+        void appended(int batchId, String eventHash) {
+            pending.put(batchId, eventHash);
+        }
+
+        @Override
+        public void close() {
+            if (bound) {
+                return;
+            }
+            boolean committed;
+            try {
+                committed = conn.getAutoCommit();
+            } catch (SQLException ex) {
+                committed = false;
+            }
+            // Outside a template transaction we only know the outcome in autocommit mode
+            complete(committed);
+        }
+
+        private void complete(boolean committed) {
+            try {
+                for (Map.Entry<Integer, String> head : pending.entrySet()) {
+                    if (committed) {
+                        heads.put(head.getKey(), head.getValue());
+                    } else {
+                        heads.invalidate(head.getKey());
+                    }
+                }
+            } finally {
+                pending.clear();
+                for (int i = held.size() - 1; i >= 0; i--) {
+                    held.get(i).unlock();
+                }
+                held.clear();
+                if (bound && transactional.get() == this) {
+                    transactional.remove();
+                }
+            }
+        }
+    }
+}
@@ -1,15 +1,31 @@
 package Services;
 
 import DataBase.MyConnection;
+import DataBase.TransactionTemplate;
 import Models.BatchEvent;
 import Models.BatchEventType;
+import Utils.EnvLoader;
 import com.google.gson.Gson;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
 
+import java.io.IOException;
+import java.io.StringWriter;
 import java.sql.*;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Service layer for batch event operations.
@@ -17,19 +33,27 @@ import java.util.List;
  * 
  * Features:
  * - Event chaining (each event links to previous via hash)
+ * - Per-batch chain head cache: appends to one batch are serialized (also across processes, through
+ *   the batch row lock), no forked chains
  * - Tamper detection through hash verification
- * - Blockchain-ready export format
+ * - Blockchain-ready export format, streamed exports through a forward-only cursor
  * - Complete audit trail for compliance
  * 
  * @author GreenLedger Traceability Team
  */
 public class BatchEventService {
 
-    private Connection conn;
     private static final Gson gson = new Gson();
+    private static final int STREAM_FETCH_SIZE = 1000;
+    private static final BatchChainHeadCache chainHeads = BatchChainHeadCache.getInstance();
+    // Only this process appends batch events: trust the chain head cache without reading the head back
+    private static final boolean SINGLE_WRITER =
+        Boolean.parseBoolean(EnvLoader.get("BATCH_EVENTS_SINGLE_WRITER", "false").trim());
+
+    // null until checked once against the database metadata
+    private static volatile Boolean checkpointTable;
 
     public BatchEventService() {
-        this.conn = MyConnection.getConnection();
     }
 
     /**
@@ -44,8 +68,30 @@ public class BatchEventService {
      */
     public BatchEvent recordEvent(int batchId, BatchEventType eventType, JsonObject eventData, String actor) {
         try {
-            // Get the hash of the previous event to create chain
-            String previousHash = getLatestEventHash(batchId);
+            // Own transaction: the batch row lock taken by the append is held until commit
+            return TransactionTemplate.execute(conn -> recordEvent(conn, batchId, eventType, eventData, actor));
+        } catch (SQLException ex) {
+            System.err.println("Error recording batch event: " + ex.getMessage());
+            ex.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Record a new event on the caller's connection, so the event is committed or
+     * rolled back together with the operation that produced it.
+     * 
+     * @param conn Connection of the enclosing transaction
+     * @return The created BatchEvent, or null if no key was generated
+     * @throws SQLException if the insert fails
+     */
+    public BatchEvent recordEvent(Connection conn, int batchId, BatchEventType eventType,
+                                  JsonObject eventData, String actor) throws SQLException {
+        // Lock the batch's chain (held until commit inside a transaction) and get its head
+        lockBatchRows(conn, List.of(batchId));
+        try (BatchChainHeadCache.Append append = chainHeads.begin(conn, List.of(batchId))) {
+            String previousHash = checkHeads(conn, List.of(batchId),
+                append.previousHashes(Set.of(batchId), this::getLatestEventHashes)).get(batchId);
             
             // Create the event object
             BatchEvent event = new BatchEvent(
@@ -70,6 +116,7 @@ public class BatchEventService {
                 ps.setString(6, event.getActor());
                 
                 ps.executeUpdate();
+                append.appended(batchId, event.getEventHash());
                 
                 ResultSet rs = ps.getGeneratedKeys();
                 if (rs.next()) {
@@ -77,34 +124,163 @@ public class BatchEventService {
                     return event;
                 }
             }
-        } catch (SQLException ex) {
-            System.err.println("Error recording batch event: " + ex.getMessage());
-            ex.printStackTrace();
         }
         return null;
     }
     
     /**
-     * Get the hash of the latest event for a batch.
-     * Used to chain new events.
+     * Record one event of the same type for each of several batches in a constant number of
+     * round trips: one SELECT for all chain heads, one batched INSERT for all events.
      * 
-     * @param batchId The batch ID
-     * @return The latest event hash, or null if no events exist
+     * @param conn Connection of the enclosing transaction
+     * @param eventType Type shared by every event
+     * @param eventDataByBatch Event data keyed by batch ID (iteration order is insertion order)
+     * @param actor User or system that triggered the events
+     * @return The created events, in the order of the map
+     * @throws SQLException if the lookup or the insert fails
      */
-    private String getLatestEventHash(int batchId) {
-        String sql = "SELECT event_hash FROM batch_events " +
-                    "WHERE batch_id = ? ORDER BY created_at DESC, id DESC LIMIT 1";
+    public List<BatchEvent> recordEvents(Connection conn, BatchEventType eventType,
+                                         Map<Integer, JsonObject> eventDataByBatch, String actor) throws SQLException {
+        List<BatchEvent> events = new ArrayList<>(eventDataByBatch.size());
+        if (eventDataByBatch.isEmpty()) {
+            return events;
+        }
         
+        lockBatchRows(conn, eventDataByBatch.keySet());
+        try (BatchChainHeadCache.Append append = chainHeads.begin(conn, eventDataByBatch.keySet())) {
+            // Only the heads missing from the cache cost the window SELECT; all are checked in one read
+            Map<Integer, String> previousHashes = checkHeads(conn, eventDataByBatch.keySet(),
+                append.previousHashes(eventDataByBatch.keySet(), this::getLatestEventHashes));
+            for (Map.Entry<Integer, JsonObject> entry : eventDataByBatch.entrySet()) {
+                events.add(new BatchEvent(
+                    entry.getKey(),
+                    eventType,
+                    gson.toJson(entry.getValue()),
+                    previousHashes.get(entry.getKey()),
+                    actor
+                ));
+            }
+            
+            String sql = "INSERT INTO batch_events " +
+                        "(batch_id, event_type, event_data_json, event_hash, previous_event_hash, actor) " +
+                        "VALUES (?, ?, ?, ?, ?, ?)";
+            
+            try (PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                for (BatchEvent event : events) {
+                    ps.setInt(1, event.getBatchId());
+                    ps.setString(2, event.getEventType().name());
+                    ps.setString(3, event.getEventDataJson());
+                    ps.setString(4, event.getEventHash());
+                    ps.setString(5, event.getPreviousEventHash());
+                    ps.setString(6, event.getActor());
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                for (BatchEvent event : events) {
+                    append.appended(event.getBatchId(), event.getEventHash());
+                }
+                
+                ResultSet rs = ps.getGeneratedKeys();
+                for (int i = 0; i < events.size() && rs.next(); i++) {
+                    events.get(i).setId(rs.getLong(1));
+                }
+            }
+        }
+        return events;
+    }
+    
+    /**
+     * Lock the rows of the batches about to get events, in id order. Every appender (in any process)
+     * takes these locks before reading a chain head, so appends to one batch are serialized until
+     * commit even when another application instance writes to the same database.
+     * Skipped when BATCH_EVENTS_SINGLE_WRITER is set.
+     */
+    private static void lockBatchRows(Connection conn, Collection<Integer> batchIds) throws SQLException {
+        if (SINGLE_WRITER) {
+            return;
+        }
+        List<Integer> ids = new ArrayList<>(batchIds);
+        Collections.sort(ids);
+        String sql = "SELECT id FROM carbon_credit_batches WHERE id IN (" +
+                    String.join(",", Collections.nCopies(ids.size(), "?")) + ") ORDER BY id FOR UPDATE";
         try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setInt(1, batchId);
+            for (int i = 0; i < ids.size(); i++) {
+                ps.setInt(i + 1, ids.get(i));
+            }
+            ps.executeQuery().close();
+        }
+    }
+    
+    /**
+     * Check the heads given by the cache against the latest event of each batch, read with a
+     * locking read (latest committed row, not the transaction's snapshot) of one index entry per
+     * batch, all in one query. A head appended by another process replaces the cached one, so the
+     * new event chains onto it instead of forking the chain. Skipped when BATCH_EVENTS_SINGLE_WRITER
+     * is set: the cache is then trusted as is.
+     * 
+     * @param cached Head per batch from {@link BatchChainHeadCache} (absent = no event yet)
+     * @return The heads to chain onto (absent = no event yet)
+     */
+    private static Map<Integer, String> checkHeads(Connection conn, Collection<Integer> batchIds,
+                                                   Map<Integer, String> cached) throws SQLException {
+        if (SINGLE_WRITER) {
+            return cached;
+        }
+        String latestSql = "(SELECT batch_id, event_hash FROM batch_events WHERE batch_id = ? " +
+                    "ORDER BY id DESC LIMIT 1 FOR SHARE)";
+        String sql = String.join(" UNION ALL ", Collections.nCopies(batchIds.size(), latestSql));
+        Map<Integer, String> latest = new HashMap<>();
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            int index = 1;
+            for (Integer batchId : batchIds) {
+                ps.setInt(index++, batchId);
+            }
             ResultSet rs = ps.executeQuery();
-            if (rs.next()) {
-                return rs.getString("event_hash");
+            while (rs.next()) {
+                latest.put(rs.getInt("batch_id"), rs.getString("event_hash"));
             }
-        } catch (SQLException ex) {
-            System.err.println("Error getting latest event hash: " + ex.getMessage());
         }
-        return null;
+        
+        Map<Integer, String> heads = new HashMap<>(cached);
+        for (Integer batchId : batchIds) {
+            String actual = latest.get(batchId);
+            if (!equals(actual, cached.get(batchId))) {
+                System.err.println("[CHAIN] Batch " + batchId + ": cached chain head is stale (event appended by "
+                    + "another process), chaining onto the stored head");
+                if (actual == null) {
+                    heads.remove(batchId);
+                } else {
+                    heads.put(batchId, actual);
+                }
+            }
+        }
+        return heads;
+    }
+    
+    /**
+     * Get the latest event hash of several batches in a single query (chain head cache misses).
+     * Batches without events are absent from the returned map.
+     */
+    private Map<Integer, String> getLatestEventHashes(Connection conn, Collection<Integer> batchIds) throws SQLException {
+        String placeholders = String.join(",", Collections.nCopies(batchIds.size(), "?"));
+        String sql = "SELECT batch_id, event_hash FROM (" +
+                    "SELECT batch_id, event_hash, ROW_NUMBER() OVER " +
+                    "(PARTITION BY batch_id ORDER BY created_at DESC, id DESC) AS rn " +
+                    "FROM batch_events WHERE batch_id IN (" + placeholders + ")) latest " +
+                    "WHERE rn = 1";
+        
+        Map<Integer, String> hashes = new HashMap<>();
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            int index = 1;
+            for (Integer batchId : batchIds) {
+                ps.setInt(index++, batchId);
+            }
+            ResultSet rs = ps.executeQuery();
+            while (rs.next()) {
+                hashes.put(rs.getInt("batch_id"), rs.getString("event_hash"));
+            }
+        }
+        return hashes;
     }
     
     /**
@@ -114,17 +290,32 @@ public class BatchEventService {
      * @return List of events
      */
     public List<BatchEvent> getBatchEvents(int batchId) {
+        try (Connection conn = MyConnection.openConnection()) {
+            return getBatchEvents(conn, batchId);
+        } catch (SQLException ex) {
+            System.err.println("Error fetching batch events: " + ex.getMessage());
+        }
+        return new ArrayList<>();
+    }
+    
+    private List<BatchEvent> getBatchEvents(Connection conn, int batchId) throws SQLException {
+        return getBatchEventsFrom(conn, batchId, 0);
+    }
+    
+    /**
+     * Events of a batch from event {@code fromEventId} (inclusive) onwards, in chain order.
+     */
+    private List<BatchEvent> getBatchEventsFrom(Connection conn, int batchId, long fromEventId) throws SQLException {
         List<BatchEvent> events = new ArrayList<>();
-        String sql = "SELECT * FROM batch_events WHERE batch_id = ? ORDER BY created_at ASC, id ASC";
+        String sql = "SELECT * FROM batch_events WHERE batch_id = ? AND id >= ? ORDER BY created_at ASC, id ASC";
         
         try (PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setInt(1, batchId);
+            ps.setLong(2, fromEventId);
             ResultSet rs = ps.executeQuery();
             while (rs.next()) {
                 events.add(mapResultSetToEvent(rs));
             }
-        } catch (SQLException ex) {
-            System.err.println("Error fetching batch events: " + ex.getMessage());
         }
         return events;
     }
@@ -141,7 +332,8 @@ public class BatchEventService {
         String sql = "SELECT * FROM batch_events WHERE batch_id = ? AND event_type = ? " +
                     "ORDER BY created_at ASC, id ASC";
         
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+        try (Connection conn = MyConnection.openConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setInt(1, batchId);
             ps.setString(2, eventType.name());
             ResultSet rs = ps.executeQuery();
@@ -154,45 +346,244 @@ public class BatchEventService {
         return events;
     }
     
+    /**
+     * Receives events read from a cursor, one at a time.
+     */
+    @FunctionalInterface
+    public interface EventSink {
+        void accept(BatchEvent event) throws IOException;
+    }
+    
+    /** Outcome of {@link #streamBatchChain}: events passed to the sink and chain integrity. */
+    public record StreamedChain(long events, boolean valid) {
+    }
+    
+    /**
+     * Stream events with an id greater than {@code sinceEventId}, in id order, through a forward-only
+     * cursor: only {@value #STREAM_FETCH_SIZE} rows are held at a time (server cursor, useCursorFetch
+     * on the pool), whatever the size of the export. The id of the last event received is the resume
+     * token of the next call.
+     * 
+     * @param conn Connection kept open for the whole stream
+     * @param batchId Batch to export, or null for the events of every batch
+     * @param sinceEventId Resume token (0 from the start)
+     * @param limit Maximum number of events, 0 or less for no limit
+     * @param sink Receives each event
+     * @return Number of events passed to the sink
+     */
+    public long streamEvents(Connection conn, Integer batchId, long sinceEventId, int limit, EventSink sink)
+            throws SQLException, IOException {
+        String sql = "SELECT * FROM batch_events WHERE " + (batchId != null ? "batch_id = ? AND " : "")
+            + "id > ? ORDER BY id ASC" + (limit > 0 ? " LIMIT ?" : "");
+        try (PreparedStatement ps = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            int index = 1;
+            if (batchId != null) {
+                ps.setInt(index++, batchId);
+            }
+            ps.setLong(index++, sinceEventId);
+            if (limit > 0) {
+                ps.setInt(index, limit);
+            }
+            ps.setFetchSize(STREAM_FETCH_SIZE);
+            long count = 0;
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    sink.accept(mapResultSetToEvent(rs));
+                    count++;
+                }
+            }
+            return count;
+        }
+    }
+    
+    /**
+     * Stream the events of a batch in chain order (as {@link #getBatchEvents(int)}) through a
+     * forward-only cursor, checking the chain on the way like {@link #validateEventChain(int, List)}:
+     * events before the checkpointed event only have their links checked, the checkpointed event and
+     * the ones after it are rehashed, and the checkpoint is moved forward when the stream ends. An
+     * altered or missing anchor (or a broken link before it) falls back to a full check from genesis.
+     */
+    public StreamedChain streamBatchChain(Connection conn, int batchId, EventSink sink) throws SQLException, IOException {
+        ChainCheckpoint checkpoint = loadCheckpoint(conn, batchId);
+        String sql = "SELECT * FROM batch_events WHERE batch_id = ? ORDER BY created_at ASC, id ASC";
+        long count = 0;
+        boolean valid = true;
+        boolean anchorSeen = checkpoint == null;
+        boolean fallBack = false;
+        int hashed = 0;
+        long lastEventId = 0;
+        String expectedPrevHash = null;
+        try (PreparedStatement ps = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            ps.setInt(1, batchId);
+            ps.setFetchSize(STREAM_FETCH_SIZE);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    BatchEvent event = mapResultSetToEvent(rs);
+                    if (valid && !fallBack) {
+                        boolean linked = equals(expectedPrevHash, event.getPreviousEventHash());
+                        if (!anchorSeen && event.getId() == checkpoint.lastEventId()) {
+                            anchorSeen = true;
+                            if (!linked || !checkpoint.lastEventHash().equals(event.getEventHash())) {
+                                fallBack = true;
+                            }
+                        }
+                        if (!anchorSeen) {
+                            // Covered by the checkpoint: links only
+                            fallBack = !linked;
+                        } else if (!fallBack) {
+                            hashed++;
+                            if (!event.isValid() || !linked) {
+                                System.err.println("Event " + event.getId() + " has invalid hash or broken chain link");
+                                valid = false;
+                            }
+                            lastEventId = event.getId();
+                        }
+                    }
+                    expectedPrevHash = event.getEventHash();
+                    sink.accept(event);
+                    count++;
+                }
+            }
+        }
+
+        if (fallBack || !anchorSeen) {
+            System.err.println("Batch " + batchId + ": checkpointed event " + checkpoint.lastEventId()
+                + " was modified or deleted, checking the full chain");
+            return new StreamedChain(count, verifyChain(conn, batchId, true).valid());
+        }
+        saveCheckpoint(conn, batchId, checkpoint,
+            new ChainCheck(valid, hashed, valid ? lastEventId : 0, valid ? expectedPrevHash : null));
+        return new StreamedChain(count, valid);
+    }
+    
     /**
      * Validate the integrity of the event chain for a batch.
      * Checks that:
      * 1. Each event's hash is valid
      * 2. Each event's previous_hash links correctly to the prior event
      * 
+     * Only events appended since the batch's verification checkpoint are loaded and rehashed;
+     * the checkpoint is moved forward when the chain is valid.
+     * 
      * @param batchId The batch ID to validate
      * @return true if chain is intact, false if tampered
      */
     public boolean validateEventChain(int batchId) {
-        List<BatchEvent> events = getBatchEvents(batchId);
-        
-        if (events.isEmpty()) {
-            return true; // No events = valid (nothing to tamper)
+        try (Connection conn = MyConnection.openConnection()) {
+            return verifyChain(conn, batchId, false).valid();
+        } catch (SQLException ex) {
+            System.err.println("Error validating event chain: " + ex.getMessage());
+            return false;
+        }
+    }
+    
+    /**
+     * Validate a chain whose events the caller already loaded with {@link #getBatchEvents(int)}
+     * (avoids fetching the same events twice). Events up to the checkpoint are not rehashed.
+     * 
+     * @param batchId The batch ID
+     * @param events All events of the batch, in chain order
+     * @return true if chain is intact, false if tampered
+     */
+    public boolean validateEventChain(int batchId, List<BatchEvent> events) {
+        try (Connection conn = MyConnection.openConnection()) {
+            ChainCheckpoint checkpoint = loadCheckpoint(conn, batchId);
+            int start = 0;
+            if (checkpoint != null) {
+                int anchor = indexOfEvent(events, checkpoint.lastEventId());
+                if (anchor >= 0 && checkpoint.lastEventHash().equals(events.get(anchor).getEventHash())) {
+                    start = anchor;
+                } else {
+                    // Anchor altered or missing: fall back to the full chain
+                    checkpoint = null;
+                }
+            }
+            ChainCheck check = verifyEvents(events.subList(start, events.size()), checkpoint);
+            saveCheckpoint(conn, batchId, checkpoint, check);
+            return check.valid();
+        } catch (SQLException ex) {
+            System.err.println("Error validating event chain: " + ex.getMessage());
+            return false;
+        }
+    }
+    
+    /**
+     * Verify every batch chain in parallel (one pooled connection per worker).
+     * 
+     * @param parallelism Number of worker threads
+     * @param full true to ignore checkpoints and rehash every event
+     * @return Summary with invalid batches and throughput
+     */
+    public ChainVerificationReport verifyAllChains(int parallelism, boolean full) {
+        List<Integer> batchIds = new ArrayList<>();
+        try (Connection conn = MyConnection.openConnection();
+             PreparedStatement ps = conn.prepareStatement("SELECT DISTINCT batch_id FROM batch_events ORDER BY batch_id");
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                batchIds.add(rs.getInt(1));
+            }
+        } catch (SQLException ex) {
+            System.err.println("Error listing batch chains: " + ex.getMessage());
+            return new ChainVerificationReport(0, 0, List.of(), 0);
         }
         
-        String expectedPrevHash = null;
-        
-        for (BatchEvent event : events) {
-            // Verify event's own hash
-            if (!event.isValid()) {
-                System.err.println("Event " + event.getId() + " has invalid hash (tampered)");
-                return false;
+        long start = System.nanoTime();
+        LongAdder eventsHashed = new LongAdder();
+        List<Integer> invalid = Collections.synchronizedList(new ArrayList<>());
+        ExecutorService workers = Executors.newFixedThreadPool(Math.max(1, parallelism));
+        try {
+            List<Future<?>> futures = new ArrayList<>(batchIds.size());
+            for (Integer batchId : batchIds) {
+                futures.add(workers.submit(() -> {
+                    try (Connection conn = MyConnection.openConnection()) {
+                        ChainCheck check = verifyChain(conn, batchId, full);
+                        eventsHashed.add(check.eventsHashed());
+                        if (!check.valid()) {
+                            invalid.add(batchId);
+                        }
+                    } catch (SQLException ex) {
+                        System.err.println("Error verifying batch " + batchId + ": " + ex.getMessage());
+                        invalid.add(batchId);
+                    }
+                }));
             }
-            
-            // Verify chain linkage
-            String actualPrevHash = event.getPreviousEventHash();
-            if (!equals(expectedPrevHash, actualPrevHash)) {
-                System.err.println("Event " + event.getId() + " has broken chain link");
-                System.err.println("Expected previous: " + expectedPrevHash);
-                System.err.println("Actual previous: " + actualPrevHash);
-                return false;
+            for (Future<?> future : futures) {
+                future.get();
             }
-            
-            // Set up for next iteration
-            expectedPrevHash = event.getEventHash();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ex) {
+            System.err.println("Chain verification failed: " + ex.getCause());
+        } finally {
+            workers.shutdownNow();
         }
         
-        return true;
+        List<Integer> sortedInvalid = new ArrayList<>(invalid);
+        Collections.sort(sortedInvalid);
+        long elapsedNanos = System.nanoTime() - start;
+        return new ChainVerificationReport(batchIds.size(), eventsHashed.sum(), sortedInvalid, elapsedNanos);
+    }
+    
+    /**
+     * Result of {@link #verifyAllChains(int, boolean)}.
+     */
+    public record ChainVerificationReport(int batchesChecked, long eventsHashed, List<Integer> invalidBatchIds,
+                                          long elapsedNanos) {
+        
+        public boolean allValid() {
+            return invalidBatchIds.isEmpty();
+        }
+        
+        public double eventsPerSecond() {
+            return elapsedNanos > 0 ? eventsHashed * 1_000_000_000.0 / elapsedNanos : 0;
+        }
+        
+        @Override
+        public String toString() {
+            return String.format("%d chains, %d events rehashed in %.2fs (%.0f events/s), invalid: %s",
+                batchesChecked, eventsHashed, elapsedNanos / 1_000_000_000.0, eventsPerSecond(),
+                invalidBatchIds.isEmpty() ? "none" : invalidBatchIds);
+        }
     }
     
     /**
@@ -207,20 +598,42 @@ public class BatchEventService {
         JsonObject export = new JsonObject();
         export.addProperty("batch_id", batchId);
         export.addProperty("event_count", events.size());
-        export.addProperty("chain_valid", validateEventChain(batchId));
+        export.addProperty("chain_valid", validateEventChain(batchId, events));
         export.addProperty("export_timestamp", LocalDateTime.now().toString());
         
-        // Add all events as array
-        StringBuilder eventsJson = new StringBuilder("[");
-        for (int i = 0; i < events.size(); i++) {
-            if (i > 0) eventsJson.append(",");
-            eventsJson.append(events.get(i).toBlockchainPayload());
+        // Latest Merkle root of the batch: single events can then be proven without this export
+        BatchMerkleService.MerkleRoot root = BatchMerkleService.getInstance().getLatestBatchRoot(batchId);
+        if (root != null) {
+            JsonObject merkle = new JsonObject();
+            merkle.addProperty("root_id", root.id());
+            merkle.addProperty("merkle_root", root.merkleRoot());
+            merkle.addProperty("leaf_count", root.leafCount());
+            merkle.addProperty("last_event_id", root.lastEventId());
+            merkle.addProperty("anchor_reference", root.anchorReference());
+            export.add("merkle", merkle);
         }
-        eventsJson.append("]");
         
-        export.add("events", gson.fromJson(eventsJson.toString(), com.google.gson.JsonArray.class));
-        
-        return gson.toJson(export);
+        // Events written straight into the output (no intermediate array re-parsed)
+        StringWriter out = new StringWriter();
+        try {
+            JsonWriter writer = gson.newJsonWriter(out);
+            writer.beginObject();
+            for (Map.Entry<String, JsonElement> field : export.entrySet()) {
+                writer.name(field.getKey());
+                gson.toJson(field.getValue(), writer);
+            }
+            writer.name("events").beginArray();
+            for (BatchEvent event : events) {
+                writer.beginObject();
+                event.writeBlockchainFields(writer);
+                writer.endObject();
+            }
+            writer.endArray();
+            writer.endObject();
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // StringWriter does not throw
+        }
+        return out.toString();
     }
     
     /**
@@ -232,7 +645,8 @@ public class BatchEventService {
     public int getEventCount(int batchId) {
         String sql = "SELECT COUNT(*) FROM batch_events WHERE batch_id = ?";
         
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+        try (Connection conn = MyConnection.openConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setInt(1, batchId);
             ResultSet rs = ps.executeQuery();
             if (rs.next()) {
@@ -254,7 +668,8 @@ public class BatchEventService {
         String sql = "SELECT * FROM batch_events WHERE batch_id = ? " +
                     "ORDER BY created_at ASC, id ASC LIMIT 1";
         
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+        try (Connection conn = MyConnection.openConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setInt(1, batchId);
             ResultSet rs = ps.executeQuery();
             if (rs.next()) {
@@ -276,7 +691,8 @@ public class BatchEventService {
         List<BatchEvent> events = new ArrayList<>();
         String sql = "SELECT * FROM batch_events WHERE actor = ? ORDER BY created_at DESC";
         
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+        try (Connection conn = MyConnection.openConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, actor);
             ResultSet rs = ps.executeQuery();
             while (rs.next()) {
@@ -298,7 +714,8 @@ public class BatchEventService {
         List<BatchEvent> events = new ArrayList<>();
         String sql = "SELECT * FROM batch_events ORDER BY created_at DESC LIMIT ?";
         
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+        try (Connection conn = MyConnection.openConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setInt(1, limit);
             ResultSet rs = ps.executeQuery();
             while (rs.next()) {
@@ -310,12 +727,161 @@ public class BatchEventService {
         return events;
     }
     
+    // ==================== CHAIN VERIFICATION ====================
+    
+    /** Last verified event of a batch chain (row of batch_event_checkpoints). */
+    private record ChainCheckpoint(long lastEventId, String lastEventHash, int eventCount) {
+    }
+    
+    /** Outcome of verifying (part of) a chain; last* describe the newest verified event. */
+    private record ChainCheck(boolean valid, int eventsHashed, long lastEventId, String lastEventHash) {
+    }
+    
+    /**
+     * Verify one chain on the given connection: from its checkpoint (the anchor event is loaded again
+     * to check it was not altered) or from genesis when {@code full} or without checkpoint.
+     */
+    private ChainCheck verifyChain(Connection conn, int batchId, boolean full) throws SQLException {
+        ChainCheckpoint checkpoint = full ? null : loadCheckpoint(conn, batchId);
+        List<BatchEvent> events;
+        if (checkpoint == null) {
+            events = getBatchEvents(conn, batchId);
+        } else {
+            events = getBatchEventsFrom(conn, batchId, checkpoint.lastEventId());
+            if (events.isEmpty() || !checkpoint.lastEventHash().equals(events.get(0).getEventHash())) {
+                System.err.println("Batch " + batchId + ": checkpointed event " + checkpoint.lastEventId()
+                    + " was modified or deleted");
+                return new ChainCheck(false, 0, 0, null);
+            }
+        }
+        ChainCheck check = verifyEvents(events, checkpoint);
+        saveCheckpoint(conn, batchId, checkpoint, check);
+        return check;
+    }
+    
+    /**
+     * Rehash and link-check events in chain order. With a checkpoint, events.get(0) must be the
+     * checkpointed event; its own hash is still recomputed so an edited anchor is caught.
+     */
+    private ChainCheck verifyEvents(List<BatchEvent> events, ChainCheckpoint checkpoint) {
+        String expectedPrevHash = null;
+        int first = 0;
+        if (checkpoint != null && !events.isEmpty()) {
+            if (!events.get(0).isValid()) {
+                System.err.println("Event " + events.get(0).getId() + " has invalid hash (tampered)");
+                return new ChainCheck(false, 1, 0, null);
+            }
+            expectedPrevHash = checkpoint.lastEventHash();
+            first = 1;
+        }
+        
+        long lastEventId = checkpoint != null ? checkpoint.lastEventId() : 0;
+        int hashed = first;
+        for (int i = first; i < events.size(); i++) {
+            BatchEvent event = events.get(i);
+            hashed++;
+            
+            // Verify event's own hash
+            if (!event.isValid()) {
+                System.err.println("Event " + event.getId() + " has invalid hash (tampered)");
+                return new ChainCheck(false, hashed, 0, null);
+            }
+            
+            // Verify chain linkage
+            String actualPrevHash = event.getPreviousEventHash();
+            if (!equals(expectedPrevHash, actualPrevHash)) {
+                System.err.println("Event " + event.getId() + " has broken chain link");
+                System.err.println("Expected previous: " + expectedPrevHash);
+                System.err.println("Actual previous: " + actualPrevHash);
+                return new ChainCheck(false, hashed, 0, null);
+            }
+            
+            // Set up for next iteration
+            expectedPrevHash = event.getEventHash();
+            lastEventId = event.getId();
+        }
+        return new ChainCheck(true, hashed, lastEventId, expectedPrevHash);
+    }
+    
+    private ChainCheckpoint loadCheckpoint(Connection conn, int batchId) throws SQLException {
+        if (!hasCheckpointTable(conn)) {
+            return null;
+        }
+        String sql = "SELECT last_event_id, last_event_hash, event_count FROM batch_event_checkpoints WHERE batch_id = ?";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, batchId);
+            ResultSet rs = ps.executeQuery();
+            if (rs.next()) {
+                return new ChainCheckpoint(rs.getLong("last_event_id"), rs.getString("last_event_hash"),
+                    rs.getInt("event_count"));
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Move the checkpoint to the newest verified event (only if the chain is valid and grew).
+     */
+    private void saveCheckpoint(Connection conn, int batchId, ChainCheckpoint previous, ChainCheck check)
+            throws SQLException {
+        if (!check.valid() || check.lastEventHash() == null || !hasCheckpointTable(conn)) {
+            return;
+        }
+        if (previous != null && previous.lastEventId() == check.lastEventId()) {
+            return;
+        }
+        int eventCount = previous != null
+            ? previous.eventCount() + check.eventsHashed() - 1
+            : check.eventsHashed();
+        String sql = "INSERT INTO batch_event_checkpoints " +
+                    "(batch_id, last_event_id, last_event_hash, event_count, verified_at) " +
+                    "VALUES (?, ?, ?, ?, NOW()) " +
+                    "ON DUPLICATE KEY UPDATE last_event_id = VALUES(last_event_id), " +
+                    "last_event_hash = VALUES(last_event_hash), event_count = VALUES(event_count), " +
+                    "verified_at = VALUES(verified_at)";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, batchId);
+            ps.setLong(2, check.lastEventId());
+            ps.setString(3, check.lastEventHash());
+            ps.setInt(4, eventCount);
+            ps.executeUpdate();
+        }
+    }
+    
+    private static boolean hasCheckpointTable(Connection conn) {
+        Boolean cached = checkpointTable;
+        if (cached != null) {
+            return cached;
+        }
+        try (ResultSet rs = conn.getMetaData().getTables(conn.getCatalog(), null, "batch_event_checkpoints", null)) {
+            cached = rs.next();
+            checkpointTable = cached;
+            if (!cached) {
+                System.out.println("Note: batch_event_checkpoints table missing, chains are fully re-verified. " +
+                                   "Run sql/ADD_BATCH_EVENT_CHECKPOINTS.sql to enable incremental verification.");
+            }
+            return cached;
+        } catch (SQLException ex) {
+            System.err.println("Could not inspect batch_event_checkpoints: " + ex.getMessage());
+            return false;
+        }
+    }
+    
+    private static int indexOfEvent(List<BatchEvent> events, long eventId) {
+        for (int i = events.size() - 1; i >= 0; i--) {
+            if (events.get(i).getId() == eventId) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
     // ==================== HELPER METHODS ====================
     
     /**
      * Map ResultSet to BatchEvent model.
      */
-    private BatchEvent mapResultSetToEvent(ResultSet rs) throws SQLException {
+    private static BatchEvent mapResultSetToEvent(ResultSet rs) throws SQLException {
         BatchEvent event = new BatchEvent();
         event.setId(rs.getLong("id"));
         event.setBatchId(rs.getInt("batch_id"));
@@ -336,7 +902,7 @@ public class BatchEventService {
     /**
      * Null-safe string comparison.
      */
-    private boolean equals(String a, String b) {
+    private static boolean equals(String a, String b) {
         if (a == null && b == null) return true;
         if (a == null || b == null) return false;
         return a.equals(b);
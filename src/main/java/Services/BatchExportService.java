@@ -0,0 +1,241 @@
+package Services;
+
+import DataBase.MyConnection;
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streamed exports of batch events and batch provenance for registries.
+ *
+ * Records are written straight to the OutputStream with Gson's JsonWriter while they are read from
+ * a forward-only cursor, so memory stays flat whatever the number of batches or events:
+ * - NDJSON: one JSON object per line
+ * - JSON: a single array of the same objects
+ *
+ * Exports are resumable: events are written in id order, a new export with
+ * {@code sinceEventId} = id of the last event received continues where the previous one stopped
+ * (batch id for provenance exports). When the database fails mid-stream, an NDJSON export ends with
+ * an {@code {"error":..., "resume_since":...}} line and a JSON export is left unterminated, so a
+ * truncated export is never mistaken for a complete one.
+ */
+public class BatchExportService {
+
+    private static final String LOG_TAG = "[BatchExport]";
+    private static final Gson gson = new Gson();
+    private static final int WRITE_BUFFER_CHARS = 64 * 1024;
+    private static final int BATCH_ID_PAGE = 500;
+
+    private static volatile BatchExportService instance;
+
+    private final BatchEventService eventService = new BatchEventService();
+    private final WalletService walletService = new WalletService();
+
+    public enum Format {
+        NDJSON("application/x-ndjson"),
+        JSON("application/json");
+
+        private final String contentType;
+
+        Format(String contentType) {
+            this.contentType = contentType;
+        }
+
+        public String contentType() {
+            return contentType;
+        }
+    }
+
+    /**
+     * @param records Records written
+     * @param lastId Resume token: id of the last record written (the start token if none)
+     * @param complete false when the export stopped on a database error
+     */
+    public record ExportSummary(long records, long lastId, boolean complete) {
+    }
+
+    private BatchExportService() {
+    }
+
+    public static BatchExportService getInstance() {
+        if (instance == null) {
+            synchronized (BatchExportService.class) {
+                if (instance == null) {
+                    instance = new BatchExportService();
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Export events in blockchain format (the fields of {@code BatchEvent.toBlockchainPayload()} plus
+     * their id), in id order.
+     *
+     * @param out Destination, not closed
+     * @param batchId Batch to export, or null for every batch
+     * @param sinceEventId Only events with a greater id (0 from the start)
+     * @param limit Maximum number of events, 0 for no limit
+     * @throws IOException if the destination fails (client gone)
+     */
+    public ExportSummary exportEvents(OutputStream out, Format format, Integer batchId, long sinceEventId,
+                                      int limit) throws IOException {
+        RecordWriter records = new RecordWriter(out, format, sinceEventId);
+        try (Connection conn = MyConnection.openConnection()) {
+            eventService.streamEvents(conn, batchId, sinceEventId, limit, event -> {
+                JsonWriter writer = records.next();
+                writer.beginObject();
+                writer.name("id").value(event.getId());
+                event.writeBlockchainFields(writer);
+                writer.endObject();
+                records.written(event.getId());
+            });
+            return records.finish();
+        } catch (SQLException ex) {
+            System.err.println(LOG_TAG + " Event export interrupted after id " + records.lastId + ": " + ex.getMessage());
+            return records.fail(ex.getMessage());
+        }
+    }
+
+    /**
+     * Export the provenance document of every batch ({@code WalletService.getBatchProvenance}), in
+     * batch id order; batch ids are read page by page so no cursor stays open across batches.
+     *
+     * @param sinceBatchId Only batches with a greater id (0 from the start)
+     * @param limit Maximum number of batches, 0 for no limit
+     */
+    public ExportSummary exportProvenance(OutputStream out, Format format, int sinceBatchId, int limit)
+            throws IOException {
+        RecordWriter records = new RecordWriter(out, format, sinceBatchId);
+        try {
+            int after = sinceBatchId;
+            long remaining = limit > 0 ? limit : Long.MAX_VALUE;
+            while (remaining > 0) {
+                List<Integer> ids = nextBatchIds(after, (int) Math.min(BATCH_ID_PAGE, remaining));
+                for (int batchId : ids) {
+                    walletService.writeBatchProvenance(batchId, records.next());
+                    records.written(batchId);
+                }
+                if (ids.size() < BATCH_ID_PAGE) {
+                    break;
+                }
+                after = ids.get(ids.size() - 1);
+                remaining -= ids.size();
+            }
+            return records.finish();
+        } catch (SQLException ex) {
+            System.err.println(LOG_TAG + " Provenance export interrupted after batch " + records.lastId + ": " + ex.getMessage());
+            return records.fail(ex.getMessage());
+        }
+    }
+
+    public boolean batchExists(int batchId) {
+        return walletService.getBatchById(batchId) != null;
+    }
+
+    /**
+     * Write the provenance document of one batch, streamed ({@code {"error":"Batch not found"}}
+     * for an unknown batch, as getBatchProvenance).
+     */
+    public ExportSummary exportBatchProvenance(OutputStream out, int batchId) throws IOException {
+        RecordWriter records = new RecordWriter(out, null, 0);
+        try {
+            walletService.writeBatchProvenance(batchId, records.next());
+            records.written(batchId);
+            return records.finish();
+        } catch (SQLException ex) {
+            System.err.println(LOG_TAG + " Provenance export of batch " + batchId + " interrupted: " + ex.getMessage());
+            return records.fail(ex.getMessage());
+        }
+    }
+
+    private List<Integer> nextBatchIds(int afterId, int pageSize) throws SQLException {
+        List<Integer> ids = new ArrayList<>();
+        String sql = "SELECT id FROM carbon_credit_batches WHERE id > ? ORDER BY id ASC LIMIT ?";
+        try (Connection conn = MyConnection.openConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, afterId);
+            ps.setInt(2, pageSize);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    ids.add(rs.getInt(1));
+                }
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Frames records as NDJSON lines, as the elements of a JSON array, or as a single document
+     * (format null), over one buffered UTF-8 writer.
+     */
+    private static final class RecordWriter {
+        private final Writer out;
+        private final Format format;
+        private final JsonWriter arrayWriter;
+        private long count;
+        private long lastId;
+        private boolean inRecord;
+
+        RecordWriter(OutputStream stream, Format format, long startId) throws IOException {
+            this.out = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8), WRITE_BUFFER_CHARS);
+            this.format = format;
+            this.lastId = startId;
+            this.arrayWriter = format == Format.JSON ? gson.newJsonWriter(out) : null;
+            if (arrayWriter != null) {
+                arrayWriter.beginArray();
+            }
+        }
+
+        /** Writer for the next record; JsonWriter holds no buffer, so one per NDJSON line is cheap. */
+        JsonWriter next() throws IOException {
+            inRecord = true;
+            return arrayWriter != null ? arrayWriter : gson.newJsonWriter(out);
+        }
+
+        void written(long id) throws IOException {
+            inRecord = false;
+            count++;
+            lastId = id;
+            if (format == Format.NDJSON) {
+                out.write('\n');
+            }
+        }
+
+        ExportSummary finish() throws IOException {
+            if (arrayWriter != null) {
+                arrayWriter.endArray();
+            }
+            out.flush();
+            return new ExportSummary(count, lastId, true);
+        }
+
+        ExportSummary fail(String message) throws IOException {
+            if (format == Format.NDJSON) {
+                if (inRecord) {
+                    out.write('\n'); // the interrupted line stays unparseable
+                }
+                JsonWriter error = gson.newJsonWriter(out);
+                error.beginObject();
+                error.name("error").value(message);
+                error.name("resume_since").value(lastId);
+                error.endObject();
+                out.write('\n');
+            }
+            out.flush();
+            return new ExportSummary(count, lastId, false);
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package Services;
+
+import DataBase.MyConnection;
+import DataBase.TransactionTemplate;
+import Models.CarbonCreditBatch;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Batch lineage (ancestors + descendants of a batch) built on MySQL 8 WITH RECURSIVE.
+ *
+ * One query walks the parent chain up and the split tree down, bounded by a depth limit.
+ * The resulting graph (batch IDs, order and depth, no balances) is cached in memory; a cached
+ * graph only needs one plain {@code WHERE id IN (...)} query for the requested page, so amounts
+ * and statuses are always current. Graphs that contain a batch are dropped when it is split.
+ */
+public class BatchLineageService {
+
+    public static final int DEFAULT_MAX_DEPTH = 100;
+
+    private static final long MAX_CACHED_GRAPHS = 2_000;
+
+    private static final String LINEAGE_SQL =
+        "WITH RECURSIVE " +
+        "ancestors (id, parent_batch_id, depth) AS (" +
+        "  SELECT id, parent_batch_id, 0 FROM carbon_credit_batches WHERE id = ? " +
+        "  UNION ALL " +
+        "  SELECT p.id, p.parent_batch_id, a.depth - 1 FROM carbon_credit_batches p " +
+        "  JOIN ancestors a ON p.id = a.parent_batch_id WHERE a.depth > -? " +
+        "), " +
+        "descendants (id, depth) AS (" +
+        "  SELECT id, 0 FROM carbon_credit_batches WHERE id = ? " +
+        "  UNION ALL " +
+        "  SELECT c.id, d.depth + 1 FROM carbon_credit_batches c " +
+        "  JOIN descendants d ON c.parent_batch_id = d.id WHERE d.depth < ? " +
+        "), " +
+        "lineage (id, depth) AS (" +
+        "  SELECT id, depth FROM ancestors UNION SELECT id, depth FROM descendants" +
+        ") " +
+        "SELECT ccb.*, l.depth - (SELECT MIN(depth) FROM ancestors) AS lineage_level " +
+        "FROM lineage l JOIN carbon_credit_batches ccb ON ccb.id = l.id " +
+        "ORDER BY l.depth ASC, ccb.id ASC";
+
+    private static final BatchLineageService INSTANCE = new BatchLineageService();
+
+    private record GraphKey(int batchId, int maxDepth) {
+    }
+
+    /** Batch IDs in lineage order (root first) with their depth from the top-most loaded ancestor. */
+    private record LineageGraph(List<Integer> batchIds, Map<Integer, Integer> depths) {
+    }
+
+    private final Cache<GraphKey, LineageGraph> graphs = Caffeine.newBuilder()
+        .maximumSize(MAX_CACHED_GRAPHS)
+        .build();
+
+    private BatchLineageService() {
+    }
+
+    public static BatchLineageService getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Full lineage of a batch: every ancestor up to the root and every descendant, ordered by
+     * depth (root first). {@link CarbonCreditBatch#getLineageDepth()} is set on each batch.
+     *
+     * @param batchId  The batch ID
+     * @param maxDepth Maximum number of generations followed up and down
+     * @param offset   Index of the first batch to return
+     * @param limit    Maximum number of batches to return
+     * @return Page of the lineage, empty if the batch does not exist
+     * @throws SQLException if the recursive query fails (MySQL &lt; 8, parent_batch_id missing...)
+     */
+    public List<CarbonCreditBatch> getLineage(int batchId, int maxDepth, int offset, int limit) throws SQLException {
+        GraphKey key = new GraphKey(batchId, maxDepth);
+        LineageGraph graph = graphs.getIfPresent(key);
+        if (graph == null) {
+            List<CarbonCreditBatch> lineage = loadLineage(batchId, maxDepth);
+            if (!lineage.isEmpty()) {
+                graphs.put(key, toGraph(lineage));
+            }
+            return page(lineage, offset, limit);
+        }
+
+        List<Integer> pageIds = page(graph.batchIds(), offset, limit);
+        List<CarbonCreditBatch> batches = loadBatches(pageIds);
+        for (CarbonCreditBatch batch : batches) {
+            batch.setLineageDepth(graph.depths().get(batch.getId()));
+        }
+        return batches;
+    }
+
+    /**
+     * Forget every cached graph containing {@code batchId}. Inside a TransactionTemplate transaction
+     * the graphs are dropped again after commit, so a graph read before the commit is not kept.
+     */
+    public void invalidate(Connection conn, int batchId) {
+        invalidate(batchId);
+        TransactionTemplate.registerSynchronization(conn, committed -> invalidate(batchId));
+    }
+
+    public void invalidate(int batchId) {
+        graphs.asMap().entrySet().removeIf(entry -> entry.getValue().depths().containsKey(batchId));
+    }
+
+    private List<CarbonCreditBatch> loadLineage(int batchId, int maxDepth) throws SQLException {
+        List<CarbonCreditBatch> lineage = new ArrayList<>();
+        try (Connection conn = MyConnection.openConnection();
+             PreparedStatement ps = conn.prepareStatement(LINEAGE_SQL)) {
+            ps.setInt(1, batchId);
+            ps.setInt(2, maxDepth);
+            ps.setInt(3, batchId);
+            ps.setInt(4, maxDepth);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    CarbonCreditBatch batch = WalletService.mapResultSetToBatch(rs);
+                    batch.setLineageDepth(rs.getInt("lineage_level"));
+                    lineage.add(batch);
+                }
+            }
+        }
+        return lineage;
+    }
+
+    private List<CarbonCreditBatch> loadBatches(List<Integer> batchIds) throws SQLException {
+        if (batchIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        String sql = "SELECT * FROM carbon_credit_batches WHERE id IN (" +
+                     String.join(",", Collections.nCopies(batchIds.size(), "?")) + ")";
+        Map<Integer, CarbonCreditBatch> byId = new HashMap<>();
+        try (Connection conn = MyConnection.openConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            for (int i = 0; i < batchIds.size(); i++) {
+                ps.setInt(i + 1, batchIds.get(i));
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    CarbonCreditBatch batch = WalletService.mapResultSetToBatch(rs);
+                    byId.put(batch.getId(), batch);
+                }
+            }
+        }
+
+        // Keep the lineage order of the graph
+        List<CarbonCreditBatch> batches = new ArrayList<>(batchIds.size());
+        for (Integer id : batchIds) {
+            CarbonCreditBatch batch = byId.get(id);
+            if (batch != null) {
+                batches.add(batch);
+            }
+        }
+        return batches;
+    }
+
+    private static LineageGraph toGraph(List<CarbonCreditBatch> lineage) {
+        List<Integer> ids = new ArrayList<>(lineage.size());
+        Map<Integer, Integer> depths = new HashMap<>();
+        for (CarbonCreditBatch batch : lineage) {
+            ids.add(batch.getId());
+            depths.put(batch.getId(), batch.getLineageDepth());
+        }
+        return new LineageGraph(List.copyOf(ids), Map.copyOf(depths));
+    }
+
+    private static <T> List<T> page(List<T> items, int offset, int limit) {
+        int from = Math.min(Math.max(offset, 0), items.size());
+        int to = (int) Math.min((long) from + Math.max(limit, 0), items.size());
+        return new ArrayList<>(items.subList(from, to));
+    }
+}
@@ -0,0 +1,560 @@
+package Services;
+
+import DataBase.MyConnection;
+import Utils.EnvLoader;
+import Utils.MerkleTree;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.gson.JsonObject;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Merkle roots over batch_events, stored in batch_event_merkle_roots, and O(log n) inclusion
+ * proofs for any event.
+ *
+ * Two kinds of roots are computed by a periodic job:
+ * - BATCH: over all the events of one batch (ordered by id, up to last_event_id), recomputed when
+ *   the batch got new events; the latest root of a batch covers its whole history.
+ * - WINDOW: over the events of all batches created in a fixed time window
+ *   ({@code BATCH_MERKLE_WINDOW_MINUTES}), once the window is over; one root per window to anchor
+ *   platform-wide activity in an external registry.
+ *
+ * A leaf is the event's stored SHA-256 (which already commits to its batch, data, previous hash,
+ * actor and timestamp). To prove an event, the tree of the covering root is rebuilt from the stored
+ * hashes (then cached) and checked against the stored root: a root that no longer matches means
+ * events were inserted, altered or deleted after anchoring. Events are only anchored
+ * {@code BATCH_MERKLE_SETTLE_SECONDS} after their creation so transactions still in flight are not
+ * missed.
+ *
+ * Like the escrow job, a run only starts if it gets the MySQL named lock {@value #RUN_LOCK}.
+ * Optional: without sql/ADD_BATCH_EVENT_MERKLE_ROOTS.sql the job does nothing and no proof is
+ * available.
+ */
+public class BatchMerkleService {
+    private static final String LOG_TAG = "[BatchMerkle]";
+    private static final String RUN_LOCK = "greenledger.batch_merkle";
+    private static final String TABLE = "batch_event_merkle_roots";
+
+    public enum RootScope { BATCH, WINDOW }
+
+    /**
+     * A stored root. {@code windowStart}/{@code windowEnd} only for WINDOW roots, {@code batchId}
+     * only for BATCH roots (0 otherwise); {@code anchorReference} once anchored externally.
+     */
+    public record MerkleRoot(long id, RootScope scope, int batchId, Timestamp windowStart, Timestamp windowEnd,
+                             long firstEventId, long lastEventId, int leafCount, String merkleRoot,
+                             String anchorReference) {
+    }
+
+    /**
+     * Inclusion proof of one event: hash the leaf (0x00 || raw event hash), then fold the path
+     * (0x01 || left || right) to get {@code merkleRoot}. See {@link MerkleTree#verify}.
+     */
+    public record InclusionProof(long eventId, int batchId, String eventHash, RootScope scope, long rootId,
+                                 String merkleRoot, int leafIndex, int leafCount,
+                                 List<MerkleTree.ProofStep> path, String anchorReference) {
+
+        public boolean verify() {
+            return MerkleTree.verify(leafData(eventHash), path, merkleRoot);
+        }
+    }
+
+    public record RunStats(long startedAtMillis, boolean lockAcquired, int batchRoots, int windowRoots,
+                           long leavesHashed, long durationMillis) {
+    }
+
+    /** Tree of a root with the event id of each leaf (sorted), to find an event's leaf. */
+    private record AnchoredTree(long[] eventIds, MerkleTree tree) {
+    }
+
+    private static BatchMerkleService instance;
+
+    private final long intervalMillis;
+    private final long windowMillis;
+    private final int settleSeconds;
+    private final Cache<Long, AnchoredTree> trees;
+
+    // null until checked once against the database metadata
+    private volatile Boolean rootsTable;
+    private ScheduledExecutorService timer;
+    private volatile RunStats lastRun;
+    private final AtomicInteger runs = new AtomicInteger();
+
+    private BatchMerkleService() {
+        this.intervalMillis = TimeUnit.MINUTES.toMillis(Math.max(1, readInt("BATCH_MERKLE_INTERVAL_MINUTES", 60)));
+        this.windowMillis = TimeUnit.MINUTES.toMillis(Math.max(1, readInt("BATCH_MERKLE_WINDOW_MINUTES", 60)));
+        this.settleSeconds = Math.max(0, readInt("BATCH_MERKLE_SETTLE_SECONDS", 60));
+        // Weighed in leaves (~64 bytes each once built)
+        this.trees = Caffeine.newBuilder()
+            .maximumWeight(Math.max(1, readInt("BATCH_MERKLE_TREE_CACHE_LEAVES", 2_000_000)))
+            .weigher((Long rootId, AnchoredTree tree) -> tree.eventIds().length)
+            .build();
+    }
+
+    public static synchronized BatchMerkleService getInstance() {
+        if (instance == null) {
+            instance = new BatchMerkleService();
+        }
+        return instance;
+    }
+
+    /**
+     * Run the job every {@code BATCH_MERKLE_INTERVAL_MINUTES} (first run right away). Idempotent.
+     */
+    public synchronized void start() {
+        if (timer != null) {
+            return;
+        }
+        timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "batch-merkle");
+            t.setDaemon(true);
+            return t;
+        });
+        timer.scheduleWithFixedDelay(this::runSafely, 0, intervalMillis, TimeUnit.MILLISECONDS);
+        System.out.println(LOG_TAG + " Started: interval=" + intervalMillis / 60_000 + "min, window="
+            + windowMillis / 60_000 + "min");
+    }
+
+    public synchronized void stop() {
+        if (timer != null) {
+            timer.shutdownNow();
+            timer = null;
+        }
+    }
+
+    private void runSafely() {
+        try {
+            runOnce();
+        } catch (RuntimeException e) {
+            System.err.println(LOG_TAG + " ERROR in Merkle root run: " + e.getMessage());
+        }
+    }
+
+    /**
+     * One pass: new roots for the batches that changed, then for every window over since the last
+     * window root. Also usable without {@link #start()}.
+     */
+    public synchronized RunStats runOnce() {
+        long started = System.currentTimeMillis();
+        long t0 = System.nanoTime();
+        try (Connection conn = MyConnection.openConnection()) {
+            if (!hasRootsTable(conn) || !acquireRunLock(conn)) {
+                RunStats skipped = new RunStats(started, false, 0, 0, 0, (System.nanoTime() - t0) / 1_000_000);
+                lastRun = skipped;
+                return skipped;
+            }
+            try {
+                long[] leaves = new long[1];
+                int batchRoots = anchorBatches(conn, leaves);
+                int windowRoots = anchorWindows(conn, leaves);
+                RunStats stats = new RunStats(started, true, batchRoots, windowRoots, leaves[0],
+                    (System.nanoTime() - t0) / 1_000_000);
+                lastRun = stats;
+                runs.incrementAndGet();
+                if (batchRoots > 0 || windowRoots > 0) {
+                    System.out.println(LOG_TAG + String.format(" Run: %d batch roots, %d window roots, %d leaves in %dms",
+                        batchRoots, windowRoots, leaves[0], stats.durationMillis()));
+                }
+                return stats;
+            } finally {
+                releaseRunLock(conn);
+            }
+        } catch (SQLException e) {
+            System.err.println(LOG_TAG + " ERROR in Merkle root run: " + e.getMessage());
+            RunStats failed = new RunStats(started, false, 0, 0, 0, (System.nanoTime() - t0) / 1_000_000);
+            lastRun = failed;
+            return failed;
+        }
+    }
+
+    // ==================== ROOT COMPUTATION ====================
+
+    private int anchorBatches(Connection conn, long[] leaves) throws SQLException {
+        // Every settled event up to this id is covered by the latest root of its batch
+        long anchoredUpTo;
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(last_event_id), 0) FROM " + TABLE +
+                 " WHERE scope = 'BATCH'")) {
+            rs.next();
+            anchoredUpTo = rs.getLong(1);
+        }
+
+        // Batches with settled events past that id (primary-key range scan, not the whole table)
+        List<long[]> changed = new ArrayList<>(); // batch_id, last event id
+        String eventsSql = "SELECT batch_id, MAX(id) FROM batch_events " +
+            "WHERE id > ? AND created_at < NOW() - INTERVAL ? SECOND GROUP BY batch_id";
+        try (PreparedStatement stmt = conn.prepareStatement(eventsSql)) {
+            stmt.setLong(1, anchoredUpTo);
+            stmt.setInt(2, settleSeconds);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    changed.add(new long[] {rs.getInt(1), rs.getLong(2)});
+                }
+            }
+        }
+
+        int roots = 0;
+        for (long[] batch : changed) {
+            AnchoredTree tree = loadTree(conn,
+                "SELECT id, event_hash FROM batch_events WHERE batch_id = ? AND id <= ? ORDER BY id",
+                (int) batch[0], batch[1]);
+            if (tree == null) {
+                continue;
+            }
+            leaves[0] += tree.eventIds().length;
+            // Same leaves as the latest root: nothing new to anchor
+            MerkleRoot latest = findRoot(conn, "scope = 'BATCH' AND batch_id = ? ORDER BY last_event_id DESC",
+                (int) batch[0]);
+            long[] ids = tree.eventIds();
+            if (latest != null && latest.lastEventId() == ids[ids.length - 1] && latest.leafCount() == ids.length
+                    && latest.merkleRoot().equals(tree.tree().rootHex())) {
+                continue;
+            }
+            insertRoot(conn, RootScope.BATCH, (int) batch[0], null, null, tree);
+            roots++;
+        }
+        return roots;
+    }
+
+    private int anchorWindows(Connection conn, long[] leaves) throws SQLException {
+        Timestamp start;
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT MAX(window_end) FROM " + TABLE + " WHERE scope = 'WINDOW'")) {
+            rs.next();
+            start = rs.getTimestamp(1);
+        }
+        long settledUntil;
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT NOW() - INTERVAL ? SECOND")) {
+            stmt.setInt(1, settleSeconds);
+            try (ResultSet rs = stmt.executeQuery()) {
+                rs.next();
+                settledUntil = rs.getTimestamp(1).getTime();
+            }
+        }
+
+        int roots = 0;
+        long windowStart = start != null ? start.getTime() : -1;
+        while (true) {
+            // Skip empty windows: jump to the window of the next event
+            Timestamp next = nextEventTime(conn, windowStart < 0 ? null : new Timestamp(windowStart));
+            if (next == null) {
+                break;
+            }
+            windowStart = Math.max(windowStart, Math.floorDiv(next.getTime(), windowMillis) * windowMillis);
+            long windowEnd = windowStart + windowMillis;
+            if (windowEnd > settledUntil) {
+                break;
+            }
+            Timestamp from = new Timestamp(windowStart);
+            Timestamp to = new Timestamp(windowEnd);
+            AnchoredTree tree = loadTree(conn,
+                "SELECT id, event_hash FROM batch_events WHERE created_at >= ? AND created_at < ? ORDER BY id",
+                from, to);
+            if (tree != null) {
+                insertRoot(conn, RootScope.WINDOW, 0, from, to, tree);
+                leaves[0] += tree.eventIds().length;
+                roots++;
+            }
+            windowStart = windowEnd;
+        }
+        return roots;
+    }
+
+    private static Timestamp nextEventTime(Connection conn, Timestamp from) throws SQLException {
+        String sql = from == null
+            ? "SELECT MIN(created_at) FROM batch_events"
+            : "SELECT MIN(created_at) FROM batch_events WHERE created_at >= ?";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            if (from != null) {
+                stmt.setTimestamp(1, from);
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getTimestamp(1) : null;
+            }
+        }
+    }
+
+    private void insertRoot(Connection conn, RootScope scope, int batchId, Timestamp windowStart, Timestamp windowEnd,
+                            AnchoredTree tree) throws SQLException {
+        long[] ids = tree.eventIds();
+        String sql = "INSERT INTO " + TABLE + " (scope, batch_id, window_start, window_end, first_event_id, " +
+            "last_event_id, leaf_count, merkle_root) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+        try (PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            stmt.setString(1, scope.name());
+            if (scope == RootScope.BATCH) {
+                stmt.setInt(2, batchId);
+            } else {
+                stmt.setNull(2, java.sql.Types.INTEGER);
+            }
+            stmt.setTimestamp(3, windowStart);
+            stmt.setTimestamp(4, windowEnd);
+            stmt.setLong(5, ids[0]);
+            stmt.setLong(6, ids[ids.length - 1]);
+            stmt.setInt(7, ids.length);
+            stmt.setString(8, tree.tree().rootHex());
+            stmt.executeUpdate();
+            try (ResultSet keys = stmt.getGeneratedKeys()) {
+                if (keys.next()) {
+                    trees.put(keys.getLong(1), tree);
+                }
+            }
+        }
+    }
+
+    /**
+     * Tree over the (id, event_hash) rows of a query ordered by id, null when it returns no row.
+     */
+    private static AnchoredTree loadTree(Connection conn, String sql, Object... params) throws SQLException {
+        List<byte[]> leaves = new ArrayList<>();
+        long[] ids = new long[256];
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            for (int i = 0; i < params.length; i++) {
+                stmt.setObject(i + 1, params[i]);
+            }
+            stmt.setFetchSize(10_000);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    if (leaves.size() == ids.length) {
+                        ids = Arrays.copyOf(ids, ids.length * 2);
+                    }
+                    ids[leaves.size()] = rs.getLong(1);
+                    leaves.add(leafData(rs.getString(2)));
+                }
+            }
+        }
+        if (leaves.isEmpty()) {
+            return null;
+        }
+        return new AnchoredTree(Arrays.copyOf(ids, leaves.size()), MerkleTree.build(leaves));
+    }
+
+    /**
+     * Raw 32 bytes of a stored event hash (the UTF-8 text if it is not a SHA-256 hex string).
+     */
+    static byte[] leafData(String eventHash) {
+        if (eventHash == null) {
+            return new byte[0];
+        }
+        if (eventHash.length() == 2 * MerkleTree.HASH_BYTES) {
+            try {
+                return HexFormat.of().parseHex(eventHash.toLowerCase());
+            } catch (IllegalArgumentException e) {
+                // not hex: fall through
+            }
+        }
+        return eventHash.getBytes(StandardCharsets.UTF_8);
+    }
+
+    // ==================== PROOFS ====================
+
+    /**
+     * Inclusion proof of an event in the latest BATCH root of its batch.
+     */
+    public InclusionProof getInclusionProof(long eventId) {
+        return getInclusionProof(eventId, RootScope.BATCH);
+    }
+
+    /**
+     * Inclusion proof of an event in the covering root of the given scope.
+     *
+     * @return null when the event does not exist or no root covers it yet
+     * @throws IllegalStateException when the stored events no longer match the root (tampering)
+     */
+    public InclusionProof getInclusionProof(long eventId, RootScope scope) {
+        try (Connection conn = MyConnection.openConnection()) {
+            if (!hasRootsTable(conn)) {
+                return null;
+            }
+            int batchId;
+            String eventHash;
+            Timestamp createdAt;
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    "SELECT batch_id, event_hash, created_at FROM batch_events WHERE id = ?")) {
+                stmt.setLong(1, eventId);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (!rs.next()) {
+                        return null;
+                    }
+                    batchId = rs.getInt(1);
+                    eventHash = rs.getString(2);
+                    createdAt = rs.getTimestamp(3);
+                }
+            }
+
+            MerkleRoot root = scope == RootScope.BATCH
+                ? findRoot(conn, "scope = 'BATCH' AND batch_id = ? AND last_event_id >= ? ORDER BY last_event_id DESC",
+                    batchId, eventId)
+                : findRoot(conn, "scope = 'WINDOW' AND window_start <= ? AND window_end > ? ORDER BY id DESC",
+                    createdAt, createdAt);
+            if (root == null) {
+                return null;
+            }
+
+            AnchoredTree tree = treeOf(conn, root);
+            int leafIndex = Arrays.binarySearch(tree.eventIds(), eventId);
+            if (leafIndex < 0) {
+                return null;
+            }
+            return new InclusionProof(eventId, batchId, eventHash, scope, root.id(), root.merkleRoot(), leafIndex,
+                root.leafCount(), tree.tree().proof(leafIndex), root.anchorReference());
+        } catch (SQLException e) {
+            System.err.println(LOG_TAG + " ERROR building inclusion proof for event " + eventId + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Latest BATCH root of a batch, null if none.
+     */
+    public MerkleRoot getLatestBatchRoot(int batchId) {
+        try (Connection conn = MyConnection.openConnection()) {
+            if (!hasRootsTable(conn)) {
+                return null;
+            }
+            return findRoot(conn, "scope = 'BATCH' AND batch_id = ? ORDER BY last_event_id DESC", batchId);
+        } catch (SQLException e) {
+            System.err.println(LOG_TAG + " ERROR loading root of batch " + batchId + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Record where a root was anchored (registry entry, blockchain transaction...).
+     */
+    public boolean markAnchored(long rootId, String anchorReference) {
+        try (Connection conn = MyConnection.openConnection();
+             PreparedStatement stmt = conn.prepareStatement(
+                 "UPDATE " + TABLE + " SET anchor_reference = ? WHERE id = ?")) {
+            stmt.setString(1, anchorReference);
+            stmt.setLong(2, rootId);
+            return stmt.executeUpdate() == 1;
+        } catch (SQLException e) {
+            System.err.println(LOG_TAG + " ERROR saving anchor of root " + rootId + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    private AnchoredTree treeOf(Connection conn, MerkleRoot root) throws SQLException {
+        AnchoredTree cached = trees.getIfPresent(root.id());
+        if (cached != null) {
+            return cached;
+        }
+        AnchoredTree tree = root.scope() == RootScope.BATCH
+            ? loadTree(conn, "SELECT id, event_hash FROM batch_events WHERE batch_id = ? AND id <= ? ORDER BY id",
+                root.batchId(), root.lastEventId())
+            : loadTree(conn, "SELECT id, event_hash FROM batch_events WHERE created_at >= ? AND created_at < ? ORDER BY id",
+                root.windowStart(), root.windowEnd());
+        if (tree == null || tree.eventIds().length != root.leafCount()
+                || !tree.tree().rootHex().equals(root.merkleRoot())) {
+            throw new IllegalStateException("Merkle root " + root.id() + " no longer matches the stored events ("
+                + (tree == null ? 0 : tree.eventIds().length) + " events for " + root.leafCount() + " leaves)");
+        }
+        trees.put(root.id(), tree);
+        return tree;
+    }
+
+    private static MerkleRoot findRoot(Connection conn, String where, Object... params) throws SQLException {
+        String sql = "SELECT id, scope, batch_id, window_start, window_end, first_event_id, last_event_id, " +
+            "leaf_count, merkle_root, anchor_reference FROM " + TABLE + " WHERE " + where + " LIMIT 1";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            for (int i = 0; i < params.length; i++) {
+                stmt.setObject(i + 1, params[i]);
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                return new MerkleRoot(rs.getLong("id"), RootScope.valueOf(rs.getString("scope")), rs.getInt("batch_id"),
+                    rs.getTimestamp("window_start"), rs.getTimestamp("window_end"), rs.getLong("first_event_id"),
+                    rs.getLong("last_event_id"), rs.getInt("leaf_count"), rs.getString("merkle_root"),
+                    rs.getString("anchor_reference"));
+            }
+        }
+    }
+
+    // ==================== MONITORING / HELPERS ====================
+
+    public JsonObject stats() {
+        JsonObject stats = new JsonObject();
+        stats.addProperty("running", timer != null);
+        stats.addProperty("runs", runs.get());
+        stats.addProperty("cachedTrees", trees.estimatedSize());
+        RunStats last = lastRun;
+        if (last != null) {
+            JsonObject run = new JsonObject();
+            run.addProperty("startedAt", last.startedAtMillis());
+            run.addProperty("lockAcquired", last.lockAcquired());
+            run.addProperty("batchRoots", last.batchRoots());
+            run.addProperty("windowRoots", last.windowRoots());
+            run.addProperty("leavesHashed", last.leavesHashed());
+            run.addProperty("durationMs", last.durationMillis());
+            stats.add("lastRun", run);
+        }
+        return stats;
+    }
+
+    private boolean hasRootsTable(Connection conn) {
+        Boolean cached = rootsTable;
+        if (cached != null) {
+            return cached;
+        }
+        try (ResultSet rs = conn.getMetaData().getTables(conn.getCatalog(), null, TABLE, null)) {
+            cached = rs.next();
+            rootsTable = cached;
+            if (!cached) {
+                System.out.println(LOG_TAG + " Note: " + TABLE + " table missing, no Merkle roots or proofs. " +
+                                   "Run sql/ADD_BATCH_EVENT_MERKLE_ROOTS.sql to enable them.");
+            }
+            return cached;
+        } catch (SQLException e) {
+            System.err.println(LOG_TAG + " Could not inspect " + TABLE + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    private static boolean acquireRunLock(Connection conn) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT GET_LOCK(?, 0)")) {
+            stmt.setString(1, RUN_LOCK);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() && rs.getInt(1) == 1;
+            }
+        }
+    }
+
+    private static void releaseRunLock(Connection conn) {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            stmt.setString(1, RUN_LOCK);
+            stmt.executeQuery().close();
+        } catch (SQLException e) {
+            System.err.println(LOG_TAG + " ERROR releasing run lock: " + e.getMessage());
+        }
+    }
+
+    private static int readInt(String key, int defaultValue) {
+        String value = EnvLoader.get(key);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            System.err.println(LOG_TAG + " Invalid value for " + key + ": " + value);
+            return defaultValue;
+        }
+    }
+}
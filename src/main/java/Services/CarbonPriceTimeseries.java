@@ -0,0 +1,434 @@
+package Services;
+
+import DataBase.MyConnection;
+import DataBase.TransactionTemplate;
+import Models.CarbonPriceSnapshot;
+import Utils.EnvLoader;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalDouble;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Timeseries side of carbon_price_history.
+ *
+ * <ul>
+ *   <li>{@link #record}: stores a snapshot and, in the same transaction, folds it into the hourly
+ *       and daily OHLC buckets of carbon_price_rollups (sql/ADD_CARBON_PRICE_ROLLUPS.sql).</li>
+ *   <li>{@link #candles}: chart data, one row per bucket instead of every raw snapshot.</li>
+ *   <li>{@link #priceAt}: as-of lookup, answered from an in-memory ring of the most recent ticks
+ *       of each credit type, otherwise with a range condition the (credit_type, timestamp) index
+ *       can serve.</li>
+ * </ul>
+ * Without the rollup table the candles are computed from the raw snapshots.
+ */
+public class CarbonPriceTimeseries {
+    private static final String LOG_TAG = "[PriceTimeseries]";
+
+    public enum Resolution {
+        HOUR(3_600_000L), DAY(86_400_000L);
+
+        private final long millis;
+
+        Resolution(long millis) {
+            this.millis = millis;
+        }
+
+        public long getMillis() {
+            return millis;
+        }
+
+        /** Start of the (UTC, epoch aligned) bucket containing {@code epochMillis}. */
+        public long bucketStart(long epochMillis) {
+            return Math.floorDiv(epochMillis, millis) * millis;
+        }
+
+        /** Resolution used for a chart of {@code days} days: hourly up to a week, daily beyond. */
+        public static Resolution forDays(int days) {
+            return days <= 7 ? HOUR : DAY;
+        }
+    }
+
+    /**
+     * One bucket of a price chart.
+     */
+    public record Candle(long bucketStart, double open, double high, double low, double close, int samples) {
+    }
+
+    private static final String ROLLUP_UPSERT_SQL =
+        "INSERT INTO carbon_price_rollups (credit_type, resolution, bucket_start, open_usd, high_usd, low_usd, " +
+        "close_usd, sample_count, first_at, last_at) VALUES (?, ?, ?, ?, ?, ?, ?, 1, ?, ?) " +
+        "ON DUPLICATE KEY UPDATE " +
+        // open/close first: they compare against first_at/last_at before these are updated
+        "open_usd = IF(VALUES(first_at) < first_at, VALUES(open_usd), open_usd), " +
+        "close_usd = IF(VALUES(last_at) >= last_at, VALUES(close_usd), close_usd), " +
+        "high_usd = GREATEST(high_usd, VALUES(high_usd)), " +
+        "low_usd = LEAST(low_usd, VALUES(low_usd)), " +
+        "sample_count = sample_count + 1, " +
+        "first_at = LEAST(first_at, VALUES(first_at)), " +
+        "last_at = GREATEST(last_at, VALUES(last_at))";
+
+    private static CarbonPriceTimeseries instance;
+
+    // null until checked once against the database metadata
+    private static volatile Boolean rollupTable;
+
+    private final int ringCapacity;
+    private final Map<String, PriceRing> rings = new ConcurrentHashMap<>();
+
+    private CarbonPriceTimeseries() {
+        this.ringCapacity = Math.max(16, readInt("PRICE_RING_CAPACITY", 2048));
+    }
+
+    public static synchronized CarbonPriceTimeseries getInstance() {
+        if (instance == null) {
+            instance = new CarbonPriceTimeseries();
+        }
+        return instance;
+    }
+
+    // ==================== WRITE ====================
+
+    /**
+     * Store a price snapshot taken at {@code epochMillis} and update its rollups.
+     */
+    public void record(String creditType, double price, String sourceApi, long epochMillis) throws SQLException {
+        Timestamp at = new Timestamp(epochMillis);
+        boolean rollups = hasRollupTable();
+        TransactionTemplate.execute(conn -> {
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    "INSERT INTO carbon_price_history (credit_type, usd_per_ton, source_api, timestamp) VALUES (?, ?, ?, ?)")) {
+                stmt.setString(1, creditType);
+                stmt.setDouble(2, price);
+                stmt.setString(3, sourceApi);
+                stmt.setTimestamp(4, at);
+                stmt.executeUpdate();
+            }
+            if (rollups) {
+                try (PreparedStatement stmt = conn.prepareStatement(ROLLUP_UPSERT_SQL)) {
+                    for (Resolution resolution : Resolution.values()) {
+                        stmt.setString(1, creditType);
+                        stmt.setString(2, resolution.name());
+                        stmt.setTimestamp(3, new Timestamp(resolution.bucketStart(epochMillis)));
+                        stmt.setDouble(4, price);
+                        stmt.setDouble(5, price);
+                        stmt.setDouble(6, price);
+                        stmt.setDouble(7, price);
+                        stmt.setTimestamp(8, at);
+                        stmt.setTimestamp(9, at);
+                        stmt.addBatch();
+                    }
+                    stmt.executeBatch();
+                }
+            }
+            TransactionTemplate.registerSynchronization(conn, committed -> {
+                if (committed) {
+                    // A ring created meanwhile may already have loaded this tick: add() ignores duplicates
+                    ring(creditType).add(epochMillis, price);
+                }
+            });
+            return null;
+        });
+    }
+
+    // ==================== READ ====================
+
+    /**
+     * Price in effect at {@code epochMillis} (last snapshot at or before it).
+     */
+    public OptionalDouble priceAt(String creditType, long epochMillis) {
+        PriceRing ring = ring(creditType);
+        OptionalDouble cached = ring.priceAt(epochMillis);
+        if (cached.isPresent() || ring.coversAllBefore(epochMillis)) {
+            return cached;
+        }
+
+        String sql = "SELECT usd_per_ton FROM carbon_price_history " +
+            "WHERE credit_type = ? AND timestamp <= ? ORDER BY timestamp DESC LIMIT 1";
+        try (Connection conn = MyConnection.openConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, creditType);
+            stmt.setTimestamp(2, new Timestamp(epochMillis));
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    return OptionalDouble.of(rs.getDouble(1));
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println(LOG_TAG + " ERROR fetching historical price: " + e.getMessage());
+        }
+        return OptionalDouble.empty();
+    }
+
+    /**
+     * Ticks of a credit type since {@code sinceMillis}, oldest first, straight from the ring.
+     *
+     * @return the ticks, or null when older ticks of that period were evicted from the ring
+     */
+    public List<CarbonPriceSnapshot> recentTicks(String creditType, long sinceMillis) {
+        PriceRing ring = ring(creditType);
+        return ring.coversAllBefore(sinceMillis) ? ring.since(creditType, sinceMillis) : null;
+    }
+
+    /**
+     * OHLC buckets of the last {@code days} days, oldest first (the current bucket is included).
+     */
+    public List<Candle> candles(String creditType, int days, Resolution resolution) {
+        long from = resolution.bucketStart(System.currentTimeMillis() - days * Resolution.DAY.getMillis());
+        return hasRollupTable()
+            ? loadRollups(creditType, resolution, from)
+            : aggregateSnapshots(creditType, resolution, from);
+    }
+
+    private List<Candle> loadRollups(String creditType, Resolution resolution, long from) {
+        List<Candle> candles = new ArrayList<>();
+        String sql = "SELECT bucket_start, open_usd, high_usd, low_usd, close_usd, sample_count " +
+            "FROM carbon_price_rollups WHERE credit_type = ? AND resolution = ? AND bucket_start >= ? " +
+            "ORDER BY bucket_start";
+        try (Connection conn = MyConnection.openConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, creditType);
+            stmt.setString(2, resolution.name());
+            stmt.setTimestamp(3, new Timestamp(from));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    candles.add(new Candle(rs.getTimestamp(1).getTime(), rs.getDouble(2), rs.getDouble(3),
+                        rs.getDouble(4), rs.getDouble(5), rs.getInt(6)));
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println(LOG_TAG + " ERROR fetching price rollups: " + e.getMessage());
+        }
+        return candles;
+    }
+
+    // Without carbon_price_rollups: same buckets computed from the raw snapshots
+    private List<Candle> aggregateSnapshots(String creditType, Resolution resolution, long from) {
+        List<Candle> candles = new ArrayList<>();
+        String sql = "SELECT usd_per_ton, timestamp FROM carbon_price_history " +
+            "WHERE credit_type = ? AND timestamp >= ? ORDER BY timestamp ASC";
+        try (Connection conn = MyConnection.openConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, creditType);
+            stmt.setTimestamp(2, new Timestamp(from));
+            try (ResultSet rs = stmt.executeQuery()) {
+                CandleBuilder builder = new CandleBuilder(resolution);
+                while (rs.next()) {
+                    builder.add(rs.getTimestamp(2).getTime(), rs.getDouble(1));
+                }
+                candles = builder.build();
+            }
+        } catch (SQLException e) {
+            System.err.println(LOG_TAG + " ERROR aggregating price history: " + e.getMessage());
+        }
+        return candles;
+    }
+
+    /**
+     * Folds ticks into the OHLC buckets of one resolution with the rules of ROLLUP_UPSERT_SQL: open
+     * from the earliest tick, close from the latest (the last one added on a tie), so ticks may
+     * arrive in any order.
+     */
+    static final class CandleBuilder {
+        private final Resolution resolution;
+        private final TreeMap<Long, Bucket> buckets = new TreeMap<>();
+
+        private static final class Bucket {
+            double open, high, low, close;
+            long firstAt, lastAt;
+            int samples;
+        }
+
+        CandleBuilder(Resolution resolution) {
+            this.resolution = resolution;
+        }
+
+        void add(long epochMillis, double price) {
+            Bucket bucket = buckets.get(resolution.bucketStart(epochMillis));
+            if (bucket == null) {
+                bucket = new Bucket();
+                bucket.open = bucket.high = bucket.low = bucket.close = price;
+                bucket.firstAt = bucket.lastAt = epochMillis;
+                buckets.put(resolution.bucketStart(epochMillis), bucket);
+            } else {
+                if (epochMillis < bucket.firstAt) {
+                    bucket.open = price;
+                    bucket.firstAt = epochMillis;
+                }
+                if (epochMillis >= bucket.lastAt) {
+                    bucket.close = price;
+                    bucket.lastAt = epochMillis;
+                }
+                bucket.high = Math.max(bucket.high, price);
+                bucket.low = Math.min(bucket.low, price);
+            }
+            bucket.samples++;
+        }
+
+        /** Candles oldest first. */
+        List<Candle> build() {
+            List<Candle> candles = new ArrayList<>(buckets.size());
+            for (Map.Entry<Long, Bucket> entry : buckets.entrySet()) {
+                Bucket b = entry.getValue();
+                candles.add(new Candle(entry.getKey(), b.open, b.high, b.low, b.close, b.samples));
+            }
+            return candles;
+        }
+    }
+
+    private static boolean hasRollupTable() {
+        Boolean cached = rollupTable;
+        if (cached != null) {
+            return cached;
+        }
+        try (Connection conn = MyConnection.openConnection();
+             ResultSet rs = conn.getMetaData().getTables(conn.getCatalog(), null, "carbon_price_rollups", null)) {
+            cached = rs.next();
+            rollupTable = cached;
+            if (!cached) {
+                System.out.println(LOG_TAG + " carbon_price_rollups table missing, charts aggregate raw snapshots. " +
+                    "Run sql/ADD_CARBON_PRICE_ROLLUPS.sql to enable rollups.");
+            }
+            return cached;
+        } catch (SQLException e) {
+            System.err.println(LOG_TAG + " Could not inspect carbon_price_rollups: " + e.getMessage());
+            return false;
+        }
+    }
+
+    // ==================== RING BUFFER ====================
+
+    private PriceRing ring(String creditType) {
+        return rings.computeIfAbsent(creditType, type -> {
+            PriceRing ring = new PriceRing(ringCapacity);
+            ring.load(type);
+            return ring;
+        });
+    }
+
+    /**
+     * Last {@code capacity} ticks of one credit type, in time order, in two primitive arrays used
+     * as a circular buffer (no boxing, no allocation per tick).
+     */
+    private static final class PriceRing {
+        private final long[] times;
+        private final double[] prices;
+        private int start;  // index of the oldest tick
+        private int size;
+        // true while the ring holds the whole history of the credit type (nothing was evicted)
+        private boolean complete;
+
+        PriceRing(int capacity) {
+            this.times = new long[capacity];
+            this.prices = new double[capacity];
+        }
+
+        // Warm start with the latest snapshots (idx on credit_type, timestamp)
+        void load(String creditType) {
+            String sql = "SELECT usd_per_ton, timestamp FROM carbon_price_history " +
+                "WHERE credit_type = ? ORDER BY timestamp DESC LIMIT ?";
+            List<long[]> rows = new ArrayList<>();
+            try (Connection conn = MyConnection.openConnection();
+                 PreparedStatement stmt = conn.prepareStatement(sql)) {
+                stmt.setString(1, creditType);
+                stmt.setInt(2, times.length);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        rows.add(new long[] {rs.getTimestamp(2).getTime(), Double.doubleToLongBits(rs.getDouble(1))});
+                    }
+                }
+                synchronized (this) {
+                    complete = rows.size() < times.length;
+                    for (int i = rows.size() - 1; i >= 0; i--) {
+                        add(rows.get(i)[0], Double.longBitsToDouble(rows.get(i)[1]));
+                    }
+                }
+            } catch (SQLException e) {
+                System.err.println(LOG_TAG + " ERROR loading recent prices of " + creditType + ": " + e.getMessage());
+            }
+        }
+
+        synchronized void add(long time, double price) {
+            int last = lastAtOrBefore(time);
+            if (last >= 0 && times[index(last)] == time && prices[index(last)] == price) {
+                return;
+            }
+            if (size == times.length) {
+                start = (start + 1) % times.length;
+                size--;
+                complete = false;
+            }
+            // Keep time order if ticks arrive slightly out of order
+            int pos = size;
+            while (pos > 0 && times[index(pos - 1)] > time) {
+                times[index(pos)] = times[index(pos - 1)];
+                prices[index(pos)] = prices[index(pos - 1)];
+                pos--;
+            }
+            times[index(pos)] = time;
+            prices[index(pos)] = price;
+            size++;
+        }
+
+        synchronized OptionalDouble priceAt(long time) {
+            int pos = lastAtOrBefore(time);
+            return pos >= 0 ? OptionalDouble.of(prices[index(pos)]) : OptionalDouble.empty();
+        }
+
+        /** No tick before {@code time} exists outside the ring. */
+        synchronized boolean coversAllBefore(long time) {
+            return complete || (size > 0 && times[start] <= time);
+        }
+
+        synchronized List<CarbonPriceSnapshot> since(String creditType, long sinceMillis) {
+            List<CarbonPriceSnapshot> ticks = new ArrayList<>();
+            for (int pos = lastAtOrBefore(sinceMillis - 1) + 1; pos < size; pos++) {
+                ticks.add(new CarbonPriceSnapshot(creditType, prices[index(pos)], null, "RING",
+                    new Timestamp(times[index(pos)])));
+            }
+            return ticks;
+        }
+
+        // Binary search over logical positions 0..size-1
+        private int lastAtOrBefore(long time) {
+            int lo = 0;
+            int hi = size - 1;
+            int found = -1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                if (times[index(mid)] <= time) {
+                    found = mid;
+                    lo = mid + 1;
+                } else {
+                    hi = mid - 1;
+                }
+            }
+            return found;
+        }
+
+        private int index(int pos) {
+            return (start + pos) % times.length;
+        }
+    }
+
+    private static int readInt(String key, int defaultValue) {
+        String value = EnvLoader.get(key);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            System.err.println(LOG_TAG + " Invalid value for " + key + ": " + value);
+            return defaultValue;
+        }
+    }
+}
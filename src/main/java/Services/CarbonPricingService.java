@@ -1,6 +1,11 @@
 package Services;
 
+import DataBase.MyConnection;
 import Models.CarbonPriceSnapshot;
+import Utils.MappedRecordCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
@@ -12,29 +17,43 @@ import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
 import java.sql.*;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Service for managing carbon credit pricing
  * Fetches data from Climatiq API for verification
  * Uses realistic market-based pricing as primary source
- * Caches prices locally with TTL
+ * Caches prices locally with TTL: loading cache (one API call per key at a time), refreshed
+ * in the background after the TTL while the previous price keeps being served
  * Stores historical price snapshots for trend analysis
  */
 public class CarbonPricingService {
     private static final String LOG_TAG = "[CarbonPricingService]";
-    private static final long CACHE_TTL_MINUTES = 5;
-    private static final String PRICE_CACHE_FILE = "config/price_cache.dat";
+    private static final String CACHE_TTL_MINUTES = "5";
+    private static final String CACHE_MAX_STALE_MINUTES = "60";
+    private static final String PRICE_CACHE_FILE = "config/price_cache.bin";
+    private static final String LEGACY_PRICE_CACHE_FILE = "config/price_cache.dat";
+    private static final int PRICE_CACHE_KEY_BYTES = 64;
+    private static final int PRICE_CACHE_VALUE_BYTES = Double.BYTES + Long.BYTES;
     private static final String API_CALL_CONFIG_FILE = "config/api_call_log.txt";
 
     private final String apiKey;
     private final String apiUrl;
     private final double defaultRate;
-    private final Map<String, PriceCache> priceCache;
-    private long lastApiCallTime = 0;
+    private final long cacheTtlMillis;
+    private final LoadingCache<String, PriceCache> priceCache;
+    private final ExecutorService refreshExecutor;
+    private MappedRecordCache priceStore;
+    private volatile long lastApiCallTime = 0;
     private final long apiCallIntervalHours;
+    private final LongAdder apiCallsMade = new LongAdder();
+    private final LongAdder apiCallsDenied = new LongAdder();
 
     // Inner class for caching prices
     private static class PriceCache {
@@ -42,33 +61,53 @@ public class CarbonPricingService {
         long cachedAt;
 
         PriceCache(double price) {
+            this(price, System.currentTimeMillis());
+        }
+
+        PriceCache(double price, long cachedAt) {
             this.price = price;
-            this.cachedAt = System.currentTimeMillis();
+            this.cachedAt = cachedAt;
         }
 
-        boolean isExpired() {
-            return (System.currentTimeMillis() - cachedAt) > (CACHE_TTL_MINUTES * 60 * 1000);
+        boolean isExpired(long ttlMillis) {
+            return (System.currentTimeMillis() - cachedAt) > ttlMillis;
         }
     }
 
     // Singleton instance
     private static CarbonPricingService instance;
-    private Connection conn;
 
     public CarbonPricingService(String apiKey, String apiUrl, double defaultRate) {
         this.apiKey = apiKey;
         this.apiUrl = apiUrl;
         this.defaultRate = defaultRate;
-        this.priceCache = new ConcurrentHashMap<>();
-        this.conn = DataBase.MyConnection.getConnection();
         this.apiCallIntervalHours = Long.parseLong(
             getConfigProperty("carbon.pricing.api.call.interval.hours", "12")
         );
+        long ttlMinutes = Long.parseLong(getConfigProperty("carbon.pricing.cache.ttl.minutes", CACHE_TTL_MINUTES));
+        long maxStaleMinutes = Math.max(ttlMinutes, Long.parseLong(
+            getConfigProperty("carbon.pricing.cache.max.stale.minutes", CACHE_MAX_STALE_MINUTES)));
+        this.cacheTtlMillis = TimeUnit.MINUTES.toMillis(ttlMinutes);
+        this.refreshExecutor = Executors.newFixedThreadPool(2, r -> {
+            Thread t = new Thread(r, "price-refresh");
+            t.setDaemon(true);
+            return t;
+        });
+        // get() loads a missing key once for all concurrent callers; after the TTL the next read
+        // triggers a single background reload and keeps getting the previous price meanwhile.
+        // Entries nobody read for maxStale are dropped and loaded again on demand.
+        this.priceCache = Caffeine.newBuilder()
+            .refreshAfterWrite(ttlMinutes, TimeUnit.MINUTES)
+            .expireAfterWrite(maxStaleMinutes, TimeUnit.MINUTES)
+            .maximumSize(1_000)
+            .executor(refreshExecutor)
+            .recordStats()
+            .build(this::loadPrice);
         loadPriceCache();
         loadLastApiCallTime();
     }
 
-    public static CarbonPricingService getInstance() {
+    public static synchronized CarbonPricingService getInstance() {
         if (instance == null) {
             String apiKey = getConfigProperty("carbon.pricing.api.key", "YOUR_CLIMATIQ_API_KEY");
             String apiUrl = getConfigProperty("carbon.pricing.api.url", "https://api.climatiq.io");
@@ -87,35 +126,69 @@ public class CarbonPricingService {
     public double getCurrentPrice(String creditType) {
         creditType = StringUtils.defaultIfBlank(creditType, "VOLUNTARY_CARBON_MARKET");
 
-        // Check cache first
-        PriceCache cached = priceCache.get(creditType);
-        if (cached != null && !cached.isExpired()) {
-            System.out.println(LOG_TAG + " Cache hit for " + creditType + ": $" + cached.price);
+        try {
+            PriceCache cached = priceCache.get(creditType);
+            if (cached.isExpired(cacheTtlMillis)) {
+                // Price restored from the cache file and older than the TTL: serve it, revalidate
+                // in the background (a reload already in flight is reused)
+                priceCache.refresh(creditType);
+            }
             return cached.price;
+        } catch (RuntimeException e) {
+            System.err.println(LOG_TAG + " ERROR loading price for " + creditType + ": " + e.getMessage());
+            return getPriceTodayWithVariation(creditType);
         }
+    }
 
-        // Fetch from API
-        // Try API only if key is configured
-        if (apiKey != null && !apiKey.equals("YOUR_CIX_KEY") && !apiKey.isEmpty()) {
+    /**
+     * Cache loader: API price when a key is configured (persisted and stored in the history),
+     * market-based price otherwise (memory only, recomputed at the next refresh)
+     */
+    private PriceCache loadPrice(String creditType) {
+        if (isApiConfigured()) {
             double price = fetchPriceFromAPI(creditType);
 
             if (price > 0) {
-                // Cache the result
-                priceCache.put(creditType, new PriceCache(price));
-                savePriceCache();
+                PriceCache entry = new PriceCache(price);
+                persistCachedPrice(creditType, entry);
 
                 // Store in database for historical tracking
                 storePriceSnapshot(creditType, price);
 
                 System.out.println(LOG_TAG + " Fetched price for " + creditType + ": $" + price);
-                return price;
+                return entry;
             }
         }
 
         // Use realistic market-based defaults with daily variation when API unavailable
         double marketPrice = getPriceTodayWithVariation(creditType);
         System.out.println(LOG_TAG + " Using market-based price for " + creditType + ": $" + marketPrice);
-        return marketPrice;
+        return new PriceCache(marketPrice);
+    }
+
+    private boolean isApiConfigured() {
+        return apiKey != null && !apiKey.equals("YOUR_CIX_KEY") && !apiKey.isEmpty();
+    }
+
+    /**
+     * Hit/miss/load statistics of the price cache and API budget counters (health endpoint)
+     */
+    public JsonObject cacheStats() {
+        CacheStats stats = priceCache.stats();
+        JsonObject json = new JsonObject();
+        json.addProperty("entries", priceCache.estimatedSize());
+        json.addProperty("hits", stats.hitCount());
+        json.addProperty("misses", stats.missCount());
+        json.addProperty("hitRate", stats.hitRate());
+        json.addProperty("loads", stats.loadSuccessCount());
+        json.addProperty("loadFailures", stats.loadFailureCount());
+        json.addProperty("averageLoadMs", stats.averageLoadPenalty() / 1_000_000.0);
+        json.addProperty("totalLoadMs", stats.totalLoadTime() / 1_000_000);
+        json.addProperty("evictions", stats.evictionCount());
+        json.addProperty("apiCalls", apiCallsMade.sum());
+        json.addProperty("apiCallsDenied", apiCallsDenied.sum());
+        json.addProperty("lastApiCallAt", lastApiCallTime);
+        return json;
     }
 
     /**
@@ -201,23 +274,34 @@ public class CarbonPricingService {
 
         System.out.println(LOG_TAG + " Manual API refresh triggered for " + creditType);
         double price = fetchPriceFromAPI(creditType);
+        if (price > 0) {
+            cachePrice(creditType, price);
+        }
         System.out.println(LOG_TAG + " API refresh complete. Price: $" + price);
         return true;
     }
 
     /**
-     * Record successful API call timestamp
+     * Take the API call slot of the current interval. Check and record are atomic so that
+     * concurrent cache loads/refreshes never make more than one call per interval; the slot is
+     * consumed by the attempt, a failed call is not retried before the next interval either.
      */
-    private void recordApiCall() {
+    private synchronized boolean tryReserveApiCall() {
+        if (!canCallAPI()) {
+            apiCallsDenied.increment();
+            return false;
+        }
         lastApiCallTime = System.currentTimeMillis();
         saveLastApiCallTime();
+        apiCallsMade.increment();
+        return true;
     }
 
     /**
      * Fetch price from Climatiq API with rate limiting
      */
     private double fetchPriceFromAPI(String creditType) {
-        if (!canCallAPI()) {
+        if (!tryReserveApiCall()) {
             System.out.println(LOG_TAG + " API call rate limit in effect. Use refreshPriceFromAPI() to manually trigger.");
             return getPriceTodayWithVariation(creditType);
         }
@@ -245,7 +329,6 @@ public class CarbonPricingService {
             
             if (response.statusCode() == 200) {
                 System.out.println(LOG_TAG + " Climatiq API call successful for: " + creditType);
-                recordApiCall();
                 
                 double pricePerTon = getPriceTodayWithVariation(creditType);
                 System.out.println(LOG_TAG + " Using market price for " + creditType + ": $" + pricePerTon);
@@ -289,20 +372,12 @@ public class CarbonPricingService {
 
     /**
      * Store price snapshot in database for historical tracking
+     * (raw snapshot + hourly/daily rollups, see CarbonPriceTimeseries)
      */
     private void storePriceSnapshot(String creditType, double price) {
         try {
-            if (conn == null) return;
-
-            String sql = "INSERT INTO carbon_price_history (credit_type, usd_per_ton, source_api, timestamp) " +
-                    "VALUES (?, ?, 'CLIMATE_IMPACT_X', NOW())";
-
-            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-                stmt.setString(1, creditType);
-                stmt.setDouble(2, price);
-                stmt.executeUpdate();
-                System.out.println(LOG_TAG + " Price snapshot stored for " + creditType);
-            }
+            CarbonPriceTimeseries.getInstance().record(creditType, price, "CLIMATE_IMPACT_X", System.currentTimeMillis());
+            System.out.println(LOG_TAG + " Price snapshot stored for " + creditType);
         } catch (SQLException e) {
             System.err.println(LOG_TAG + " ERROR storing price snapshot: " + e.getMessage());
         }
@@ -310,39 +385,25 @@ public class CarbonPricingService {
 
     /**
      * Get price history for trend analysis
+     * Raw ticks for one day, otherwise one point per hour (up to 7 days) or per day (beyond),
+     * at the closing price of the bucket
      * If actual history is sparse, generates synthetic data with realistic daily variations
      */
     public List<CarbonPriceSnapshot> getPriceHistory(String creditType, int days) {
-        List<CarbonPriceSnapshot> history = new ArrayList<>();
-
-        try {
-            if (conn == null) return generateSyntheticPriceHistory(creditType, days);
-
-            String sql = "SELECT id, credit_type, usd_per_ton, market_index, source_api, timestamp " +
-                    "FROM carbon_price_history " +
-                    "WHERE credit_type = ? AND timestamp >= DATE_SUB(NOW(), INTERVAL ? DAY) " +
-                    "ORDER BY timestamp ASC";
-
-            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-                stmt.setString(1, creditType);
-                stmt.setInt(2, days);
-
-                try (ResultSet rs = stmt.executeQuery()) {
-                    while (rs.next()) {
-                        CarbonPriceSnapshot snapshot = new CarbonPriceSnapshot(
-                            rs.getString("credit_type"),
-                            rs.getDouble("usd_per_ton"),
-                            rs.getString("market_index"),
-                            rs.getString("source_api"),
-                            rs.getTimestamp("timestamp")
-                        );
-                        snapshot.setId(rs.getInt("id"));
-                        history.add(snapshot);
-                    }
-                }
+        // Last 24h: every tick, from memory when the ring still holds the whole day
+        if (days <= 1) {
+            List<CarbonPriceSnapshot> ticks = CarbonPriceTimeseries.getInstance()
+                .recentTicks(creditType, System.currentTimeMillis() - 24 * 60 * 60 * 1000L);
+            if (ticks != null && !ticks.isEmpty()) {
+                return ticks;
             }
-        } catch (SQLException e) {
-            System.err.println(LOG_TAG + " ERROR fetching price history: " + e.getMessage());
+        }
+
+        CarbonPriceTimeseries.Resolution resolution = CarbonPriceTimeseries.Resolution.forDays(days);
+        List<CarbonPriceSnapshot> history = new ArrayList<>();
+        for (CarbonPriceTimeseries.Candle candle : getPriceCandles(creditType, days, resolution)) {
+            history.add(new CarbonPriceSnapshot(creditType, candle.close(), "OHLC_" + resolution.name(),
+                "ROLLUP", new Timestamp(candle.bucketStart())));
         }
 
         // If history is empty but we need it for charting, generate synthetic data
@@ -353,6 +414,14 @@ public class CarbonPricingService {
         return history;
     }
 
+    /**
+     * Open/high/low/close buckets for price charts
+     */
+    public List<CarbonPriceTimeseries.Candle> getPriceCandles(String creditType, int days,
+                                                             CarbonPriceTimeseries.Resolution resolution) {
+        return CarbonPriceTimeseries.getInstance().candles(creditType, days, resolution);
+    }
+
     /**
      * Generate synthetic price history with realistic daily variations
      * Used when historical data is not available in database
@@ -391,28 +460,7 @@ public class CarbonPricingService {
      * Get price at specific timestamp (for dispute resolution: "what was the price when order placed?")
      */
     public double getPriceAt(String creditType, long timestamp) {
-        try {
-            if (conn == null) return defaultRate;
-
-            String sql = "SELECT usd_per_ton FROM carbon_price_history " +
-                    "WHERE credit_type = ? AND UNIX_TIMESTAMP(timestamp) <= ? " +
-                    "ORDER BY timestamp DESC LIMIT 1";
-
-            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-                stmt.setString(1, creditType);
-                stmt.setLong(2, timestamp / 1000);  // Convert to seconds
-
-                try (ResultSet rs = stmt.executeQuery()) {
-                    if (rs.next()) {
-                        return rs.getDouble("usd_per_ton");
-                    }
-                }
-            }
-        } catch (SQLException e) {
-            System.err.println(LOG_TAG + " ERROR fetching historical price: " + e.getMessage());
-        }
-
-        return defaultRate;
+        return CarbonPriceTimeseries.getInstance().priceAt(creditType, timestamp).orElse(defaultRate);
     }
 
     /**
@@ -454,46 +502,84 @@ public class CarbonPricingService {
         for (String creditType : getAvailableCreditTypes()) {
             double price = fetchPriceFromAPI(creditType);
             if (price > 0) {
-                priceCache.put(creditType, new PriceCache(price));
+                cachePrice(creditType, price);
                 storePriceSnapshot(creditType, price);
             }
         }
-        savePriceCache();
         System.out.println(LOG_TAG + " Price refresh completed");
     }
 
     /**
-     * Load cached prices from file
+     * Load cached prices from the memory-mapped cache file (imports the old serialized
+     * price_cache.dat once if present)
      */
     private void loadPriceCache() {
-        try (ObjectInputStream ois = new ObjectInputStream(
-                new FileInputStream(PRICE_CACHE_FILE))) {
+        try {
+            priceStore = MappedRecordCache.open(Paths.get(PRICE_CACHE_FILE),
+                PRICE_CACHE_KEY_BYTES, PRICE_CACHE_VALUE_BYTES, 16);
+            importLegacyPriceCache(new File(LEGACY_PRICE_CACHE_FILE), priceStore);
+            // getCurrentPrice() revalidates the ones older than the TTL on first use
+            priceStore.forEach((creditType, value) ->
+                priceCache.put(creditType, new PriceCache(value.getDouble(), value.getLong())));
+            System.out.println(LOG_TAG + " Loaded " + priceCache.estimatedSize() + " cached prices");
+        } catch (IOException e) {
+            System.err.println(LOG_TAG + " ERROR opening price cache, prices cached in memory only: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Copy the prices of an old serialized cache file into {@code store} (prices already in the
+     * store are kept), then delete the file. An unreadable file is deleted too.
+     *
+     * @return number of prices imported
+     */
+    @SuppressWarnings("unchecked")
+    static int importLegacyPriceCache(File legacy, MappedRecordCache store) {
+        if (!legacy.exists()) {
+            return 0;
+        }
+        int imported = 0;
+        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(legacy))) {
             Map<String, Double> cached = (Map<String, Double>) ois.readObject();
+            // The old format had no timestamp: the file date is the best we know
+            long cachedAt = legacy.lastModified();
             for (Map.Entry<String, Double> entry : cached.entrySet()) {
-                priceCache.put(entry.getKey(), new PriceCache(entry.getValue()));
+                if (store.get(entry.getKey(), value -> Boolean.TRUE) == null) {
+                    double price = entry.getValue();
+                    store.put(entry.getKey(), value -> value.putDouble(price).putLong(cachedAt));
+                    imported++;
+                }
             }
-            System.out.println(LOG_TAG + " Loaded " + cached.size() + " cached prices");
-        } catch (IOException | ClassNotFoundException e) {
-            System.out.println(LOG_TAG + " No cached prices file, starting fresh");
+            System.out.println(LOG_TAG + " Imported " + imported + " prices from " + legacy.getPath());
+        } catch (IOException | ClassNotFoundException | ClassCastException | IllegalArgumentException e) {
+            System.out.println(LOG_TAG + " Ignoring unreadable " + legacy.getPath() + ": " + e.getMessage());
+        }
+        if (!legacy.delete()) {
+            System.err.println(LOG_TAG + " Could not delete " + legacy.getPath());
         }
+        return imported;
+    }
+
+    private void cachePrice(String creditType, double price) {
+        storeCachedPrice(creditType, new PriceCache(price));
+    }
+
+    private void storeCachedPrice(String creditType, PriceCache entry) {
+        priceCache.put(creditType, entry);
+        persistCachedPrice(creditType, entry);
     }
 
     /**
-     * Save prices to cache file
+     * Write a price to the mapped cache file: an in-place write of 16 bytes, flushed to
+     * disk in the background, so request threads never wait on the disk
      */
-    private void savePriceCache() {
+    private void persistCachedPrice(String creditType, PriceCache entry) {
+        if (priceStore == null) {
+            return;
+        }
         try {
-            new File("config").mkdirs();
-            Map<String, Double> toCache = new HashMap<>();
-            for (Map.Entry<String, PriceCache> entry : priceCache.entrySet()) {
-                toCache.put(entry.getKey(), entry.getValue().price);
-            }
-
-            try (ObjectOutputStream oos = new ObjectOutputStream(
-                    new FileOutputStream(PRICE_CACHE_FILE))) {
-                oos.writeObject(toCache);
-            }
-        } catch (IOException e) {
+            priceStore.put(creditType, value -> value.putDouble(entry.price).putLong(entry.cachedAt));
+        } catch (RuntimeException e) {
             System.err.println(LOG_TAG + " ERROR saving price cache: " + e.getMessage());
         }
     }
@@ -4,11 +4,14 @@ import Models.EmissionCalculationAudit;
 import Models.climatiq.EmissionFactor;
 import Models.climatiq.EmissionResult;
 import Utils.ApiConfig;
+import Utils.EnvLoader;
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import com.google.gson.Gson;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
+import com.google.gson.reflect.TypeToken;
 import io.github.resilience4j.circuitbreaker.CircuitBreaker;
 import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
 import io.github.resilience4j.ratelimiter.RateLimiter;
@@ -20,14 +23,32 @@ import org.apache.hc.client5.http.impl.classic.HttpClients;
 import org.apache.hc.core5.http.ClassicHttpResponse;
 import org.apache.hc.core5.http.io.entity.EntityUtils;
 import org.apache.hc.core5.http.io.entity.StringEntity;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.core.scheduler.Schedulers;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Climatiq API integration with reactive architecture.
@@ -37,7 +58,9 @@ import java.util.concurrent.TimeUnit;
  * - Grid-aware electricity calculations (regional precision)
  * - Circuit breaker pattern (prevents cascade failures)
  * - Rate limiting (1000 req/min per Climatiq SLA)
- * - Multi-tier caching (90-day TTL aligned to data refresh)
+ * - Multi-tier caching (90-day TTL aligned to data refresh), shared by all instances
+ * - Request coalescing (one in-flight lookup per factor) and bulk prefetch
+ * - Warm-start snapshot of the factor cache (restarts do not re-pay the API calls)
  * - Immutable audit trail (ISO 14064 compliant)
  * - GHG Protocol Tier tracking (1-4 data quality)
  * - Uncertainty quantification (required for enterprise audits)
@@ -56,8 +79,61 @@ public class ClimatiqApiService {
     private final CircuitBreaker circuitBreaker;
     private final RateLimiter rateLimiter;
     
-    // High-performance in-memory cache (90-day TTL)
-    private final Cache<String, EmissionFactor> factorCache;
+    private static final long FACTOR_TTL_MILLIS = TimeUnit.DAYS.toMillis(90);
+    private static final int PREFETCH_BATCH_SIZE = readInt("CLIMATIQ_PREFETCH_BATCH", 50);
+    private static final int PREFETCH_CONCURRENCY = readInt("CLIMATIQ_PREFETCH_CONCURRENCY", 8);
+    private static final Path SNAPSHOT_FILE = Paths.get(
+        EnvLoader.get("CLIMATIQ_FACTOR_SNAPSHOT", "config/climatiq_factor_cache.json"));
+
+    // High-performance in-memory cache (90 days after the fetch, also across restarts).
+    // Static: controllers create their own service instance, the factors are the same for all.
+    private static final Cache<String, CachedFactor> factorCache = Caffeine.newBuilder()
+        .expireAfter(new FactorExpiry())
+        .maximumSize(10_000)
+        .recordStats()
+        .build();
+
+    // Lookups in progress, shared by every caller asking for the same factor meanwhile
+    private static final Map<String, Mono<EmissionFactor>> inFlight = new ConcurrentHashMap<>();
+    private static final AtomicBoolean snapshotDirty = new AtomicBoolean();
+
+    static {
+        loadFactorSnapshot();
+        Runtime.getRuntime().addShutdownHook(new Thread(ClimatiqApiService::saveFactorSnapshot, "climatiq-snapshot"));
+    }
+
+    /**
+     * Factor with the time it was fetched from the API (drives the expiry and the snapshot).
+     */
+    private record CachedFactor(EmissionFactor factor, long fetchedAtMillis) {
+    }
+
+    /**
+     * Identity of an emission factor lookup, as used by {@link #searchEmissionFactorReactive}.
+     */
+    public record FactorKey(String activityId, String region, Integer year) {
+        String cacheKey() {
+            return String.format("%s:%s:%d", activityId, region, year);
+        }
+    }
+
+    private static final class FactorExpiry implements Expiry<String, CachedFactor> {
+        @Override
+        public long expireAfterCreate(String key, CachedFactor value, long currentTime) {
+            long remaining = value.fetchedAtMillis() + FACTOR_TTL_MILLIS - System.currentTimeMillis();
+            return TimeUnit.MILLISECONDS.toNanos(Math.max(0, remaining));
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, CachedFactor value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, CachedFactor value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
     
     // Baseline emission factors for graceful degradation
     private static final EmissionFactor BASELINE_ELECTRICITY = createBaselineFactor(
@@ -95,13 +171,6 @@ public class ClimatiqApiService {
             .build();
         this.rateLimiter = RateLimiter.of("climatiq", rlConfig);
         
-        // Caffeine cache: 90-day expiry, max 10,000 factors
-        this.factorCache = Caffeine.newBuilder()
-            .expireAfterWrite(90, TimeUnit.DAYS)
-            .maximumSize(10_000)
-            .recordStats()
-            .build();
-        
         if (!enabled) {
             System.err.println("[CLIMATIQ] Service disabled - CLIMATIQ_API_KEY environment variable not set");
             System.err.println("    Set via: export CLIMATIQ_API_KEY=your_key_here");
@@ -128,6 +197,7 @@ public class ClimatiqApiService {
     
     /**
      * Search emission factors (reactive, cached).
+     * Concurrent calls for the same factor share a single API request.
      * 
      * @param activityId Activity identifier (e.g., "electricity-energy_source_grid_mix")
      * @param region ISO 3166-1 alpha-2 code (e.g., "US", "FR", "US-CA")
@@ -135,21 +205,37 @@ public class ClimatiqApiService {
      * @return Mono<EmissionFactor> for reactive composition
      */
     public Mono<EmissionFactor> searchEmissionFactorReactive(String activityId, String region, Integer year) {
-        String cacheKey = String.format("%s:%s:%d", activityId, region, year);
+        return lookupFactor(new FactorKey(activityId, region, year), false);
+    }
+
+    private Mono<EmissionFactor> lookupFactor(FactorKey key, boolean permitReserved) {
+        String cacheKey = key.cacheKey();
         
         // Check cache first
-        EmissionFactor cached = factorCache.getIfPresent(cacheKey);
+        CachedFactor cached = factorCache.getIfPresent(cacheKey);
         if (cached != null) {
-            return Mono.just(cached);
+            return Mono.just(cached.factor());
         }
         
         if (!enabled) {
-            return Mono.just(getFallbackFactor(activityId));
+            return Mono.just(getFallbackFactor(key.activityId()));
         }
         
+        // Join the lookup in progress or start it; forgotten once done (the cache takes over)
+        return inFlight.computeIfAbsent(cacheKey, k -> newLookup(key, permitReserved));
+    }
+
+    private Mono<EmissionFactor> newLookup(FactorKey key, boolean permitReserved) {
+        return fetchFactor(key, permitReserved)
+            .doFinally(signal -> inFlight.remove(key.cacheKey()))
+            .cache();
+    }
+
+    private Mono<EmissionFactor> fetchFactor(FactorKey key, boolean permitReserved) {
+        String activityId = key.activityId();
         return Mono.fromCallable(() -> {
-            // Rate limiting
-            if (!rateLimiter.acquirePermission()) {
+            // Rate limiting (bulk prefetch reserves the permits of a whole batch up front)
+            if (!permitReserved && !rateLimiter.acquirePermission()) {
                 throw new RuntimeException("Rate limit exceeded - gracefully degrading");
             }
             
@@ -157,13 +243,14 @@ public class ClimatiqApiService {
             return circuitBreaker.executeSupplier(() -> {
                 try {
                     String url = String.format("%s/search?query=%s&region=%s&year=%d", 
-                        baseUrl, activityId, region, year);
+                        baseUrl, activityId, key.region(), key.year());
                     
                     EmissionFactor factor = executeGet(url, EmissionFactor.class);
                     
                     // Cache successful result
                     if (factor != null) {
-                        factorCache.put(cacheKey, factor);
+                        factorCache.put(key.cacheKey(), new CachedFactor(factor, System.currentTimeMillis()));
+                        snapshotDirty.set(true);
                     }
                     
                     return factor != null ? factor : getFallbackFactor(activityId);
@@ -179,6 +266,106 @@ public class ClimatiqApiService {
         .timeout(Duration.ofSeconds(5))
         .onErrorReturn(getFallbackFactor(activityId));
     }
+
+    /**
+     * Resolve the distinct factors of a workload before processing it, so that the per-record
+     * lookups all hit the cache.
+     * 
+     * Missing factors are fetched in batches of CLIMATIQ_PREFETCH_BATCH: the rate limiter permits
+     * of a batch (one per factor not already being looked up) are reserved first (waiting for the
+     * next period if needed), then the batch runs with at most CLIMATIQ_PREFETCH_CONCURRENCY
+     * requests at once. The snapshot is saved at the end.
+     * 
+     * @param keys factor keys of the workload (duplicates allowed)
+     * @return Mono of the number of distinct keys now cached (fallback factors are not cached)
+     */
+    public Mono<Integer> prefetchEmissionFactorsReactive(Collection<FactorKey> keys) {
+        Set<FactorKey> distinct = new LinkedHashSet<>(keys);
+        List<FactorKey> missing = new ArrayList<>();
+        for (FactorKey key : distinct) {
+            if (factorCache.getIfPresent(key.cacheKey()) == null) {
+                missing.add(key);
+            }
+        }
+        if (!enabled || missing.isEmpty()) {
+            return Mono.just(distinct.size() - missing.size());
+        }
+        
+        System.out.println("[CLIMATIQ] Prefetching " + missing.size() + " factors ("
+            + (distinct.size() - missing.size()) + " already cached)");
+        int batchSize = Math.max(1, Math.min(PREFETCH_BATCH_SIZE,
+            rateLimiter.getRateLimiterConfig().getLimitForPeriod()));
+        return Flux.fromIterable(missing)
+            .buffer(batchSize)
+            .concatMap(batch -> Mono.fromCallable(() -> registerBatch(batch))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMapMany(lookups -> Flux.fromIterable(lookups)
+                    .flatMap(lookup -> lookup, PREFETCH_CONCURRENCY)))
+            .then(Mono.fromCallable(() -> {
+                saveFactorSnapshot();
+                int cached = 0;
+                for (FactorKey key : distinct) {
+                    if (factorCache.getIfPresent(key.cacheKey()) != null) {
+                        cached++;
+                    }
+                }
+                System.out.println("[CLIMATIQ] Prefetch done: " + cached + "/" + distinct.size() + " factors cached");
+                return cached;
+            }));
+    }
+
+    public int prefetchEmissionFactors(Collection<FactorKey> keys) {
+        return prefetchEmissionFactorsReactive(keys).block();
+    }
+
+    /**
+     * Lookups of a prefetch batch, with one rate limiter permit reserved per lookup started here.
+     * Keys cached or looked up by another caller meanwhile join that lookup without a permit: the
+     * limiter cannot take back a permit reserved for a request that is never sent.
+     */
+    private List<Mono<EmissionFactor>> registerBatch(List<FactorKey> batch) {
+        List<Mono<EmissionFactor>> lookups = new ArrayList<>();
+        Map<String, Mono<EmissionFactor>> started = new LinkedHashMap<>();
+        for (FactorKey key : batch) {
+            if (factorCache.getIfPresent(key.cacheKey()) != null) {
+                continue;
+            }
+            boolean[] created = new boolean[1];
+            Mono<EmissionFactor> lookup = inFlight.computeIfAbsent(key.cacheKey(), k -> {
+                created[0] = true;
+                return newLookup(key, true);
+            });
+            lookups.add(lookup);
+            if (created[0]) {
+                started.put(key.cacheKey(), lookup);
+            }
+        }
+        if (!started.isEmpty()) {
+            try {
+                reservePermits(started.size());
+            } catch (RuntimeException e) {
+                // These lookups will never be subscribed: later callers must start their own
+                started.forEach(inFlight::remove);
+                throw e;
+            }
+        }
+        return lookups;
+    }
+
+    /**
+     * Block until {@code permits} rate limiter permits are granted (each attempt waits at most the
+     * limiter timeout, the period refresh eventually frees enough permits).
+     *
+     * @throws IllegalStateException if the thread is interrupted while waiting
+     */
+    private void reservePermits(int permits) {
+        while (!rateLimiter.acquirePermission(permits)) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new IllegalStateException("Interrupted while waiting for " + permits + " rate limiter permits");
+            }
+            System.out.println("[CLIMATIQ] Prefetch waiting for rate limiter (" + permits + " permits)");
+        }
+    }
     
     /**
      * Calculate emission estimate with audit trail.
@@ -293,14 +480,16 @@ public class ClimatiqApiService {
             request.setHeader("Authorization", "Bearer " + apiKey);
             request.setHeader("Accept", "application/json");
             
-            ClassicHttpResponse response = client.execute(request, resp -> resp);
-            String body = EntityUtils.toString(response.getEntity());
-            
-            if (response.getCode() >= 400) {
-                throw new RuntimeException("API error " + response.getCode() + ": " + body);
-            }
-            
-            return gson.fromJson(body, responseType);
+            // Read the body inside the handler: the response stream is closed once it returns
+            return client.execute(request, (ClassicHttpResponse response) -> {
+                String body = EntityUtils.toString(response.getEntity());
+                
+                if (response.getCode() >= 400) {
+                    throw new RuntimeException("API error " + response.getCode() + ": " + body);
+                }
+                
+                return gson.fromJson(body, responseType);
+            });
         }
     }
     
@@ -349,12 +538,83 @@ public class ClimatiqApiService {
     public String getCacheStats() {
         var stats = factorCache.stats();
         return String.format(
-            "Cache Stats: %d entries, %.1f%% hit rate, %d evictions",
+            "Cache Stats: %d entries, %.1f%% hit rate, %d evictions, %d lookups in flight",
             factorCache.estimatedSize(),
             stats.hitRate() * 100,
-            stats.evictionCount()
+            stats.evictionCount(),
+            inFlight.size()
         );
     }
+
+    // ==================== WARM-START SNAPSHOT ====================
+
+    /**
+     * Snapshot entry: factor and fetch time (the remaining TTL is kept across restarts).
+     */
+    private record SnapshotEntry(String key, long fetchedAt, EmissionFactor factor) {
+    }
+
+    private static void loadFactorSnapshot() {
+        if (!Files.exists(SNAPSHOT_FILE)) {
+            return;
+        }
+        try (Reader reader = Files.newBufferedReader(SNAPSHOT_FILE, StandardCharsets.UTF_8)) {
+            List<SnapshotEntry> entries = new Gson().fromJson(reader, new TypeToken<List<SnapshotEntry>>() { }.getType());
+            long now = System.currentTimeMillis();
+            int loaded = 0;
+            if (entries != null) {
+                for (SnapshotEntry entry : entries) {
+                    if (entry != null && entry.key() != null && entry.factor() != null
+                            && now - entry.fetchedAt() < FACTOR_TTL_MILLIS) {
+                        factorCache.put(entry.key(), new CachedFactor(entry.factor(), entry.fetchedAt()));
+                        loaded++;
+                    }
+                }
+            }
+            System.out.println("[CLIMATIQ] Warm start: " + loaded + " factors loaded from " + SNAPSHOT_FILE);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("[CLIMATIQ] Ignoring unreadable factor snapshot " + SNAPSHOT_FILE + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Write the cached factors to the snapshot file (temp file + atomic rename) when they changed
+     * since the last save. Called after a prefetch and at JVM shutdown.
+     */
+    public static synchronized void saveFactorSnapshot() {
+        if (!snapshotDirty.getAndSet(false)) {
+            return;
+        }
+        List<SnapshotEntry> entries = new ArrayList<>();
+        factorCache.asMap().forEach((key, cached) ->
+            entries.add(new SnapshotEntry(key, cached.fetchedAtMillis(), cached.factor())));
+        try {
+            Path dir = SNAPSHOT_FILE.toAbsolutePath().getParent();
+            Files.createDirectories(dir);
+            Path tmp = Files.createTempFile(dir, "climatiq_factor_cache", ".tmp");
+            try (Writer writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                new Gson().toJson(entries, writer);
+            }
+            Files.move(tmp, SNAPSHOT_FILE, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            System.out.println("[CLIMATIQ] Saved " + entries.size() + " factors to " + SNAPSHOT_FILE);
+        } catch (IOException e) {
+            snapshotDirty.set(true);
+            System.err.println("[CLIMATIQ] Could not save factor snapshot: " + e.getMessage());
+        }
+    }
+
+    private static int readInt(String key, int defaultValue) {
+        String value = EnvLoader.get(key);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            System.err.println("[CLIMATIQ] Invalid value for " + key + ": " + value);
+            return defaultValue;
+        }
+    }
     
     /**
      * Get circuit breaker state for monitoring.
@@ -9,12 +9,12 @@ import java.util.ArrayList;
 import java.util.List;
 
 public class CritereImpactService {
-    private Connection getConn() {
-        return MyConnection.getConnection();
+    private Connection getConn() throws SQLException {
+        return MyConnection.openConnection();
     }
 
     public CritereImpactService() {
-        // Connection is obtained per operation to avoid stale/closed handles.
+        // Connection is borrowed from the pool per operation.
     }
 
     public void ensureDefaultReferences() {
@@ -23,7 +23,8 @@ public class CritereImpactService {
 
     private boolean hasAnyReferences() {
         String countSql = "SELECT COUNT(*) FROM critere_reference";
-        try (Statement st = getConn().createStatement(); ResultSet rs = st.executeQuery(countSql)) {
+        try (Connection conn = getConn();
+             Statement st = conn.createStatement(); ResultSet rs = st.executeQuery(countSql)) {
             return rs.next() && rs.getInt(1) > 0;
         } catch (SQLException ex) {
             System.out.println(ex.getMessage());
@@ -33,7 +34,8 @@ public class CritereImpactService {
 
     private void seedDefaults() {
         String insertSql = "INSERT INTO critere_reference(nom_critere, description, poids) VALUES (?,?,?)";
-        try (PreparedStatement ps = getConn().prepareStatement(insertSql)) {
+        try (Connection conn = getConn();
+             PreparedStatement ps = conn.prepareStatement(insertSql)) {
             // Seed a small standard set if table is empty.
             addDefault(ps, "Pollution Air", "Impact sur la qualite de l'air", 1);
             addDefault(ps, "Pollution Eau", "Impact sur les ressources hydriques", 1);
@@ -56,7 +58,8 @@ public class CritereImpactService {
     public List<CritereReference> afficherReferences() {
         List<CritereReference> list = new ArrayList<>();
         String sql = "SELECT id_critere, nom_critere, description, poids FROM critere_reference ORDER BY id_critere";
-        try (Statement st = getConn().createStatement(); ResultSet rs = st.executeQuery(sql)) {
+        try (Connection conn = getConn();
+             Statement st = conn.createStatement(); ResultSet rs = st.executeQuery(sql)) {
             while (rs.next()) {
                 CritereReference c = new CritereReference();
                 c.setIdCritere(rs.getInt("id_critere"));
@@ -73,7 +76,8 @@ public class CritereImpactService {
 
     public void ajouterReference(CritereReference c) {
         String sql = "INSERT INTO critere_reference(nom_critere, description, poids) VALUES (?,?,?)";
-        try (PreparedStatement ps = getConn().prepareStatement(sql)) {
+        try (Connection conn = getConn();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, c.getNomCritere());
             ps.setString(2, c.getDescription());
             ps.setInt(3, c.getPoids());
@@ -85,7 +89,8 @@ public class CritereImpactService {
 
     public void modifierReference(CritereReference c) {
         String sql = "UPDATE critere_reference SET nom_critere=?, description=?, poids=? WHERE id_critere=?";
-        try (PreparedStatement ps = getConn().prepareStatement(sql)) {
+        try (Connection conn = getConn();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, c.getNomCritere());
             ps.setString(2, c.getDescription());
             ps.setInt(3, c.getPoids());
@@ -98,7 +103,8 @@ public class CritereImpactService {
 
     public boolean isReferenceUsed(int idCritere) {
         String sql = "SELECT COUNT(*) FROM evaluation_resultat WHERE id_critere=?";
-        try (PreparedStatement ps = getConn().prepareStatement(sql)) {
+        try (Connection conn = getConn();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setInt(1, idCritere);
             try (ResultSet rs = ps.executeQuery()) {
                 return rs.next() && rs.getInt(1) > 0;
@@ -112,33 +118,30 @@ public class CritereImpactService {
     public boolean supprimerReference(int idCritere) {
         String deleteResultsSql = "DELETE FROM evaluation_resultat WHERE id_critere=?";
         String deleteRefSql = "DELETE FROM critere_reference WHERE id_critere=?";
-        Connection conn = getConn();
-        try {
+        try (Connection conn = getConn()) {
             conn.setAutoCommit(false);
-            try (PreparedStatement ps = conn.prepareStatement(deleteResultsSql)) {
-                ps.setInt(1, idCritere);
-                ps.executeUpdate();
-            }
-            try (PreparedStatement ps = conn.prepareStatement(deleteRefSql)) {
-                ps.setInt(1, idCritere);
-                boolean deleted = ps.executeUpdate() > 0;
-                conn.commit();
-                return deleted;
-            }
-        } catch (SQLException ex) {
             try {
-                conn.rollback();
-            } catch (SQLException ignore) {
-                // ignore rollback failures
+                try (PreparedStatement ps = conn.prepareStatement(deleteResultsSql)) {
+                    ps.setInt(1, idCritere);
+                    ps.executeUpdate();
+                }
+                try (PreparedStatement ps = conn.prepareStatement(deleteRefSql)) {
+                    ps.setInt(1, idCritere);
+                    boolean deleted = ps.executeUpdate() > 0;
+                    conn.commit();
+                    return deleted;
+                }
+            } catch (SQLException ex) {
+                try {
+                    conn.rollback();
+                } catch (SQLException ignore) {
+                    // ignore rollback failures
+                }
+                throw ex;
             }
+        } catch (SQLException ex) {
             System.out.println(ex.getMessage());
             return false;
-        } finally {
-            try {
-                conn.setAutoCommit(true);
-            } catch (SQLException ignore) {
-                // ignore restore failures
-            }
         }
     }
 
@@ -149,7 +152,8 @@ public class CritereImpactService {
                 "JOIN critere_reference r ON r.id_critere = er.id_critere " +
                 "WHERE er.id_evaluation=? " +
                 "ORDER BY r.id_critere";
-        try (PreparedStatement ps = getConn().prepareStatement(sql)) {
+        try (Connection conn = getConn();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setInt(1, idEvaluation);
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) {
@@ -170,7 +174,8 @@ public class CritereImpactService {
 
     public void ajouterResultats(int idEvaluation, List<EvaluationResult> criteres) {
         String sql = "INSERT INTO evaluation_resultat(id_evaluation, id_critere, est_respecte, note, commentaire_expert) VALUES (?,?,?,?,?)";
-        try (PreparedStatement ps = getConn().prepareStatement(sql)) {
+        try (Connection conn = getConn();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             for (EvaluationResult c : criteres) {
                 ps.setInt(1, idEvaluation);
                 ps.setInt(2, c.getIdCritere());
@@ -188,38 +193,35 @@ public class CritereImpactService {
     public void modifierResultats(int idEvaluation, List<EvaluationResult> criteres) {
         String deleteSql = "DELETE FROM evaluation_resultat WHERE id_evaluation=?";
         String insertSql = "INSERT INTO evaluation_resultat(id_evaluation, id_critere, est_respecte, note, commentaire_expert) VALUES (?,?,?,?,?)";
-        Connection conn = getConn();
-        try {
+        try (Connection conn = getConn()) {
             conn.setAutoCommit(false);
-            try (PreparedStatement deletePs = conn.prepareStatement(deleteSql)) {
-                deletePs.setInt(1, idEvaluation);
-                deletePs.executeUpdate();
-            }
-            try (PreparedStatement insertPs = conn.prepareStatement(insertSql)) {
-                for (EvaluationResult c : criteres) {
-                    insertPs.setInt(1, idEvaluation);
-                    insertPs.setInt(2, c.getIdCritere());
-                    insertPs.setBoolean(3, c.isEstRespecte());
-                    insertPs.setInt(4, c.getNote());
-                    insertPs.setString(5, c.getCommentaireExpert());
-                    insertPs.addBatch();
+                try {
+                try (PreparedStatement deletePs = conn.prepareStatement(deleteSql)) {
+                    deletePs.setInt(1, idEvaluation);
+                    deletePs.executeUpdate();
+                }
+                try (PreparedStatement insertPs = conn.prepareStatement(insertSql)) {
+                    for (EvaluationResult c : criteres) {
+                        insertPs.setInt(1, idEvaluation);
+                        insertPs.setInt(2, c.getIdCritere());
+                        insertPs.setBoolean(3, c.isEstRespecte());
+                        insertPs.setInt(4, c.getNote());
+                        insertPs.setString(5, c.getCommentaireExpert());
+                        insertPs.addBatch();
+                    }
+                    insertPs.executeBatch();
+                }
+                conn.commit();
+            } catch (SQLException ex) {
+                try {
+                    conn.rollback();
+                } catch (SQLException ignore) {
+                    // ignore rollback failures
                 }
-                insertPs.executeBatch();
+                throw ex;
             }
-            conn.commit();
         } catch (SQLException ex) {
-            try {
-                conn.rollback();
-            } catch (SQLException ignore) {
-                // ignore rollback failures
-            }
             System.out.println(ex.getMessage());
-        } finally {
-            try {
-                conn.setAutoCommit(true);
-            } catch (SQLException ignore) {
-                // ignore restore failures
-            }
         }
     }
 }
@@ -13,8 +13,6 @@ import java.util.UUID;
 
 public class DocumentService {
 
-    private final Connection cnx = MyConnection.getConnection();
-
     public String ensureProjectFolder(int projectId) throws IOException {
         Path base = Paths.get("uploads", "projects", String.valueOf(projectId));
         Files.createDirectories(base);
@@ -57,7 +55,8 @@ public class DocumentService {
                 "INSERT INTO project_document (id_projet, file_name, stored_name, file_path, mime_type, file_size, is_image) " +
                         "VALUES (?,?,?,?,?,?,?)";
 
-        try (PreparedStatement ps = cnx.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+        try (Connection cnx = MyConnection.openConnection();
+             PreparedStatement ps = cnx.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
             ps.setInt(1, doc.getIdProjet());
             ps.setString(2, doc.getFileName());
             ps.setString(3, doc.getStoredName());
@@ -77,7 +76,8 @@ public class DocumentService {
         List<ProjectDocument> list = new ArrayList<>();
         String sql = "SELECT * FROM project_document WHERE id_projet=? ORDER BY uploaded_at DESC";
 
-        try (PreparedStatement ps = cnx.prepareStatement(sql)) {
+        try (Connection cnx = MyConnection.openConnection();
+             PreparedStatement ps = cnx.prepareStatement(sql)) {
             ps.setInt(1, projectId);
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) {
@@ -0,0 +1,395 @@
+package Services;
+
+import DataBase.MyConnection;
+import DataBase.TransactionTemplate;
+import Utils.EnvLoader;
+import com.google.gson.JsonObject;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Automatic release of the marketplace escrows once their hold period is over.
+ *
+ * Held escrows are indexed by due date in an {@link EscrowTimingWheel}: new escrows are loaded
+ * incrementally (id above the last one seen), the whole HELD set every
+ * {@code ESCROW_RESYNC_RUNS} runs. Each run takes the escrows that became due, splits them in
+ * chunks of {@code ESCROW_RELEASE_CHUNK} released in one transaction each, with at most
+ * {@code ESCROW_RELEASE_PARALLELISM} chunks at a time. A chunk that fails is retried escrow by
+ * escrow; escrows that still fail, or that were skipped (locked by another instance), are
+ * rescheduled a few ticks later.
+ *
+ * Two instances may run the job: a run only starts if it gets the MySQL named lock
+ * {@value #RUN_LOCK}, and {@link MarketplaceOrderService#releaseHeldEscrows} locks the escrow
+ * rows and re-checks their status, so an escrow is released at most once in any case.
+ */
+public class EscrowReleaseScheduler {
+    private static final String LOG_TAG = "[EscrowScheduler]";
+    private static final String RUN_LOCK = "greenledger.escrow_release";
+    private static final long HOLD_MILLIS = TimeUnit.HOURS.toMillis(MarketplaceOrderService.ESCROW_HOLD_HOURS);
+    private static final int WHEEL_SIZE = 512;
+    private static final int RETRY_TICKS = 5;
+
+    private static EscrowReleaseScheduler instance;
+
+    private final long tickMillis;
+    private final int chunkSize;
+    private final int parallelism;
+    private final int resyncRuns;
+
+    private EscrowTimingWheel wheel;
+    private int lastLoadedId;
+    private int runsSinceResync;
+    private ScheduledExecutorService timer;
+    private ExecutorService releasePool;
+
+    private volatile RunStats lastRun;
+    private final AtomicInteger runs = new AtomicInteger();
+    private final LongAdder totalReleased = new LongAdder();
+    private final LongAdder totalFailed = new LongAdder();
+
+    /**
+     * Metrics of one run. {@code skipped}: due escrows still HELD but not released (locked by
+     * another instance, or not yet due by the database clock), put back on the wheel.
+     * {@code dropped}: due escrows no longer HELD (refunded, disputed, released elsewhere), removed
+     * from the wheel.
+     */
+    public record RunStats(long startedAtMillis, boolean lockAcquired, int indexed, int due,
+                           int released, int skipped, int dropped, int failed, long durationMillis) {
+    }
+
+    private EscrowReleaseScheduler() {
+        this.tickMillis = TimeUnit.SECONDS.toMillis(Math.max(1, readInt("ESCROW_SCHEDULER_TICK_SECONDS", 60)));
+        this.chunkSize = Math.max(1, readInt("ESCROW_RELEASE_CHUNK", 50));
+        this.parallelism = Math.max(1, readInt("ESCROW_RELEASE_PARALLELISM", 4));
+        this.resyncRuns = Math.max(1, readInt("ESCROW_RESYNC_RUNS", 60));
+    }
+
+    public static synchronized EscrowReleaseScheduler getInstance() {
+        if (instance == null) {
+            instance = new EscrowReleaseScheduler();
+        }
+        return instance;
+    }
+
+    /**
+     * Run the job every tick (first run right away). Idempotent.
+     */
+    public synchronized void start() {
+        if (timer != null) {
+            return;
+        }
+        timer = Executors.newSingleThreadScheduledExecutor(r -> daemon(r, "escrow-scheduler"));
+        timer.scheduleWithFixedDelay(this::runSafely, 0, tickMillis, TimeUnit.MILLISECONDS);
+        System.out.println(LOG_TAG + " Started: tick=" + tickMillis / 1000 + "s, chunk=" + chunkSize
+            + ", parallelism=" + parallelism);
+    }
+
+    public synchronized void stop() {
+        if (timer != null) {
+            timer.shutdownNow();
+            timer = null;
+        }
+        if (releasePool != null) {
+            releasePool.shutdown();
+            releasePool = null;
+        }
+    }
+
+    private void runSafely() {
+        try {
+            runOnce();
+        } catch (RuntimeException e) {
+            System.err.println(LOG_TAG + " ERROR in escrow release run: " + e.getMessage());
+        }
+    }
+
+    /**
+     * One pass: index new escrows, release the due ones. Also usable without {@link #start()}.
+     */
+    public synchronized RunStats runOnce() {
+        long started = System.currentTimeMillis();
+        long t0 = System.nanoTime();
+        try (Connection lockConn = MyConnection.openConnection()) {
+            if (!acquireRunLock(lockConn)) {
+                RunStats skipped = new RunStats(started, false, wheel == null ? 0 : wheel.size(), 0, 0, 0, 0, 0,
+                    (System.nanoTime() - t0) / 1_000_000);
+                lastRun = skipped;
+                return skipped;
+            }
+            try {
+                long dbNow = loadHeldEscrows(lockConn);
+                int[] due = wheel.advance(dbNow);
+                ReleaseOutcome outcome = release(due);
+                Set<Integer> failed = new HashSet<>(outcome.failedIds());
+                List<Integer> notReleased = new ArrayList<>();
+                for (int escrowId : due) {
+                    if (!outcome.releasedIds().contains(escrowId) && !failed.contains(escrowId)) {
+                        notReleased.add(escrowId);
+                    }
+                }
+                Set<Integer> stillHeld = stillHeld(lockConn, notReleased);
+
+                // Failed escrows and the ones skipped while still HELD go back on the wheel; the
+                // ones whose status changed are dropped
+                for (int escrowId : due) {
+                    if (failed.contains(escrowId) || stillHeld.contains(escrowId)) {
+                        wheel.schedule(escrowId, dbNow + RETRY_TICKS * tickMillis);
+                    }
+                }
+
+                int released = outcome.releasedIds().size();
+                RunStats stats = new RunStats(started, true, wheel.size(), due.length, released,
+                    stillHeld.size(), notReleased.size() - stillHeld.size(), failed.size(),
+                    (System.nanoTime() - t0) / 1_000_000);
+                record(stats);
+                return stats;
+            } finally {
+                releaseRunLock(lockConn);
+            }
+        } catch (SQLException e) {
+            System.err.println(LOG_TAG + " ERROR in escrow release run: " + e.getMessage());
+            RunStats failed = new RunStats(started, false, wheel == null ? 0 : wheel.size(), 0, 0, 0, 0, 0,
+                (System.nanoTime() - t0) / 1_000_000);
+            lastRun = failed;
+            return failed;
+        }
+    }
+
+    private void record(RunStats stats) {
+        lastRun = stats;
+        runs.incrementAndGet();
+        totalReleased.add(stats.released());
+        totalFailed.add(stats.failed());
+        if (stats.due() > 0) {
+            System.out.println(LOG_TAG + String.format(" Run: due=%d released=%d skipped=%d dropped=%d failed=%d in %dms (%d indexed)",
+                stats.due(), stats.released(), stats.skipped(), stats.dropped(), stats.failed(), stats.durationMillis(),
+                stats.indexed()));
+        }
+    }
+
+    // ==================== DUE-DATE INDEX ====================
+
+    /**
+     * Load the escrows created since the last run (all HELD escrows on a resync) into the wheel.
+     *
+     * @return the database clock in epoch milliseconds, used as the wheel's clock
+     */
+    private long loadHeldEscrows(Connection conn) throws SQLException {
+        long dbNow;
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT UNIX_TIMESTAMP(NOW(3))");
+             ResultSet rs = stmt.executeQuery()) {
+            rs.next();
+            dbNow = Math.round(rs.getDouble(1) * 1000);
+        }
+
+        boolean resync = wheel == null || ++runsSinceResync >= resyncRuns;
+        if (resync) {
+            // Built one tick back: escrows already due land on the current tick and are released by
+            // this run's advance(dbNow), not a full interval later
+            wheel = new EscrowTimingWheel(tickMillis, WHEEL_SIZE, dbNow - tickMillis);
+            lastLoadedId = 0;
+            runsSinceResync = 0;
+        }
+
+        String sql = "SELECT id, UNIX_TIMESTAMP(created_at) FROM marketplace_escrow " +
+            "WHERE status = 'HELD' AND id > ? ORDER BY id";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, lastLoadedId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    int escrowId = rs.getInt(1);
+                    wheel.schedule(escrowId, rs.getLong(2) * 1000 + HOLD_MILLIS);
+                    lastLoadedId = Math.max(lastLoadedId, escrowId);
+                }
+            }
+        }
+        return dbNow;
+    }
+
+    /**
+     * Escrows of {@code escrowIds} whose status is still HELD (plain read, does not wait on rows
+     * locked by another instance). On error, all of them: they are retried rather than lost.
+     */
+    private Set<Integer> stillHeld(Connection conn, List<Integer> escrowIds) {
+        Set<Integer> held = new HashSet<>();
+        try {
+            for (int from = 0; from < escrowIds.size(); from += chunkSize) {
+                List<Integer> chunk = escrowIds.subList(from, Math.min(escrowIds.size(), from + chunkSize));
+                String sql = "SELECT id FROM marketplace_escrow WHERE status = 'HELD' AND id IN (" +
+                    String.join(",", Collections.nCopies(chunk.size(), "?")) + ")";
+                try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                    for (int i = 0; i < chunk.size(); i++) {
+                        stmt.setInt(i + 1, chunk.get(i));
+                    }
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next()) {
+                            held.add(rs.getInt(1));
+                        }
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println(LOG_TAG + " ERROR checking skipped escrows, rescheduling all of them: " + e.getMessage());
+            return new HashSet<>(escrowIds);
+        }
+        return held;
+    }
+
+    // ==================== RELEASE ====================
+
+    private record ReleaseOutcome(Set<Integer> releasedIds, List<Integer> failedIds) {
+    }
+
+    private ReleaseOutcome release(int[] due) {
+        if (due.length == 0) {
+            return new ReleaseOutcome(Set.of(), List.of());
+        }
+        Arrays.sort(due); // chunks lock rows in id order
+
+        Set<Integer> released = ConcurrentHashMap.newKeySet();
+        ConcurrentLinkedQueue<Integer> failed = new ConcurrentLinkedQueue<>();
+        List<Callable<Void>> chunks = new ArrayList<>();
+        for (int from = 0; from < due.length; from += chunkSize) {
+            List<Integer> chunk = new ArrayList<>();
+            for (int i = from; i < Math.min(due.length, from + chunkSize); i++) {
+                chunk.add(due[i]);
+            }
+            chunks.add(() -> {
+                releaseChunk(chunk, released, failed);
+                return null;
+            });
+        }
+
+        try {
+            for (Future<Void> future : pool().invokeAll(chunks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            System.err.println(LOG_TAG + " ERROR releasing a chunk: " + e.getCause());
+        }
+        return new ReleaseOutcome(released, new ArrayList<>(failed));
+    }
+
+    private void releaseChunk(List<Integer> chunk, Set<Integer> released, ConcurrentLinkedQueue<Integer> failed) {
+        MarketplaceOrderService orderService = MarketplaceOrderService.getInstance();
+        try {
+            released.addAll(TransactionTemplate.execute(
+                conn -> orderService.releaseHeldEscrows(conn, chunk, true)));
+            return;
+        } catch (SQLException e) {
+            System.err.println(LOG_TAG + " Chunk of " + chunk.size() + " escrows failed, releasing one by one: " + e.getMessage());
+        }
+        // Isolate the failing escrow(s)
+        for (Integer escrowId : chunk) {
+            try {
+                released.addAll(TransactionTemplate.execute(
+                    conn -> orderService.releaseHeldEscrows(conn, List.of(escrowId), true)));
+            } catch (SQLException e) {
+                System.err.println(LOG_TAG + " ERROR releasing escrow " + escrowId + ": " + e.getMessage());
+                failed.add(escrowId);
+            }
+        }
+    }
+
+    private synchronized ExecutorService pool() {
+        if (releasePool == null) {
+            AtomicInteger ids = new AtomicInteger();
+            releasePool = Executors.newFixedThreadPool(parallelism,
+                r -> daemon(r, "escrow-release-" + ids.incrementAndGet()));
+        }
+        return releasePool;
+    }
+
+    // ==================== RUN LOCK ====================
+
+    private static boolean acquireRunLock(Connection conn) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT GET_LOCK(?, 0)")) {
+            stmt.setString(1, RUN_LOCK);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() && rs.getInt(1) == 1;
+            }
+        }
+    }
+
+    private static void releaseRunLock(Connection conn) {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            stmt.setString(1, RUN_LOCK);
+            stmt.executeQuery().close();
+        } catch (SQLException e) {
+            System.err.println(LOG_TAG + " ERROR releasing run lock: " + e.getMessage());
+        }
+    }
+
+    // ==================== METRICS ====================
+
+    public RunStats getLastRun() {
+        return lastRun;
+    }
+
+    /**
+     * Last run plus totals since startup.
+     */
+    public JsonObject stats() {
+        JsonObject stats = new JsonObject();
+        stats.addProperty("running", timer != null);
+        stats.addProperty("runs", runs.get());
+        stats.addProperty("released", totalReleased.sum());
+        stats.addProperty("failed", totalFailed.sum());
+        RunStats last = lastRun;
+        if (last != null) {
+            JsonObject run = new JsonObject();
+            run.addProperty("startedAt", last.startedAtMillis());
+            run.addProperty("lockAcquired", last.lockAcquired());
+            run.addProperty("indexed", last.indexed());
+            run.addProperty("due", last.due());
+            run.addProperty("released", last.released());
+            run.addProperty("skipped", last.skipped());
+            run.addProperty("dropped", last.dropped());
+            run.addProperty("failed", last.failed());
+            run.addProperty("durationMs", last.durationMillis());
+            stats.add("lastRun", run);
+        }
+        return stats;
+    }
+
+    private static Thread daemon(Runnable r, String name) {
+        Thread t = new Thread(r, name);
+        t.setDaemon(true);
+        return t;
+    }
+
+    private static int readInt(String key, int defaultValue) {
+        String value = EnvLoader.get(key);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            System.err.println(LOG_TAG + " Invalid value for " + key + ": " + value);
+            return defaultValue;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package Services;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Due-date index of the held escrows: a hashed timing wheel of {@code wheelSize} buckets of
+ * {@code tickMillis} each.
+ *
+ * An escrow due at tick {@code t} sits in bucket {@code t % wheelSize}; {@link #advance} only
+ * visits the buckets of the ticks that elapsed since the previous call, and keeps the entries of a
+ * later lap (due date more than one revolution ahead) where they are. Adding and cancelling are
+ * O(1); a run costs O(elapsed buckets + entries in them) instead of a scan of every held escrow.
+ *
+ * Cancellation is lazy: {@link #remove} only forgets the escrow and its bucket entry is dropped
+ * when the bucket is next visited. Not thread-safe: {@link EscrowReleaseScheduler} owns it.
+ */
+final class EscrowTimingWheel {
+
+    private final long tickMillis;
+    private final Bucket[] buckets;
+    private final Map<Integer, Long> dueTicks = new HashMap<>();
+    private long currentTick;
+
+    EscrowTimingWheel(long tickMillis, int wheelSize, long nowMillis) {
+        this.tickMillis = Math.max(1, tickMillis);
+        this.buckets = new Bucket[Math.max(1, wheelSize)];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new Bucket();
+        }
+        this.currentTick = nowMillis / this.tickMillis;
+    }
+
+    /**
+     * Schedule (or reschedule) an escrow. Due dates in the past fire on the next {@link #advance}.
+     *
+     * The due tick is rounded up, so an escrow never fires before {@code dueMillis}.
+     */
+    void schedule(int escrowId, long dueMillis) {
+        long tick = Math.max(Math.floorDiv(dueMillis + tickMillis - 1, tickMillis), currentTick + 1);
+        Long previous = dueTicks.put(escrowId, tick);
+        if (previous != null && previous == tick) {
+            return;
+        }
+        buckets[(int) (tick % buckets.length)].add(escrowId, tick);
+    }
+
+    void remove(int escrowId) {
+        dueTicks.remove(escrowId);
+    }
+
+    boolean contains(int escrowId) {
+        return dueTicks.containsKey(escrowId);
+    }
+
+    int size() {
+        return dueTicks.size();
+    }
+
+    /**
+     * Move the wheel to {@code nowMillis} and return the escrows that became due, removed from the
+     * index.
+     */
+    int[] advance(long nowMillis) {
+        long target = nowMillis / tickMillis;
+        if (target <= currentTick) {
+            return new int[0];
+        }
+        IntList due = new IntList();
+        // More than one revolution elapsed: every bucket is visited once
+        long first = Math.max(currentTick + 1, target - buckets.length + 1);
+        for (long tick = first; tick <= target; tick++) {
+            buckets[(int) (tick % buckets.length)].drain(target, dueTicks, due);
+        }
+        currentTick = target;
+        return due.toArray();
+    }
+
+    private static final class Bucket {
+        int[] ids = new int[8];
+        long[] ticks = new long[8];
+        int size;
+
+        void add(int id, long tick) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                ticks = Arrays.copyOf(ticks, size * 2);
+            }
+            ids[size] = id;
+            ticks[size] = tick;
+            size++;
+        }
+
+        void drain(long target, Map<Integer, Long> dueTicks, IntList due) {
+            int i = 0;
+            while (i < size) {
+                int id = ids[i];
+                long tick = ticks[i];
+                Long current = dueTicks.get(id);
+                if (current == null || current != tick) {
+                    removeAt(i); // cancelled or rescheduled elsewhere
+                } else if (tick <= target) {
+                    dueTicks.remove(id);
+                    due.add(id);
+                    removeAt(i);
+                } else {
+                    i++; // later lap
+                }
+            }
+        }
+
+        // Order inside a bucket does not matter: swap with the last entry
+        private void removeAt(int i) {
+            size--;
+            ids[i] = ids[size];
+            ticks[i] = ticks[size];
+        }
+    }
+
+    private static final class IntList {
+        int[] values = new int[16];
+        int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -9,7 +9,6 @@ import java.util.List;
 
 public class EvaluationService {
 
-    private final Connection conn = MyConnection.getConnection();
     private String lastErrorMessage;
 
     public String getLastErrorMessage() {
@@ -43,9 +42,9 @@ public class EvaluationService {
         String sql = "SELECT e.*, p.titre AS titre_projet FROM evaluation e " +
                 "LEFT JOIN projet p ON p.id = e.id_projet " +
                 "ORDER BY e.date_evaluation DESC";
-        try {
-            Statement st = conn.createStatement();
-            ResultSet rs = st.executeQuery(sql);
+        try (Connection conn = MyConnection.openConnection();
+             Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery(sql)) {
             while (rs.next()) {
                 Evaluation e = new Evaluation();
                 e.setIdEvaluation(rs.getInt("id_evaluation"));
@@ -82,8 +81,8 @@ public class EvaluationService {
 
     public void modifier(Evaluation e) {
         String sql = "UPDATE evaluation SET observations_globales=?, score_final=?, est_valide=?, id_projet=? WHERE id_evaluation=?";
-        try {
-            PreparedStatement ps = conn.prepareStatement(sql);
+        try (Connection conn = MyConnection.openConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, e.getObservations());
             ps.setDouble(2, e.getScoreGlobal());
             ps.setBoolean(3, decisionToFlag(e.getDecision()));
@@ -102,7 +101,8 @@ public class EvaluationService {
                 "JOIN projet p ON p.id = e.id_projet " +
                 "WHERE p.entreprise_id = ? " +
                 "ORDER BY e.date_evaluation DESC";
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+        try (Connection conn = MyConnection.openConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setInt(1, entrepriseId);
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) {
@@ -130,7 +130,8 @@ public class EvaluationService {
                 "JOIN projet p ON p.id = e.id_projet " +
                 "WHERE e.id_projet = ? " +
                 "ORDER BY e.date_evaluation DESC";
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+        try (Connection conn = MyConnection.openConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setInt(1, projetId);
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) {
@@ -225,7 +226,8 @@ public class EvaluationService {
     public java.util.Set<Integer> getProjetIdsWithEvaluations() {
         java.util.Set<Integer> ids = new java.util.HashSet<>();
         String sql = "SELECT DISTINCT id_projet FROM evaluation";
-        try (Statement st = conn.createStatement(); ResultSet rs = st.executeQuery(sql)) {
+        try (Connection conn = MyConnection.openConnection();
+             Statement st = conn.createStatement(); ResultSet rs = st.executeQuery(sql)) {
             while (rs.next()) {
                 ids.add(rs.getInt("id_projet"));
             }
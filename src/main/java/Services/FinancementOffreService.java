@@ -8,7 +8,6 @@ import java.util.ArrayList;
 import java.util.List;
 
 public class FinancementOffreService {
-    private final Connection conn = MyConnection.getConnection();
     private String cachedOffreTable;
 
     public List<FinancementOffre> getAll() {
@@ -19,7 +18,8 @@ public class FinancementOffreService {
                 + "FROM financement f "
                 + "LEFT JOIN " + offreTable + " o ON o.id_financement = f.id "
                 + "ORDER BY f.id";
-        try (PreparedStatement ps = conn.prepareStatement(sql);
+        try (Connection conn = MyConnection.openConnection();
+             PreparedStatement ps = conn.prepareStatement(sql);
              ResultSet rs = ps.executeQuery()) {
             while (rs.next()) {
                 FinancementOffre fo = new FinancementOffre();
@@ -44,37 +44,39 @@ public class FinancementOffreService {
         String finSql = "INSERT INTO financement (projet_id, banque_id, montant, date_financement) VALUES (?,?,?,?)";
         String offreTable = resolveOffreTable();
         String offSql = "INSERT INTO " + offreTable + " (type_offre, taux, duree, id_financement) VALUES (?,?,?,?)";
-        try {
+        try (Connection conn = MyConnection.openConnection()) {
             conn.setAutoCommit(false);
-            int financementId;
-            try (PreparedStatement ps = conn.prepareStatement(finSql, Statement.RETURN_GENERATED_KEYS)) {
-                ps.setInt(1, safeInt(data.getProjetId()));
-                ps.setInt(2, safeInt(data.getBanqueId()));
-                ps.setDouble(3, safeDouble(data.getMontant()));
-                ps.setString(4, data.getDateFinancement());
-                ps.executeUpdate();
-                try (ResultSet keys = ps.getGeneratedKeys()) {
-                    if (!keys.next()) {
-                        throw new SQLException("No financement id returned");
+            try {
+                int financementId;
+                try (PreparedStatement ps = conn.prepareStatement(finSql, Statement.RETURN_GENERATED_KEYS)) {
+                    ps.setInt(1, safeInt(data.getProjetId()));
+                    ps.setInt(2, safeInt(data.getBanqueId()));
+                    ps.setDouble(3, safeDouble(data.getMontant()));
+                    ps.setString(4, data.getDateFinancement());
+                    ps.executeUpdate();
+                    try (ResultSet keys = ps.getGeneratedKeys()) {
+                        if (!keys.next()) {
+                            throw new SQLException("No financement id returned");
+                        }
+                        financementId = keys.getInt(1);
                     }
-                    financementId = keys.getInt(1);
                 }
-            }
-            if (hasOffreData(data)) {
-                try (PreparedStatement ps = conn.prepareStatement(offSql)) {
-                    ps.setString(1, data.getTypeOffre());
-                    ps.setDouble(2, safeDouble(data.getTaux()));
-                    ps.setInt(3, safeInt(data.getDuree()));
-                    ps.setInt(4, financementId);
-                    ps.executeUpdate();
+                if (hasOffreData(data)) {
+                    try (PreparedStatement ps = conn.prepareStatement(offSql)) {
+                        ps.setString(1, data.getTypeOffre());
+                        ps.setDouble(2, safeDouble(data.getTaux()));
+                        ps.setInt(3, safeInt(data.getDuree()));
+                        ps.setInt(4, financementId);
+                        ps.executeUpdate();
+                    }
                 }
+                conn.commit();
+            } catch (SQLException e) {
+                rollbackQuietly(conn);
+                throw e;
             }
-            conn.commit();
         } catch (SQLException e) {
-            rollbackQuietly();
             e.printStackTrace();
-        } finally {
-            restoreAutoCommit();
         }
     }
 
@@ -83,41 +85,43 @@ public class FinancementOffreService {
         String offreTable = resolveOffreTable();
         String offUpdateSql = "UPDATE " + offreTable + " SET type_offre=?, taux=?, duree=? WHERE id_offre=?";
         String offInsertSql = "INSERT INTO " + offreTable + " (type_offre, taux, duree, id_financement) VALUES (?,?,?,?)";
-        try {
+        try (Connection conn = MyConnection.openConnection()) {
             conn.setAutoCommit(false);
-            try (PreparedStatement ps = conn.prepareStatement(finSql)) {
-                ps.setInt(1, safeInt(data.getProjetId()));
-                ps.setInt(2, safeInt(data.getBanqueId()));
-                ps.setDouble(3, safeDouble(data.getMontant()));
-                ps.setString(4, data.getDateFinancement());
-                ps.setInt(5, safeInt(data.getFinancementId()));
-                ps.executeUpdate();
-            }
-            if (hasOffreData(data)) {
-                if (data.getOffreId() != null && data.getOffreId() > 0) {
-                    try (PreparedStatement ps = conn.prepareStatement(offUpdateSql)) {
-                        ps.setString(1, data.getTypeOffre());
-                        ps.setDouble(2, safeDouble(data.getTaux()));
-                        ps.setInt(3, safeInt(data.getDuree()));
-                        ps.setInt(4, data.getOffreId());
-                        ps.executeUpdate();
-                    }
-                } else {
-                    try (PreparedStatement ps = conn.prepareStatement(offInsertSql)) {
-                        ps.setString(1, data.getTypeOffre());
-                        ps.setDouble(2, safeDouble(data.getTaux()));
-                        ps.setInt(3, safeInt(data.getDuree()));
-                        ps.setInt(4, safeInt(data.getFinancementId()));
-                        ps.executeUpdate();
+            try {
+                try (PreparedStatement ps = conn.prepareStatement(finSql)) {
+                    ps.setInt(1, safeInt(data.getProjetId()));
+                    ps.setInt(2, safeInt(data.getBanqueId()));
+                    ps.setDouble(3, safeDouble(data.getMontant()));
+                    ps.setString(4, data.getDateFinancement());
+                    ps.setInt(5, safeInt(data.getFinancementId()));
+                    ps.executeUpdate();
+                }
+                if (hasOffreData(data)) {
+                    if (data.getOffreId() != null && data.getOffreId() > 0) {
+                        try (PreparedStatement ps = conn.prepareStatement(offUpdateSql)) {
+                            ps.setString(1, data.getTypeOffre());
+                            ps.setDouble(2, safeDouble(data.getTaux()));
+                            ps.setInt(3, safeInt(data.getDuree()));
+                            ps.setInt(4, data.getOffreId());
+                            ps.executeUpdate();
+                        }
+                    } else {
+                        try (PreparedStatement ps = conn.prepareStatement(offInsertSql)) {
+                            ps.setString(1, data.getTypeOffre());
+                            ps.setDouble(2, safeDouble(data.getTaux()));
+                            ps.setInt(3, safeInt(data.getDuree()));
+                            ps.setInt(4, safeInt(data.getFinancementId()));
+                            ps.executeUpdate();
+                        }
                     }
                 }
+                conn.commit();
+            } catch (SQLException e) {
+                rollbackQuietly(conn);
+                throw e;
             }
-            conn.commit();
         } catch (SQLException e) {
-            rollbackQuietly();
             e.printStackTrace();
-        } finally {
-            restoreAutoCommit();
         }
     }
 
@@ -126,29 +130,31 @@ public class FinancementOffreService {
         String offDeleteById = "DELETE FROM " + offreTable + " WHERE id_offre=?";
         String offDeleteByFin = "DELETE FROM " + offreTable + " WHERE id_financement=?";
         String finDelete = "DELETE FROM financement WHERE id=?";
-        try {
+        try (Connection conn = MyConnection.openConnection()) {
             conn.setAutoCommit(false);
-            if (data.getOffreId() != null && data.getOffreId() > 0) {
-                try (PreparedStatement ps = conn.prepareStatement(offDeleteById)) {
-                    ps.setInt(1, data.getOffreId());
-                    ps.executeUpdate();
+            try {
+                if (data.getOffreId() != null && data.getOffreId() > 0) {
+                    try (PreparedStatement ps = conn.prepareStatement(offDeleteById)) {
+                        ps.setInt(1, data.getOffreId());
+                        ps.executeUpdate();
+                    }
+                } else if (data.getFinancementId() != null && data.getFinancementId() > 0) {
+                    try (PreparedStatement ps = conn.prepareStatement(offDeleteByFin)) {
+                        ps.setInt(1, data.getFinancementId());
+                        ps.executeUpdate();
+                    }
                 }
-            } else if (data.getFinancementId() != null && data.getFinancementId() > 0) {
-                try (PreparedStatement ps = conn.prepareStatement(offDeleteByFin)) {
-                    ps.setInt(1, data.getFinancementId());
+                try (PreparedStatement ps = conn.prepareStatement(finDelete)) {
+                    ps.setInt(1, safeInt(data.getFinancementId()));
                     ps.executeUpdate();
                 }
+                conn.commit();
+            } catch (SQLException e) {
+                rollbackQuietly(conn);
+                throw e;
             }
-            try (PreparedStatement ps = conn.prepareStatement(finDelete)) {
-                ps.setInt(1, safeInt(data.getFinancementId()));
-                ps.executeUpdate();
-            }
-            conn.commit();
         } catch (SQLException e) {
-            rollbackQuietly();
             e.printStackTrace();
-        } finally {
-            restoreAutoCommit();
         }
     }
 
@@ -170,20 +176,13 @@ public class FinancementOffreService {
         return value == null ? 0.0 : value;
     }
 
-    private void rollbackQuietly() {
+    private void rollbackQuietly(Connection conn) {
         try {
             conn.rollback();
         } catch (SQLException ignored) {
         }
     }
 
-    private void restoreAutoCommit() {
-        try {
-            conn.setAutoCommit(true);
-        } catch (SQLException ignored) {
-        }
-    }
-
     private boolean hasOffreData(FinancementOffre data) {
         return data.getTypeOffre() != null && !data.getTypeOffre().trim().isEmpty();
     }
@@ -197,7 +196,8 @@ public class FinancementOffreService {
     }
 
     private boolean tableExists(String tableName) {
-        try (ResultSet rs = conn.getMetaData().getTables(null, null, tableName, null)) {
+        try (Connection conn = MyConnection.openConnection();
+             ResultSet rs = conn.getMetaData().getTables(null, null, tableName, null)) {
             return rs.next();
         } catch (SQLException e) {
             return false;
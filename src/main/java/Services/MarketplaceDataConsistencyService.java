@@ -14,10 +14,8 @@ import java.util.*;
 public class MarketplaceDataConsistencyService {
     private static final String LOG_TAG = "[MarketplaceDataConsistencyService]";
     private static MarketplaceDataConsistencyService instance;
-    private Connection conn;
 
     private MarketplaceDataConsistencyService() {
-        this.conn = MyConnection.getConnection();
     }
 
     public static MarketplaceDataConsistencyService getInstance() {
@@ -33,7 +31,7 @@ public class MarketplaceDataConsistencyService {
     public ConsistencyReport runFullCheck() {
         ConsistencyReport report = new ConsistencyReport();
 
-        if (conn == null) {
+        if (!MyConnection.getInstance().testConnection()) {
             System.err.println(LOG_TAG + " ERROR: No database connection");
             return report;
         }
@@ -64,7 +62,8 @@ public class MarketplaceDataConsistencyService {
                 "LEFT JOIN marketplace_listings l ON o.listing_id = l.id " +
                 "WHERE l.id IS NULL";
 
-            try (Statement stmt = conn.createStatement();
+            try (Connection conn = MyConnection.openConnection();
+                 Statement stmt = conn.createStatement();
                  ResultSet rs = stmt.executeQuery(sql)) {
                 if (rs.next()) {
                     int count = rs.getInt("count");
@@ -93,7 +92,8 @@ public class MarketplaceDataConsistencyService {
                 "LEFT JOIN user u ON l.seller_id = u.id " +
                 "WHERE u.id IS NULL";
 
-            try (Statement stmt = conn.createStatement();
+            try (Connection conn = MyConnection.openConnection();
+                 Statement stmt = conn.createStatement();
                  ResultSet rs = stmt.executeQuery(sql)) {
                 if (rs.next()) {
                     int count = rs.getInt("count");
@@ -119,7 +119,8 @@ public class MarketplaceDataConsistencyService {
             String sql = "SELECT COUNT(*) as count FROM marketplace_orders o " +
                 "WHERE o.status = 'PAID' AND o.escrow_id IS NULL";
 
-            try (Statement stmt = conn.createStatement();
+            try (Connection conn = MyConnection.openConnection();
+                 Statement stmt = conn.createStatement();
                  ResultSet rs = stmt.executeQuery(sql)) {
                 if (rs.next()) {
                     int count = rs.getInt("count");
@@ -148,7 +149,8 @@ public class MarketplaceDataConsistencyService {
                 "LEFT JOIN marketplace_orders o ON e.order_id = o.id " +
                 "WHERE o.id IS NULL AND e.order_id IS NOT NULL";
 
-            try (Statement stmt = conn.createStatement();
+            try (Connection conn = MyConnection.openConnection();
+                 Statement stmt = conn.createStatement();
                  ResultSet rs = stmt.executeQuery(sql)) {
                 if (rs.next()) {
                     int count = rs.getInt("count");
@@ -175,7 +177,8 @@ public class MarketplaceDataConsistencyService {
                 "LEFT JOIN marketplace_orders o ON f.order_id = o.id " +
                 "WHERE o.id IS NULL AND f.order_id IS NOT NULL";
 
-            try (Statement stmt = conn.createStatement();
+            try (Connection conn = MyConnection.openConnection();
+                 Statement stmt = conn.createStatement();
                  ResultSet rs = stmt.executeQuery(sql)) {
                 if (rs.next()) {
                     int count = rs.getInt("count");
@@ -202,7 +205,8 @@ public class MarketplaceDataConsistencyService {
                 "LEFT JOIN marketplace_escrow e ON d.escrow_id = e.id " +
                 "WHERE e.id IS NULL";
 
-            try (Statement stmt = conn.createStatement();
+            try (Connection conn = MyConnection.openConnection();
+                 Statement stmt = conn.createStatement();
                  ResultSet rs = stmt.executeQuery(sql)) {
                 if (rs.next()) {
                     int count = rs.getInt("count");
@@ -229,7 +233,8 @@ public class MarketplaceDataConsistencyService {
                 "LEFT JOIN wallet_transactions wt ON o.id = wt.order_id " +
                 "WHERE o.status = 'COMPLETED' AND wt.id IS NULL";
 
-            try (Statement stmt = conn.createStatement();
+            try (Connection conn = MyConnection.openConnection();
+                 Statement stmt = conn.createStatement();
                  ResultSet rs = stmt.executeQuery(sql)) {
                 if (rs.next()) {
                     int count = rs.getInt("count");
@@ -258,7 +263,8 @@ public class MarketplaceDataConsistencyService {
                 "WHERE created_at > DATE_SUB(NOW(), INTERVAL 1 MINUTE) " +
                 "GROUP BY buyer_id, listing_id HAVING cnt > 1) as dupes";
 
-            try (Statement stmt = conn.createStatement();
+            try (Connection conn = MyConnection.openConnection();
+                 Statement stmt = conn.createStatement();
                  ResultSet rs = stmt.executeQuery(sql)) {
                 if (rs.next()) {
                     int count = rs.getInt("count");
@@ -288,7 +294,8 @@ public class MarketplaceDataConsistencyService {
                 "LEFT JOIN wallet_transactions wt ON w.id = wt.wallet_id " +
                 "GROUP BY w.id HAVING ABS(w.available_credits - calculated) > 0.01";
 
-            try (Statement stmt = conn.createStatement();
+            try (Connection conn = MyConnection.openConnection();
+                 Statement stmt = conn.createStatement();
                  ResultSet rs = stmt.executeQuery(sql)) {
                 int count = 0;
                 while (rs.next()) {
@@ -15,10 +15,8 @@ import java.util.List;
 public class MarketplaceDisputeService {
     private static final String LOG_TAG = "[MarketplaceDisputeService]";
     private static MarketplaceDisputeService instance;
-    private Connection conn;
 
     private MarketplaceDisputeService() {
-        this.conn = MyConnection.getConnection();
     }
 
     public static MarketplaceDisputeService getInstance() {
@@ -33,14 +31,13 @@ public class MarketplaceDisputeService {
      */
     public int createDispute(Integer orderId, Integer tradeId, int escrowId, long reporterId, 
                             long reportedUserId, String disputeReason, String description) {
-        if (conn == null) return -1;
-
         String sql = "INSERT INTO marketplace_disputes " +
             "(order_id, trade_id, escrow_id, reporter_id, reported_user_id, " +
             "dispute_reason, description, resolution_type) " +
             "VALUES (?, ?, ?, ?, ?, ?, ?, 'PENDING')";
 
-        try (PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+        try (Connection conn = MyConnection.openConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
             stmt.setObject(1, orderId);
             stmt.setObject(2, tradeId);
             stmt.setInt(3, escrowId);
@@ -73,13 +70,12 @@ public class MarketplaceDisputeService {
      * Resolve dispute with admin decision
      */
     public boolean resolveDispute(int disputeId, String resolutionType, String adminNotes, long resolvedBy) {
-        if (conn == null) return false;
-
         String sql = "UPDATE marketplace_disputes SET " +
             "resolution_type = ?, admin_notes = ?, resolved_by = ?, resolved_at = NOW() " +
             "WHERE id = ?";
 
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (Connection conn = MyConnection.openConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setString(1, resolutionType);
             stmt.setString(2, adminNotes);
             stmt.setLong(3, resolvedBy);
@@ -131,11 +127,10 @@ public class MarketplaceDisputeService {
      * Get dispute by ID
      */
     public MarketplaceDispute getDisputeById(int disputeId) {
-        if (conn == null) return null;
-
         String sql = "SELECT * FROM marketplace_disputes WHERE id = ?";
 
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (Connection conn = MyConnection.openConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setInt(1, disputeId);
 
             try (ResultSet rs = stmt.executeQuery()) {
@@ -155,11 +150,11 @@ public class MarketplaceDisputeService {
      */
     public List<MarketplaceDispute> getDisputesByOrderId(int orderId) {
         List<MarketplaceDispute> disputes = new ArrayList<>();
-        if (conn == null) return disputes;
 
         String sql = "SELECT * FROM marketplace_disputes WHERE order_id = ? ORDER BY created_at DESC";
 
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (Connection conn = MyConnection.openConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setInt(1, orderId);
 
             try (ResultSet rs = stmt.executeQuery()) {
@@ -179,12 +174,12 @@ public class MarketplaceDisputeService {
      */
     public List<MarketplaceDispute> getPendingDisputes() {
         List<MarketplaceDispute> disputes = new ArrayList<>();
-        if (conn == null) return disputes;
 
         String sql = "SELECT * FROM marketplace_disputes WHERE resolution_type = 'PENDING' " +
             "ORDER BY created_at DESC";
 
-        try (PreparedStatement stmt = conn.prepareStatement(sql);
+        try (Connection conn = MyConnection.openConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql);
              ResultSet rs = stmt.executeQuery()) {
             
             while (rs.next()) {
@@ -202,11 +197,11 @@ public class MarketplaceDisputeService {
      */
     public List<MarketplaceDispute> getDisputesByReporter(long reporterId) {
         List<MarketplaceDispute> disputes = new ArrayList<>();
-        if (conn == null) return disputes;
 
         String sql = "SELECT * FROM marketplace_disputes WHERE reporter_id = ? ORDER BY created_at DESC";
 
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (Connection conn = MyConnection.openConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setLong(1, reporterId);
 
             try (ResultSet rs = stmt.executeQuery()) {
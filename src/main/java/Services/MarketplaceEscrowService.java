@@ -15,13 +15,11 @@ import java.util.List;
 public class MarketplaceEscrowService {
     private static final String LOG_TAG = "[MarketplaceEscrowService]";
     private static MarketplaceEscrowService instance;
-    private Connection conn;
     
     // 24-hour escrow hold period
     private static final int ESCROW_HOLD_HOURS = 24;
 
     private MarketplaceEscrowService() {
-        this.conn = MyConnection.getConnection();
     }
 
     public static MarketplaceEscrowService getInstance() {
@@ -36,13 +34,12 @@ public class MarketplaceEscrowService {
      */
     public int createEscrow(Integer orderId, Integer tradeId, long buyerId, long sellerId, 
                            double amountUsd, String stripeHoldId, String holdReason) {
-        if (conn == null) return -1;
-
         String sql = "INSERT INTO marketplace_escrow " +
             "(order_id, trade_id, buyer_id, seller_id, amount_usd, stripe_hold_id, " +
             "status, hold_reason) VALUES (?, ?, ?, ?, ?, ?, 'HELD', ?)";
 
-        try (PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+        try (Connection conn = MyConnection.openConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
             stmt.setObject(1, orderId);
             stmt.setObject(2, tradeId);
             stmt.setLong(3, buyerId);
@@ -72,12 +69,11 @@ public class MarketplaceEscrowService {
      * Release escrow to seller
      */
     public boolean releaseToSeller(int escrowId) {
-        if (conn == null) return false;
-
         String sql = "UPDATE marketplace_escrow SET status = 'RELEASED_TO_SELLER', " +
             "release_date = NOW() WHERE id = ? AND status = 'HELD'";
 
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (Connection conn = MyConnection.openConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setInt(1, escrowId);
             int updated = stmt.executeUpdate();
             
@@ -96,12 +92,11 @@ public class MarketplaceEscrowService {
      * Refund escrow to buyer
      */
     public boolean refundToBuyer(int escrowId) {
-        if (conn == null) return false;
-
         String sql = "UPDATE marketplace_escrow SET status = 'REFUNDED_TO_BUYER', " +
             "release_date = NOW() WHERE id = ? AND status IN ('HELD', 'DISPUTED')";
 
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (Connection conn = MyConnection.openConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setInt(1, escrowId);
             int updated = stmt.executeUpdate();
             
@@ -120,11 +115,10 @@ public class MarketplaceEscrowService {
      * Mark escrow as disputed
      */
     public boolean markDisputed(int escrowId) {
-        if (conn == null) return false;
-
         String sql = "UPDATE marketplace_escrow SET status = 'DISPUTED' WHERE id = ? AND status = 'HELD'";
 
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (Connection conn = MyConnection.openConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setInt(1, escrowId);
             return stmt.executeUpdate() > 0;
         } catch (SQLException e) {
@@ -138,11 +132,10 @@ public class MarketplaceEscrowService {
      * Get escrow by ID
      */
     public MarketplaceEscrow getEscrowById(int escrowId) {
-        if (conn == null) return null;
-
         String sql = "SELECT * FROM marketplace_escrow WHERE id = ?";
 
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (Connection conn = MyConnection.openConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setInt(1, escrowId);
 
             try (ResultSet rs = stmt.executeQuery()) {
@@ -161,11 +154,10 @@ public class MarketplaceEscrowService {
      * Get escrow by order ID
      */
     public MarketplaceEscrow getEscrowByOrderId(int orderId) {
-        if (conn == null) return null;
-
         String sql = "SELECT * FROM marketplace_escrow WHERE order_id = ? ORDER BY created_at DESC LIMIT 1";
 
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (Connection conn = MyConnection.openConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setInt(1, orderId);
 
             try (ResultSet rs = stmt.executeQuery()) {
@@ -185,12 +177,12 @@ public class MarketplaceEscrowService {
      */
     public List<MarketplaceEscrow> getExpiredEscrows() {
         List<MarketplaceEscrow> escrows = new ArrayList<>();
-        if (conn == null) return escrows;
 
         String sql = "SELECT * FROM marketplace_escrow " +
             "WHERE status = 'HELD' AND created_at < DATE_SUB(NOW(), INTERVAL ? HOUR)";
 
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (Connection conn = MyConnection.openConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setInt(1, ESCROW_HOLD_HOURS);
 
             try (ResultSet rs = stmt.executeQuery()) {
@@ -207,22 +199,12 @@ public class MarketplaceEscrowService {
 
     /**
      * Auto-release expired escrows to sellers
+     * Delegates to EscrowReleaseScheduler (due-date index, chunked and safe across instances)
+     *
+     * @return number of escrows released by this run
      */
     public int autoReleaseExpiredEscrows() {
-        List<MarketplaceEscrow> expired = getExpiredEscrows();
-        int released = 0;
-
-        for (MarketplaceEscrow escrow : expired) {
-            if (releaseToSeller(escrow.getId())) {
-                released++;
-            }
-        }
-
-        if (released > 0) {
-            System.out.println(LOG_TAG + " Auto-released " + released + " expired escrows");
-        }
-
-        return released;
+        return EscrowReleaseScheduler.getInstance().runOnce().released();
     }
 
     /**
@@ -16,13 +16,11 @@ import java.math.BigDecimal;
 public class MarketplaceFeeService {
     private static final String LOG_TAG = "[MarketplaceFeeService]";
     private static MarketplaceFeeService instance;
-    private Connection conn;
 
     // Platform fee percentage (e.g., 2.5% default)
     private static final BigDecimal DEFAULT_FEE_PERCENTAGE = new BigDecimal("2.5");
 
     private MarketplaceFeeService() {
-        this.conn = MyConnection.getConnection();
     }
 
     public static MarketplaceFeeService getInstance() {
@@ -37,15 +35,14 @@ public class MarketplaceFeeService {
      */
     public int recordFee(Integer orderId, Integer tradeId, long sellerId, BigDecimal transactionAmount,
                         BigDecimal feePercentage, String feeType) {
-        if (conn == null) return -1;
-
         BigDecimal feeAmount = transactionAmount.multiply(feePercentage).divide(new BigDecimal("100"));
 
         String sql = "INSERT INTO marketplace_fees " +
             "(order_id, trade_id, seller_id, transaction_amount, fee_percentage, fee_amount, fee_type) " +
             "VALUES (?, ?, ?, ?, ?, ?, ?)";
 
-        try (PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+        try (Connection conn = MyConnection.openConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
             stmt.setObject(1, orderId);
             stmt.setObject(2, tradeId);
             stmt.setLong(3, sellerId);
@@ -84,11 +81,11 @@ public class MarketplaceFeeService {
      */
     public List<MarketplaceFee> getFeesByOrder(int orderId) {
         List<MarketplaceFee> fees = new ArrayList<>();
-        if (conn == null) return fees;
 
         String sql = "SELECT * FROM marketplace_fees WHERE order_id = ?";
 
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (Connection conn = MyConnection.openConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setInt(1, orderId);
 
             try (ResultSet rs = stmt.executeQuery()) {
@@ -108,11 +105,11 @@ public class MarketplaceFeeService {
      */
     public List<MarketplaceFee> getFeesBySeller(long sellerId) {
         List<MarketplaceFee> fees = new ArrayList<>();
-        if (conn == null) return fees;
 
         String sql = "SELECT * FROM marketplace_fees WHERE seller_id = ? ORDER BY created_at DESC";
 
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (Connection conn = MyConnection.openConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setLong(1, sellerId);
 
             try (ResultSet rs = stmt.executeQuery()) {
@@ -131,11 +128,10 @@ public class MarketplaceFeeService {
      * Get total fees collected (all-time)
      */
     public BigDecimal getTotalFeesCollected() {
-        if (conn == null) return BigDecimal.ZERO;
-
         String sql = "SELECT COALESCE(SUM(fee_amount), 0) as total FROM marketplace_fees";
 
-        try (PreparedStatement stmt = conn.prepareStatement(sql);
+        try (Connection conn = MyConnection.openConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql);
              ResultSet rs = stmt.executeQuery()) {
             
             if (rs.next()) {
@@ -152,12 +148,11 @@ public class MarketplaceFeeService {
      * Get total fees for a time period
      */
     public BigDecimal getFeesForPeriod(LocalDateTime startDate, LocalDateTime endDate) {
-        if (conn == null) return BigDecimal.ZERO;
-
         String sql = "SELECT COALESCE(SUM(fee_amount), 0) as total FROM marketplace_fees " +
             "WHERE created_at BETWEEN ? AND ?";
 
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (Connection conn = MyConnection.openConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setTimestamp(1, Timestamp.valueOf(startDate));
             stmt.setTimestamp(2, Timestamp.valueOf(endDate));
 
@@ -178,11 +173,11 @@ public class MarketplaceFeeService {
      */
     public List<MarketplaceFee> getFeesByType(String feeType) {
         List<MarketplaceFee> fees = new ArrayList<>();
-        if (conn == null) return fees;
 
         String sql = "SELECT * FROM marketplace_fees WHERE fee_type = ? ORDER BY created_at DESC";
 
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (Connection conn = MyConnection.openConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setString(1, feeType);
 
             try (ResultSet rs = stmt.executeQuery()) {
@@ -202,7 +197,6 @@ public class MarketplaceFeeService {
      */
     public List<MonthlyFeeSummary> getMonthlyFeeSummary(int year) {
         List<MonthlyFeeSummary> summaries = new ArrayList<>();
-        if (conn == null) return summaries;
 
         String sql = "SELECT " +
             "MONTH(created_at) as month, " +
@@ -214,7 +208,8 @@ public class MarketplaceFeeService {
             "GROUP BY MONTH(created_at) " +
             "ORDER BY month";
 
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (Connection conn = MyConnection.openConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setInt(1, year);
 
             try (ResultSet rs = stmt.executeQuery()) {
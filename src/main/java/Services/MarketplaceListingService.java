@@ -3,6 +3,7 @@ package Services;
 import Models.MarketplaceListing;
 import DataBase.MyConnection;
 
+import java.nio.charset.StandardCharsets;
 import java.sql.*;
 import java.util.*;
 
@@ -13,10 +14,16 @@ import java.util.*;
 public class MarketplaceListingService {
     private static final String LOG_TAG = "[MarketplaceListingService]";
     private static MarketplaceListingService instance;
-    private Connection conn;
+
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int MAX_PAGE_SIZE = 1000;
+
+    // Columns shown by the marketplace table and /api/marketplace/listings (no description TEXT)
+    private static final String LISTING_COLUMNS =
+        "id, seller_id, asset_type, wallet_id, quantity_or_id, price_per_unit, min_price_usd, " +
+        "auto_accept_price_usd, total_price_usd, status, minimum_buyer_rating, created_at, expires_at";
 
     private MarketplaceListingService() {
-        this.conn = MyConnection.getConnection();
     }
 
     public static MarketplaceListingService getInstance() {
@@ -35,14 +42,13 @@ public class MarketplaceListingService {
         int listingId = -1;
 
         try {
-            if (conn == null) return listingId;
-
             String sql = "INSERT INTO marketplace_listings " +
                     "(seller_id, asset_type, wallet_id, quantity_or_id, price_per_unit, " +
                     "min_price_usd, auto_accept_price_usd, description, status) " +
                     "VALUES (?, ?, ?, ?, ?, ?, ?, ?, 'ACTIVE')";
 
-            try (PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            try (Connection conn = MyConnection.openConnection();
+                 PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
                 stmt.setInt(1, sellerId);
                 stmt.setString(2, assetType);
                 stmt.setObject(3, walletId);
@@ -61,6 +67,7 @@ public class MarketplaceListingService {
                 try (ResultSet rs = stmt.getGeneratedKeys()) {
                     if (rs.next()) {
                         listingId = rs.getInt(1);
+                        OrderBookService.getInstance().invalidate(assetType);
                         System.out.println(LOG_TAG + " Listing created: ID " + listingId + 
                             " by seller " + sellerId);
                     }
@@ -78,10 +85,9 @@ public class MarketplaceListingService {
      */
     public MarketplaceListing getListingById(int listingId) {
         try {
-            if (conn == null) return null;
-
             String sql = "SELECT * FROM marketplace_listings WHERE id = ?";
-            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            try (Connection conn = MyConnection.openConnection();
+                 PreparedStatement stmt = conn.prepareStatement(sql)) {
                 stmt.setInt(1, listingId);
 
                 try (ResultSet rs = stmt.executeQuery()) {
@@ -98,50 +104,120 @@ public class MarketplaceListingService {
     }
 
     /**
-     * Get active listings with optional filters
+     * Get active listings with optional filters (first {@code limit} rows, newest first)
      */
     public List<MarketplaceListing> searchListings(String assetType, Double minPrice, 
                                                     Double maxPrice, int limit) {
-        List<MarketplaceListing> listings = new ArrayList<>();
+        return searchListingsPage(assetType, minPrice, maxPrice, null, limit).listings();
+    }
 
-        try {
-            if (conn == null) return listings;
+    /**
+     * Keyset-paginated search over active listings, newest first.
+     *
+     * Filters are bound parameters (one cached plan per filter combination) and only the browse
+     * columns are read, see {@link #LISTING_COLUMNS}. Pages are delimited by the (created_at, id)
+     * of the last row instead of an OFFSET, so page N costs the same as page 1.
+     *
+     * @param cursor   {@link ListingPage#nextCursor()} of the previous page, null for the first page
+     * @param pageSize Rows per page (1..{@value #MAX_PAGE_SIZE})
+     * @throws IllegalArgumentException if {@code cursor} is not a cursor returned by this method
+     */
+    public ListingPage searchListingsPage(String assetType, Double minPrice, Double maxPrice,
+                                         String cursor, int pageSize) {
+        int size = Math.max(1, Math.min(pageSize, MAX_PAGE_SIZE));
+        List<MarketplaceListing> listings = new ArrayList<>();
+        List<Object> params = new ArrayList<>();
 
-            StringBuilder sql = new StringBuilder(
-                "SELECT * FROM marketplace_listings WHERE status = 'ACTIVE' AND expires_at IS NULL"
-            );
+        StringBuilder sql = new StringBuilder("SELECT ").append(LISTING_COLUMNS)
+            .append(" FROM marketplace_listings WHERE status = 'ACTIVE' AND expires_at IS NULL");
 
-            if (assetType != null && !assetType.isEmpty()) {
-                sql.append(" AND asset_type = '").append(assetType).append("'");
-            }
-            if (minPrice != null) {
-                sql.append(" AND price_per_unit >= ").append(minPrice);
-            }
-            if (maxPrice != null) {
-                sql.append(" AND price_per_unit <= ").append(maxPrice);
-            }
+        if (assetType != null && !assetType.isEmpty()) {
+            sql.append(" AND asset_type = ?");
+            params.add(assetType);
+        }
+        if (minPrice != null) {
+            sql.append(" AND price_per_unit >= ?");
+            params.add(minPrice);
+        }
+        if (maxPrice != null) {
+            sql.append(" AND price_per_unit <= ?");
+            params.add(maxPrice);
+        }
 
-            sql.append(" ORDER BY created_at DESC LIMIT ").append(limit);
+        ListingCursor after = ListingCursor.decode(cursor);
+        if (after != null) {
+            sql.append(" AND (created_at < ? OR (created_at = ? AND id < ?))");
+            params.add(after.createdAt());
+            params.add(after.createdAt());
+            params.add(after.id());
+        }
 
-            try (Statement stmt = conn.createStatement();
-                 ResultSet rs = stmt.executeQuery(sql.toString())) {
+        // One extra row tells whether there is a next page
+        sql.append(" ORDER BY created_at DESC, id DESC LIMIT ?");
+        params.add(size + 1);
 
+        try (Connection conn = MyConnection.openConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+            for (int i = 0; i < params.size(); i++) {
+                stmt.setObject(i + 1, params.get(i));
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
-                    listings.add(mapResultToListing(rs));
+                    listings.add(mapResultToListingSummary(rs));
                 }
             }
         } catch (SQLException e) {
             System.err.println(LOG_TAG + " ERROR searching listings: " + e.getMessage());
         }
 
-        return listings;
+        boolean hasMore = listings.size() > size;
+        if (hasMore) {
+            listings.remove(size);
+        }
+        String nextCursor = null;
+        if (hasMore) {
+            MarketplaceListing last = listings.get(listings.size() - 1);
+            nextCursor = new ListingCursor(last.getCreatedAt(), last.getId()).encode();
+        }
+        return new ListingPage(listings, nextCursor, hasMore);
     }
 
     /**
-     * Get all active listings (marketplace browse)
+     * One page of {@link #searchListingsPage}. {@code nextCursor} is null on the last page.
+     */
+    public record ListingPage(List<MarketplaceListing> listings, String nextCursor, boolean hasMore) {
+    }
+
+    /**
+     * Position after the last row of a page, encoded as an opaque URL-safe token.
+     */
+    private record ListingCursor(Timestamp createdAt, int id) {
+
+        String encode() {
+            String raw = createdAt.getTime() + ":" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static ListingCursor decode(String cursor) {
+            if (cursor == null || cursor.isBlank()) {
+                return null;
+            }
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int idx = raw.indexOf(':');
+                return new ListingCursor(new Timestamp(Long.parseLong(raw.substring(0, idx))),
+                                         Integer.parseInt(raw.substring(idx + 1)));
+            } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+                throw new IllegalArgumentException("Invalid listing cursor: " + cursor, e);
+            }
+        }
+    }
+
+    /**
+     * Get active listings (marketplace browse): first keyset page, see {@link #searchListingsPage}
      */
     public List<MarketplaceListing> getActiveListings() {
-        return searchListings(null, null, null, 1000);
+        return searchListings(null, null, null, DEFAULT_PAGE_SIZE);
     }
 
     /**
@@ -151,12 +227,11 @@ public class MarketplaceListingService {
         List<MarketplaceListing> listings = new ArrayList<>();
 
         try {
-            if (conn == null) return listings;
-
             String sql = "SELECT * FROM marketplace_listings WHERE seller_id = ? " +
                     "ORDER BY created_at DESC";
 
-            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            try (Connection conn = MyConnection.openConnection();
+                 PreparedStatement stmt = conn.prepareStatement(sql)) {
                 stmt.setInt(1, sellerId);
 
                 try (ResultSet rs = stmt.executeQuery()) {
@@ -177,12 +252,11 @@ public class MarketplaceListingService {
      */
     public boolean updateListing(int listingId, double newQuantity, double newPrice) {
         try {
-            if (conn == null) return false;
-
             String sql = "UPDATE marketplace_listings " +
                     "SET quantity_or_id = ?, price_per_unit = ?, updated_at = NOW() WHERE id = ?";
 
-            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            try (Connection conn = MyConnection.openConnection();
+                 PreparedStatement stmt = conn.prepareStatement(sql)) {
                 stmt.setDouble(1, newQuantity);
                 stmt.setDouble(2, newPrice);
                 stmt.setInt(3, listingId);
@@ -190,6 +264,7 @@ public class MarketplaceListingService {
                 int updated = stmt.executeUpdate();
                 if (updated > 0) {
                     System.out.println(LOG_TAG + " Listing " + listingId + " updated");
+                    OrderBookService.getInstance().invalidateAll();
                     return true;
                 }
             }
@@ -208,15 +283,14 @@ public class MarketplaceListingService {
      */
     public boolean updateListingPrice(int listingId, double newPrice, Double minPrice, Double autoAcceptPrice) {
         try {
-            if (conn == null) return false;
-
             String sql = "UPDATE marketplace_listings SET " +
                 "price_per_unit = ?, " +
                 "min_price_usd = ?, " +
                 "auto_accept_price_usd = ?, " +
                 "updated_at = NOW() WHERE id = ?";
 
-            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            try (Connection conn = MyConnection.openConnection();
+                 PreparedStatement stmt = conn.prepareStatement(sql)) {
                 stmt.setDouble(1, newPrice);
                 stmt.setObject(2, minPrice);
                 stmt.setObject(3, autoAcceptPrice);
@@ -225,6 +299,7 @@ public class MarketplaceListingService {
                 int updated = stmt.executeUpdate();
                 if (updated > 0) {
                     System.out.println(LOG_TAG + " Listing " + listingId + " price updated to $" + newPrice);
+                    OrderBookService.getInstance().invalidateAll();
                     return true;
                 }
             }
@@ -240,11 +315,10 @@ public class MarketplaceListingService {
      */
     public boolean updateListingDescription(int listingId, String description) {
         try {
-            if (conn == null) return false;
-
             String sql = "UPDATE marketplace_listings SET description = ?, updated_at = NOW() WHERE id = ?";
 
-            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            try (Connection conn = MyConnection.openConnection();
+                 PreparedStatement stmt = conn.prepareStatement(sql)) {
                 stmt.setString(1, description);
                 stmt.setInt(2, listingId);
 
@@ -277,17 +351,17 @@ public class MarketplaceListingService {
      */
     private boolean updateListingStatus(int listingId, String newStatus) {
         try {
-            if (conn == null) return false;
-
             String sql = "UPDATE marketplace_listings SET status = ?, updated_at = NOW() WHERE id = ?";
 
-            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            try (Connection conn = MyConnection.openConnection();
+                 PreparedStatement stmt = conn.prepareStatement(sql)) {
                 stmt.setString(1, newStatus);
                 stmt.setInt(2, listingId);
 
                 int updated = stmt.executeUpdate();
                 if (updated > 0) {
                     System.out.println(LOG_TAG + " Listing " + listingId + " status changed to " + newStatus);
+                    OrderBookService.getInstance().invalidateAll();
                     return true;
                 }
             }
@@ -299,17 +373,40 @@ public class MarketplaceListingService {
     }
 
     /**
-     * Get listings by asset type
+     * Get listings by asset type (first keyset page)
      */
     public List<MarketplaceListing> getListingsByAsset(String assetType) {
-        return searchListings(assetType, null, null, 1000);
+        return searchListings(assetType, null, null, DEFAULT_PAGE_SIZE);
     }
 
     /**
-     * Get listings in price range
+     * Get listings in price range (first keyset page)
      */
     public List<MarketplaceListing> getListingsPriceRange(double minPrice, double maxPrice) {
-        return searchListings(null, minPrice, maxPrice, 1000);
+        return searchListings(null, minPrice, maxPrice, DEFAULT_PAGE_SIZE);
+    }
+
+    /**
+     * Map a {@link #LISTING_COLUMNS} row (search results) to MarketplaceListing
+     */
+    private MarketplaceListing mapResultToListingSummary(ResultSet rs) throws SQLException {
+        MarketplaceListing listing = new MarketplaceListing();
+        listing.setId(rs.getInt("id"));
+        listing.setSellerId(rs.getInt("seller_id"));
+        listing.setAssetType(rs.getString("asset_type"));
+        listing.setWalletId(rs.getObject("wallet_id") != null ? rs.getInt("wallet_id") : null);
+        listing.setQuantityOrTokens(rs.getDouble("quantity_or_id"));
+        listing.setPricePerUnit(rs.getDouble("price_per_unit"));
+        Object minPrice = rs.getObject("min_price_usd");
+        listing.setMinPriceUsd(minPrice != null ? rs.getDouble("min_price_usd") : null);
+        Object autoAccept = rs.getObject("auto_accept_price_usd");
+        listing.setAutoAcceptPriceUsd(autoAccept != null ? rs.getDouble("auto_accept_price_usd") : null);
+        listing.setTotalPriceUsd(rs.getDouble("total_price_usd"));
+        listing.setStatus(rs.getString("status"));
+        listing.setMinimumBuyerRating(rs.getInt("minimum_buyer_rating"));
+        listing.setCreatedAt(rs.getTimestamp("created_at"));
+        listing.setExpiresAt(rs.getTimestamp("expires_at"));
+        return listing;
     }
 
     /**
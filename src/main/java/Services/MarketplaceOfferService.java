@@ -14,12 +14,10 @@ import java.util.List;
 public class MarketplaceOfferService {
     private static final String LOG_TAG = "[MarketplaceOfferService]";
     private static MarketplaceOfferService instance;
-    private Connection conn;
 
     private final MarketplaceListingService listingService = MarketplaceListingService.getInstance();
 
     private MarketplaceOfferService() {
-        this.conn = MyConnection.getConnection();
     }
 
     public static MarketplaceOfferService getInstance() {
@@ -30,8 +28,6 @@ public class MarketplaceOfferService {
     }
 
     public int createOffer(int listingId, long buyerId, double quantity, double offerPriceUsd) {
-        if (conn == null) return -1;
-
         MarketplaceListing listing = listingService.getListingById(listingId);
         if (listing == null || !"ACTIVE".equals(listing.getStatus())) {
             System.err.println(LOG_TAG + " Listing not active");
@@ -52,7 +48,8 @@ public class MarketplaceOfferService {
             "(listing_id, buyer_id, seller_id, quantity, offer_price_usd, status) " +
             "VALUES (?, ?, ?, ?, ?, ?)";
 
-        try (PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+        try (Connection conn = MyConnection.openConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
             stmt.setInt(1, listingId);
             stmt.setLong(2, buyerId);
             stmt.setLong(3, listing.getSellerId());
@@ -63,6 +60,7 @@ public class MarketplaceOfferService {
 
             try (ResultSet rs = stmt.getGeneratedKeys()) {
                 if (rs.next()) {
+                    OrderBookService.getInstance().invalidate(listing.getAssetType());
                     return rs.getInt(1);
                 }
             }
@@ -86,7 +84,8 @@ public class MarketplaceOfferService {
                 "WHERE listing_id = ? AND buyer_id = ? AND status = 'ACCEPTED' " +
                 "ORDER BY updated_at DESC LIMIT 1";
 
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (Connection conn = MyConnection.openConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setInt(1, listingId);
             stmt.setLong(2, buyerId);
 
@@ -116,10 +115,15 @@ public class MarketplaceOfferService {
     public boolean cancelOffer(int offerId, long buyerId) {
         String sql = "UPDATE marketplace_offers SET status = 'CANCELLED' " +
                 "WHERE id = ? AND buyer_id = ?";
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (Connection conn = MyConnection.openConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setInt(1, offerId);
             stmt.setLong(2, buyerId);
-            return stmt.executeUpdate() > 0;
+            boolean cancelled = stmt.executeUpdate() > 0;
+            if (cancelled) {
+                OrderBookService.getInstance().invalidateAll();
+            }
+            return cancelled;
         } catch (SQLException e) {
             System.err.println(LOG_TAG + " ERROR cancelling offer: " + e.getMessage());
         }
@@ -132,7 +136,8 @@ public class MarketplaceOfferService {
 
     private boolean updateOfferStatus(int offerId, String status, Double counterPrice) {
         String sql = "UPDATE marketplace_offers SET status = ?, counter_price_usd = ? WHERE id = ?";
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (Connection conn = MyConnection.openConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setString(1, status);
             if (counterPrice != null) {
                 stmt.setDouble(2, counterPrice);
@@ -140,7 +145,11 @@ public class MarketplaceOfferService {
                 stmt.setNull(2, Types.DECIMAL);
             }
             stmt.setInt(3, offerId);
-            return stmt.executeUpdate() > 0;
+            boolean updated = stmt.executeUpdate() > 0;
+            if (updated) {
+                OrderBookService.getInstance().invalidateAll();
+            }
+            return updated;
         } catch (SQLException e) {
             System.err.println(LOG_TAG + " ERROR updating offer: " + e.getMessage());
         }
@@ -151,7 +160,8 @@ public class MarketplaceOfferService {
         List<MarketplaceOffer> offers = new ArrayList<>();
         String sql = "SELECT * FROM marketplace_offers WHERE " + column + " = ? ORDER BY created_at DESC";
 
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (Connection conn = MyConnection.openConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setLong(1, userId);
 
             try (ResultSet rs = stmt.executeQuery()) {
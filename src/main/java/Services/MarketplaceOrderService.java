@@ -5,6 +5,7 @@ import Services.BatchEventService;
 import Models.BatchEventType;
 import Models.CarbonCreditBatch;
 import DataBase.MyConnection;
+import DataBase.TransactionTemplate;
 
 import java.sql.*;
 import java.util.*;
@@ -16,10 +17,12 @@ import java.util.*;
 public class MarketplaceOrderService {
     private static final String LOG_TAG = "[MarketplaceOrderService]";
     private static MarketplaceOrderService instance;
-    private Connection conn;
     // Payment threshold: orders >= $10,000 go through escrow with verification
     // Orders < $10,000 processed instantly
     private static final double ESCROW_THRESHOLD_USD = 10000.0;
+    // Escrow hold period before automatic release, and the platform fee taken on release
+    static final int ESCROW_HOLD_HOURS = 24;
+    private static final double ESCROW_PLATFORM_FEE_RATE = 0.03;
 
 
     private final StripePaymentService stripeService;
@@ -27,7 +30,6 @@ public class MarketplaceOrderService {
     private final MarketplaceListingService listingService;
 
     private MarketplaceOrderService() {
-        this.conn = MyConnection.getConnection();
         this.stripeService = StripePaymentService.getInstance();
         this.pricingService = CarbonPricingService.getInstance();
         this.listingService = MarketplaceListingService.getInstance();
@@ -43,325 +45,287 @@ public class MarketplaceOrderService {
     /**
      * Place an order from a marketplace listing
      * Creates order and initiates payment processing
+     *
+     * Without the payment outbox the Stripe payment intent is created inside the order
+     * transaction: the order is only committed once the payment has been initiated, and rolled
+     * back if it cannot be. The listing is read before the transaction starts so that only one
+     * pooled connection is held at a time.
      */
     public int placeOrder(int listingId, int buyerId, double quantity) {
-        int orderId = -1;
-
-        if (conn == null) {
-            System.err.println(LOG_TAG + " ERROR: Database connection is null");
-            return orderId;
+        if (PaymentOutboxService.getInstance().isEnabled()) {
+            return placeOrderWithOutbox(listingId, buyerId, quantity);
         }
 
-        boolean originalAutoCommit = true;
-        try {
-            // Save original autocommit state and disable it
-            originalAutoCommit = conn.getAutoCommit();
-            conn.setAutoCommit(false);
-
-            try {
-                // Fetch listing
-                var listing = listingService.getListingById(listingId);
-                if (listing == null || !"ACTIVE".equals(listing.getStatus())) {
-                    System.err.println(LOG_TAG + " ERROR: Listing not active");
-                    conn.rollback();
-                    return orderId;
-                }
-
-                // Calculate amounts
-                double unitPrice = listing.getPricePerUnit();
-                double totalAmount = quantity * unitPrice;
-                double platformFee = stripeService.calculatePlatformFee(totalAmount);
-
-                // Determine payment flow based on amount
-                boolean requiresEscrow = totalAmount >= ESCROW_THRESHOLD_USD;
-                String initialStatus = requiresEscrow ? "PENDING" : "PENDING";
-                
-                System.out.println(LOG_TAG + String.format(" Order amount: $%.2f - %s", 
-                    totalAmount, requiresEscrow ? "REQUIRES ESCROW" : "INSTANT PAYMENT"));
-
-                // Create order in database with appropriate status
-                String sql = "INSERT INTO marketplace_orders " +
-                    "(listing_id, buyer_id, seller_id, quantity, unit_price_usd, total_amount_usd, status) " +
-                    "VALUES (?, ?, ?, ?, ?, ?, ?)";
+        // Fetch listing
+        var listing = listingService.getListingById(listingId);
+        if (listing == null || !"ACTIVE".equals(listing.getStatus())) {
+            System.err.println(LOG_TAG + " ERROR: Listing not active");
+            return -1;
+        }
 
-                try (PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-                    stmt.setInt(1, listingId);
-                    stmt.setInt(2, buyerId);
-                    stmt.setInt(3, listing.getSellerId());
-                    stmt.setDouble(4, quantity);
-                    stmt.setDouble(5, unitPrice);
-                    stmt.setDouble(6, totalAmount);
-                    stmt.setString(7, initialStatus);
+        // Calculate amounts
+        double unitPrice = listing.getPricePerUnit();
+        double totalAmount = quantity * unitPrice;
 
+        // Determine payment flow based on amount
+        boolean requiresEscrow = totalAmount >= ESCROW_THRESHOLD_USD;
 
-                    stmt.executeUpdate();
+        System.out.println(LOG_TAG + String.format(" Order amount: $%.2f - %s", 
+            totalAmount, requiresEscrow ? "REQUIRES ESCROW" : "INSTANT PAYMENT"));
 
-                    try (ResultSet rs = stmt.getGeneratedKeys()) {
-                        if (rs.next()) {
-                            orderId = rs.getInt(1);
-                        }
-                    }
-                }
+        try {
+            // Single attempt: a deadlock retry would create a second payment intent
+            int orderId = TransactionTemplate.execute(1, conn -> {
+                int id = insertPendingOrder(conn, listingId, buyerId, listing.getSellerId(), quantity, unitPrice);
 
                 // Initiate Stripe payment
                 String description = String.format(
                     "Marketplace Order #%d - %.2f tCO2e @ $%.2f/ton%s",
-                    orderId, quantity, unitPrice,
+                    id, quantity, unitPrice,
                     requiresEscrow ? " [ESCROW REQUIRED]" : ""
                 );
 
                 var paymentIntent = stripeService.initiatePayment(
-                    orderId, totalAmount, buyerId, listing.getSellerId(), description
+                    id, totalAmount, buyerId, listing.getSellerId(), description
                 );
-
-                if (paymentIntent != null) {
-                    // Update order status based on flow type
-                    String newStatus = requiresEscrow ? "PAYMENT_PROCESSING" : "PAYMENT_PROCESSING";
-                    String updateSql = "UPDATE marketplace_orders SET status = ? WHERE id = ?";
-                    try (PreparedStatement stmt = conn.prepareStatement(updateSql)) {
-                        stmt.setString(1, newStatus);
-                        stmt.setInt(2, orderId);
-                        stmt.executeUpdate();
-                    }
-
-                    conn.commit();
-                    System.out.println(LOG_TAG + String.format(
-                        " Order placed: ID %d | Buyer: %d | Amount: $%.2f | Flow: %s",
-                        orderId, buyerId, totalAmount, 
-                        requiresEscrow ? "ESCROW" : "INSTANT"));
-                    return orderId;
-                } else {
-                    conn.rollback();
-                    System.err.println(LOG_TAG + " ERROR: Payment initiation failed");
+                if (paymentIntent == null) {
+                    TransactionTemplate.setRollbackOnly(conn);
                     return -1;
                 }
 
-            } catch (SQLException e) {
-                try {
-                    conn.rollback();
-                } catch (SQLException rollbackEx) {
-                    System.err.println(LOG_TAG + " ERROR: Rollback failed: " + rollbackEx.getMessage());
+                String updateSql = "UPDATE marketplace_orders SET status = 'PAYMENT_PROCESSING' WHERE id = ?";
+                try (PreparedStatement stmt = conn.prepareStatement(updateSql)) {
+                    stmt.setInt(1, id);
+                    stmt.executeUpdate();
                 }
-                System.err.println(LOG_TAG + " ERROR placing order: " + e.getMessage());
-                return orderId;
+                return id;
+            });
+
+            if (orderId <= 0) {
+                System.err.println(LOG_TAG + " ERROR: Payment initiation failed");
+                return -1;
             }
-        } catch (SQLException e) {
-            System.err.println(LOG_TAG + " ERROR: Database transaction setup failed: " + e.getMessage());
+            System.out.println(LOG_TAG + String.format(
+                " Order placed: ID %d | Buyer: %d | Amount: $%.2f | Flow: %s",
+                orderId, buyerId, totalAmount, 
+                requiresEscrow ? "ESCROW" : "INSTANT"));
             return orderId;
-        } finally {
-            // Always restore original autocommit state
-            try {
-                if (conn != null && !conn.isClosed()) {
-                    conn.setAutoCommit(originalAutoCommit);
+        } catch (SQLException e) {
+            System.err.println(LOG_TAG + " ERROR placing order: " + e.getMessage());
+            return -1;
+        }
+    }
+
+    /**
+     * Insert a PENDING order on the caller's transaction.
+     *
+     * @return the order ID
+     */
+    private static int insertPendingOrder(Connection conn, int listingId, int buyerId, int sellerId,
+                                          double quantity, double unitPrice) throws SQLException {
+        String sql = "INSERT INTO marketplace_orders " +
+            "(listing_id, buyer_id, seller_id, quantity, unit_price_usd, total_amount_usd, status) " +
+            "VALUES (?, ?, ?, ?, ?, ?, 'PENDING')";
+        try (PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            stmt.setInt(1, listingId);
+            stmt.setInt(2, buyerId);
+            stmt.setInt(3, sellerId);
+            stmt.setDouble(4, quantity);
+            stmt.setDouble(5, unitPrice);
+            stmt.setDouble(6, quantity * unitPrice);
+            stmt.executeUpdate();
+            try (ResultSet rs = stmt.getGeneratedKeys()) {
+                if (rs.next()) {
+                    return rs.getInt(1);
                 }
-            } catch (SQLException e) {
-                System.err.println(LOG_TAG + " ERROR: Failed to restore autocommit state: " + e.getMessage());
             }
         }
+        throw new SQLException("No order ID generated");
     }
 
     /**
-     * Create an order from an accepted offer with negotiated unit price.
-     * This method only creates the order record; payment is handled separately.
+     * Outbox flow: the order (PENDING) and its payment_outbox row are committed together and the
+     * Stripe payment intent is created afterwards by PaymentOutboxService, which moves the order to
+     * PAYMENT_PROCESSING (or CANCELLED if the payment cannot be initiated).
+     *
+     * @return the order ID once committed, -1 on failure
      */
-    public int createOrderFromOffer(int listingId, int buyerId, int sellerId, double quantity, double unitPrice) {
-        int orderId = -1;
-
-        if (conn == null) {
-            System.err.println(LOG_TAG + " ERROR: Database connection is null");
-            return orderId;
+    private int placeOrderWithOutbox(int listingId, int buyerId, double quantity) {
+        var listing = listingService.getListingById(listingId);
+        if (listing == null || !"ACTIVE".equals(listing.getStatus())) {
+            System.err.println(LOG_TAG + " ERROR: Listing not active");
+            return -1;
         }
 
-        boolean originalAutoCommit = true;
-        try {
-            // Save original autocommit state and disable it
-            originalAutoCommit = conn.getAutoCommit();
-            conn.setAutoCommit(false);
-
-            try {
-                var listing = listingService.getListingById(listingId);
-                if (listing == null || !"ACTIVE".equals(listing.getStatus())) {
-                    System.err.println(LOG_TAG + " ERROR: Listing not active for offer order");
-                    conn.rollback();
-                    return orderId;
-                }
-
-                double totalAmount = quantity * unitPrice;
+        double unitPrice = listing.getPricePerUnit();
+        double totalAmount = quantity * unitPrice;
+        boolean requiresEscrow = totalAmount >= ESCROW_THRESHOLD_USD;
+        System.out.println(LOG_TAG + String.format(" Order amount: $%.2f - %s",
+            totalAmount, requiresEscrow ? "REQUIRES ESCROW" : "INSTANT PAYMENT"));
 
-                String sql = "INSERT INTO marketplace_orders " +
-                    "(listing_id, buyer_id, seller_id, quantity, unit_price_usd, total_amount_usd, status) " +
-                    "VALUES (?, ?, ?, ?, ?, ?, ?)";
+        try {
+            int orderId = TransactionTemplate.execute(conn -> {
+                int id = insertPendingOrder(conn, listingId, buyerId, listing.getSellerId(), quantity, unitPrice);
 
-                try (PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-                    stmt.setInt(1, listingId);
-                    stmt.setInt(2, buyerId);
-                    stmt.setInt(3, sellerId);
-                    stmt.setDouble(4, quantity);
-                    stmt.setDouble(5, unitPrice);
-                    stmt.setDouble(6, totalAmount);
-                    stmt.setString(7, "PENDING");
-                    stmt.executeUpdate();
+                String description = String.format(
+                    "Marketplace Order #%d - %.2f tCO2e @ $%.2f/ton%s",
+                    id, quantity, unitPrice,
+                    requiresEscrow ? " [ESCROW REQUIRED]" : ""
+                );
+                PaymentOutboxService.getInstance().enqueue(
+                    conn, id, totalAmount, buyerId, listing.getSellerId(), description);
+                return id;
+            });
+
+            System.out.println(LOG_TAG + String.format(
+                " Order placed: ID %d | Buyer: %d | Amount: $%.2f | Flow: %s | payment queued",
+                orderId, buyerId, totalAmount,
+                requiresEscrow ? "ESCROW" : "INSTANT"));
+            return orderId;
+        } catch (SQLException e) {
+            System.err.println(LOG_TAG + " ERROR placing order: " + e.getMessage());
+            return -1;
+        }
+    }
 
-                    try (ResultSet rs = stmt.getGeneratedKeys()) {
-                        if (rs.next()) {
-                            orderId = rs.getInt(1);
-                        }
-                    }
-                }
+    /**
+     * Create an order from an accepted offer with negotiated unit price.
+     * This method only creates the order record; payment is handled separately.
+     */
+    public int createOrderFromOffer(int listingId, int buyerId, int sellerId, double quantity, double unitPrice) {
+        var listing = listingService.getListingById(listingId);
+        if (listing == null || !"ACTIVE".equals(listing.getStatus())) {
+            System.err.println(LOG_TAG + " ERROR: Listing not active for offer order");
+            return -1;
+        }
 
-                conn.commit();
-                System.out.println(LOG_TAG + String.format(
-                    " Offer order created: ID %d | Buyer: %d | Seller: %d | Qty: %.2f | Unit: $%.2f",
-                    orderId, buyerId, sellerId, quantity, unitPrice
-                ));
-                return orderId;
-
-            } catch (SQLException e) {
-                try {
-                    conn.rollback();
-                } catch (SQLException rollbackEx) {
-                    System.err.println(LOG_TAG + " ERROR: Rollback failed: " + rollbackEx.getMessage());
-                }
-                System.err.println(LOG_TAG + " ERROR creating offer order: " + e.getMessage());
-                return orderId;
-            }
-        } catch (SQLException e) {
-            System.err.println(LOG_TAG + " ERROR: Database transaction setup failed: " + e.getMessage());
+        try {
+            int orderId = TransactionTemplate.execute(conn ->
+                insertPendingOrder(conn, listingId, buyerId, sellerId, quantity, unitPrice));
+            System.out.println(LOG_TAG + String.format(
+                " Offer order created: ID %d | Buyer: %d | Seller: %d | Qty: %.2f | Unit: $%.2f",
+                orderId, buyerId, sellerId, quantity, unitPrice
+            ));
             return orderId;
-        } finally {
-            // Always restore original autocommit state
-            try {
-                if (conn != null && !conn.isClosed()) {
-                    conn.setAutoCommit(originalAutoCommit);
-                }
-            } catch (SQLException e) {
-                System.err.println(LOG_TAG + " ERROR: Failed to restore autocommit state: " + e.getMessage());
-            }
+        } catch (SQLException e) {
+            System.err.println(LOG_TAG + " ERROR creating offer order: " + e.getMessage());
+            return -1;
         }
     }
 
     /**
      * Complete an order after successful payment
      * Transfers credits and releases escrow
+     *
+     * The reads and the credit transfer (its own transaction) run before the order connection is
+     * borrowed: a completion never holds one pooled connection while waiting for a second.
      */
     public boolean completeOrder(int orderId, String stripeChargeId) {
         System.out.println(LOG_TAG + " ===== completeOrder() CALLED =====");
         System.out.println(LOG_TAG + " Order ID: " + orderId);
         System.out.println(LOG_TAG + " Stripe Charge ID: " + stripeChargeId);
-        
-        if (conn == null) {
-            System.err.println(LOG_TAG + " ERROR: Database connection is null");
+
+        // Get order details
+        MarketplaceOrder order = getOrderById(orderId);
+        if (order == null) {
             return false;
         }
 
-        boolean originalAutoCommit = true;
-        try {
-            // Save original autocommit state and disable it
-            originalAutoCommit = conn.getAutoCommit();
-            conn.setAutoCommit(false);
-
-            try {
-                // Get order details
-                MarketplaceOrder order = getOrderById(orderId);
-                if (order == null) {
-                    conn.rollback();
-                    return false;
-                }
+        // Get listing details to access seller wallet
+        Models.MarketplaceListing listing = listingService.getListingById(order.getListingId());
+        if (listing == null) {
+            System.err.println(LOG_TAG + " ERROR: Listing not found for order " + orderId);
+            return false;
+        }
 
-                // Get listing details to access seller wallet
-                Models.MarketplaceListing listing = listingService.getListingById(order.getListingId());
-                if (listing == null) {
-                    System.err.println(LOG_TAG + " ERROR: Listing not found for order " + orderId);
-                    conn.rollback();
-                    return false;
-                }
+        // Determine transfer mode based on order amount
+        // < $10k = DIRECT (instant, transfers batches directly)
+        // >= $10k = SPLIT_CHILD (escrow, creates child batches for auditability)
+        WalletService walletService = new WalletService();
+        WalletService.TransferMode transferMode = order.getTotalAmountUsd() >= ESCROW_THRESHOLD_USD 
+            ? WalletService.TransferMode.SPLIT_CHILD 
+            : WalletService.TransferMode.DIRECT;
+
+        // Get buyer wallet
+        List<Models.Wallet> buyerWallets = walletService.getWalletsByOwnerId(order.getBuyerId());
+        if (buyerWallets.isEmpty()) {
+            System.err.println(LOG_TAG + " ERROR: Buyer wallet not found");
+            return false;
+        }
+        int buyerWalletId = buyerWallets.get(0).getId();
+
+        // Transfer credits from seller to buyer with batch traceability
+        String transferNote = String.format("Marketplace Order #%s - %.2f tCO2", 
+            order.getId(), order.getQuantity());
+        String actor = "MARKETPLACE_ORDER_" + order.getId();
+
+        boolean transferSuccess = walletService.transferCreditsWithMode(
+            listing.getWalletId(), 
+            buyerWalletId, 
+            order.getQuantity(), 
+            transferNote, 
+            transferMode,
+            actor
+        );
 
-                // Determine transfer mode based on order amount
-                // < $10k = DIRECT (instant, transfers batches directly)
-                // >= $10k = SPLIT_CHILD (escrow, creates child batches for auditability)
-                WalletService walletService = new WalletService();
-                WalletService.TransferMode transferMode = order.getTotalAmountUsd() >= ESCROW_THRESHOLD_USD 
-                    ? WalletService.TransferMode.SPLIT_CHILD 
-                    : WalletService.TransferMode.DIRECT;
-
-                // Get buyer wallet
-                List<Models.Wallet> buyerWallets = walletService.getWalletsByOwnerId(order.getBuyerId());
-                if (buyerWallets.isEmpty()) {
-                    System.err.println(LOG_TAG + " ERROR: Buyer wallet not found");
-                    conn.rollback();
-                    return false;
-                }
-                int buyerWalletId = buyerWallets.get(0).getId();
-
-                // Transfer credits from seller to buyer with batch traceability
-                String transferNote = String.format("Marketplace Order #%s - %.2f tCO2", 
-                    order.getId(), order.getQuantity());
-                String actor = "MARKETPLACE_ORDER_" + order.getId();
-
-                boolean transferSuccess = walletService.transferCreditsWithMode(
-                    listing.getWalletId(), 
-                    buyerWalletId, 
-                    order.getQuantity(), 
-                    transferNote, 
-                    transferMode,
-                    actor
-                );
+        if (!transferSuccess) {
+            System.err.println(LOG_TAG + " ERROR: Credit transfer failed for order " + orderId);
+            return false;
+        }
 
-                if (!transferSuccess) {
-                    System.err.println(LOG_TAG + " ERROR: Credit transfer failed for order " + orderId);
-                    conn.rollback();
-                    return false;
-                }
-                
-                // Record marketplace_sold event on transferred batches
-                try {
-                    List<CarbonCreditBatch> buyerBatches = walletService.getWalletBatches(buyerWalletId);
-                    BatchEventService batchEventService = new BatchEventService();
-                    
-                    for (CarbonCreditBatch batch : buyerBatches) {
-                        if (batch.getStatus() != null && batch.getStatus().equals("AVAILABLE")) {
-                            com.google.gson.JsonObject eventData = new com.google.gson.JsonObject();
-                            eventData.addProperty("order_id", orderId);
-                            eventData.addProperty("buyer_id", order.getBuyerId());
-                            eventData.addProperty("seller_id", order.getSellerId());
-                            eventData.addProperty("amount", order.getQuantity());
-                            eventData.addProperty("price_usd", order.getTotalAmountUsd());
-                            batchEventService.recordEvent(batch.getId(), 
-                                BatchEventType.MARKETPLACE_SOLD, eventData, actor);
-                            break; // Record event on first available batch
-                        }
-                    }
-                } catch (Exception e) {
-                    System.err.println(LOG_TAG + " Warning: Could not record batch event: " + e.getMessage());
-                    // Don't fail the whole transaction for event logging
+        List<CarbonCreditBatch> buyerBatches = walletService.getWalletBatches(buyerWalletId);
+
+        // Record marketplace_sold event on transferred batches
+        try {
+            BatchEventService batchEventService = new BatchEventService();
+            
+            for (CarbonCreditBatch batch : buyerBatches) {
+                if (batch.getStatus() != null && batch.getStatus().equals("AVAILABLE")) {
+                    com.google.gson.JsonObject eventData = new com.google.gson.JsonObject();
+                    eventData.addProperty("order_id", orderId);
+                    eventData.addProperty("buyer_id", order.getBuyerId());
+                    eventData.addProperty("seller_id", order.getSellerId());
+                    eventData.addProperty("amount", order.getQuantity());
+                    eventData.addProperty("price_usd", order.getTotalAmountUsd());
+                    batchEventService.recordEvent(batch.getId(), 
+                        BatchEventType.MARKETPLACE_SOLD, eventData, actor);
+                    break; // Record event on first available batch
                 }
+            }
+        } catch (Exception e) {
+            System.err.println(LOG_TAG + " Warning: Could not record batch event: " + e.getMessage());
+            // Don't fail the order for event logging
+        }
 
+        boolean completed;
+        try {
+            completed = TransactionTemplate.execute(conn -> {
                 // Record marketplace_order_batches linkage
-                recordOrderBatches(orderId, buyerWalletId, order.getQuantity());
+                recordOrderBatches(conn, orderId, buyerBatches, order.getQuantity());
 
                 // Check if escrow is required (only for orders >= $10k)
                 boolean requiresEscrow = order.getTotalAmountUsd() >= ESCROW_THRESHOLD_USD;
                 int escrowId = -1;
                 String finalStatus;
-                
+
                 if (requiresEscrow) {
                     // Create escrow record for high-value orders
                     System.out.println(LOG_TAG + " Order amount $" + order.getTotalAmountUsd() + " >= $" + ESCROW_THRESHOLD_USD + " - CREATING ESCROW");
                     System.out.println(LOG_TAG + " Creating escrow for order " + orderId);
                     System.out.println(LOG_TAG + "   Buyer: " + order.getBuyerId() + ", Seller: " + order.getSellerId());
                     System.out.println(LOG_TAG + "   Amount: $" + order.getTotalAmountUsd());
-                    
-                    escrowId = createEscrow(orderId, null, order.getBuyerId(), 
+
+                    escrowId = createEscrow(conn, orderId, null, order.getBuyerId(), 
                         order.getSellerId(), order.getTotalAmountUsd());
 
                     System.out.println(LOG_TAG + " Escrow creation returned ID: " + escrowId);
-                    
+
                     if (escrowId <= 0) {
                         System.err.println(LOG_TAG + " ERROR: Escrow creation failed!");
-                        conn.rollback();
+                        TransactionTemplate.setRollbackOnly(conn);
                         return false;
                     }
-                    
+
                     System.out.println(LOG_TAG + " ✓ Escrow created successfully: ID " + escrowId);
                     finalStatus = "ESCROWED";
                 } else {
@@ -370,11 +334,6 @@ public class MarketplaceOrderService {
                     finalStatus = "COMPLETED";
                 }
 
-                // Mark listing as sold if quantity depleted
-                if (order.getQuantity() >= listing.getQuantityOrTokens()) {
-                    listingService.markAsSold(order.getListingId());
-                }
-
                 // Update order status
                 System.out.println(LOG_TAG + " Updating order status to " + finalStatus);
                 String sql = "UPDATE marketplace_orders SET status = ?, " +
@@ -393,7 +352,7 @@ public class MarketplaceOrderService {
                 // Credits transferred to buyer, but seller won't receive payment until escrow is released (for escrow orders)
 
                 // Create transaction fee record (PENDING until escrow releases)
-                recordTransactionFee(orderId, null, order.getSellerId(), 
+                recordTransactionFee(conn, orderId, null, order.getSellerId(), 
                     stripeService.calculatePlatformFee(order.getTotalAmountUsd()));
 
                 System.out.println(LOG_TAG + " ===== COMMITTING TRANSACTION =====");
@@ -407,50 +366,36 @@ public class MarketplaceOrderService {
                     System.out.println(LOG_TAG + "   - Order status: COMPLETED (instant payment)");
                 }
                 System.out.println(LOG_TAG + " ========================================");
-                
-                conn.commit();
-                System.out.println(LOG_TAG + " Order completed: ID " + orderId + 
-                    " (Transfer mode: " + transferMode + ")");
-                return true;
 
-            } catch (Exception e) {
-                try {
-                    conn.rollback();
-                } catch (SQLException rollbackEx) {
-                    System.err.println(LOG_TAG + " ERROR: Rollback failed: " + rollbackEx.getMessage());
-                }
-                System.err.println(LOG_TAG + " ERROR completing order: " + e.getMessage());
-                e.printStackTrace();
-                return false;
-            }
-        } catch (SQLException e) {
-            System.err.println(LOG_TAG + " ERROR: Database transaction setup failed: " + e.getMessage());
+                return true;
+            });
+        } catch (SQLException | RuntimeException e) {
+            System.err.println(LOG_TAG + " ERROR completing order: " + e.getMessage());
             e.printStackTrace();
             return false;
-        } finally {
-            // Always restore original autocommit state
-            try {
-                if (conn != null && !conn.isClosed()) {
-                    conn.setAutoCommit(originalAutoCommit);
-                }
-            } catch (SQLException e) {
-                System.err.println(LOG_TAG + " ERROR: Failed to restore autocommit state: " + e.getMessage());
-            }
         }
+        if (!completed) {
+            return false;
+        }
+        System.out.println(LOG_TAG + " Order completed: ID " + orderId + 
+            " (Transfer mode: " + transferMode + ")");
+
+        // Mark listing as sold if quantity depleted
+        if (order.getQuantity() >= listing.getQuantityOrTokens()) {
+            listingService.markAsSold(order.getListingId());
+        }
+        return true;
     }
 
     /**
      * Record which batches were purchased in this marketplace order.
      * Links marketplace_orders to carbon_credit_batches for provenance tracking.
      */
-    private void recordOrderBatches(int orderId, int buyerWalletId, double quantity) {
+    private void recordOrderBatches(Connection conn, int orderId, List<CarbonCreditBatch> buyerBatches, double quantity) {
         try {
-            WalletService walletService = new WalletService();
-            List<Models.CarbonCreditBatch> buyerBatches = walletService.getWalletBatches(buyerWalletId);
-            
             // Find recently created batches (within last minute, up to quantity amount)
             double trackedAmount = 0;
-            for (Models.CarbonCreditBatch batch : buyerBatches) {
+            for (CarbonCreditBatch batch : buyerBatches) {
                 if (trackedAmount >= quantity) break;
                 
                 // Check if batch was recently created (within last minute)
@@ -492,8 +437,6 @@ public class MarketplaceOrderService {
      */
     public boolean cancelOrder(int orderId, String reason) {
         try {
-            if (conn == null) return false;
-
             var order = getOrderById(orderId);
             if (order == null || !"PENDING".equals(order.getStatus())) {
                 System.err.println(LOG_TAG + " ERROR: Cannot cancel - order not pending");
@@ -508,12 +451,15 @@ public class MarketplaceOrderService {
                 if (refund != null) {
                     // Update order status
                     String sql = "UPDATE marketplace_orders SET status = 'REFUNDED', updated_at = NOW() WHERE id = ?";
-                    try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                    try (Connection conn = MyConnection.openConnection();
+                         PreparedStatement stmt = conn.prepareStatement(sql)) {
                         stmt.setInt(1, orderId);
                         stmt.executeUpdate();
                     }
 
                     System.out.println(LOG_TAG + " Order cancelled and refunded: ID " + orderId);
+                    // The refunded quantity is available again in the order book
+                    OrderBookService.getInstance().invalidateAll();
                     return true;
                 }
             }
@@ -529,10 +475,9 @@ public class MarketplaceOrderService {
      */
     public MarketplaceOrder getOrderById(int orderId) {
         try {
-            if (conn == null) return null;
-
             String sql = "SELECT * FROM marketplace_orders WHERE id = ?";
-            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            try (Connection conn = MyConnection.openConnection();
+                 PreparedStatement stmt = conn.prepareStatement(sql)) {
                 stmt.setInt(1, orderId);
 
                 try (ResultSet rs = stmt.executeQuery()) {
@@ -555,12 +500,11 @@ public class MarketplaceOrderService {
         List<MarketplaceOrder> orders = new ArrayList<>();
 
         try {
-            if (conn == null) return orders;
-
             String sql = "SELECT * FROM marketplace_orders WHERE buyer_id = ? OR seller_id = ? " +
                     "ORDER BY created_at DESC";
 
-            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            try (Connection conn = MyConnection.openConnection();
+                 PreparedStatement stmt = conn.prepareStatement(sql)) {
                 stmt.setInt(1, userId);
                 stmt.setInt(2, userId);
 
@@ -580,15 +524,10 @@ public class MarketplaceOrderService {
     /**
      * Create escrow record
      */
-    private int createEscrow(Integer orderId, Integer tradeId, int buyerId, 
+    private int createEscrow(Connection conn, Integer orderId, Integer tradeId, int buyerId, 
                             int sellerId, double amountUsd) {
         System.out.println(LOG_TAG + " [createEscrow] Called with orderId=" + orderId + ", buyerId=" + buyerId + ", sellerId=" + sellerId + ", amount=" + amountUsd);
         try {
-            if (conn == null) {
-                System.err.println(LOG_TAG + " [createEscrow] ERROR: Connection is null");
-                return -1;
-            }
-
             // Note: Only using order_id here. trade_id is for peer trades (handled separately)
             String sql = "INSERT INTO marketplace_escrow " +
                     "(order_id, buyer_id, seller_id, amount_usd, status) " +
@@ -628,10 +567,8 @@ public class MarketplaceOrderService {
     /**
      * Release escrow to seller
      */
-    private boolean releaseEscrowToSeller(int escrowId) {
+    private boolean releaseEscrowToSeller(Connection conn, int escrowId) {
         try {
-            if (conn == null) return false;
-
             String sql = "UPDATE marketplace_escrow SET status = 'RELEASED_TO_SELLER', " +
                     "release_date = NOW() WHERE id = ?";
 
@@ -650,10 +587,8 @@ public class MarketplaceOrderService {
     /**
      * Record transaction fee
      */
-    private void recordTransactionFee(Integer orderId, Integer tradeId, int sellerId, double feeAmount) {
+    private void recordTransactionFee(Connection conn, Integer orderId, Integer tradeId, int sellerId, double feeAmount) {
         try {
-            if (conn == null) return;
-
             String sql = "INSERT INTO marketplace_fees " +
                     "(order_id, trade_id, seller_id, fee_amount_usd, fee_type, status) " +
                     "VALUES (?, ?, ?, ?, 'TRANSACTION_FEE', 'PENDING')";
@@ -677,16 +612,11 @@ public class MarketplaceOrderService {
         List<Models.MarketplaceEscrow> escrows = new ArrayList<>();
         try {
             System.out.println("[ESCROW SERVICE DEBUG] getHeldEscrows() called");
-            System.out.println("[ESCROW SERVICE DEBUG] conn = " + (conn == null ? "NULL" : "Connected"));
-            if (conn == null) {
-                System.out.println("[ESCROW SERVICE DEBUG] Connection is null, returning empty list");
-                return escrows;
-            }
-
             String sql = "SELECT * FROM marketplace_escrow WHERE status = 'HELD' ORDER BY created_at ASC";
             System.out.println("[ESCROW SERVICE DEBUG] Executing SQL: " + sql);
             
-            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            try (Connection conn = MyConnection.openConnection();
+                 PreparedStatement stmt = conn.prepareStatement(sql)) {
                 try (ResultSet rs = stmt.executeQuery()) {
                     int count = 0;
                     while (rs.next()) {
@@ -711,15 +641,11 @@ public class MarketplaceOrderService {
      */
     public void debugPrintAllEscrows() {
         try {
-            if (conn == null) {
-                System.out.println("[ESCROW DEBUG] Connection is null");
-                return;
-            }
-
             String sql = "SELECT id, order_id, buyer_id, seller_id, amount_usd, status, created_at FROM marketplace_escrow";
             System.out.println("[ESCROW DEBUG] Running debug query: " + sql);
             
-            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            try (Connection conn = MyConnection.openConnection();
+                 PreparedStatement stmt = conn.prepareStatement(sql)) {
                 try (ResultSet rs = stmt.executeQuery()) {
                     int count = 0;
                     while (rs.next()) {
@@ -753,15 +679,11 @@ public class MarketplaceOrderService {
      */
     public void debugCreateTestEscrow() {
         try {
-            if (conn == null) {
-                System.out.println("[ESCROW DEBUG] Cannot create test escrow: connection is null");
-                return;
-            }
-
             String sql = "INSERT INTO marketplace_escrow (order_id, buyer_id, seller_id, amount_usd, status, created_at, hours_held) " +
                          "VALUES (?, ?, ?, ?, ?, NOW(), 0)";
             
-            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            try (Connection conn = MyConnection.openConnection();
+                 PreparedStatement stmt = conn.prepareStatement(sql)) {
                 stmt.setInt(1, 1);           // order_id
                 stmt.setInt(2, 1);           // buyer_id (admin)
                 stmt.setInt(3, 2);           // seller_id (first user)
@@ -780,118 +702,105 @@ public class MarketplaceOrderService {
      * Verify and manually release escrow to seller (admin action)
      */
     public boolean verifyAndReleaseEscrow(int escrowId) {
-        if (conn == null) return false;
-
-        boolean originalAutoCommit = true;
         try {
-            originalAutoCommit = conn.getAutoCommit();
-            conn.setAutoCommit(false);
-
-            try {
-                // Get escrow details
-                String selectSql = "SELECT * FROM marketplace_escrow WHERE id = ? AND status = 'HELD'";
-                Models.MarketplaceEscrow escrow = null;
-                try (PreparedStatement stmt = conn.prepareStatement(selectSql)) {
-                    stmt.setInt(1, escrowId);
-                    try (ResultSet rs = stmt.executeQuery()) {
-                        if (rs.next()) {
-                            escrow = mapResultToEscrow(rs);
-                        }
-                    }
-                }
-
-                if (escrow == null) {
-                    System.err.println(LOG_TAG + " ERROR: Escrow not found or not held: " + escrowId);
-                    return false;
-                }
-
-                // Calculate fees and proceeds
-                double platformFee = escrow.getAmountUsd() * 0.03; // 3% fee
-                double sellerProceeds = escrow.getAmountUsd() - platformFee;
-
-                if (escrow.getOrderId() != null) {
-                    // Update order status to COMPLETED
-                    String orderUpdateSql = "UPDATE marketplace_orders SET status = 'COMPLETED', " +
-                            "platform_fee_usd = ?, seller_proceeds_usd = ?, updated_at = NOW() WHERE id = ?";
-                    try (PreparedStatement stmt = conn.prepareStatement(orderUpdateSql)) {
-                        stmt.setDouble(1, platformFee);
-                        stmt.setDouble(2, sellerProceeds);
-                        stmt.setInt(3, escrow.getOrderId());
-                        stmt.executeUpdate();
-                    }
-                }
-
-                // Release escrow
-                String updateSql = "UPDATE marketplace_escrow SET status = 'RELEASED_TO_SELLER', " +
-                        "release_date = NOW() WHERE id = ?";
-                try (PreparedStatement stmt = conn.prepareStatement(updateSql)) {
-                    stmt.setInt(1, escrowId);
-                    stmt.executeUpdate();
-                }
-
-                // Record fee
-                recordTransactionFee(escrow.getOrderId(), null, (int)escrow.getSellerId(), platformFee);
-
-                conn.commit();
-                System.out.println(LOG_TAG + " Escrow verified & released: ID " + escrowId + 
-                    " | Amount: $" + String.format("%.2f", escrow.getAmountUsd()));
-                return true;
-
-            } catch (Exception e) {
-                try {
-                    conn.rollback();
-                } catch (SQLException rollbackEx) {
-                    System.err.println(LOG_TAG + " ERROR: Rollback failed: " + rollbackEx.getMessage());
-                }
-                System.err.println(LOG_TAG + " ERROR verifying/releasing escrow: " + e.getMessage());
+            List<Integer> released = TransactionTemplate.execute(
+                conn -> releaseHeldEscrows(conn, List.of(escrowId), false));
+            if (released.isEmpty()) {
+                System.err.println(LOG_TAG + " ERROR: Escrow not found or not held: " + escrowId);
                 return false;
             }
+            System.out.println(LOG_TAG + " Escrow verified & released: ID " + escrowId);
+            return true;
         } catch (SQLException e) {
-            System.err.println(LOG_TAG + " ERROR: Database transaction setup failed: " + e.getMessage());
+            System.err.println(LOG_TAG + " ERROR verifying/releasing escrow: " + e.getMessage());
             return false;
-        } finally {
-            try {
-                if (conn != null && !conn.isClosed()) {
-                    conn.setAutoCommit(originalAutoCommit);
-                }
-            } catch (SQLException e) {
-                System.err.println(LOG_TAG + " ERROR: Failed to restore autocommit state: " + e.getMessage());
-            }
         }
     }
 
     /**
-     * Auto-release escrow after 24 hours
-     * Runs periodically to check and release old held escrows
+     * Release a group of HELD escrows in the caller's transaction: the order is COMPLETED with its
+     * platform fee and seller proceeds, the escrow RELEASED_TO_SELLER and the fee recorded.
+     *
+     * The escrow rows are locked first and only rows still HELD are released, so an escrow is
+     * never released twice, even by two application instances.
+     *
+     * @param dueOnly true for the scheduler: skip escrows younger than the hold period and rows
+     *                locked by another instance ({@code SKIP LOCKED}) instead of waiting for them
+     * @return IDs of the escrows released
      */
-    public void autoReleaseOldEscrows() {
-        try {
-            if (conn == null) return;
-
-            // Find escrows held for more than 24 hours
-            String sql = "SELECT * FROM marketplace_escrow WHERE status = 'HELD' " +
-                    "AND created_at < DATE_SUB(NOW(), INTERVAL 24 HOUR)";
-            List<Models.MarketplaceEscrow> oldEscrows = new ArrayList<>();
-
-            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-                try (ResultSet rs = stmt.executeQuery()) {
-                    while (rs.next()) {
-                        oldEscrows.add(mapResultToEscrow(rs));
-                    }
-                }
+    List<Integer> releaseHeldEscrows(Connection conn, List<Integer> escrowIds, boolean dueOnly) throws SQLException {
+        List<Integer> released = new ArrayList<>();
+        if (escrowIds.isEmpty()) {
+            return released;
+        }
+        String placeholders = String.join(",", Collections.nCopies(escrowIds.size(), "?"));
+        String selectSql = "SELECT id, order_id, seller_id, amount_usd FROM marketplace_escrow " +
+            "WHERE id IN (" + placeholders + ") AND status = 'HELD'" +
+            (dueOnly ? " AND created_at <= DATE_SUB(NOW(), INTERVAL " + ESCROW_HOLD_HOURS + " HOUR)" : "") +
+            " ORDER BY id FOR UPDATE" + (dueOnly ? " SKIP LOCKED" : "");
+
+        List<HeldEscrow> held = new ArrayList<>();
+        try (PreparedStatement stmt = conn.prepareStatement(selectSql)) {
+            for (int i = 0; i < escrowIds.size(); i++) {
+                stmt.setInt(i + 1, escrowIds.get(i));
             }
-
-            // Auto-release each old escrow
-            for (Models.MarketplaceEscrow escrow : oldEscrows) {
-                verifyAndReleaseEscrow(escrow.getId());
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    held.add(new HeldEscrow(rs.getInt("id"), rs.getObject("order_id", Integer.class),
+                        rs.getInt("seller_id"), rs.getDouble("amount_usd")));
+                }
             }
+        }
+        if (held.isEmpty()) {
+            return released;
+        }
 
-            if (!oldEscrows.isEmpty()) {
-                System.out.println(LOG_TAG + " Auto-released " + oldEscrows.size() + " escrows after 24h hold");
+        String orderUpdateSql = "UPDATE marketplace_orders SET status = 'COMPLETED', " +
+            "platform_fee_usd = ?, seller_proceeds_usd = ?, updated_at = NOW() WHERE id = ?";
+        String escrowUpdateSql = "UPDATE marketplace_escrow SET status = 'RELEASED_TO_SELLER', " +
+            "release_date = NOW() WHERE id = ? AND status = 'HELD'";
+        String feeSql = "INSERT INTO marketplace_fees " +
+            "(order_id, trade_id, seller_id, fee_amount_usd, fee_type, status) " +
+            "VALUES (?, NULL, ?, ?, 'TRANSACTION_FEE', 'PENDING')";
+        try (PreparedStatement orders = conn.prepareStatement(orderUpdateSql);
+             PreparedStatement escrows = conn.prepareStatement(escrowUpdateSql);
+             PreparedStatement fees = conn.prepareStatement(feeSql)) {
+            for (HeldEscrow escrow : held) {
+                Integer orderId = escrow.orderId();
+                // Calculate fees and proceeds
+                double platformFee = escrow.amountUsd() * ESCROW_PLATFORM_FEE_RATE;
+                double sellerProceeds = escrow.amountUsd() - platformFee;
+
+                if (orderId != null) {
+                    orders.setDouble(1, platformFee);
+                    orders.setDouble(2, sellerProceeds);
+                    orders.setInt(3, orderId);
+                    orders.addBatch();
+                }
+                escrows.setInt(1, escrow.id());
+                escrows.addBatch();
+                fees.setObject(1, orderId);
+                fees.setInt(2, escrow.sellerId());
+                fees.setDouble(3, platformFee);
+                fees.addBatch();
+                released.add(escrow.id());
             }
-        } catch (SQLException e) {
-            System.err.println(LOG_TAG + " ERROR in auto-release process: " + e.getMessage());
+            orders.executeBatch();
+            escrows.executeBatch();
+            fees.executeBatch();
         }
+        return released;
+    }
+
+    private record HeldEscrow(int id, Integer orderId, int sellerId, double amountUsd) {
+    }
+
+    /**
+     * Auto-release escrow after 24 hours
+     * Runs one pass of the escrow release scheduler (chunked, safe across instances)
+     */
+    public void autoReleaseOldEscrows() {
+        EscrowReleaseScheduler.getInstance().runOnce();
     }
 
     /**
@@ -899,11 +808,10 @@ public class MarketplaceOrderService {
      */
     public boolean refundEscrowToBuyer(int escrowId) {
         try {
-            if (conn == null) return false;
-
             String sql = "UPDATE marketplace_escrow SET status = 'REFUNDED_TO_BUYER', " +
                     "release_date = NOW() WHERE id = ? AND status = 'HELD'";
-            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            try (Connection conn = MyConnection.openConnection();
+                 PreparedStatement stmt = conn.prepareStatement(sql)) {
                 stmt.setInt(1, escrowId);
                 int updated = stmt.executeUpdate();
                 if (updated > 0) {
@@ -12,10 +12,8 @@ import java.util.*;
 public class MarketplaceRatingService {
     private static final String LOG_TAG = "[MarketplaceRatingService]";
     private static MarketplaceRatingService instance;
-    private Connection conn;
 
     private MarketplaceRatingService() {
-        this.conn = MyConnection.getConnection();
     }
 
     public static MarketplaceRatingService getInstance() {
@@ -33,14 +31,13 @@ public class MarketplaceRatingService {
         int ratingId = -1;
 
         try {
-            if (conn == null) return ratingId;
-
             String sql = "INSERT INTO marketplace_ratings " +
                     "(rated_user_id, rater_id, score_one_to_five, review_text, " +
                     "order_id, trade_id, rating_category, is_verified_transaction) " +
                     "VALUES (?, ?, ?, ?, ?, ?, 'OVERALL', 1)";
 
-            try (PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            try (Connection conn = MyConnection.openConnection();
+                 PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
                 stmt.setInt(1, ratedUserId);
                 stmt.setInt(2, raterId);
                 stmt.setInt(3, Math.max(1, Math.min(5, score)));
@@ -73,12 +70,11 @@ public class MarketplaceRatingService {
      */
     public double getUserAverageRating(int userId) {
         try {
-            if (conn == null) return 5.0;
-
             String sql = "SELECT AVG(score_one_to_five) as avg_rating FROM marketplace_ratings " +
                     "WHERE rated_user_id = ? AND rating_category = 'OVERALL'";
 
-            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            try (Connection conn = MyConnection.openConnection();
+                 PreparedStatement stmt = conn.prepareStatement(sql)) {
                 stmt.setInt(1, userId);
 
                 try (ResultSet rs = stmt.executeQuery()) {
@@ -100,12 +96,11 @@ public class MarketplaceRatingService {
      */
     public int getUserRatingCount(int userId) {
         try {
-            if (conn == null) return 0;
-
             String sql = "SELECT COUNT(*) as count FROM marketplace_ratings " +
                     "WHERE rated_user_id = ? AND rating_category = 'OVERALL'";
 
-            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            try (Connection conn = MyConnection.openConnection();
+                 PreparedStatement stmt = conn.prepareStatement(sql)) {
                 stmt.setInt(1, userId);
 
                 try (ResultSet rs = stmt.executeQuery()) {
@@ -128,12 +123,11 @@ public class MarketplaceRatingService {
         List<MarketplaceRating> ratings = new ArrayList<>();
 
         try {
-            if (conn == null) return ratings;
-
             String sql = "SELECT * FROM marketplace_ratings WHERE rated_user_id = ? " +
                     "ORDER BY created_at DESC";
 
-            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            try (Connection conn = MyConnection.openConnection();
+                 PreparedStatement stmt = conn.prepareStatement(sql)) {
                 stmt.setInt(1, userId);
 
                 try (ResultSet rs = stmt.executeQuery()) {
@@ -156,12 +150,11 @@ public class MarketplaceRatingService {
         List<MarketplaceRating> ratings = new ArrayList<>();
 
         try {
-            if (conn == null) return ratings;
-
             String sql = "SELECT * FROM marketplace_ratings WHERE rated_user_id = ? " +
                     "AND rating_category = ? ORDER BY created_at DESC";
 
-            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            try (Connection conn = MyConnection.openConnection();
+                 PreparedStatement stmt = conn.prepareStatement(sql)) {
                 stmt.setInt(1, userId);
                 stmt.setString(2, category);
 
@@ -183,13 +176,12 @@ public class MarketplaceRatingService {
      */
     public boolean hasRatedTransaction(int ratedUserId, int raterId, Integer orderId, Integer tradeId) {
         try {
-            if (conn == null) return false;
-
             String sql = "SELECT COUNT(*) as count FROM marketplace_ratings " +
                     "WHERE rated_user_id = ? AND rater_id = ? AND " +
                     "((order_id = ? AND order_id IS NOT NULL) OR (trade_id = ? AND trade_id IS NOT NULL))";
 
-            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            try (Connection conn = MyConnection.openConnection();
+                 PreparedStatement stmt = conn.prepareStatement(sql)) {
                 stmt.setInt(1, ratedUserId);
                 stmt.setInt(2, raterId);
                 stmt.setObject(3, orderId);
@@ -215,11 +207,10 @@ public class MarketplaceRatingService {
         double avgRating = getUserAverageRating(userId);
 
         try {
-            if (conn == null) return;
-
             String sql = "UPDATE user_marketplace_kyc SET seller_avg_rating = ? WHERE user_id = ?";
 
-            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            try (Connection conn = MyConnection.openConnection();
+                 PreparedStatement stmt = conn.prepareStatement(sql)) {
                 stmt.setDouble(1, avgRating);
                 stmt.setInt(2, userId);
                 stmt.executeUpdate();
@@ -72,6 +72,25 @@ public class MarketplaceServiceTests {
             fail("searchListings: " + e.getMessage());
         }
 
+        // Test: Keyset pages do not overlap and follow (created_at, id) DESC
+        try {
+            MarketplaceListingService.ListingPage first = service.searchListingsPage(null, null, null, null, 2);
+            Set<Integer> seen = new HashSet<>();
+            first.listings().forEach(l -> seen.add(l.getId()));
+            if (first.hasMore()) {
+                MarketplaceListingService.ListingPage second =
+                    service.searchListingsPage(null, null, null, first.nextCursor(), 2);
+                for (MarketplaceListing l : second.listings()) {
+                    if (!seen.add(l.getId())) {
+                        throw new IllegalStateException("listing " + l.getId() + " returned twice");
+                    }
+                }
+            }
+            pass("searchListingsPage keyset pages are disjoint");
+        } catch (Exception e) {
+            fail("searchListingsPage: " + e.getMessage());
+        }
+
         System.out.println();
     }
 
@@ -8,7 +8,6 @@ import java.util.ArrayList;
 import java.util.List;
 
 public class OffreFinancementService {
-    private final Connection conn = MyConnection.getConnection();
 
     public List<OffreFinancement> getAll() {
         return afficherAll();
@@ -17,7 +16,8 @@ public class OffreFinancementService {
     public List<OffreFinancement> afficherAll() {
         List<OffreFinancement> list = new ArrayList<>();
         String sql = "SELECT id_offre, type_offre, taux, duree, id_financement FROM offre_financement";
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+        try (Connection conn = MyConnection.openConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) {
                     OffreFinancement o = new OffreFinancement(
@@ -38,7 +38,8 @@ public class OffreFinancementService {
 
     public void add(OffreFinancement o) {
         String sql = "INSERT INTO offre_financement (type_offre, taux, duree, id_financement) VALUES (?,?,?,?)";
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+        try (Connection conn = MyConnection.openConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, o.getTypeOffre());
             ps.setDouble(2, o.getTaux());
             ps.setInt(3, o.getDuree());
@@ -51,7 +52,8 @@ public class OffreFinancementService {
 
     public void update(OffreFinancement o) {
         String sql = "UPDATE offre_financement SET type_offre=?, taux=?, duree=?, id_financement=? WHERE id_offre=?";
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+        try (Connection conn = MyConnection.openConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, o.getTypeOffre());
             ps.setDouble(2, o.getTaux());
             ps.setInt(3, o.getDuree());
@@ -65,7 +67,8 @@ public class OffreFinancementService {
 
     public void delete(int idOffre) {
         String sql = "DELETE FROM offre_financement WHERE id_offre=?";
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+        try (Connection conn = MyConnection.openConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setInt(1, idOffre);
             ps.executeUpdate();
         } catch (SQLException e) {
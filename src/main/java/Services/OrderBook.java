@@ -0,0 +1,311 @@
+package Services;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory order book of one marketplace asset type.
+ *
+ * Asks are the ACTIVE listings, bids the PENDING offers. Prices and quantities are fixed-point
+ * longs with the scale of the marketplace columns (price_per_unit DECIMAL(10,4) → 1/10000 USD,
+ * quantity DECIMAL(15,2) → 1/100 tCO2e), so matching never accumulates floating point errors.
+ * Each side is a ladder of price levels kept in a sorted {@code long[]} (binary search, no boxed
+ * keys); a level is a FIFO of orders, giving price-time priority.
+ *
+ * Not thread-safe: {@link OrderBookService} serializes access per asset type.
+ */
+public final class OrderBook {
+
+    public static final long PRICE_SCALE = 10_000;
+    public static final long QUANTITY_SCALE = 100;
+
+    /** Limit price of a market order: every ask qualifies. */
+    public static final long MARKET = Long.MAX_VALUE;
+
+    private final String assetType;
+    private final PriceLadder asks = new PriceLadder();
+    private final PriceLadder bids = new PriceLadder();
+    private final Map<Integer, RestingOrder> asksByListing = new HashMap<>();
+    private final Map<Integer, RestingOrder> bidsByOffer = new HashMap<>();
+
+    /**
+     * Part of a buy order filled by one listing.
+     */
+    public record Fill(int listingId, long sellerId, long priceTicks, long quantity) {
+
+        public double price() {
+            return fromTicks(priceTicks);
+        }
+
+        public double quantityUnits() {
+            return fromQuantity(quantity);
+        }
+    }
+
+    /**
+     * Aggregated price level (depth view).
+     */
+    public record Level(double price, double quantity, int orders) {
+    }
+
+    public OrderBook(String assetType) {
+        this.assetType = assetType;
+    }
+
+    public String getAssetType() {
+        return assetType;
+    }
+
+    // ==================== LOADING ====================
+
+    /**
+     * Add a sell listing. Listings must be added oldest first: arrival order is the time priority.
+     */
+    public void addAsk(int listingId, long sellerId, long priceTicks, long quantity) {
+        if (quantity <= 0 || asksByListing.containsKey(listingId)) {
+            return;
+        }
+        RestingOrder order = new RestingOrder(listingId, sellerId, priceTicks, quantity);
+        asks.getOrCreate(priceTicks).add(order);
+        asksByListing.put(listingId, order);
+    }
+
+    /**
+     * Add a buy offer (bid side, used for depth and best bid; offers stay tied to their listing).
+     */
+    public void addBid(int offerId, long buyerId, long priceTicks, long quantity) {
+        if (quantity <= 0 || bidsByOffer.containsKey(offerId)) {
+            return;
+        }
+        RestingOrder order = new RestingOrder(offerId, buyerId, priceTicks, quantity);
+        bids.getOrCreate(priceTicks).add(order);
+        bidsByOffer.put(offerId, order);
+    }
+
+    public boolean removeAsk(int listingId) {
+        return remove(asks, asksByListing.remove(listingId));
+    }
+
+    public boolean removeBid(int offerId) {
+        return remove(bids, bidsByOffer.remove(offerId));
+    }
+
+    // ==================== MATCHING ====================
+
+    /**
+     * Fills a buy order against the asks in price-time priority, without changing the book.
+     * Listings of the buyer are skipped (no self-trade).
+     *
+     * @param buyerId    Buyer user ID
+     * @param quantity   Quantity in 1/{@value #QUANTITY_SCALE} units
+     * @param limitTicks Highest acceptable price in ticks, {@link #MARKET} for a market order
+     * @return fills in execution order, empty if nothing matches
+     */
+    public List<Fill> match(long buyerId, long quantity, long limitTicks) {
+        List<Fill> fills = new ArrayList<>();
+        long remaining = quantity;
+        for (int i = 0; i < asks.size && remaining > 0; i++) {
+            if (asks.prices[i] > limitTicks) {
+                break;
+            }
+            for (RestingOrder ask : asks.levels[i].orders) {
+                if (ask.ownerId == buyerId) {
+                    continue;
+                }
+                long take = Math.min(remaining, ask.quantity);
+                fills.add(new Fill(ask.id, ask.ownerId, ask.priceTicks, take));
+                remaining -= take;
+                if (remaining == 0) {
+                    break;
+                }
+            }
+        }
+        return fills;
+    }
+
+    /**
+     * Remove filled quantities from the asks (after the fills are persisted).
+     */
+    public void apply(List<Fill> fills) {
+        for (Fill fill : fills) {
+            RestingOrder ask = asksByListing.get(fill.listingId());
+            if (ask == null) {
+                continue;
+            }
+            long take = Math.min(fill.quantity(), ask.quantity);
+            ask.quantity -= take;
+            PriceLevel level = asks.get(ask.priceTicks);
+            level.quantity -= take;
+            if (ask.quantity == 0) {
+                asksByListing.remove(ask.id);
+                remove(asks, ask);
+            }
+        }
+    }
+
+    // ==================== VIEWS ====================
+
+    /** Lowest ask in ticks, -1 if there is none. */
+    public long bestAsk() {
+        return asks.size == 0 ? -1 : asks.prices[0];
+    }
+
+    /** Highest bid in ticks, -1 if there is none. */
+    public long bestBid() {
+        return bids.size == 0 ? -1 : bids.prices[bids.size - 1];
+    }
+
+    /** Best {@code maxLevels} ask levels, lowest price first. */
+    public List<Level> askDepth(int maxLevels) {
+        List<Level> depth = new ArrayList<>();
+        for (int i = 0; i < asks.size && depth.size() < maxLevels; i++) {
+            depth.add(asks.levels[i].toLevel());
+        }
+        return depth;
+    }
+
+    /** Best {@code maxLevels} bid levels, highest price first. */
+    public List<Level> bidDepth(int maxLevels) {
+        List<Level> depth = new ArrayList<>();
+        for (int i = bids.size - 1; i >= 0 && depth.size() < maxLevels; i--) {
+            depth.add(bids.levels[i].toLevel());
+        }
+        return depth;
+    }
+
+    public int askCount() {
+        return asksByListing.size();
+    }
+
+    public int bidCount() {
+        return bidsByOffer.size();
+    }
+
+    // ==================== FIXED POINT ====================
+
+    public static long toTicks(BigDecimal price) {
+        return price.movePointRight(4).setScale(0, RoundingMode.HALF_UP).longValueExact();
+    }
+
+    public static long toTicks(double price) {
+        return toTicks(BigDecimal.valueOf(price));
+    }
+
+    public static long toQuantity(BigDecimal quantity) {
+        return quantity.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact();
+    }
+
+    public static long toQuantity(double quantity) {
+        return toQuantity(BigDecimal.valueOf(quantity));
+    }
+
+    public static double fromTicks(long ticks) {
+        return ticks / (double) PRICE_SCALE;
+    }
+
+    public static double fromQuantity(long quantity) {
+        return quantity / (double) QUANTITY_SCALE;
+    }
+
+    // ==================== INTERNALS ====================
+
+    private static boolean remove(PriceLadder side, RestingOrder order) {
+        if (order == null) {
+            return false;
+        }
+        PriceLevel level = side.get(order.priceTicks);
+        if (level == null || !level.orders.remove(order)) {
+            return false;
+        }
+        level.quantity -= order.quantity;
+        if (level.orders.isEmpty()) {
+            side.remove(order.priceTicks);
+        }
+        return true;
+    }
+
+    private static final class RestingOrder {
+        final int id;          // listing ID (ask) or offer ID (bid)
+        final long ownerId;    // seller (ask) or buyer (bid)
+        final long priceTicks;
+        long quantity;
+
+        RestingOrder(int id, long ownerId, long priceTicks, long quantity) {
+            this.id = id;
+            this.ownerId = ownerId;
+            this.priceTicks = priceTicks;
+            this.quantity = quantity;
+        }
+    }
+
+    private static final class PriceLevel {
+        final long priceTicks;
+        final ArrayDeque<RestingOrder> orders = new ArrayDeque<>();
+        long quantity;
+
+        PriceLevel(long priceTicks) {
+            this.priceTicks = priceTicks;
+        }
+
+        void add(RestingOrder order) {
+            orders.addLast(order);
+            quantity += order.quantity;
+        }
+
+        Level toLevel() {
+            return new Level(fromTicks(priceTicks), fromQuantity(quantity), orders.size());
+        }
+    }
+
+    /**
+     * Price levels sorted by ascending price: a {@code long[]} of prices searched with binary search
+     * and the matching array of levels. Levels are few compared to orders, so the array copy on
+     * insert/remove is cheaper than a tree of boxed keys.
+     */
+    private static final class PriceLadder {
+        long[] prices = new long[16];
+        PriceLevel[] levels = new PriceLevel[16];
+        int size;
+
+        PriceLevel get(long price) {
+            int idx = Arrays.binarySearch(prices, 0, size, price);
+            return idx >= 0 ? levels[idx] : null;
+        }
+
+        PriceLevel getOrCreate(long price) {
+            int idx = Arrays.binarySearch(prices, 0, size, price);
+            if (idx >= 0) {
+                return levels[idx];
+            }
+            int insertAt = -idx - 1;
+            if (size == prices.length) {
+                prices = Arrays.copyOf(prices, size * 2);
+                levels = Arrays.copyOf(levels, size * 2);
+            }
+            System.arraycopy(prices, insertAt, prices, insertAt + 1, size - insertAt);
+            System.arraycopy(levels, insertAt, levels, insertAt + 1, size - insertAt);
+            PriceLevel level = new PriceLevel(price);
+            prices[insertAt] = price;
+            levels[insertAt] = level;
+            size++;
+            return level;
+        }
+
+        void remove(long price) {
+            int idx = Arrays.binarySearch(prices, 0, size, price);
+            if (idx < 0) {
+                return;
+            }
+            System.arraycopy(prices, idx + 1, prices, idx, size - idx - 1);
+            System.arraycopy(levels, idx + 1, levels, idx, size - idx - 1);
+            size--;
+            levels[size] = null;
+        }
+    }
+}
@@ -0,0 +1,384 @@
+package Services;
+
+import DataBase.MyConnection;
+import DataBase.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Buy-side matching over the marketplace: one in-memory {@link OrderBook} per asset_type.
+ * Only {@value #BOOK_ASSET_TYPE} listings are matched: for other asset types quantity_or_id holds
+ * an id, not a quantity.
+ *
+ * Books are loaded from marketplace_listings (asks: quantity left once open and completed orders
+ * are deducted) and marketplace_offers (bids), reloaded after {@value #BOOK_TTL_MS} ms or when a
+ * listing/offer changes. A buy order is matched in memory, then every fill is checked against the
+ * locked listing rows and written as a marketplace_orders row (status PENDING) with its payment
+ * outbox entry in one transaction. If the database disagrees with the book (listing sold
+ * elsewhere, price changed...) the book is reloaded and the order matched again.
+ *
+ * Order-book buys need the payment outbox ({@link PaymentOutboxService#isEnabled()}): fills are
+ * never paid inline, so without the outbox buys are rejected instead of leaving unpaid orders that
+ * would keep reserving listing quantity.
+ *
+ * Limit orders are immediate-or-cancel: the unfilled remainder is returned, not rested.
+ */
+public class OrderBookService {
+    private static final String LOG_TAG = "[OrderBookService]";
+    private static final long BOOK_TTL_MS = 30_000;
+    private static final int MAX_MATCH_ATTEMPTS = 3;
+
+    /** Asset type whose listings carry a quantity (quantity_or_id) and can be matched. */
+    public static final String BOOK_ASSET_TYPE = "CARBON_CREDITS";
+
+    // Quantity still sellable = listing quantity - orders not cancelled/refunded
+    private static final String LOAD_ASKS_SQL =
+        "SELECT l.id, l.seller_id, l.price_per_unit, l.quantity_or_id - COALESCE(o.committed, 0) AS available " +
+        "FROM marketplace_listings l " +
+        "LEFT JOIN (SELECT listing_id, SUM(quantity) AS committed FROM marketplace_orders " +
+        "           WHERE status NOT IN ('CANCELLED', 'REFUNDED') GROUP BY listing_id) o ON o.listing_id = l.id " +
+        "WHERE l.status = 'ACTIVE' AND l.asset_type = ? AND (l.expires_at IS NULL OR l.expires_at > NOW()) " +
+        "ORDER BY l.created_at ASC, l.id ASC";
+
+    private static final String LOAD_BIDS_SQL =
+        "SELECT o.id, o.buyer_id, o.offer_price_usd, o.quantity FROM marketplace_offers o " +
+        "JOIN marketplace_listings l ON l.id = o.listing_id " +
+        "WHERE o.status = 'PENDING' AND l.status = 'ACTIVE' AND l.asset_type = ? " +
+        "AND (o.expires_at IS NULL OR o.expires_at > NOW()) " +
+        "ORDER BY o.created_at ASC, o.id ASC";
+
+    private static OrderBookService instance;
+
+    private final Map<String, BookHolder> books = new ConcurrentHashMap<>();
+
+    /**
+     * Book of one asset type and the lock that serializes its matching.
+     */
+    private static final class BookHolder {
+        final ReentrantLock lock = new ReentrantLock();
+        volatile OrderBook book;
+        volatile long loadedAt;
+    }
+
+    /**
+     * Outcome of a buy order.
+     *
+     * @param orderIds marketplace_orders rows created, one per fill
+     */
+    public record MatchResult(List<Integer> orderIds, List<OrderBook.Fill> fills,
+                              double requestedQuantity, double filledQuantity, double averagePrice) {
+
+        public boolean fullyFilled() {
+            return OrderBook.toQuantity(filledQuantity) >= OrderBook.toQuantity(requestedQuantity);
+        }
+
+        static MatchResult empty(double requested) {
+            return new MatchResult(List.of(), List.of(), requested, 0, 0);
+        }
+    }
+
+    /** The book no longer matches the database. */
+    private static final class StaleBookException extends SQLException {
+        private static final long serialVersionUID = 1L;
+
+        StaleBookException(String message) {
+            super(message);
+        }
+    }
+
+    private OrderBookService() {
+    }
+
+    public static synchronized OrderBookService getInstance() {
+        if (instance == null) {
+            instance = new OrderBookService();
+        }
+        return instance;
+    }
+
+    /**
+     * True for the asset types that have an order book.
+     */
+    public static boolean supportsAssetType(String assetType) {
+        return BOOK_ASSET_TYPE.equals(assetType);
+    }
+
+    /**
+     * True when buy orders can be matched (payment outbox available to pay the fills).
+     */
+    public boolean isMatchingEnabled() {
+        return PaymentOutboxService.getInstance().isEnabled();
+    }
+
+    /**
+     * Buy {@code quantity} at the best available prices, across as many listings as needed.
+     */
+    public MatchResult placeMarketBuy(String assetType, int buyerId, double quantity) {
+        return placeBuy(assetType, buyerId, quantity, OrderBook.MARKET);
+    }
+
+    /**
+     * Buy up to {@code quantity} from listings priced at or below {@code limitPrice}.
+     */
+    public MatchResult placeLimitBuy(String assetType, int buyerId, double quantity, double limitPrice) {
+        return placeBuy(assetType, buyerId, quantity, OrderBook.toTicks(limitPrice));
+    }
+
+    /** Best {@code levels} ask levels of an asset type (lowest price first). */
+    public List<OrderBook.Level> getAskDepth(String assetType, int levels) {
+        return withBook(assetType, book -> book.askDepth(levels));
+    }
+
+    /** Best {@code levels} bid levels of an asset type (highest price first). */
+    public List<OrderBook.Level> getBidDepth(String assetType, int levels) {
+        return withBook(assetType, book -> book.bidDepth(levels));
+    }
+
+    /** Drop the book of an asset type; it is reloaded on next use. */
+    public void invalidate(String assetType) {
+        if (assetType == null) {
+            invalidateAll();
+            return;
+        }
+        BookHolder holder = books.get(assetType);
+        if (holder != null) {
+            holder.book = null;
+        }
+    }
+
+    public void invalidateAll() {
+        books.values().forEach(holder -> holder.book = null);
+    }
+
+    private MatchResult placeBuy(String assetType, int buyerId, double quantity, long limitTicks) {
+        long wanted = OrderBook.toQuantity(quantity);
+        if (!supportsAssetType(assetType) || wanted <= 0) {
+            return MatchResult.empty(quantity);
+        }
+        if (!isMatchingEnabled()) {
+            System.err.println(LOG_TAG + " Buy rejected: order-book fills need the payment outbox (sql/ADD_PAYMENT_OUTBOX.sql)");
+            return MatchResult.empty(quantity);
+        }
+
+        BookHolder holder = books.computeIfAbsent(assetType, key -> new BookHolder());
+        holder.lock.lock();
+        try {
+            for (int attempt = 1; attempt <= MAX_MATCH_ATTEMPTS; attempt++) {
+                OrderBook book = currentBook(holder, assetType);
+                if (book == null) {
+                    return MatchResult.empty(quantity);
+                }
+                List<OrderBook.Fill> fills = book.match(buyerId, wanted, limitTicks);
+                if (fills.isEmpty()) {
+                    return MatchResult.empty(quantity);
+                }
+                try {
+                    List<Integer> orderIds = TransactionTemplate.execute(conn -> persistFills(conn, buyerId, fills));
+                    book.apply(fills);
+                    return toResult(orderIds, fills, quantity);
+                } catch (StaleBookException stale) {
+                    System.out.println(LOG_TAG + " Book " + assetType + " out of date (" + stale.getMessage() + "), reloading");
+                    holder.book = null;
+                } catch (SQLException e) {
+                    System.err.println(LOG_TAG + " ERROR persisting fills: " + e.getMessage());
+                    holder.book = null;
+                    return MatchResult.empty(quantity);
+                }
+            }
+            System.err.println(LOG_TAG + " Could not match buy order on " + assetType + " after " + MAX_MATCH_ATTEMPTS + " attempts");
+            return MatchResult.empty(quantity);
+        } finally {
+            holder.lock.unlock();
+        }
+    }
+
+    private <T> List<T> withBook(String assetType, Function<OrderBook, List<T>> view) {
+        if (!supportsAssetType(assetType)) {
+            return List.of();
+        }
+        BookHolder holder = books.computeIfAbsent(assetType, key -> new BookHolder());
+        holder.lock.lock();
+        try {
+            OrderBook book = currentBook(holder, assetType);
+            return book == null ? List.of() : view.apply(book);
+        } finally {
+            holder.lock.unlock();
+        }
+    }
+
+    private OrderBook currentBook(BookHolder holder, String assetType) {
+        OrderBook book = holder.book;
+        if (book != null && System.currentTimeMillis() - holder.loadedAt < BOOK_TTL_MS) {
+            return book;
+        }
+        try {
+            book = loadBook(assetType);
+            holder.book = book;
+            holder.loadedAt = System.currentTimeMillis();
+            return book;
+        } catch (SQLException e) {
+            System.err.println(LOG_TAG + " ERROR loading order book " + assetType + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private OrderBook loadBook(String assetType) throws SQLException {
+        OrderBook book = new OrderBook(assetType);
+        try (Connection conn = MyConnection.openConnection()) {
+            try (PreparedStatement ps = conn.prepareStatement(LOAD_ASKS_SQL)) {
+                ps.setString(1, assetType);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        book.addAsk(rs.getInt("id"), rs.getLong("seller_id"),
+                            OrderBook.toTicks(rs.getBigDecimal("price_per_unit")),
+                            OrderBook.toQuantity(rs.getBigDecimal("available")));
+                    }
+                }
+            }
+            try (PreparedStatement ps = conn.prepareStatement(LOAD_BIDS_SQL)) {
+                ps.setString(1, assetType);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        book.addBid(rs.getInt("id"), rs.getLong("buyer_id"),
+                            OrderBook.toTicks(rs.getBigDecimal("offer_price_usd")),
+                            OrderBook.toQuantity(rs.getBigDecimal("quantity")));
+                    }
+                }
+            }
+        }
+        System.out.println(LOG_TAG + " Order book " + assetType + " loaded: " + book.askCount() + " asks, " + book.bidCount() + " bids");
+        return book;
+    }
+
+    /**
+     * Lock the filled listings (id order), check each fill still holds and insert one order per fill.
+     */
+    private List<Integer> persistFills(Connection conn, int buyerId, List<OrderBook.Fill> fills) throws SQLException {
+        Map<Integer, Long> filledByListing = new LinkedHashMap<>();
+        for (OrderBook.Fill fill : fills) {
+            filledByListing.merge(fill.listingId(), fill.quantity(), Long::sum);
+        }
+        List<Integer> listingIds = new ArrayList<>(filledByListing.keySet());
+        Collections.sort(listingIds);
+        String placeholders = String.join(",", Collections.nCopies(listingIds.size(), "?"));
+
+        Map<Integer, long[]> listings = new HashMap<>(); // id -> {priceTicks, quantity}
+        String lockSql = "SELECT id, status, price_per_unit, quantity_or_id FROM marketplace_listings " +
+                         "WHERE id IN (" + placeholders + ") ORDER BY id FOR UPDATE";
+        try (PreparedStatement ps = conn.prepareStatement(lockSql)) {
+            for (int i = 0; i < listingIds.size(); i++) {
+                ps.setInt(i + 1, listingIds.get(i));
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    if ("ACTIVE".equals(rs.getString("status"))) {
+                        listings.put(rs.getInt("id"), new long[] {
+                            OrderBook.toTicks(rs.getBigDecimal("price_per_unit")),
+                            OrderBook.toQuantity(rs.getBigDecimal("quantity_or_id"))
+                        });
+                    }
+                }
+            }
+        }
+
+        String committedSql = "SELECT listing_id, SUM(quantity) FROM marketplace_orders " +
+                              "WHERE listing_id IN (" + placeholders + ") AND status NOT IN ('CANCELLED', 'REFUNDED') " +
+                              "GROUP BY listing_id";
+        try (PreparedStatement ps = conn.prepareStatement(committedSql)) {
+            for (int i = 0; i < listingIds.size(); i++) {
+                ps.setInt(i + 1, listingIds.get(i));
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    long[] listing = listings.get(rs.getInt(1));
+                    if (listing != null) {
+                        listing[1] -= OrderBook.toQuantity(rs.getBigDecimal(2));
+                    }
+                }
+            }
+        }
+
+        for (OrderBook.Fill fill : fills) {
+            long[] listing = listings.get(fill.listingId());
+            if (listing == null) {
+                throw new StaleBookException("listing " + fill.listingId() + " no longer active");
+            }
+            if (listing[0] != fill.priceTicks()) {
+                throw new StaleBookException("listing " + fill.listingId() + " repriced");
+            }
+        }
+        for (Map.Entry<Integer, Long> filled : filledByListing.entrySet()) {
+            if (listings.get(filled.getKey())[1] < filled.getValue()) {
+                throw new StaleBookException("listing " + filled.getKey() + " has less quantity left");
+            }
+        }
+
+        String insertSql = "INSERT INTO marketplace_orders " +
+            "(listing_id, buyer_id, seller_id, quantity, unit_price_usd, total_amount_usd, status) " +
+            "VALUES (?, ?, ?, ?, ?, ?, 'PENDING')";
+        List<Integer> orderIds = new ArrayList<>(fills.size());
+        try (PreparedStatement ps = conn.prepareStatement(insertSql, Statement.RETURN_GENERATED_KEYS)) {
+            for (OrderBook.Fill fill : fills) {
+                BigDecimal quantity = BigDecimal.valueOf(fill.quantity(), 2);
+                BigDecimal unitPrice = BigDecimal.valueOf(fill.priceTicks(), 4);
+                ps.setInt(1, fill.listingId());
+                ps.setInt(2, buyerId);
+                ps.setLong(3, fill.sellerId());
+                ps.setBigDecimal(4, quantity);
+                ps.setBigDecimal(5, unitPrice);
+                ps.setBigDecimal(6, quantity.multiply(unitPrice).setScale(2, RoundingMode.HALF_UP));
+                ps.addBatch();
+            }
+            ps.executeBatch();
+            try (ResultSet keys = ps.getGeneratedKeys()) {
+                while (keys.next()) {
+                    orderIds.add(keys.getInt(1));
+                }
+            }
+        }
+
+        // Payment intents are created by the outbox workers once the orders are committed
+        // (placeBuy only matches when the outbox is enabled)
+        PaymentOutboxService outbox = PaymentOutboxService.getInstance();
+        for (int i = 0; i < orderIds.size(); i++) {
+            OrderBook.Fill fill = fills.get(i);
+            BigDecimal quantity = BigDecimal.valueOf(fill.quantity(), 2);
+            BigDecimal unitPrice = BigDecimal.valueOf(fill.priceTicks(), 4);
+            outbox.enqueue(conn, orderIds.get(i),
+                quantity.multiply(unitPrice).setScale(2, RoundingMode.HALF_UP).doubleValue(),
+                buyerId, (int) fill.sellerId(),
+                String.format("Marketplace Order #%d - %.2f tCO2e @ $%.2f/ton",
+                    orderIds.get(i), quantity.doubleValue(), unitPrice.doubleValue()));
+        }
+        return orderIds;
+    }
+
+    private MatchResult toResult(List<Integer> orderIds, List<OrderBook.Fill> fills, double requested) {
+        long filled = 0;
+        BigDecimal notional = BigDecimal.ZERO;
+        for (OrderBook.Fill fill : fills) {
+            filled += fill.quantity();
+            notional = notional.add(BigDecimal.valueOf(fill.quantity(), 2).multiply(BigDecimal.valueOf(fill.priceTicks(), 4)));
+        }
+        double filledQuantity = OrderBook.fromQuantity(filled);
+        double averagePrice = filled == 0 ? 0 : notional.doubleValue() / filledQuantity;
+        System.out.println(LOG_TAG + String.format(" Buy matched: %d fills, %.2f / %.2f @ avg $%.4f, orders %s",
+            fills.size(), filledQuantity, requested, averagePrice, orderIds));
+        return new MatchResult(orderIds, fills, requested, filledQuantity, averagePrice);
+    }
+}
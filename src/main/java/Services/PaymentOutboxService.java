@@ -0,0 +1,507 @@
+package Services;
+
+import DataBase.MyConnection;
+import DataBase.TransactionTemplate;
+import Utils.EnvLoader;
+import com.google.gson.JsonObject;
+import com.stripe.exception.ApiConnectionException;
+import com.stripe.exception.IdempotencyException;
+import com.stripe.exception.RateLimitException;
+import com.stripe.exception.StripeException;
+import com.stripe.model.PaymentIntent;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Creates the Stripe payment intents of marketplace orders outside of the order transaction.
+ *
+ * {@link #enqueue} writes a payment_outbox row on the caller's connection, so the row is committed
+ * together with the order. A poller claims due rows ({@code FOR UPDATE SKIP LOCKED}, so several
+ * application instances can share the table) and hands them to a small worker pool which calls
+ * Stripe with the row's idempotency key:
+ * <ul>
+ *   <li>success: row SENT, order PENDING → PAYMENT_PROCESSING with its stripe_payment_id;</li>
+ *   <li>network error, rate limit, 409/5xx: row back to PENDING with exponential backoff;</li>
+ *   <li>any other error, or {@code PAYMENT_OUTBOX_MAX_ATTEMPTS} reached: row FAILED, order CANCELLED.</li>
+ * </ul>
+ * A claimed row is leased for {@code PAYMENT_OUTBOX_LEASE_SECONDS}; if the worker dies the row is
+ * claimed again and Stripe returns the intent created by the first attempt (same idempotency key).
+ * The webhook ({@link #onPaymentConfirmed}, {@link #onPaymentFailed}) closes the row.
+ *
+ * Requires sql/ADD_PAYMENT_OUTBOX.sql; without the table (or with PAYMENT_OUTBOX=false)
+ * {@link #isEnabled()} is false and orders keep the synchronous Stripe call.
+ */
+public class PaymentOutboxService {
+    private static final String LOG_TAG = "[PaymentOutbox]";
+
+    private static final long BASE_BACKOFF_MS = 1_000;
+    private static final long MAX_BACKOFF_MS = 5 * 60_000;
+    private static final int MAX_ERROR_LENGTH = 500;
+
+    private static final String CLAIM_SQL =
+        "SELECT id, order_id, idempotency_key, amount_usd, buyer_id, seller_id, description, attempts " +
+        "FROM payment_outbox " +
+        "WHERE (status = 'PENDING' AND next_attempt_at <= NOW(3)) " +
+        "   OR (status = 'IN_FLIGHT' AND locked_until < NOW(3)) " +
+        "ORDER BY id LIMIT ? FOR UPDATE SKIP LOCKED";
+
+    private static PaymentOutboxService instance;
+
+    // null until checked once against the database metadata
+    private static volatile Boolean outboxTable;
+
+    private final boolean configured;
+    private final int workerCount;
+    private final int maxAttempts;
+    private final long pollIntervalMs;
+    private final int leaseSeconds;
+
+    private final Semaphore capacity;
+    private final AtomicBoolean started = new AtomicBoolean();
+    private final AtomicBoolean pollScheduled = new AtomicBoolean();
+    private volatile boolean backlog;
+    private ScheduledExecutorService poller;
+    private ThreadPoolExecutor workers;
+
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder retried = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder confirmed = new LongAdder();
+
+    /**
+     * Outbox row claimed by a worker ({@code attempts} includes the current one).
+     */
+    record Entry(long id, int orderId, String idempotencyKey, double amountUsd,
+                 int buyerId, int sellerId, String description, int attempts) {
+    }
+
+    private PaymentOutboxService() {
+        this.configured = !"false".equalsIgnoreCase(EnvLoader.get("PAYMENT_OUTBOX", "true").trim());
+        this.workerCount = Math.max(1, readInt("PAYMENT_OUTBOX_WORKERS", 4));
+        this.maxAttempts = Math.max(1, readInt("PAYMENT_OUTBOX_MAX_ATTEMPTS", 8));
+        this.pollIntervalMs = Math.max(50, readInt("PAYMENT_OUTBOX_POLL_MS", 1_000));
+        this.leaseSeconds = Math.max(5, readInt("PAYMENT_OUTBOX_LEASE_SECONDS", 60));
+        this.capacity = new Semaphore(workerCount);
+    }
+
+    public static synchronized PaymentOutboxService getInstance() {
+        if (instance == null) {
+            instance = new PaymentOutboxService();
+        }
+        return instance;
+    }
+
+    /**
+     * True when orders should go through the outbox (table present and not disabled).
+     */
+    public boolean isEnabled() {
+        if (!configured) {
+            return false;
+        }
+        Boolean cached = outboxTable;
+        if (cached != null) {
+            return cached;
+        }
+        try (Connection conn = MyConnection.openConnection();
+             ResultSet rs = conn.getMetaData().getTables(conn.getCatalog(), null, "payment_outbox", null)) {
+            cached = rs.next();
+            outboxTable = cached;
+            if (!cached) {
+                System.out.println(LOG_TAG + " payment_outbox table missing, payment intents are created synchronously. " +
+                    "Run sql/ADD_PAYMENT_OUTBOX.sql to enable the outbox.");
+            }
+            return cached;
+        } catch (SQLException e) {
+            System.err.println(LOG_TAG + " Could not inspect payment_outbox: " + e.getMessage());
+            return false;
+        }
+    }
+
+    // ==================== PRODUCER ====================
+
+    /**
+     * Queue the payment intent of {@code orderId} in the caller's transaction. Workers are woken
+     * up once that transaction commits.
+     *
+     * @param conn Connection of the transaction that inserted the order
+     * @return the outbox row ID
+     */
+    public long enqueue(Connection conn, int orderId, double amountUsd, int buyerId, int sellerId,
+                        String description) throws SQLException {
+        String sql = "INSERT INTO payment_outbox " +
+            "(order_id, idempotency_key, amount_usd, buyer_id, seller_id, description) VALUES (?, ?, ?, ?, ?, ?)";
+        long id = -1;
+        try (PreparedStatement ps = conn.prepareStatement(sql, PreparedStatement.RETURN_GENERATED_KEYS)) {
+            ps.setInt(1, orderId);
+            ps.setString(2, idempotencyKey(orderId));
+            ps.setDouble(3, amountUsd);
+            ps.setInt(4, buyerId);
+            ps.setInt(5, sellerId);
+            ps.setString(6, truncate(description, 255));
+            ps.executeUpdate();
+            try (ResultSet rs = ps.getGeneratedKeys()) {
+                if (rs.next()) {
+                    id = rs.getLong(1);
+                }
+            }
+        }
+        if (!TransactionTemplate.registerSynchronization(conn, committed -> {
+            if (committed) {
+                wakeUp();
+            }
+        })) {
+            // Not in a TransactionTemplate: the poller picks the row up on its next pass
+            start();
+        }
+        return id;
+    }
+
+    static String idempotencyKey(int orderId) {
+        return "order-" + orderId + "-payment";
+    }
+
+    // ==================== WEBHOOK ====================
+
+    /**
+     * payment_intent.succeeded: close the order's outbox row.
+     */
+    public boolean onPaymentConfirmed(int orderId, String paymentIntentId) {
+        return close(orderId, paymentIntentId, "CONFIRMED");
+    }
+
+    /**
+     * payment_intent.payment_failed: close the order's outbox row.
+     */
+    public boolean onPaymentFailed(int orderId, String paymentIntentId) {
+        return close(orderId, paymentIntentId, "FAILED");
+    }
+
+    private boolean close(int orderId, String paymentIntentId, String status) {
+        if (!isEnabled()) {
+            return false;
+        }
+        String sql = "UPDATE payment_outbox SET status = ?, stripe_payment_id = COALESCE(stripe_payment_id, ?), " +
+            "locked_until = NULL WHERE order_id = ? AND status IN ('PENDING', 'IN_FLIGHT', 'SENT')";
+        try (Connection conn = MyConnection.openConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, status);
+            ps.setString(2, paymentIntentId);
+            ps.setInt(3, orderId);
+            boolean updated = ps.executeUpdate() > 0;
+            if (updated && "CONFIRMED".equals(status)) {
+                confirmed.increment();
+            }
+            return updated;
+        } catch (SQLException e) {
+            System.err.println(LOG_TAG + " ERROR closing outbox entry of order " + orderId + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    // ==================== DISPATCHER ====================
+
+    /**
+     * Start the poller and the workers (idempotent). Also picks up rows left by a previous run.
+     */
+    public void start() {
+        if (!isEnabled() || !started.compareAndSet(false, true)) {
+            return;
+        }
+        AtomicInteger ids = new AtomicInteger();
+        poller = Executors.newSingleThreadScheduledExecutor(r -> daemon(r, "payment-outbox-poller"));
+        workers = new ThreadPoolExecutor(workerCount, workerCount, 60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(), r -> daemon(r, "payment-outbox-" + ids.incrementAndGet()));
+        workers.allowCoreThreadTimeOut(true);
+        poller.scheduleWithFixedDelay(this::poll, 0, pollIntervalMs, TimeUnit.MILLISECONDS);
+        System.out.println(LOG_TAG + " Started: workers=" + workerCount + ", maxAttempts=" + maxAttempts
+            + ", poll=" + pollIntervalMs + "ms, lease=" + leaseSeconds + "s");
+    }
+
+    public void stop() {
+        if (!started.compareAndSet(true, false)) {
+            return;
+        }
+        poller.shutdownNow();
+        workers.shutdown();
+        try {
+            if (!workers.awaitTermination(10, TimeUnit.SECONDS)) {
+                workers.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            workers.shutdownNow();
+        }
+    }
+
+    /**
+     * Poll now instead of waiting for the next interval.
+     */
+    public void wakeUp() {
+        start();
+        ScheduledExecutorService current = poller;
+        if (current == null || current.isShutdown() || !pollScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            current.execute(() -> {
+                pollScheduled.set(false);
+                poll();
+            });
+        } catch (RuntimeException e) {
+            pollScheduled.set(false);
+        }
+    }
+
+    // Runs on the poller thread only, so nothing else acquires capacity between the check and the claim
+    private void poll() {
+        if (!started.get()) {
+            return;
+        }
+        int free = capacity.availablePermits();
+        if (free == 0) {
+            backlog = true;
+            return;
+        }
+        List<Entry> claimed;
+        try {
+            claimed = claim(free);
+        } catch (SQLException | RuntimeException e) {
+            System.err.println(LOG_TAG + " ERROR claiming outbox entries: " + e.getMessage());
+            return;
+        }
+        backlog = claimed.size() == free;
+        for (Entry entry : claimed) {
+            capacity.acquireUninterruptibly();
+            try {
+                workers.execute(() -> {
+                    try {
+                        process(entry);
+                    } finally {
+                        capacity.release();
+                        if (backlog) {
+                            wakeUp();
+                        }
+                    }
+                });
+            } catch (RuntimeException e) {
+                // Shutting down: the lease expires and the row is claimed again later
+                capacity.release();
+            }
+        }
+    }
+
+    private List<Entry> claim(int limit) throws SQLException {
+        return TransactionTemplate.execute(conn -> {
+            List<Entry> entries = new ArrayList<>();
+            try (PreparedStatement ps = conn.prepareStatement(CLAIM_SQL)) {
+                ps.setInt(1, limit);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        entries.add(new Entry(
+                            rs.getLong("id"),
+                            rs.getInt("order_id"),
+                            rs.getString("idempotency_key"),
+                            rs.getDouble("amount_usd"),
+                            rs.getInt("buyer_id"),
+                            rs.getInt("seller_id"),
+                            rs.getString("description"),
+                            rs.getInt("attempts") + 1));
+                    }
+                }
+            }
+            if (entries.isEmpty()) {
+                return entries;
+            }
+            String sql = "UPDATE payment_outbox SET status = 'IN_FLIGHT', attempts = attempts + 1, " +
+                "locked_until = TIMESTAMPADD(SECOND, ?, NOW(3)) WHERE id = ?";
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                for (Entry entry : entries) {
+                    ps.setInt(1, leaseSeconds);
+                    ps.setLong(2, entry.id());
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+            return entries;
+        });
+    }
+
+    void process(Entry entry) {
+        try {
+            PaymentIntent intent = StripePaymentService.getInstance().createPaymentIntent(
+                entry.orderId(), entry.amountUsd(), entry.buyerId(), entry.sellerId(),
+                entry.description(), entry.idempotencyKey());
+            markSent(entry, intent.getId());
+        } catch (StripeException e) {
+            if (isRetryable(e) && entry.attempts() < maxAttempts) {
+                reschedule(entry, describe(e));
+            } else {
+                markFailed(entry, describe(e));
+            }
+        } catch (RuntimeException e) {
+            if (entry.attempts() < maxAttempts) {
+                reschedule(entry, e.toString());
+            } else {
+                markFailed(entry, e.toString());
+            }
+        }
+    }
+
+    /**
+     * Network errors, rate limiting, 409 (lock_timeout) and 5xx are worth retrying with the same
+     * idempotency key; card/validation errors and idempotency conflicts are not.
+     */
+    static boolean isRetryable(StripeException e) {
+        if (e instanceof IdempotencyException) {
+            return false;
+        }
+        if (e instanceof ApiConnectionException || e instanceof RateLimitException) {
+            return true;
+        }
+        Integer status = e.getStatusCode();
+        return status != null && (status == 409 || status >= 500);
+    }
+
+    /**
+     * Delay before attempt {@code attempts + 1}: doubles from {@value #BASE_BACKOFF_MS} ms up to
+     * {@value #MAX_BACKOFF_MS} ms, half of it random so retries of many rows spread out.
+     */
+    static long backoffMillis(int attempts) {
+        long delay = BASE_BACKOFF_MS << Math.min(Math.max(attempts - 1, 0), 20);
+        delay = Math.min(delay, MAX_BACKOFF_MS);
+        return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+
+    private void markSent(Entry entry, String paymentIntentId) {
+        try {
+            TransactionTemplate.execute(conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(
+                        "UPDATE payment_outbox SET status = 'SENT', stripe_payment_id = ?, locked_until = NULL, " +
+                        "last_error = NULL WHERE id = ? AND status = 'IN_FLIGHT'")) {
+                    ps.setString(1, paymentIntentId);
+                    ps.setLong(2, entry.id());
+                    ps.executeUpdate();
+                }
+                // The webhook may already have moved the order further
+                try (PreparedStatement ps = conn.prepareStatement(
+                        "UPDATE marketplace_orders SET status = 'PAYMENT_PROCESSING', stripe_payment_id = ?, " +
+                        "updated_at = NOW() WHERE id = ? AND status = 'PENDING'")) {
+                    ps.setString(1, paymentIntentId);
+                    ps.setInt(2, entry.orderId());
+                    ps.executeUpdate();
+                }
+                return null;
+            });
+            sent.increment();
+            System.out.println(LOG_TAG + " Order " + entry.orderId() + " → PAYMENT_PROCESSING (" + paymentIntentId
+                + ", attempt " + entry.attempts() + ")");
+        } catch (SQLException e) {
+            // Left IN_FLIGHT: reclaimed after the lease, Stripe returns the same intent for the key
+            System.err.println(LOG_TAG + " ERROR recording payment intent of order " + entry.orderId() + ": " + e.getMessage());
+        }
+    }
+
+    private void reschedule(Entry entry, String error) {
+        long delay = backoffMillis(entry.attempts());
+        String sql = "UPDATE payment_outbox SET status = 'PENDING', locked_until = NULL, last_error = ?, " +
+            "next_attempt_at = TIMESTAMPADD(MICROSECOND, ?, NOW(3)) WHERE id = ? AND status = 'IN_FLIGHT'";
+        try (Connection conn = MyConnection.openConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, truncate(error, MAX_ERROR_LENGTH));
+            ps.setLong(2, delay * 1_000);
+            ps.setLong(3, entry.id());
+            ps.executeUpdate();
+            retried.increment();
+            System.err.println(LOG_TAG + " Order " + entry.orderId() + ": attempt " + entry.attempts() + "/" + maxAttempts
+                + " failed (" + error + "), retry in " + delay + "ms");
+        } catch (SQLException e) {
+            System.err.println(LOG_TAG + " ERROR rescheduling order " + entry.orderId() + ": " + e.getMessage());
+        }
+    }
+
+    private void markFailed(Entry entry, String error) {
+        try {
+            TransactionTemplate.execute(conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(
+                        "UPDATE payment_outbox SET status = 'FAILED', locked_until = NULL, last_error = ? " +
+                        "WHERE id = ? AND status = 'IN_FLIGHT'")) {
+                    ps.setString(1, truncate(error, MAX_ERROR_LENGTH));
+                    ps.setLong(2, entry.id());
+                    ps.executeUpdate();
+                }
+                try (PreparedStatement ps = conn.prepareStatement(
+                        "UPDATE marketplace_orders SET status = 'CANCELLED', updated_at = NOW() " +
+                        "WHERE id = ? AND status = 'PENDING'")) {
+                    ps.setInt(1, entry.orderId());
+                    ps.executeUpdate();
+                }
+                return null;
+            });
+            failed.increment();
+            // The cancelled quantity is available again
+            OrderBookService.getInstance().invalidateAll();
+            System.err.println(LOG_TAG + " Order " + entry.orderId() + " CANCELLED after " + entry.attempts()
+                + " attempt(s): " + error);
+        } catch (SQLException e) {
+            System.err.println(LOG_TAG + " ERROR failing order " + entry.orderId() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Counters since startup plus the number of busy workers.
+     */
+    public JsonObject stats() {
+        JsonObject stats = new JsonObject();
+        stats.addProperty("enabled", started.get());
+        stats.addProperty("workers", workerCount);
+        stats.addProperty("busy", workerCount - capacity.availablePermits());
+        stats.addProperty("sent", sent.sum());
+        stats.addProperty("retried", retried.sum());
+        stats.addProperty("failed", failed.sum());
+        stats.addProperty("confirmed", confirmed.sum());
+        return stats;
+    }
+
+    private static String describe(StripeException e) {
+        String code = e.getCode() != null ? e.getCode() : e.getClass().getSimpleName();
+        return (e.getStatusCode() != null ? e.getStatusCode() + " " : "") + code + ": " + e.getMessage();
+    }
+
+    private static String truncate(String value, int max) {
+        return value == null || value.length() <= max ? value : value.substring(0, max);
+    }
+
+    private static Thread daemon(Runnable r, String name) {
+        Thread t = new Thread(r, name);
+        t.setDaemon(true);
+        return t;
+    }
+
+    private static int readInt(String key, int defaultValue) {
+        String value = EnvLoader.get(key);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            System.err.println(LOG_TAG + " Invalid value for " + key + ": " + value);
+            return defaultValue;
+        }
+    }
+}
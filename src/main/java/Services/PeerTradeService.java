@@ -13,12 +13,10 @@ import java.util.*;
 public class PeerTradeService {
     private static final String LOG_TAG = "[PeerTradeService]";
     private static PeerTradeService instance;
-    private Connection conn;
 
     private final StripePaymentService stripeService;
 
     private PeerTradeService() {
-        this.conn = MyConnection.getConnection();
         this.stripeService = StripePaymentService.getInstance();
     }
 
@@ -38,14 +36,13 @@ public class PeerTradeService {
         int tradeId = -1;
 
         try {
-            if (conn == null) return tradeId;
-
             String sql = "INSERT INTO peer_trades " +
                     "(initiator_id, responder_id, asset_type, quantity, proposed_price_usd, " +
                     "initiator_wallet_id, responder_wallet_id, status) " +
                     "VALUES (?, ?, ?, ?, ?, ?, ?, 'PROPOSED')";
 
-            try (PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            try (Connection conn = MyConnection.openConnection();
+                 PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
                 stmt.setInt(1, initiatorId);
                 stmt.setInt(2, responderId);
                 stmt.setString(3, assetType);
@@ -83,12 +80,11 @@ public class PeerTradeService {
      */
     public boolean counterOffer(int tradeId, double newProposedPrice) {
         try {
-            if (conn == null) return false;
-
             String sql = "UPDATE peer_trades SET proposed_price_usd = ?, status = 'NEGOTIATING', " +
                     "updated_at = NOW() WHERE id = ?";
 
-            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            try (Connection conn = MyConnection.openConnection();
+                 PreparedStatement stmt = conn.prepareStatement(sql)) {
                 stmt.setDouble(1, newProposedPrice);
                 stmt.setInt(2, tradeId);
 
@@ -110,12 +106,11 @@ public class PeerTradeService {
      */
     public boolean agreeOnPrice(int tradeId, double agreedPrice) {
         try {
-            if (conn == null) return false;
-
             String sql = "UPDATE peer_trades SET agreed_price_usd = ?, status = 'ACCEPTED', " +
                     "updated_at = NOW() WHERE id = ?";
 
-            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            try (Connection conn = MyConnection.openConnection();
+                 PreparedStatement stmt = conn.prepareStatement(sql)) {
                 stmt.setDouble(1, agreedPrice);
                 stmt.setInt(2, tradeId);
 
@@ -136,9 +131,7 @@ public class PeerTradeService {
      * Settle a trade (process payment and transfer assets)
      */
     public boolean settleTrade(int tradeId, String stripeChargeId) {
-        try {
-            if (conn == null) return false;
-
+        try (Connection conn = MyConnection.openConnection()) {
             conn.setAutoCommit(false);
 
             try {
@@ -153,7 +146,7 @@ public class PeerTradeService {
                 double totalValue = trade.getTotalValue();
 
                 // Create escrow record
-                int escrowId = createEscrow(null, tradeId, trade.getInitiatorId(), 
+                int escrowId = createEscrow(conn, null, tradeId, trade.getInitiatorId(), 
                     trade.getResponderId(), totalValue);
 
                 if (escrowId <= 0) {
@@ -175,10 +168,10 @@ public class PeerTradeService {
                 }
 
                 // Release escrow to seller (responder receives payment)
-                releaseEscrowToSeller(escrowId);
+                releaseEscrowToSeller(conn, escrowId);
 
                 // Record transaction fee
-                recordTransactionFee(null, tradeId, trade.getResponderId(), 
+                recordTransactionFee(conn, null, tradeId, trade.getResponderId(), 
                     stripeService.calculatePlatformFee(totalValue));
 
                 conn.commit();
@@ -201,12 +194,11 @@ public class PeerTradeService {
      */
     public boolean denyTrade(int tradeId, String reason) {
         try {
-            if (conn == null) return false;
-
             String sql = "UPDATE peer_trades SET status = 'CANCELLED', " +
                     "updated_at = NOW() WHERE id = ? AND status IN ('PROPOSED', 'NEGOTIATING')";
 
-            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            try (Connection conn = MyConnection.openConnection();
+                 PreparedStatement stmt = conn.prepareStatement(sql)) {
                 stmt.setInt(1, tradeId);
 
                 int updated = stmt.executeUpdate();
@@ -227,10 +219,9 @@ public class PeerTradeService {
      */
     public PeerTrade getTradeById(int tradeId) {
         try {
-            if (conn == null) return null;
-
             String sql = "SELECT * FROM peer_trades WHERE id = ?";
-            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            try (Connection conn = MyConnection.openConnection();
+                 PreparedStatement stmt = conn.prepareStatement(sql)) {
                 stmt.setInt(1, tradeId);
 
                 try (ResultSet rs = stmt.executeQuery()) {
@@ -253,12 +244,11 @@ public class PeerTradeService {
         List<PeerTrade> trades = new ArrayList<>();
 
         try {
-            if (conn == null) return trades;
-
             String sql = "SELECT * FROM peer_trades WHERE responder_id = ? " +
                     "AND status IN ('PROPOSED', 'NEGOTIATING') ORDER BY created_at DESC";
 
-            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            try (Connection conn = MyConnection.openConnection();
+                 PreparedStatement stmt = conn.prepareStatement(sql)) {
                 stmt.setInt(1, userId);
 
                 try (ResultSet rs = stmt.executeQuery()) {
@@ -281,12 +271,11 @@ public class PeerTradeService {
         List<PeerTrade> trades = new ArrayList<>();
 
         try {
-            if (conn == null) return trades;
-
             String sql = "SELECT * FROM peer_trades WHERE initiator_id = ? OR responder_id = ? " +
                     "ORDER BY created_at DESC";
 
-            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            try (Connection conn = MyConnection.openConnection();
+                 PreparedStatement stmt = conn.prepareStatement(sql)) {
                 stmt.setInt(1, userId);
                 stmt.setInt(2, userId);
 
@@ -306,11 +295,9 @@ public class PeerTradeService {
     /**
      * Create escrow for trade
      */
-    private int createEscrow(Integer orderId, Integer tradeId, int buyerId, 
+    private int createEscrow(Connection conn, Integer orderId, Integer tradeId, int buyerId, 
                             int sellerId, double amountUsd) {
         try {
-            if (conn == null) return -1;
-
             String sql = "INSERT INTO marketplace_escrow " +
                     "(order_id, trade_id, buyer_id, seller_id, amount_usd, status) " +
                     "VALUES (?, ?, ?, ?, ?, 'HELD')";
@@ -340,10 +327,8 @@ public class PeerTradeService {
     /**
      * Release escrow to seller
      */
-    private boolean releaseEscrowToSeller(int escrowId) {
+    private boolean releaseEscrowToSeller(Connection conn, int escrowId) {
         try {
-            if (conn == null) return false;
-
             String sql = "UPDATE marketplace_escrow SET status = 'RELEASED_TO_SELLER', " +
                     "release_date = NOW() WHERE id = ?";
 
@@ -361,10 +346,8 @@ public class PeerTradeService {
     /**
      * Record transaction fee
      */
-    private void recordTransactionFee(Integer orderId, Integer tradeId, int sellerId, double feeAmount) {
+    private void recordTransactionFee(Connection conn, Integer orderId, Integer tradeId, int sellerId, double feeAmount) {
         try {
-            if (conn == null) return;
-
             String sql = "INSERT INTO marketplace_fees " +
                     "(order_id, trade_id, seller_id, fee_amount_usd, fee_type, status) " +
                     "VALUES (?, ?, ?, ?, 'TRANSACTION_FEE', 'PENDING')";
@@ -386,11 +369,10 @@ public class PeerTradeService {
      */
     private boolean updateTradeStatus(int tradeId, String newStatus) {
         try {
-            if (conn == null) return false;
-
             String sql = "UPDATE peer_trades SET status = ?, updated_at = NOW() WHERE id = ?";
 
-            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            try (Connection conn = MyConnection.openConnection();
+                 PreparedStatement stmt = conn.prepareStatement(sql)) {
                 stmt.setString(1, newStatus);
                 stmt.setInt(2, tradeId);
 
@@ -9,10 +9,7 @@ import java.util.List;
 
 public class ProjetService {
 
-    private final Connection cnx;
-
     public ProjetService() {
-        this.cnx = MyConnection.getConnection();
     }
 
     public List<Projet> afficher() {
@@ -124,52 +121,53 @@ public class ProjetService {
         String sqlBudget =
                 "INSERT INTO budget (montant, raison, devise, id_projet) VALUES (?,?,?,?)";
 
-        try {
+        try (Connection cnx = MyConnection.openConnection()) {
             cnx.setAutoCommit(false);
+            try {
+                int newId;
+                try (PreparedStatement ps = cnx.prepareStatement(sqlProjet, Statement.RETURN_GENERATED_KEYS)) {
 
-            int newId;
-            try (PreparedStatement ps = cnx.prepareStatement(sqlProjet, Statement.RETURN_GENERATED_KEYS)) {
+                    ps.setInt(1, p.getEntrepriseId());
+                    ps.setString(2, p.getTitre());
+                    ps.setString(3, p.getDescription());
 
-                ps.setInt(1, p.getEntrepriseId());
-                ps.setString(2, p.getTitre());
-                ps.setString(3, p.getDescription());
+                    // statut
+                    String statut = safeStatut(p);
+                    ps.setString(4, statut);
 
-                // statut
-                String statut = safeStatut(p);
-                ps.setString(4, statut);
+                    // score ESG doit rester NULL côté entreprise
+                    if (p.getScoreEsg() == null) ps.setNull(5, Types.INTEGER);
+                    else ps.setInt(5, p.getScoreEsg());
 
-                // score ESG doit rester NULL côté entreprise
-                if (p.getScoreEsg() == null) ps.setNull(5, Types.INTEGER);
-                else ps.setInt(5, p.getScoreEsg());
+                    ps.setString(6, p.getCompanyAddress());
+                    ps.setString(7, p.getCompanyEmail());
+                    ps.setString(8, p.getCompanyPhone());
 
-                ps.setString(6, p.getCompanyAddress());
-                ps.setString(7, p.getCompanyEmail());
-                ps.setString(8, p.getCompanyPhone());
+                    ps.executeUpdate();
 
-                ps.executeUpdate();
+                    try (ResultSet keys = ps.getGeneratedKeys()) {
+                        if (!keys.next()) throw new SQLException("Insertion projet: aucune clé générée");
+                        newId = keys.getInt(1);
+                    }
+                }
 
-                try (ResultSet keys = ps.getGeneratedKeys()) {
-                    if (!keys.next()) throw new SQLException("Insertion projet: aucune clé générée");
-                    newId = keys.getInt(1);
+                try (PreparedStatement psB = cnx.prepareStatement(sqlBudget)) {
+                    psB.setDouble(1, b.getMontant());
+                    psB.setString(2, b.getRaison());
+                    psB.setString(3, normalizeDevise(b.getDevise()));
+                    psB.setInt(4, newId);
+                    psB.executeUpdate();
                 }
-            }
 
-            try (PreparedStatement psB = cnx.prepareStatement(sqlBudget)) {
-                psB.setDouble(1, b.getMontant());
-                psB.setString(2, b.getRaison());
-                psB.setString(3, normalizeDevise(b.getDevise()));
-                psB.setInt(4, newId);
-                psB.executeUpdate();
+                cnx.commit();
+                return newId;
+            } catch (SQLException e) {
+                rollbackQuietly(cnx);
+                throw e;
             }
-
-            cnx.commit();
-            return newId;
         } catch (SQLException e) {
-            rollbackQuietly();
             System.out.println("Erreur insertAndReturnId: " + e.getMessage());
             return -1;
-        } finally {
-            setAutoCommitQuietly(true);
         }
     }
 
@@ -203,46 +201,46 @@ public class ProjetService {
         String sqlBudget =
                 "UPDATE budget SET montant=?, raison=?, devise=? WHERE id_projet=?";
 
-        try {
+        try (Connection cnx = MyConnection.openConnection()) {
             cnx.setAutoCommit(false);
+            try {
+                try (PreparedStatement ps = cnx.prepareStatement(sqlProjet)) {
+                    ps.setString(1, p.getTitre());
+                    ps.setString(2, p.getDescription());
+                    ps.setString(3, p.getCompanyAddress());
+                    ps.setString(4, p.getCompanyEmail());
+                    ps.setString(5, p.getCompanyPhone());
+                    ps.setInt(6, p.getId());
+                    ps.executeUpdate();
+                }
 
-            try (PreparedStatement ps = cnx.prepareStatement(sqlProjet)) {
-                ps.setString(1, p.getTitre());
-                ps.setString(2, p.getDescription());
-                ps.setString(3, p.getCompanyAddress());
-                ps.setString(4, p.getCompanyEmail());
-                ps.setString(5, p.getCompanyPhone());
-                ps.setInt(6, p.getId());
-                ps.executeUpdate();
-            }
-
-            int updated;
-            try (PreparedStatement psB = cnx.prepareStatement(sqlBudget)) {
-                psB.setDouble(1, b.getMontant());
-                psB.setString(2, b.getRaison());
-                psB.setString(3, normalizeDevise(b.getDevise()));
-                psB.setInt(4, p.getId());
-                updated = psB.executeUpdate();
-            }
-
-            if (updated == 0) {
-                String ins = "INSERT INTO budget (montant, raison, devise, id_projet) VALUES (?,?,?,?)";
-                try (PreparedStatement psIns = cnx.prepareStatement(ins)) {
-                    psIns.setDouble(1, b.getMontant());
-                    psIns.setString(2, b.getRaison());
-                    psIns.setString(3, normalizeDevise(b.getDevise()));
-                    psIns.setInt(4, p.getId());
-                    psIns.executeUpdate();
+                int updated;
+                try (PreparedStatement psB = cnx.prepareStatement(sqlBudget)) {
+                    psB.setDouble(1, b.getMontant());
+                    psB.setString(2, b.getRaison());
+                    psB.setString(3, normalizeDevise(b.getDevise()));
+                    psB.setInt(4, p.getId());
+                    updated = psB.executeUpdate();
                 }
-            }
 
-            cnx.commit();
+                if (updated == 0) {
+                    String ins = "INSERT INTO budget (montant, raison, devise, id_projet) VALUES (?,?,?,?)";
+                    try (PreparedStatement psIns = cnx.prepareStatement(ins)) {
+                        psIns.setDouble(1, b.getMontant());
+                        psIns.setString(2, b.getRaison());
+                        psIns.setString(3, normalizeDevise(b.getDevise()));
+                        psIns.setInt(4, p.getId());
+                        psIns.executeUpdate();
+                    }
+                }
 
+                cnx.commit();
+            } catch (SQLException e) {
+                rollbackQuietly(cnx);
+                throw e;
+            }
         } catch (SQLException e) {
-            rollbackQuietly();
             System.out.println("Erreur updateDraft: " + e.getMessage());
-        } finally {
-            setAutoCommitQuietly(true);
         }
     }
 
@@ -406,11 +404,7 @@ public class ProjetService {
         return "TND";
     }
 
-    private void rollbackQuietly() {
+    private void rollbackQuietly(Connection cnx) {
         try { cnx.rollback(); } catch (Exception ignored) {}
     }
-
-    private void setAutoCommitQuietly(boolean value) {
-        try { cnx.setAutoCommit(value); } catch (Exception ignored) {}
-    }
 }
\ No newline at end of file
@@ -8,6 +8,8 @@ import weka.core.Instances;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
 
 /**
  * RiskAnalysisService
@@ -29,6 +31,15 @@ public class RiskAnalysisService {
 
     private Classifier model;
     private Instances datasetStructure;
+    private WekaBatchScorer batchScorer;
+
+    /**
+     * One financing record to score with {@link #predictRiskBatch(List)}.
+     * Same fields and units as {@link #predictRisk}.
+     */
+    public record RiskInput(double budget, double duration, String type,
+                            double co2Impact, double maturity, double fundingRatio) {
+    }
 
     // ─────────────────────────────────────────────────────────────
     // Constructor — called in FinanceRiskAgentController.initialize()
@@ -38,6 +49,7 @@ public class RiskAnalysisService {
         try {
             loadModel();
             buildDatasetStructure();
+            batchScorer = new WekaBatchScorer("[RiskAnalysisService]", model);
             System.out.println("✅ RiskAnalysisService ready.");
         } catch (Exception e) {
             System.err.println("❌ RiskAnalysisService failed to init: " + e.getMessage());
@@ -181,4 +193,71 @@ public class RiskAnalysisService {
             return "error";
         }
     }
-}
\ No newline at end of file
+
+    // ─────────────────────────────────────────────────────────────
+    // BATCH VERSION — scores a whole portfolio in one call
+    //
+    // All records go into ONE Instances set built from datasetStructure,
+    // then J48 classifies it in parallel chunks (see WekaBatchScorer).
+    // No per-row logging: only the throughput is printed.
+    //
+    // @param records  financing records, same values as predictRisk()
+    // @return         one label per record, in the same order:
+    //                 "low", "medium", "high", or "error" for a bad row
+    // ─────────────────────────────────────────────────────────────
+    public WekaBatchScorer.Result<String> predictRiskBatch(List<RiskInput> records) {
+        long start = System.nanoTime();
+        List<String> results = new ArrayList<>(records.size());
+
+        if (model == null || datasetStructure == null) {
+            System.err.println("❌ Cannot predict batch: model or structure is null.");
+            for (int i = 0; i < records.size(); i++) results.add("error");
+            return new WekaBatchScorer.Result<>(results, records.size(), System.nanoTime() - start);
+        }
+
+        // Step 1: one dataset for the whole batch, same schema as predictRisk()
+        Instances batch = new Instances(datasetStructure, records.size());
+        Attribute typeAttribute = datasetStructure.attribute("type");
+        BitSet invalid = new BitSet(records.size());
+
+        for (int i = 0; i < records.size(); i++) {
+            RiskInput record = records.get(i);
+            int typeIndex = record.type() == null ? -1 : typeAttribute.indexOfValue(record.type());
+            if (typeIndex < 0) {
+                // Unknown sector: predictRisk() would fail on setValue(), same here
+                invalid.set(i);
+            }
+
+            // Values in buildDatasetStructure() order, class left missing
+            double[] values = {
+                    record.budget(),
+                    record.duration(),
+                    typeIndex < 0 ? weka.core.Utils.missingValue() : typeIndex,
+                    record.co2Impact(),
+                    record.maturity(),
+                    record.fundingRatio(),
+                    weka.core.Utils.missingValue()
+            };
+            batch.add(new DenseInstance(1.0, values));
+        }
+
+        // Step 2: classify in parallel chunks
+        double[] classIndexes = batchScorer.classify(batch, invalid);
+
+        // Step 3: back to labels, in input order
+        int failed = 0;
+        for (double classIndex : classIndexes) {
+            if (Double.isNaN(classIndex)) {
+                results.add("error");
+                failed++;
+            } else {
+                results.add(datasetStructure.classAttribute().value((int) classIndex));
+            }
+        }
+
+        WekaBatchScorer.Result<String> result =
+                new WekaBatchScorer.Result<>(results, failed, System.nanoTime() - start);
+        System.out.println("✅ Batch risk prediction → " + result);
+        return result;
+    }
+}
@@ -12,7 +12,6 @@ import java.math.RoundingMode;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 /**
@@ -44,8 +43,8 @@ public class ScopeEmissionCalculator {
     private final CurrencyService currencyService;
     private final UnspscClassifier unspscClassifier;
     
-    // UNSPSC → Climatiq activity mapping cache (static for all instances)
-    private static final Map<String, String> ACTIVITY_MAPPING = new ConcurrentHashMap<>();
+    // UNSPSC → Climatiq activity mapping and description keywords (src/main/resources/unspsc)
+    private final UnspscIndex unspscIndex;
     
     // Baseline emissions for loss aversion framing (tCO₂e)
     private static final BigDecimal INDUSTRY_BASELINE_SMALL = new BigDecimal("50.0");  // < 50 employees
@@ -62,20 +61,11 @@ public class ScopeEmissionCalculator {
         2024, new BigDecimal("1.407")
     );
     
-    static {
-        // Common UNSPSC → Climatiq activity mappings
-        ACTIVITY_MAPPING.put("25101500", "electricity-energy_source_grid_mix"); // Electrical equipment
-        ACTIVITY_MAPPING.put("15101500", "natural_gas-fuel_type_natural_gas"); // Fuel oils
-        ACTIVITY_MAPPING.put("25171500", "diesel-fuel_type_diesel"); // Vehicles
-        ACTIVITY_MAPPING.put("44101500", "paper-material_type_paper"); // Office supplies
-        ACTIVITY_MAPPING.put("72141100", "business_travel-travel_type_air"); // Air travel services
-        ACTIVITY_MAPPING.put("78111500", "freight_trucking-vehicle_type_truck"); // Transportation services
-    }
-    
     public ScopeEmissionCalculator(ClimatiqApiService climatiqService) {
         this.climatiqService = climatiqService;
         this.currencyService = new CurrencyService();
-        this.unspscClassifier = new UnspscClassifier();
+        this.unspscIndex = UnspscIndex.getDefault();
+        this.unspscClassifier = new UnspscClassifier(unspscIndex);
     }
     
     /**
@@ -169,8 +159,9 @@ public class ScopeEmissionCalculator {
                     // Step 2: Inflation adjustment
                     BigDecimal adjustedAmount = adjustForInflation(usdAmount, record.purchaseDate.getYear());
                     
-                    // Step 3: UNSPSC → Climatiq mapping
-                    String activityId = mapUnspscToClimatiq(record.unspscCode);
+                    // Step 3: UNSPSC → Climatiq mapping (code classified from the description if missing)
+                    String unspscCode = unspscCodeOf(record);
+                    String activityId = mapUnspscToClimatiq(unspscCode);
                     
                     // Step 4: Spend-based calculation
                     return climatiqService.calculateEmissionReactive(
@@ -181,7 +172,7 @@ public class ScopeEmissionCalculator {
                         record.supplierRegion
                     ).onErrorResume(e -> {
                         // Fallback to category average if specific factor unavailable
-                        String categoryActivity = mapUnspscCategoryToClimatiq(record.unspscCode.substring(0, 4));
+                        String categoryActivity = mapUnspscCategoryToClimatiq(unspscCode);
                         return climatiqService.calculateEmissionReactive(
                             categoryActivity,
                             adjustedAmount.doubleValue(),
@@ -203,6 +194,52 @@ public class ScopeEmissionCalculator {
             });
     }
     
+    /**
+     * Resolve up front the emission factors a Scope 3 workload will need, with one API call per
+     * distinct factor (batched under the Climatiq rate limiter) instead of one per record.
+     * Call before {@link #calculateScope3Reactive} on large procurement files.
+     * 
+     * @param procurements procurement records of the workload
+     * @return Mono of the number of distinct factors now cached
+     */
+    public Mono<Integer> prefetchScope3Factors(Collection<ProcurementRecord> procurements) {
+        int year = LocalDateTime.now().getYear();
+        List<ClimatiqApiService.FactorKey> keys = new ArrayList<>();
+        for (ProcurementRecord record : procurements) {
+            keys.add(scope3FactorKey(unspscCodeOf(record), year));
+        }
+        return climatiqService.prefetchEmissionFactorsReactive(keys);
+    }
+    
+    // Factor keys looked up by calculateEmissionReactive for each scope (region argument as
+    // passed by the calculateScopeNReactive methods), shared with StreamingScopeCalculator
+    
+    ClimatiqApiService.FactorKey scope1FactorKey(String fuelType, int year) {
+        return new ClimatiqApiService.FactorKey(mapFuelTypeToClimatiq(fuelType), "direct_combustion", year);
+    }
+    
+    ClimatiqApiService.FactorKey scope2FactorKey(int year) {
+        return new ClimatiqApiService.FactorKey("electricity-energy_source_grid_mix", "electricity_consumption", year);
+    }
+    
+    ClimatiqApiService.FactorKey scope3FactorKey(String unspscCode, int year) {
+        return new ClimatiqApiService.FactorKey(mapUnspscToClimatiq(unspscCode), "spend_based", year);
+    }
+    
+    /**
+     * USD per unit of {@code currency} (1 for unknown currencies, as convertToUsdReactive).
+     */
+    double usdRate(String currency) {
+        return currencyService.rate(currency).doubleValue();
+    }
+    
+    /**
+     * CPI index of {@code year} relative to the baseline year (1 when unknown).
+     */
+    static double cpiIndex(int year) {
+        return CPI_INDEX.getOrDefault(year, BigDecimal.ONE).doubleValue();
+    }
+    
     /**
      * Calculate all scopes in parallel and generate waterfall breakdown.
      * Returns Map with keys: "scope1", "scope2", "scope3", "total", "vs_baseline".
@@ -277,41 +314,32 @@ public class ScopeEmissionCalculator {
     
     /**
      * Map UNSPSC product code (8 digits) to Climatiq activity ID.
-     * Uses cached mapping with segment/family/class fallback hierarchy.
+     * Most specific level listed in the index wins: commodity, class, family, then segment.
      */
     private String mapUnspscToClimatiq(String unspscCode) {
-        if (unspscCode == null || unspscCode.length() < 4) {
-            return "generic_products-product_type_manufactured_goods";
-        }
-        
-        // Direct match in cache
-        if (ACTIVITY_MAPPING.containsKey(unspscCode)) {
-            return ACTIVITY_MAPPING.get(unspscCode);
-        }
-        
-        // Fallback to class level (6 digits)
-        String classCode = unspscCode.substring(0, 6);
-        if (ACTIVITY_MAPPING.containsKey(classCode)) {
-            return ACTIVITY_MAPPING.get(classCode);
+        return unspscIndex.activityFor(unspscCode);
+    }
+    
+    /**
+     * UNSPSC code of a procurement record: its own code, otherwise the code classified from its
+     * description (or category) so that uncoded purchase lines still get a specific activity.
+     */
+    private String unspscCodeOf(ProcurementRecord record) {
+        if (record.unspscCode != null && !record.unspscCode.isBlank()) {
+            return record.unspscCode;
         }
-        
-        // Fallback to family level (4 digits)
-        return mapUnspscCategoryToClimatiq(unspscCode.substring(0, 4));
+        return unspscClassifier.classify(record.description != null ? record.description : record.category);
     }
     
     /**
      * Map UNSPSC category (segment/family) to broad Climatiq activity.
      * Used when specific product mapping unavailable.
      */
-    private String mapUnspscCategoryToClimatiq(String categoryCode) {
-        return switch (categoryCode.substring(0, 2)) {
-            case "15" -> "energy-energy_type_mixed"; // Fuels
-            case "25" -> "electronics-product_type_electronics"; // Industrial machinery
-            case "44" -> "paper-material_type_paper"; // Office supplies
-            case "72" -> "business_services-service_type_professional"; // Business services
-            case "78" -> "freight-vehicle_type_truck"; // Transportation
-            default -> "generic_products-product_type_manufactured_goods";
-        };
+    private String mapUnspscCategoryToClimatiq(String unspscCode) {
+        if (unspscCode == null || unspscCode.length() < 4) {
+            return unspscIndex.activityFor(null);
+        }
+        return unspscIndex.activityFor(unspscCode.substring(0, 2) + "000000");
     }
     
     /**
@@ -423,6 +451,7 @@ public class ScopeEmissionCalculator {
         public LocalDate purchaseDate;
         public String poNumber;        // Purchase order reference
         public String category;        // Human-readable category
+        public String description;     // Purchase line description (classified when unspscCode is missing)
         
         public ProcurementRecord(BigDecimal amount, String currency, String unspscCode) {
             this.amount = amount;
@@ -430,6 +459,7 @@ public class ScopeEmissionCalculator {
             this.unspscCode = unspscCode;
             this.purchaseDate = LocalDate.now();
         }
+
     }
     
     /**
@@ -445,19 +475,27 @@ public class ScopeEmissionCalculator {
         );
         
         public Mono<BigDecimal> convertToUsdReactive(BigDecimal amount, String fromCurrency, LocalDate date) {
-            BigDecimal rate = RATES.getOrDefault(fromCurrency, BigDecimal.ONE);
-            return Mono.just(amount.multiply(rate).setScale(2, RoundingMode.HALF_UP));
+            return Mono.just(amount.multiply(rate(fromCurrency)).setScale(2, RoundingMode.HALF_UP));
+        }
+        
+        public BigDecimal rate(String fromCurrency) {
+            return fromCurrency == null ? BigDecimal.ONE : RATES.getOrDefault(fromCurrency, BigDecimal.ONE);
         }
     }
     
     /**
-     * UNSPSC classifier (stub - integrate with real taxonomy service).
+     * UNSPSC classifier: keyword match on the description (longest keyword wins),
+     * default code 43000000 (Information technology) when nothing matches.
      */
     private static class UnspscClassifier {
+        private final UnspscIndex index;
+        
+        UnspscClassifier(UnspscIndex index) {
+            this.index = index;
+        }
+        
         public String classify(String description) {
-            // Real implementation would use NLP/ML to classify product descriptions
-            // For now, return generic code
-            return "43000000"; // Information technology
+            return index.classify(description);
         }
     }
 }
@@ -24,7 +24,14 @@ public class ScoringService {
     }
 
     public synchronized void refreshReferencesCache() {
-        List<CritereReference> refs = critereImpactService.afficherReferences();
+        setReferences(critereImpactService.afficherReferences());
+    }
+
+    /**
+     * Remplace le référentiel en cache (chargé depuis la base par refreshReferencesCache,
+     * ou fourni directement, ex. benchmarks sans base).
+     */
+    public synchronized void setReferences(Collection<CritereReference> refs) {
         Map<Integer, CritereReference> map = new HashMap<>();
         for (CritereReference r : refs) {
             map.put(r.getIdCritere(), r);
@@ -0,0 +1,438 @@
+package Services;
+
+import Models.climatiq.EmissionFactor;
+import Models.climatiq.EmissionResult;
+import Utils.EnvLoader;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Scope 1/2/3 calculation over activity files of any size (meter readings, fuel logs,
+ * procurement lines), with flat memory use.
+ *
+ * Pipeline:
+ * 1. {@link ActivityFileReader} pulls the file in chunks of SCOPE_STREAM_CHUNK_ROWS lines, only
+ *    when a chunk slot is free (backpressure: at most SCOPE_STREAM_PARALLELISM chunks in memory)
+ * 2. Each chunk is parsed on the parallel scheduler
+ * 3. The distinct emission factors of the chunk are resolved with at most
+ *    SCOPE_STREAM_FACTOR_CONCURRENCY lookups at once (cached and coalesced by ClimatiqApiService)
+ * 4. Rows are aggregated per scope/facility/region/UNSPSC class into partial totals, merged as
+ *    chunks complete; the progress listener is called at most once per second and at the end
+ *
+ * Input columns (CSV header or JSONL keys): scope (1, 2 or 3), facility, region, fuel_type
+ * (scope 1), unspsc (scope 3), amount (fuel quantity, kWh, or spend), currency (scope 3),
+ * date (yyyy-MM-dd, for inflation adjustment). Factors, tiers and uncertainty follow
+ * {@link ScopeEmissionCalculator}; rows that cannot be parsed or calculated are counted as skipped.
+ */
+public class StreamingScopeCalculator {
+
+    private static final String LOG_TAG = "[ScopeStream]";
+    private static final int CHUNK_ROWS = readInt("SCOPE_STREAM_CHUNK_ROWS", 10_000);
+    private static final int PARALLELISM = readInt("SCOPE_STREAM_PARALLELISM", Runtime.getRuntime().availableProcessors());
+    private static final int FACTOR_CONCURRENCY = readInt("SCOPE_STREAM_FACTOR_CONCURRENCY", 16);
+    private static final long PROGRESS_INTERVAL_MS = 1_000;
+    private static final int[] SCOPE_TIERS = {0, 1, 2, 4}; // as calculateScopeNReactive
+
+    private final ClimatiqApiService climatiqService;
+    private final ScopeEmissionCalculator mapping;
+
+    public StreamingScopeCalculator(ClimatiqApiService climatiqService) {
+        this.climatiqService = climatiqService;
+        this.mapping = new ScopeEmissionCalculator(climatiqService);
+    }
+
+    /**
+     * Aggregation group: facility and region of the activity, UNSPSC class (6 digits) for Scope 3.
+     */
+    public record GroupKey(int scope, String facility, String region, String unspscClass) {
+    }
+
+    /**
+     * Totals of a group (kg CO2e, ±% uncertainty propagated as root sum of squares).
+     */
+    public record GroupTotal(double co2eKg, double uncertaintyPercent, long rows, int tier) {
+    }
+
+    public record Progress(long rows, long skipped, long bytesRead, long totalBytes, long elapsedMillis, boolean done) {
+        public double fraction() {
+            return totalBytes > 0 ? Math.min(1.0, (double) bytesRead / totalBytes) : 1.0;
+        }
+
+        public double rowsPerSecond() {
+            return elapsedMillis > 0 ? rows * 1000.0 / elapsedMillis : 0;
+        }
+    }
+
+    public record Result(Map<GroupKey, GroupTotal> groups, long rows, long skipped, long durationMillis) {
+
+        /**
+         * Scope totals in the format of {@link ScopeEmissionCalculator#calculateAllScopesReactive}
+         * (keys scope1, scope2, scope3, total; no baseline comparison).
+         */
+        public Map<String, EmissionResult> totalsByScope() {
+            Accumulator[] scopes = {null, new Accumulator(), new Accumulator(), new Accumulator()};
+            Accumulator total = new Accumulator();
+            for (Map.Entry<GroupKey, GroupTotal> entry : groups.entrySet()) {
+                GroupTotal group = entry.getValue();
+                double sigma = group.co2eKg() * group.uncertaintyPercent() / 100.0;
+                scopes[entry.getKey().scope()].add(group.co2eKg(), sigma * sigma, group.rows(), group.tier());
+                total.add(group.co2eKg(), sigma * sigma, group.rows(), group.tier());
+            }
+            Map<String, EmissionResult> results = new LinkedHashMap<>();
+            results.put("scope1", scopes[1].toResult("Scope 1: Direct Emissions"));
+            results.put("scope2", scopes[2].toResult("Scope 2: Indirect Energy Emissions"));
+            results.put("scope3", scopes[3].toResult("Scope 3: Value Chain Emissions"));
+            results.put("total", total.toResult("Total Organizational Emissions"));
+            return results;
+        }
+    }
+
+    /**
+     * Stream {@code file} through the pipeline.
+     *
+     * @param progressListener called from the pipeline thread (may be null)
+     */
+    public Mono<Result> calculateFileReactive(Path file, Consumer<Progress> progressListener) {
+        return Mono.fromCallable(() -> {
+                long totalBytes = Files.size(file);
+                RowParser parser = RowParser.create(ActivityFileReader.Format.of(file), ActivityFileReader.readHeader(file));
+                return new Run(totalBytes, parser, progressListener);
+            })
+            .subscribeOn(Schedulers.boundedElastic())
+            .flatMap(run -> ActivityFileReader.read(file, CHUNK_ROWS)
+                .flatMap(chunk -> processChunk(chunk, run.parser), PARALLELISM)
+                .doOnNext(run::merge)
+                .then(Mono.fromCallable(run::finish)));
+    }
+
+    public Result calculateFile(Path file, Consumer<Progress> progressListener) {
+        return calculateFileReactive(file, progressListener).block();
+    }
+
+    // ==================== CHUNK PROCESSING ====================
+
+    private Mono<ChunkTotals> processChunk(ActivityFileReader.LineChunk chunk, RowParser parser) {
+        return Mono.fromCallable(() -> parseChunk(chunk, parser))
+            .subscribeOn(Schedulers.parallel())
+            .flatMap(parsed -> resolveFactors(parsed.factorKeys)
+                .publishOn(Schedulers.parallel())
+                .map(factors -> aggregate(parsed, factors, chunk.bytesRead())));
+    }
+
+    private ParsedChunk parseChunk(ActivityFileReader.LineChunk chunk, RowParser parser) {
+        int year = LocalDateTime.now().getYear(); // factor year used by calculateEmissionReactive
+        ParsedChunk parsed = new ParsedChunk(chunk.lines().size());
+        for (String line : chunk.lines()) {
+            try {
+                Row row = parser.parse(line);
+                ClimatiqApiService.FactorKey key = switch (row.scope) {
+                    case 1 -> mapping.scope1FactorKey(row.fuelType, year);
+                    case 2 -> mapping.scope2FactorKey(year);
+                    default -> mapping.scope3FactorKey(row.unspsc, year);
+                };
+                parsed.add(row, key);
+            } catch (RuntimeException e) {
+                parsed.skipped++;
+            }
+        }
+        return parsed;
+    }
+
+    private Mono<Map<ClimatiqApiService.FactorKey, EmissionFactor>> resolveFactors(Set<ClimatiqApiService.FactorKey> keys) {
+        return Flux.fromIterable(keys)
+            .flatMap(key -> climatiqService.searchEmissionFactorReactive(key.activityId(), key.region(), key.year())
+                .map(factor -> Map.entry(key, factor)), FACTOR_CONCURRENCY)
+            .collectMap(Map.Entry::getKey, Map.Entry::getValue);
+    }
+
+    private ChunkTotals aggregate(ParsedChunk parsed, Map<ClimatiqApiService.FactorKey, EmissionFactor> factors, long bytesRead) {
+        ChunkTotals totals = new ChunkTotals(bytesRead);
+        totals.skipped = parsed.skipped;
+        for (int i = 0; i < parsed.rows.size(); i++) {
+            Row row = parsed.rows.get(i);
+            EmissionFactor factor = factors.get(parsed.rowKeys.get(i));
+            if (factor == null || factor.getCo2eTotal() == null) {
+                totals.skipped++;
+                continue;
+            }
+            double activity = row.amount;
+            if (row.scope == 3) {
+                // Spend-based: USD, deflated to the CPI baseline year
+                activity = activity * mapping.usdRate(row.currency) / ScopeEmissionCalculator.cpiIndex(row.year);
+            }
+            double co2eKg = activity * factor.getCo2eTotal();
+            int tier = SCOPE_TIERS[row.scope];
+            double sigma = co2eKg * EmissionResult.getDefaultUncertaintyForTier(tier) / 100.0;
+
+            String unspscClass = row.scope == 3 && row.unspsc.length() >= 6 ? row.unspsc.substring(0, 6) : "";
+            GroupKey group = new GroupKey(row.scope, row.facility, row.region, unspscClass);
+            totals.groups.computeIfAbsent(group, g -> new Accumulator()).add(co2eKg, sigma * sigma, 1, tier);
+            totals.rows++;
+        }
+        return totals;
+    }
+
+    // ==================== RUN STATE ====================
+
+    /**
+     * Totals of the whole file; merge() is called for one chunk at a time (serialized by flatMap).
+     */
+    private static final class Run {
+        final long totalBytes;
+        final RowParser parser;
+        final Consumer<Progress> listener;
+        final long startedAt = System.currentTimeMillis();
+        final Map<GroupKey, Accumulator> groups = new HashMap<>();
+        long rows;
+        long skipped;
+        long bytesRead;
+        long lastProgressAt;
+
+        Run(long totalBytes, RowParser parser, Consumer<Progress> listener) {
+            this.totalBytes = totalBytes;
+            this.parser = parser;
+            this.listener = listener;
+        }
+
+        void merge(ChunkTotals chunk) {
+            chunk.groups.forEach((key, acc) -> groups.merge(key, acc, Accumulator::merge));
+            rows += chunk.rows;
+            skipped += chunk.skipped;
+            bytesRead = Math.max(bytesRead, chunk.bytesRead);
+            long now = System.currentTimeMillis();
+            if (listener != null && now - lastProgressAt >= PROGRESS_INTERVAL_MS) {
+                lastProgressAt = now;
+                listener.accept(new Progress(rows, skipped, bytesRead, totalBytes, now - startedAt, false));
+            }
+        }
+
+        Result finish() {
+            long duration = System.currentTimeMillis() - startedAt;
+            if (listener != null) {
+                listener.accept(new Progress(rows, skipped, totalBytes, totalBytes, duration, true));
+            }
+            Map<GroupKey, GroupTotal> totals = new HashMap<>();
+            groups.forEach((key, acc) -> totals.put(key, acc.toTotal()));
+            System.out.println(LOG_TAG + " " + rows + " rows (" + skipped + " skipped) in " + duration + " ms, "
+                + totals.size() + " groups");
+            return new Result(Collections.unmodifiableMap(totals), rows, skipped, duration);
+        }
+    }
+
+    private static final class ParsedChunk {
+        final List<Row> rows;
+        final List<ClimatiqApiService.FactorKey> rowKeys;
+        final Set<ClimatiqApiService.FactorKey> factorKeys = new HashSet<>();
+        int skipped;
+
+        ParsedChunk(int size) {
+            rows = new ArrayList<>(size);
+            rowKeys = new ArrayList<>(size);
+        }
+
+        void add(Row row, ClimatiqApiService.FactorKey key) {
+            rows.add(row);
+            rowKeys.add(key);
+            factorKeys.add(key);
+        }
+    }
+
+    private static final class ChunkTotals {
+        final Map<GroupKey, Accumulator> groups = new HashMap<>();
+        final long bytesRead;
+        long rows;
+        long skipped;
+
+        ChunkTotals(long bytesRead) {
+            this.bytesRead = bytesRead;
+        }
+    }
+
+    /**
+     * Running sum of emissions and of their variances (independent rows).
+     */
+    private static final class Accumulator {
+        double co2eKg;
+        double variance;
+        long rows;
+        int tier;
+
+        void add(double co2e, double var, long count, int rowTier) {
+            co2eKg += co2e;
+            variance += var;
+            rows += count;
+            tier = Math.max(tier, rowTier);
+        }
+
+        Accumulator merge(Accumulator other) {
+            add(other.co2eKg, other.variance, other.rows, other.tier);
+            return this;
+        }
+
+        double uncertaintyPercent() {
+            return co2eKg != 0 ? Math.sqrt(variance) / Math.abs(co2eKg) * 100.0 : 0;
+        }
+
+        GroupTotal toTotal() {
+            return new GroupTotal(co2eKg, uncertaintyPercent(), rows, tier);
+        }
+
+        EmissionResult toResult(String scope) {
+            EmissionResult result = new EmissionResult();
+            result.setCo2eAmount(BigDecimal.valueOf(co2eKg).setScale(4, RoundingMode.HALF_UP));
+            result.setScope(scope);
+            result.setTier(tier > 0 ? tier : 4);
+            result.setUncertaintyPercent(uncertaintyPercent());
+            return result;
+        }
+    }
+
+    // ==================== PARSING ====================
+
+    private record Row(int scope, String facility, String region, String fuelType, String unspsc,
+                       double amount, String currency, int year) {
+    }
+
+    /**
+     * Line to {@link Row}: CSV columns located by the header names, or JSONL object keys.
+     */
+    private static final class RowParser {
+        private static final String[] COLUMNS = {"scope", "facility", "region", "fuel_type", "unspsc", "amount", "currency", "date"};
+        private final ActivityFileReader.Format format;
+        private final int[] index = new int[COLUMNS.length];
+        private final int columnCount;
+
+        private RowParser(ActivityFileReader.Format format, String header) {
+            this.format = format;
+            Arrays.fill(index, -1);
+            if (format == ActivityFileReader.Format.CSV) {
+                if (header == null) {
+                    throw new IllegalArgumentException("Empty CSV file (no header line)");
+                }
+                String[] names = splitCsv(header, -1);
+                for (int i = 0; i < names.length; i++) {
+                    for (int c = 0; c < COLUMNS.length; c++) {
+                        if (COLUMNS[c].equals(names[i].trim().toLowerCase(Locale.ROOT))) {
+                            index[c] = i;
+                        }
+                    }
+                }
+                if (index[0] < 0 || index[5] < 0) {
+                    throw new IllegalArgumentException("CSV header needs at least the scope and amount columns: " + header);
+                }
+                columnCount = names.length;
+            } else {
+                columnCount = 0;
+            }
+        }
+
+        static RowParser create(ActivityFileReader.Format format, String header) {
+            return new RowParser(format, header);
+        }
+
+        Row parse(String line) {
+            String[] values = new String[COLUMNS.length];
+            if (format == ActivityFileReader.Format.CSV) {
+                String[] fields = splitCsv(line, columnCount);
+                for (int c = 0; c < COLUMNS.length; c++) {
+                    values[c] = index[c] >= 0 && index[c] < fields.length ? fields[index[c]] : null;
+                }
+            } else {
+                JsonObject json = JsonParser.parseString(line).getAsJsonObject();
+                for (int c = 0; c < COLUMNS.length; c++) {
+                    JsonElement value = json.get(COLUMNS[c]);
+                    values[c] = value == null || value.isJsonNull() ? null : value.getAsString();
+                }
+            }
+
+            int scope = Integer.parseInt(values[0].trim());
+            if (scope < 1 || scope > 3) {
+                throw new IllegalArgumentException("Unknown scope " + scope);
+            }
+            if (scope == 1 && isBlank(values[3])) {
+                throw new IllegalArgumentException("Scope 1 row without fuel_type");
+            }
+            if (scope == 3 && isBlank(values[4])) {
+                throw new IllegalArgumentException("Scope 3 row without unspsc");
+            }
+            String date = values[7];
+            int year = isBlank(date) || date.length() < 4 ? LocalDateTime.now().getYear() : Integer.parseInt(date.substring(0, 4));
+            return new Row(scope, orEmpty(values[1]), orEmpty(values[2]), values[3],
+                values[4] == null ? null : values[4].trim(), Double.parseDouble(values[5].trim()),
+                isBlank(values[6]) ? "USD" : values[6].trim().toUpperCase(Locale.ROOT), year);
+        }
+
+        /**
+         * Split a CSV line (double-quoted fields may contain commas and "" escapes).
+         */
+        private static String[] splitCsv(String line, int expected) {
+            List<String> fields = new ArrayList<>(expected > 0 ? expected : 16);
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            for (int i = 0; i < line.length(); i++) {
+                char c = line.charAt(i);
+                if (quoted) {
+                    if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        field.append('"');
+                        i++;
+                    } else if (c == '"') {
+                        quoted = false;
+                    } else {
+                        field.append(c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else {
+                    field.append(c);
+                }
+            }
+            fields.add(field.toString());
+            return fields.toArray(new String[0]);
+        }
+
+        private static boolean isBlank(String value) {
+            return value == null || value.isBlank();
+        }
+
+        private static String orEmpty(String value) {
+            return value == null ? "" : value.trim();
+        }
+    }
+
+    private static int readInt(String key, int defaultValue) {
+        String value = EnvLoader.get(key);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Math.max(1, Integer.parseInt(value.trim()));
+        } catch (NumberFormatException e) {
+            System.err.println(LOG_TAG + " Invalid value for " + key + ": " + value);
+            return defaultValue;
+        }
+    }
+}
@@ -4,6 +4,7 @@ import com.stripe.Stripe;
 import com.stripe.exception.*;
 import com.stripe.model.*;
 import com.stripe.model.checkout.Session;
+import com.stripe.net.RequestOptions;
 import com.stripe.param.ChargeCreateParams;
 import com.stripe.param.PaymentIntentCreateParams;
 import com.stripe.param.RefundCreateParams;
@@ -28,6 +29,12 @@ public class StripePaymentService {
 
     public StripePaymentService(String apiKey, String webhookSecret) {
         Stripe.apiKey = apiKey;
+        String apiBase = getConfigProperty("stripe.api.base", "");
+        if (!apiBase.isBlank()) {
+            // Local fake Stripe server (tools.FakeStripeServer) for tests
+            Stripe.overrideApiBase(apiBase);
+            System.out.println(LOG_TAG + " Using Stripe API base " + apiBase);
+        }
         this.webhookSecret = webhookSecret;
         this.testMode = apiKey != null && apiKey.startsWith("sk_test");
 
@@ -63,37 +70,50 @@ public class StripePaymentService {
     public PaymentIntent initiatePayment(int orderId, double amountUsd, 
                                          int buyerId, int sellerId, String description) {
         try {
-            long amountCents = (long) (amountUsd * 100);  // Stripe uses cents
-
-            PaymentIntentCreateParams.Builder paramsBuilder = PaymentIntentCreateParams.builder()
-                .setAmount(amountCents)
-                .setCurrency("usd")
-                .setDescription(description)
-                .setAutomaticPaymentMethods(
-                    PaymentIntentCreateParams.AutomaticPaymentMethods.builder()
-                        .setEnabled(true)
-                        .setAllowRedirects(PaymentIntentCreateParams.AutomaticPaymentMethods.AllowRedirects.NEVER)
-                        .build()
-                );
-            // Note: statement_descriptor not supported with card payment method
+            return createPaymentIntent(orderId, amountUsd, buyerId, sellerId, description, null);
+        } catch (StripeException e) {
+            System.err.println(LOG_TAG + " ERROR creating payment intent: " + e.getMessage());
+            return null;
+        }
+    }
 
-            paramsBuilder.putMetadata("order_id", String.valueOf(orderId));
-            paramsBuilder.putMetadata("buyer_id", String.valueOf(buyerId));
-            paramsBuilder.putMetadata("seller_id", String.valueOf(sellerId));
-            paramsBuilder.putMetadata("transaction_type", "MARKETPLACE_ORDER");
+    /**
+     * Create a payment intent, sent with an idempotency key so a retried call returns the intent
+     * created by the first one instead of charging twice. Errors are thrown so the caller
+     * (PaymentOutboxService) can tell retryable failures from final ones.
+     *
+     * @param idempotencyKey Stripe Idempotency-Key header, null for none
+     */
+    public PaymentIntent createPaymentIntent(int orderId, double amountUsd, int buyerId, int sellerId,
+                                             String description, String idempotencyKey) throws StripeException {
+        long amountCents = Math.round(amountUsd * 100);  // Stripe uses cents
+
+        PaymentIntentCreateParams.Builder paramsBuilder = PaymentIntentCreateParams.builder()
+            .setAmount(amountCents)
+            .setCurrency("usd")
+            .setDescription(description)
+            .setAutomaticPaymentMethods(
+                PaymentIntentCreateParams.AutomaticPaymentMethods.builder()
+                    .setEnabled(true)
+                    .setAllowRedirects(PaymentIntentCreateParams.AutomaticPaymentMethods.AllowRedirects.NEVER)
+                    .build()
+            );
+        // Note: statement_descriptor not supported with card payment method
 
-            PaymentIntentCreateParams params = paramsBuilder.build();
+        paramsBuilder.putMetadata("order_id", String.valueOf(orderId));
+        paramsBuilder.putMetadata("buyer_id", String.valueOf(buyerId));
+        paramsBuilder.putMetadata("seller_id", String.valueOf(sellerId));
+        paramsBuilder.putMetadata("transaction_type", "MARKETPLACE_ORDER");
 
-            PaymentIntent paymentIntent = PaymentIntent.create(params);
-            System.out.println(LOG_TAG + " Payment intent created: " + paymentIntent.getId() + 
-                " for order " + orderId + " ($" + amountUsd + ")");
+        PaymentIntentCreateParams params = paramsBuilder.build();
 
-            return paymentIntent;
+        PaymentIntent paymentIntent = idempotencyKey == null
+            ? PaymentIntent.create(params)
+            : PaymentIntent.create(params, RequestOptions.builder().setIdempotencyKey(idempotencyKey).build());
+        System.out.println(LOG_TAG + " Payment intent created: " + paymentIntent.getId() + 
+            " for order " + orderId + " ($" + amountUsd + ")");
 
-        } catch (StripeException e) {
-            System.err.println(LOG_TAG + " ERROR creating payment intent: " + e.getMessage());
-            return null;
-        }
+        return paymentIntent;
     }
 
     /**
@@ -659,6 +679,11 @@ public class StripePaymentService {
                 System.out.println(LOG_TAG + " Using SK_TEST from environment variable");
                 return envValue;
             }
+        } else if (key.equals("stripe.api.base")) {
+            String envValue = System.getenv("STRIPE_API_BASE");
+            if (envValue != null && !envValue.isEmpty()) {
+                return envValue;
+            }
         } else if (key.equals("stripe.publishable.key")) {
             String envValue = System.getenv("PK_TEST");
             if (envValue != null && !envValue.isEmpty()) {
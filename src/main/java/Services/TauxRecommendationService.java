@@ -8,6 +8,8 @@ import weka.core.Instances;
 import weka.core.SerializationHelper;
 
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
 
 /**
  * TauxRecommendationService
@@ -37,6 +39,15 @@ public class TauxRecommendationService {
 
     private Classifier model;
     private Instances datasetStructure;
+    private WekaBatchScorer batchScorer;
+
+    /**
+     * One financement to score with {@link #predictTauxBatch(List)}.
+     * Same fields and defaults as {@link #predictTaux}.
+     */
+    public record TauxInput(int scoreEsg, double budgetMontant, String statut,
+                            int duree, String typeOffre, double ancienneteEntreprise) {
+    }
 
     public TauxRecommendationService() {
         try {
@@ -45,6 +56,7 @@ public class TauxRecommendationService {
                     getClass().getResourceAsStream("/FinanceAiModels/InvestmentModel.model")
             );
             buildDatasetStructure();
+            batchScorer = new WekaBatchScorer("[TauxRecommendationService]", model);
             System.out.println("[TauxRecommendationService] Model loaded successfully.");
         } catch (Exception e) {
             System.err.println("[TauxRecommendationService] Failed to load model: " + e.getMessage());
@@ -146,6 +158,61 @@ public class TauxRecommendationService {
         }
     }
 
+    // ─────────────────────────────────────────────────────────────
+    // Batch version of predictTaux() for a whole portfolio
+    //
+    // Builds ONE Instances set from datasetStructure and lets
+    // WekaBatchScorer run the model in parallel chunks.
+    //
+    // @return predicted taux per record (input order), -1 where
+    //         the model failed — same convention as predictTaux()
+    // ─────────────────────────────────────────────────────────────
+    public WekaBatchScorer.Result<Double> predictTauxBatch(List<TauxInput> records) {
+        long start = System.nanoTime();
+        List<Double> results = new ArrayList<>(records.size());
+
+        if (model == null) {
+            System.err.println("[TauxRecommendationService] Model not loaded.");
+            for (int i = 0; i < records.size(); i++) results.add(-1.0);
+            return new WekaBatchScorer.Result<>(results, records.size(), System.nanoTime() - start);
+        }
+
+        Instances batch = new Instances(datasetStructure, records.size());
+        Attribute statutAttribute = datasetStructure.attribute("statut");
+        Attribute typeAttribute = datasetStructure.attribute("type_offre");
+
+        for (TauxInput record : records) {
+            // Values in ARFF order; normalizeStatut/mapTypeOffre always return a declared label
+            double[] values = {
+                    record.scoreEsg(),
+                    record.budgetMontant(),
+                    statutAttribute.indexOfValue(normalizeStatut(record.statut())),
+                    record.duree(),
+                    typeAttribute.indexOfValue(mapTypeOffre(record.typeOffre())),
+                    record.ancienneteEntreprise(),
+                    weka.core.Utils.missingValue() // taux — to predict
+            };
+            batch.add(new DenseInstance(1.0, values));
+        }
+
+        double[] predicted = batchScorer.classify(batch, new BitSet());
+
+        int failed = 0;
+        for (double taux : predicted) {
+            if (Double.isNaN(taux)) {
+                results.add(-1.0);
+                failed++;
+            } else {
+                results.add(Math.round(taux * 100.0) / 100.0); // round to 2 decimal places
+            }
+        }
+
+        WekaBatchScorer.Result<Double> result =
+                new WekaBatchScorer.Result<>(results, failed, System.nanoTime() - start);
+        System.out.println("[TauxRecommendationService] Batch prediction: " + result);
+        return result;
+    }
+
     // ─────────────────────────────────────────────────────────────
     // Normalizes statut from DB to ARFF-valid value
     // DB might have lowercase or unexpected values
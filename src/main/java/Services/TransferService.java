@@ -28,16 +28,17 @@ import java.util.UUID;
  */
 public class TransferService {
     
-    private Connection conn;
+    // Connection fournie par l'appelant (null = emprunt au pool à chaque transfert)
+    private final Connection sharedConn;
     private BatchEventService eventService;
     
     public TransferService() {
-        this.conn = MyConnection.getConnection();
+        this.sharedConn = null;
         this.eventService = new BatchEventService();
     }
     
     public TransferService(Connection conn, BatchEventService eventService) {
-        this.conn = conn;
+        this.sharedConn = conn;
         this.eventService = eventService;
     }
     
@@ -62,6 +63,7 @@ public class TransferService {
             throw new IllegalArgumentException("Cannot transfer to same wallet");
         }
         
+        Connection conn = sharedConn != null ? sharedConn : MyConnection.openConnection();
         try {
             // Start atomic transaction
             conn.setAutoCommit(false);
@@ -76,7 +78,7 @@ public class TransferService {
             }
             
             // 2. Validate source wallet exists and has credits
-            Wallet sourceWallet = getWalletWithLock(fromWalletId);
+            Wallet sourceWallet = getWalletWithLock(conn, fromWalletId);
             if (sourceWallet == null) {
                 conn.rollback();
                 throw new Exception("Source wallet not found: " + fromWalletId);
@@ -91,7 +93,7 @@ public class TransferService {
             }
             
             // 3. Validate destination wallet exists
-            Wallet destWallet = getWalletWithLock(toWalletId);
+            Wallet destWallet = getWalletWithLock(conn, toWalletId);
             if (destWallet == null) {
                 conn.rollback();
                 throw new Exception("Destination wallet not found: " + toWalletId);
@@ -123,7 +125,7 @@ public class TransferService {
             
             // 6. Record transaction
             String transferId = createTransferId();
-            recordTransfer(fromWalletId, toWalletId, amount, referenceNote, transferId);
+            recordTransfer(conn, fromWalletId, toWalletId, amount, referenceNote, transferId);
             
             // 7. Record batch events for traceability
             if (eventService != null) {
@@ -156,13 +158,17 @@ public class TransferService {
                 System.err.println("Error during rollback: " + e.getMessage());
             }
             throw ex;
+        } finally {
+            if (conn != sharedConn) {
+                conn.close();
+            }
         }
     }
     
     /**
      * Get wallet with FOR UPDATE lock (for atomic operations).
      */
-    private Wallet getWalletWithLock(int walletId) throws SQLException {
+    private Wallet getWalletWithLock(Connection conn, int walletId) throws SQLException {
         String sql = "SELECT id, wallet_number, holder_name, owner_type, owner_id, available_credits, retired_credits " +
                      "FROM green_wallets WHERE id = ? FOR UPDATE";
         try (PreparedStatement ps = conn.prepareStatement(sql)) {
@@ -187,7 +193,7 @@ public class TransferService {
     /**
      * Record transfer transaction in audit trail.
      */
-    private void recordTransfer(int fromWalletId, int toWalletId, double amount,
+    private void recordTransfer(Connection conn, int fromWalletId, int toWalletId, double amount,
                                String referenceNote, String transferId) throws SQLException {
         String sql = "INSERT INTO wallet_transactions " +
                      "(wallet_id, batch_id, type, amount, reference_note, created_at) " +
@@ -0,0 +1,269 @@
+package Services;
+
+import Utils.EnvLoader;
+import Utils.KeywordAutomaton;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compiled UNSPSC classification index used on the Scope 3 hot path.
+ *
+ * - {@link #activityFor}: UNSPSC code to Climatiq activity, most specific listed level first
+ *   (commodity, class, family, segment). One sorted int array per level, the code is parsed once
+ *   as an int (no substring), so a lookup is at most four binary searches whatever the catalogue
+ *   size.
+ * - {@link #classify}: procurement description to UNSPSC code through a {@link KeywordAutomaton}
+ *   (one pass over the description for all keywords).
+ *
+ * Built from a tab-separated data file (format in src/main/resources/unspsc/unspsc_index.tsv);
+ * the default instance reads UNSPSC_INDEX_FILE when set, the bundled resource otherwise, so the
+ * mapping can grow to the full catalogue without code changes. Immutable and thread-safe.
+ */
+public final class UnspscIndex {
+
+    private static final String LOG_TAG = "[UnspscIndex]";
+    private static final String RESOURCE = "/unspsc/unspsc_index.tsv";
+    private static final String FALLBACK_ACTIVITY = "generic_products-product_type_manufactured_goods";
+    private static final String FALLBACK_CODE = "43000000";
+    private static final int[] LEVEL_DIGITS = {8, 6, 4, 2};
+    private static final int[] POW10 = {1, 10, 100, 1_000, 10_000, 100_000, 1_000_000, 10_000_000, 100_000_000};
+
+    private static volatile UnspscIndex defaultIndex;
+
+    // Per level (same order as LEVEL_DIGITS): sorted codes and their index in activities
+    private final int[][] levelCodes;
+    private final int[][] levelActivities;
+    private final String[] activities;
+    private final String defaultActivity;
+    private final KeywordAutomaton keywords;
+    private final String[] keywordCodes;
+    private final String defaultCode;
+
+    private UnspscIndex(int[][] levelCodes, int[][] levelActivities, String[] activities, String defaultActivity,
+                        KeywordAutomaton keywords, String[] keywordCodes, String defaultCode) {
+        this.levelCodes = levelCodes;
+        this.levelActivities = levelActivities;
+        this.activities = activities;
+        this.defaultActivity = defaultActivity;
+        this.keywords = keywords;
+        this.keywordCodes = keywordCodes;
+        this.defaultCode = defaultCode;
+    }
+
+    /**
+     * Index from UNSPSC_INDEX_FILE or the bundled resource, loaded once.
+     */
+    public static UnspscIndex getDefault() {
+        UnspscIndex index = defaultIndex;
+        if (index == null) {
+            synchronized (UnspscIndex.class) {
+                index = defaultIndex;
+                if (index == null) {
+                    index = loadDefault();
+                    defaultIndex = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    private static UnspscIndex loadDefault() {
+        String file = EnvLoader.get("UNSPSC_INDEX_FILE");
+        try {
+            UnspscIndex index;
+            if (file != null && !file.isBlank()) {
+                try (Reader reader = Files.newBufferedReader(Paths.get(file.trim()), StandardCharsets.UTF_8)) {
+                    index = load(reader);
+                }
+            } else {
+                InputStream in = UnspscIndex.class.getResourceAsStream(RESOURCE);
+                if (in == null) {
+                    throw new IOException(RESOURCE + " not found on the classpath");
+                }
+                try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+                    index = load(reader);
+                }
+            }
+            System.out.println(LOG_TAG + " Loaded " + index.activityCount() + " activity codes, "
+                + index.keywordCodes.length + " keywords");
+            return index;
+        } catch (IOException | RuntimeException e) {
+            System.err.println(LOG_TAG + " ERROR loading index (" + (file != null ? file : RESOURCE)
+                + "), every code maps to the generic activity: " + e.getMessage());
+            return load(List.of());
+        }
+    }
+
+    public static UnspscIndex load(Reader reader) throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader buffered = new BufferedReader(reader)) {
+            String line;
+            while ((line = buffered.readLine()) != null) {
+                lines.add(line);
+            }
+        }
+        return load(lines);
+    }
+
+    private static UnspscIndex load(List<String> lines) {
+        List<TreeMap<Integer, Integer>> levels = new ArrayList<>();
+        for (int i = 0; i < LEVEL_DIGITS.length; i++) {
+            levels.add(new TreeMap<>());
+        }
+        Map<String, Integer> activityIds = new HashMap<>();
+        List<String> activities = new ArrayList<>();
+        List<String> keywordList = new ArrayList<>();
+        List<String> keywordCodes = new ArrayList<>();
+        String defaultActivity = FALLBACK_ACTIVITY;
+        String defaultCode = FALLBACK_CODE;
+
+        int lineNumber = 0;
+        for (String raw : lines) {
+            lineNumber++;
+            String line = raw.strip();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] fields = line.split("\t");
+            switch (fields[0]) {
+                case "activity" -> {
+                    require(fields, 3, lineNumber);
+                    String code = fields[1].trim();
+                    int level = levelOf(code, lineNumber);
+                    int digits = LEVEL_DIGITS[level];
+                    int key = Integer.parseInt(code.substring(0, digits));
+                    int activity = activityIds.computeIfAbsent(fields[2].trim(), id -> {
+                        activities.add(id);
+                        return activities.size() - 1;
+                    });
+                    levels.get(level).put(key, activity);
+                }
+                case "keyword" -> {
+                    require(fields, 3, lineNumber);
+                    keywordList.add(fields[1].trim());
+                    keywordCodes.add(fields[2].trim());
+                }
+                case "default_activity" -> {
+                    require(fields, 2, lineNumber);
+                    defaultActivity = fields[1].trim();
+                }
+                case "default_code" -> {
+                    require(fields, 2, lineNumber);
+                    defaultCode = fields[1].trim();
+                }
+                default -> throw new IllegalArgumentException("Line " + lineNumber + ": unknown entry " + fields[0]);
+            }
+        }
+
+        int[][] levelCodes = new int[LEVEL_DIGITS.length][];
+        int[][] levelActivities = new int[LEVEL_DIGITS.length][];
+        for (int level = 0; level < LEVEL_DIGITS.length; level++) {
+            TreeMap<Integer, Integer> entries = levels.get(level);
+            levelCodes[level] = new int[entries.size()];
+            levelActivities[level] = new int[entries.size()];
+            int i = 0;
+            for (Map.Entry<Integer, Integer> entry : entries.entrySet()) {
+                levelCodes[level][i] = entry.getKey();
+                levelActivities[level][i] = entry.getValue();
+                i++;
+            }
+        }
+        return new UnspscIndex(levelCodes, levelActivities, activities.toArray(new String[0]), defaultActivity,
+            KeywordAutomaton.build(keywordList), keywordCodes.toArray(new String[0]), defaultCode);
+    }
+
+    /**
+     * Level of a data file code: its length, or for 8 digits the level given by its trailing
+     * "00" pairs (commodity 00 = class, class 00 = family...).
+     */
+    private static int levelOf(String code, int lineNumber) {
+        if (!code.chars().allMatch(Character::isDigit)) {
+            throw new IllegalArgumentException("Line " + lineNumber + ": invalid UNSPSC code " + code);
+        }
+        int digits = code.length();
+        if (digits == 8) {
+            while (digits > 2 && code.startsWith("00", digits - 2)) {
+                digits -= 2;
+            }
+        }
+        for (int level = 0; level < LEVEL_DIGITS.length; level++) {
+            if (LEVEL_DIGITS[level] == digits) {
+                return level;
+            }
+        }
+        throw new IllegalArgumentException("Line " + lineNumber + ": UNSPSC code must have 2, 4, 6 or 8 digits: " + code);
+    }
+
+    private static void require(String[] fields, int count, int lineNumber) {
+        if (fields.length < count) {
+            throw new IllegalArgumentException("Line " + lineNumber + ": expected " + count + " tab-separated fields");
+        }
+    }
+
+    // ==================== LOOKUPS ====================
+
+    /**
+     * Climatiq activity of a UNSPSC code (at least 4 digits, only the first 8 are read): the
+     * activity of the most specific level listed in the index, the default activity otherwise.
+     */
+    public String activityFor(CharSequence unspscCode) {
+        if (unspscCode == null || unspscCode.length() < 4) {
+            return defaultActivity;
+        }
+        int digits = Math.min(8, unspscCode.length());
+        int value = 0;
+        for (int i = 0; i < digits; i++) {
+            char c = unspscCode.charAt(i);
+            if (c < '0' || c > '9') {
+                return defaultActivity;
+            }
+            value = value * 10 + (c - '0');
+        }
+        // Only complete levels of the given code (a 7-digit code is looked up as a class)
+        digits &= ~1;
+        value /= POW10[Math.min(8, unspscCode.length()) - digits];
+
+        for (int level = 0; level < LEVEL_DIGITS.length; level++) {
+            int levelDigits = LEVEL_DIGITS[level];
+            if (levelDigits > digits) {
+                continue;
+            }
+            int[] codes = levelCodes[level];
+            int found = Arrays.binarySearch(codes, value / POW10[digits - levelDigits]);
+            if (found >= 0) {
+                return activities[levelActivities[level][found]];
+            }
+        }
+        return defaultActivity;
+    }
+
+    /**
+     * UNSPSC code of the longest keyword found in a procurement description, the default code
+     * otherwise.
+     */
+    public String classify(CharSequence description) {
+        int keyword = keywords.longestMatch(description);
+        return keyword >= 0 ? keywordCodes[keyword] : defaultCode;
+    }
+
+    public int activityCount() {
+        int count = 0;
+        for (int[] codes : levelCodes) {
+            count += codes.length;
+        }
+        return count;
+    }
+}
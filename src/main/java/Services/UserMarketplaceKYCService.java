@@ -14,10 +14,8 @@ import java.util.*;
 public class UserMarketplaceKYCService {
     private static final String LOG_TAG = "[UserMarketplaceKYCService]";
     private static UserMarketplaceKYCService instance;
-    private Connection conn;
 
     private UserMarketplaceKYCService() {
-        this.conn = MyConnection.getConnection();
     }
 
     public static UserMarketplaceKYCService getInstance() {
@@ -34,11 +32,10 @@ public class UserMarketplaceKYCService {
         int kycId = -1;
 
         try {
-            if (conn == null) return kycId;
-
             String sql = "INSERT INTO user_marketplace_kyc (user_id, trust_badge_level) VALUES (?, 'NONE')";
 
-            try (PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            try (Connection conn = MyConnection.openConnection();
+                 PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
                 stmt.setInt(1, userId);
                 stmt.executeUpdate();
 
@@ -61,11 +58,10 @@ public class UserMarketplaceKYCService {
      */
     public UserMarketplaceKYC getKYCForUser(int userId) {
         try {
-            if (conn == null) return null;
-
             String sql = "SELECT * FROM user_marketplace_kyc WHERE user_id = ?";
 
-            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            try (Connection conn = MyConnection.openConnection();
+                 PreparedStatement stmt = conn.prepareStatement(sql)) {
                 stmt.setInt(1, userId);
 
                 try (ResultSet rs = stmt.executeQuery()) {
@@ -90,11 +86,10 @@ public class UserMarketplaceKYCService {
      */
     public boolean updateShopProfile(int userId, String shopName, String shopDescription) {
         try {
-            if (conn == null) return false;
-
             String sql = "UPDATE user_marketplace_kyc SET shop_name = ?, shop_description = ? WHERE user_id = ?";
 
-            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            try (Connection conn = MyConnection.openConnection();
+                 PreparedStatement stmt = conn.prepareStatement(sql)) {
                 stmt.setString(1, shopName);
                 stmt.setString(2, shopDescription);
                 stmt.setInt(3, userId);
@@ -117,13 +112,12 @@ public class UserMarketplaceKYCService {
      */
     public boolean verifyIdentity(int userId, String docType, String docHash) {
         try {
-            if (conn == null) return false;
-
             String sql = "UPDATE user_marketplace_kyc SET id_document_type = ?, " +
                     "id_document_hash = ?, is_verified_trader = 1, verification_date = NOW() " +
                     "WHERE user_id = ?";
 
-            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            try (Connection conn = MyConnection.openConnection();
+                 PreparedStatement stmt = conn.prepareStatement(sql)) {
                 stmt.setString(1, docType);
                 stmt.setString(2, docHash);
                 stmt.setInt(3, userId);
@@ -147,11 +141,10 @@ public class UserMarketplaceKYCService {
      */
     public boolean verifyBankAccount(int userId) {
         try {
-            if (conn == null) return false;
-
             String sql = "UPDATE user_marketplace_kyc SET bank_account_verified = 1 WHERE user_id = ?";
 
-            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            try (Connection conn = MyConnection.openConnection();
+                 PreparedStatement stmt = conn.prepareStatement(sql)) {
                 stmt.setInt(1, userId);
 
                 int updated = stmt.executeUpdate();
@@ -173,14 +166,13 @@ public class UserMarketplaceKYCService {
      */
     public void recordSellerTransaction(int sellerId, double transactionAmountUsd) {
         try {
-            if (conn == null) return;
-
             String sql = "UPDATE user_marketplace_kyc SET " +
                     "seller_transaction_count = seller_transaction_count + 1, " +
                     "seller_lifetime_volume_usd = seller_lifetime_volume_usd + ? " +
                     "WHERE user_id = ?";
 
-            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            try (Connection conn = MyConnection.openConnection();
+                 PreparedStatement stmt = conn.prepareStatement(sql)) {
                 stmt.setDouble(1, transactionAmountUsd);
                 stmt.setInt(2, sellerId);
                 stmt.executeUpdate();
@@ -198,14 +190,13 @@ public class UserMarketplaceKYCService {
      */
     public void recordBuyerTransaction(int buyerId, double transactionAmountUsd) {
         try {
-            if (conn == null) return;
-
             String sql = "UPDATE user_marketplace_kyc SET " +
                     "buyer_transaction_count = buyer_transaction_count + 1, " +
                     "buyer_lifetime_volume_usd = buyer_lifetime_volume_usd + ? " +
                     "WHERE user_id = ?";
 
-            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            try (Connection conn = MyConnection.openConnection();
+                 PreparedStatement stmt = conn.prepareStatement(sql)) {
                 stmt.setDouble(1, transactionAmountUsd);
                 stmt.setInt(2, buyerId);
                 stmt.executeUpdate();
@@ -220,7 +211,6 @@ public class UserMarketplaceKYCService {
      */
     public void updateTrustBadge(int userId) {
         try {
-            if (conn == null) return;
 
             UserMarketplaceKYC kyc = getKYCForUser(userId);
             if (kyc == null) return;
@@ -229,7 +219,8 @@ public class UserMarketplaceKYCService {
 
             String sql = "UPDATE user_marketplace_kyc SET trust_badge_level = ?, last_updated = NOW() WHERE user_id = ?";
 
-            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            try (Connection conn = MyConnection.openConnection();
+                 PreparedStatement stmt = conn.prepareStatement(sql)) {
                 stmt.setString(1, newBadge);
                 stmt.setInt(2, userId);
                 stmt.executeUpdate();
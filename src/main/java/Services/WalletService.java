@@ -1,34 +1,67 @@
 package Services;
 
 import DataBase.MyConnection;
+import DataBase.TransactionTemplate;
 import Models.Wallet;
 import Models.CarbonCreditBatch;
 import Models.OperationWallet;
 import Models.BatchEventType;
 import Services.BatchEventService;
+import Utils.EnvLoader;
 import com.google.gson.JsonObject;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonSerializer;
+import com.google.gson.stream.JsonWriter;
 
+import java.io.IOException;
+import java.io.StringWriter;
 import java.sql.*;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Service layer for Green Wallet operations including CRUD and credit management.
+ *
+ * Credit operations (issue, retire, transfer, split) each run in their own transaction through
+ * {@link TransactionTemplate}; the service keeps no connection state and can be shared between threads.
+ *
+ * Balance updates are guarded per wallet: a wallet row also guards the carbon_credit_batches it owns,
+ * so every operation first guards the wallets it touches (see {@link ConcurrencyMode}) and re-checks
+ * balances inside the transaction before writing.
  */
 public class WalletService {
 
-    private Connection conn;
     private static final Gson gson = createGsonWithLocalDateTime();
     
     // Warning flags - only show schema migration warnings once per session
     private static boolean lineageViewWarningShown = false;
     private static boolean parentBatchIdWarningShown = false;
+
+    /**
+     * Concurrency control strategy for wallet / carbon_credit_batches updates.
+     * Default comes from WALLET_CONCURRENCY_MODE in .env (PESSIMISTIC if not set).
+     */
+    public enum ConcurrencyMode {
+        PESSIMISTIC, // SELECT ... FOR UPDATE on the wallets, always in ascending id order
+        OPTIMISTIC   // wallet.version compare-and-set, the transaction is replayed on conflict
+    }
+
+    private static final int OPTIMISTIC_MAX_ATTEMPTS = 10;
+    private static final String SERIALIZATION_FAILURE = "40001";
+
+    // null until checked once against the database metadata
+    private static volatile Boolean walletVersionColumn;
+    private static boolean versionColumnWarningShown = false;
+
+    private final ConcurrencyMode concurrencyMode;
     
     /**
      * Create Gson instance with LocalDateTime support (Java 17+ module compatibility).
@@ -41,7 +74,25 @@ public class WalletService {
     }
 
     public WalletService() {
-        this.conn = MyConnection.getConnection();
+        this(parseConcurrencyMode(EnvLoader.get("WALLET_CONCURRENCY_MODE", "PESSIMISTIC")));
+    }
+
+    public WalletService(ConcurrencyMode concurrencyMode) {
+        // Connection is borrowed from the pool per operation.
+        this.concurrencyMode = concurrencyMode != null ? concurrencyMode : ConcurrencyMode.PESSIMISTIC;
+    }
+
+    public ConcurrencyMode getConcurrencyMode() {
+        return concurrencyMode;
+    }
+
+    private static ConcurrencyMode parseConcurrencyMode(String value) {
+        try {
+            return ConcurrencyMode.valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException | NullPointerException ex) {
+            System.err.println("Unknown WALLET_CONCURRENCY_MODE '" + value + "', using PESSIMISTIC");
+            return ConcurrencyMode.PESSIMISTIC;
+        }
     }
 
     // ==================== CRUD OPERATIONS ====================
@@ -53,12 +104,13 @@ public class WalletService {
         String sql = "INSERT INTO wallet (wallet_number, name, owner_type, owner_id, available_credits, retired_credits) " +
                      "VALUES (?, ?, ?, ?, ?, ?)";
         
-        try (PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-            // Generate unique wallet number if not provided
-            if (wallet.getWalletNumber() == null) {
-                wallet.setWalletNumber(generateUniqueWalletNumber());
-            }
-            
+        // Generate unique wallet number if not provided
+        if (wallet.getWalletNumber() == null) {
+            wallet.setWalletNumber(generateUniqueWalletNumber());
+        }
+
+        try (Connection conn = MyConnection.openConnection();
+             PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
             ps.setString(1, String.valueOf(wallet.getWalletNumber()));
             ps.setString(2, wallet.getName());
             ps.setString(3, wallet.getOwnerType());
@@ -84,11 +136,12 @@ public class WalletService {
         String sql = "INSERT INTO wallet (wallet_number, owner_type, owner_id, available_credits, retired_credits) " +
                      "VALUES (?, ?, ?, ?, ?)";
 
-        try (PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-            if (wallet.getWalletNumber() == null) {
-                wallet.setWalletNumber(generateUniqueWalletNumber());
-            }
+        if (wallet.getWalletNumber() == null) {
+            wallet.setWalletNumber(generateUniqueWalletNumber());
+        }
 
+        try (Connection conn = MyConnection.openConnection();
+             PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
             ps.setString(1, String.valueOf(wallet.getWalletNumber()));
             ps.setString(2, wallet.getOwnerType());
             ps.setInt(3, wallet.getOwnerId());
@@ -112,7 +165,8 @@ public class WalletService {
         List<Wallet> wallets = new ArrayList<>();
         String sql = "SELECT * FROM wallet ORDER BY created_at DESC";
         
-        try (Statement st = conn.createStatement();
+        try (Connection conn = MyConnection.openConnection();
+             Statement st = conn.createStatement();
              ResultSet rs = st.executeQuery(sql)) {
             while (rs.next()) {
                 wallets.add(mapResultSetToWallet(rs));
@@ -132,7 +186,8 @@ public class WalletService {
             List<Wallet> wallets = new ArrayList<>();
             String sql = "SELECT * FROM wallet WHERE owner_id = ? ORDER BY created_at DESC";
         
-            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            try (Connection conn = MyConnection.openConnection();
+                 PreparedStatement ps = conn.prepareStatement(sql)) {
                 ps.setInt(1, ownerId);
                 ResultSet rs = ps.executeQuery();
                 while (rs.next()) {
@@ -148,6 +203,15 @@ public class WalletService {
          * Read a single wallet by ID.
      */
     public Wallet getWalletById(int id) {
+        try (Connection conn = MyConnection.openConnection()) {
+            return getWalletById(conn, id);
+        } catch (SQLException ex) {
+            System.out.println("Error fetching wallet: " + ex.getMessage());
+        }
+        return null;
+    }
+
+    private Wallet getWalletById(Connection conn, int id) throws SQLException {
         String sql = "SELECT * FROM wallet WHERE id = ?";
         
         try (PreparedStatement ps = conn.prepareStatement(sql)) {
@@ -156,8 +220,6 @@ public class WalletService {
             if (rs.next()) {
                 return mapResultSetToWallet(rs);
             }
-        } catch (SQLException ex) {
-            System.out.println("Error fetching wallet: " + ex.getMessage());
         }
         return null;
     }
@@ -168,7 +230,8 @@ public class WalletService {
     public Wallet getWalletByNumber(String walletNumber) {
         String sql = "SELECT * FROM wallet WHERE wallet_number = ?";
         
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+        try (Connection conn = MyConnection.openConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, walletNumber);
             ResultSet rs = ps.executeQuery();
             if (rs.next()) {
@@ -186,7 +249,8 @@ public class WalletService {
     public boolean updateWallet(Wallet wallet) {
         String sql = "UPDATE wallet SET name = ?, owner_type = ? WHERE id = ?";
         
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+        try (Connection conn = MyConnection.openConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, wallet.getName());
             ps.setString(2, wallet.getOwnerType());
             ps.setInt(3, wallet.getId());
@@ -204,7 +268,8 @@ public class WalletService {
     private boolean updateWalletWithoutName(Wallet wallet) {
         String sql = "UPDATE wallet SET owner_type = ? WHERE id = ?";
 
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+        try (Connection conn = MyConnection.openConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, wallet.getOwnerType());
             ps.setInt(2, wallet.getId());
             return ps.executeUpdate() > 0;
@@ -231,7 +296,8 @@ public class WalletService {
         
         String sql = "DELETE FROM wallet WHERE id = ?";
         
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+        try (Connection conn = MyConnection.openConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setInt(1, walletId);
             return ps.executeUpdate() > 0;
         } catch (SQLException ex) {
@@ -272,55 +338,47 @@ public class WalletService {
         }
 
         try {
-            conn.setAutoCommit(false);
-            BatchEventService eventService = new BatchEventService();
+            return TransactionTemplate.execute(maxAttempts(), conn -> {
+                BatchEventService eventService = new BatchEventService();
+                boolean optimistic = useOptimisticLocking(conn);
             
-            // 1. Create credit batch with traceability
-            int batchId = createCreditBatch(projectId, walletId, amount, calculationAuditId, Models.BatchType.PRIMARY);
-            if (batchId == -1) {
-                conn.rollback();
-                return false;
-            }
+                // Guard the wallet before touching its batches (same lock order as retire/transfer)
+                Wallet wallet = guardWallets(conn, optimistic, walletId).get(walletId);
+                if (wallet == null) {
+                    System.out.println("Wallet not found");
+                    TransactionTemplate.setRollbackOnly(conn);
+                    return false;
+                }
             
-            // 2. Update wallet available credits
-            String updateWallet = "UPDATE wallet SET available_credits = available_credits + ? WHERE id = ?";
-            try (PreparedStatement ps = conn.prepareStatement(updateWallet)) {
-                ps.setDouble(1, amount);
-                ps.setInt(2, walletId);
-                ps.executeUpdate();
-            }
+                // 1. Create credit batch with traceability
+                int batchId = createCreditBatch(conn, projectId, walletId, amount, calculationAuditId, Models.BatchType.PRIMARY);
+                if (batchId == -1) {
+                    TransactionTemplate.setRollbackOnly(conn);
+                    return false;
+                }
             
-            // 3. Record transaction
-            recordTransaction(walletId, batchId, "ISSUE", amount, referenceNote);
+                // 2. Update wallet available credits
+                updateWalletBalance(conn, wallet, amount, 0, optimistic);
             
-            // 4. Record ISSUED event for traceability
-            JsonObject eventData = new JsonObject();
-            eventData.addProperty("total_amount", amount);
-            eventData.addProperty("wallet_id", walletId);
-            eventData.addProperty("project_id", projectId);
-            eventData.addProperty("batch_type", "PRIMARY");
-            if (calculationAuditId != null) {
-                eventData.addProperty("calculation_audit_id", calculationAuditId);
-            }
-            eventService.recordEvent(batchId, BatchEventType.ISSUED, eventData, actor);
+                // 3. Record transaction
+                recordTransaction(conn, walletId, batchId, "ISSUE", amount, referenceNote);
             
-            conn.commit();
-            return true;
+                // 4. Record ISSUED event for traceability
+                JsonObject eventData = new JsonObject();
+                eventData.addProperty("total_amount", amount);
+                eventData.addProperty("wallet_id", walletId);
+                eventData.addProperty("project_id", projectId);
+                eventData.addProperty("batch_type", "PRIMARY");
+                if (calculationAuditId != null) {
+                    eventData.addProperty("calculation_audit_id", calculationAuditId);
+                }
+                eventService.recordEvent(conn, batchId, BatchEventType.ISSUED, eventData, actor);
             
+                return true;
+            });
         } catch (SQLException ex) {
-            try {
-                conn.rollback();
-            } catch (SQLException e) {
-                e.printStackTrace();
-            }
             System.out.println("Error issuing credits: " + ex.getMessage());
             return false;
-        } finally {
-            try {
-                conn.setAutoCommit(true);
-            } catch (SQLException e) {
-                e.printStackTrace();
-            }
         }
     }
 
@@ -334,73 +392,58 @@ public class WalletService {
     public boolean quickIssueCredits(int walletId, double amount, String description,
                                     String calculationAuditId, String verificationStandard, Integer vintageYear) {
         try {
-            conn.setAutoCommit(false);
-            
-            // Get wallet to determine project ID
-            Wallet wallet = getWalletById(walletId);
-            if (wallet == null) {
-                conn.rollback();
-                return false;
-            }
+            return TransactionTemplate.execute(maxAttempts(), conn -> {
+                boolean optimistic = useOptimisticLocking(conn);
+                
+                // Guard the wallet (also gives its owner ID, used as project substitute)
+                Wallet wallet = guardWallets(conn, optimistic, walletId).get(walletId);
+                if (wallet == null) {
+                    TransactionTemplate.setRollbackOnly(conn);
+                    return false;
+                }
             
-            // Create batch for traceability (using wallet's owner_id as project substitute)
-            int projectId = wallet.getOwnerId() > 0 ? wallet.getOwnerId() : 1;
-            String auditId = calculationAuditId != null ? calculationAuditId : "QUICK_ISSUE";
-            int batchId = createCreditBatch(projectId, walletId, amount, 
-                auditId, Models.BatchType.PRIMARY, verificationStandard, vintageYear);
+                // Create batch for traceability (using wallet's owner_id as project substitute)
+                int projectId = wallet.getOwnerId() > 0 ? wallet.getOwnerId() : 1;
+                String auditId = calculationAuditId != null ? calculationAuditId : "QUICK_ISSUE";
+                int batchId = createCreditBatch(conn, projectId, walletId, amount, 
+                    auditId, Models.BatchType.PRIMARY, verificationStandard, vintageYear);
             
-            if (batchId <= 0) {
-                conn.rollback();
-                return false;
-            }
+                if (batchId <= 0) {
+                    TransactionTemplate.setRollbackOnly(conn);
+                    return false;
+                }
             
-            // Update wallet credits
-            String sql = "UPDATE wallet SET available_credits = available_credits + ? WHERE id = ?";
-            try (PreparedStatement ps = conn.prepareStatement(sql)) {
-                ps.setDouble(1, amount);
-                ps.setInt(2, walletId);
-                ps.executeUpdate();
-            }
+                // Update wallet credits
+                updateWalletBalance(conn, wallet, amount, 0, optimistic);
             
-            // Record transaction with batch linkage
-            recordTransaction(walletId, batchId, "ISSUE", amount, description);
+                // Record transaction with batch linkage
+                recordTransaction(conn, walletId, batchId, "ISSUE", amount, description);
             
-            // Record batch event (optional - don't fail transaction if event recording fails)
-            try {
-                BatchEventService eventService = new BatchEventService();
-                com.google.gson.JsonObject eventData = new com.google.gson.JsonObject();
-                eventData.addProperty("amount", amount);
-                eventData.addProperty("wallet_id", walletId);
-                eventData.addProperty("description", description);
-                if (verificationStandard != null) {
-                    eventData.addProperty("verification_standard", verificationStandard);
-                }
-                if (vintageYear != null) {
-                    eventData.addProperty("vintage_year", vintageYear);
+                // Record batch event (optional - don't fail transaction if event recording fails)
+                try {
+                    BatchEventService eventService = new BatchEventService();
+                    com.google.gson.JsonObject eventData = new com.google.gson.JsonObject();
+                    eventData.addProperty("amount", amount);
+                    eventData.addProperty("wallet_id", walletId);
+                    eventData.addProperty("description", description);
+                    if (verificationStandard != null) {
+                        eventData.addProperty("verification_standard", verificationStandard);
+                    }
+                    if (vintageYear != null) {
+                        eventData.addProperty("vintage_year", vintageYear);
+                    }
+                    eventService.recordEvent(conn, batchId, BatchEventType.ISSUED, eventData, "SYSTEM");
+                } catch (Exception eventEx) {
+                    // Event recording failed, but batch creation succeeded - log and continue
+                    System.err.println("Warning: Batch created but event recording failed: " + eventEx.getMessage());
+                    System.err.println("Batch ID " + batchId + " issued successfully without event tracking");
                 }
-                eventService.recordEvent(batchId, BatchEventType.ISSUED, eventData, "SYSTEM");
-            } catch (Exception eventEx) {
-                // Event recording failed, but batch creation succeeded - log and continue
-                System.err.println("Warning: Batch created but event recording failed: " + eventEx.getMessage());
-                System.err.println("Batch ID " + batchId + " issued successfully without event tracking");
-            }
             
-            conn.commit();
-            return true;
+                return true;
+            });
         } catch (SQLException ex) {
-            try {
-                conn.rollback();
-            } catch (SQLException e) {
-                System.err.println("Error rolling back: " + e.getMessage());
-            }
             System.out.println("Error quick issuing credits: " + ex.getMessage());
             return false;
-        } finally {
-            try {
-                conn.setAutoCommit(true);
-            } catch (SQLException e) {
-                System.err.println("Error resetting autocommit: " + e.getMessage());
-            }
         }
     }
 
@@ -430,6 +473,7 @@ public class WalletService {
             return false;
         }
 
+        // Fast rejection on an unlocked read; the balance is checked again under the guard
         Wallet wallet = getWalletById(walletId);
         if (wallet == null || wallet.getAvailableCredits() < amount) {
             System.out.println("Insufficient available credits");
@@ -437,86 +481,85 @@ public class WalletService {
         }
 
         try {
-            conn.setAutoCommit(false);
-            BatchEventService eventService = new BatchEventService();
-            
-            // Track batches consumed during retirement
-            List<BatchRetirementInfo> retirementDetails = new ArrayList<>();
-            
-            // 1. Update batches (FIFO - retire oldest credits first)
-            double remainingToRetire = amount;
-            List<CarbonCreditBatch> batches = getAvailableBatches(walletId);
-            
-            for (CarbonCreditBatch batch : batches) {
-                if (remainingToRetire == 0) break;
+            return TransactionTemplate.execute(maxAttempts(), conn -> {
+                BatchEventService eventService = new BatchEventService();
+                boolean optimistic = useOptimisticLocking(conn);
                 
-                double retireFromBatch = Math.min(remainingToRetire, batch.getRemainingAmount().doubleValue());
-                updateBatchRetirement(batch.getId(), retireFromBatch);
+                Wallet guarded = guardWallets(conn, optimistic, walletId).get(walletId);
+                if (guarded == null || guarded.getAvailableCredits() < amount) {
+                    System.out.println("Insufficient available credits");
+                    TransactionTemplate.setRollbackOnly(conn);
+                    return false;
+                }
                 
-                // Track this retirement for later recording
-                retirementDetails.add(new BatchRetirementInfo(batch.getId(), retireFromBatch));
+                // 1. FIFO allocation computed in memory (oldest credits first)
+                List<BatchRetirementInfo> retirementDetails =
+                    allocateFifo(getAvailableBatches(conn, walletId, !optimistic), amount);
                 
-                remainingToRetire = remainingToRetire - retireFromBatch;
-            }
-            
-            // 2. Update wallet balances
-            String updateWallet = "UPDATE wallet SET available_credits = available_credits - ?, " +
-                                  "retired_credits = retired_credits + ? WHERE id = ?";
-            try (PreparedStatement ps = conn.prepareStatement(updateWallet)) {
-                ps.setDouble(1, amount);
-                ps.setDouble(2, amount);
-                ps.setInt(3, walletId);
-                ps.executeUpdate();
-            }
-            
-            // 3. Record transaction and get its ID
-            long transactionId = recordTransactionWithId(walletId, 
-                retirementDetails.isEmpty() ? null : retirementDetails.get(0).batchId, 
-                "RETIRE", amount, referenceNote);
-            
-            if (transactionId == -1) {
-                conn.rollback();
-                return false;
-            }
-            
-            // 4. Record batch retirement details (link transaction to batches)
-            for (BatchRetirementInfo detail : retirementDetails) {
-                recordBatchRetirementDetail(transactionId, detail.batchId, detail.amount);
+                // 2. Apply all batch updates in one JDBC batch
+                updateBatchRetirements(conn, retirementDetails);
                 
-                // Record RETIRED event for each batch
-                JsonObject eventData = new JsonObject();
-                eventData.addProperty("amount_retired", detail.amount);
-                eventData.addProperty("transaction_id", transactionId);
-                eventData.addProperty("wallet_id", walletId);
-                eventData.addProperty("reference_note", referenceNote);
-                eventService.recordEvent(detail.batchId, BatchEventType.RETIRED, eventData, actor);
-            }
-            
-            conn.commit();
-            return true;
-            
+                // 3. Update wallet balances
+                updateWalletBalance(conn, guarded, -amount, amount, optimistic);
+                
+                // 4. Record transaction and get its ID
+                long transactionId = recordTransactionWithId(conn, walletId, 
+                    retirementDetails.isEmpty() ? null : retirementDetails.get(0).batchId, 
+                    "RETIRE", amount, referenceNote);
+                
+                if (transactionId == -1) {
+                    TransactionTemplate.setRollbackOnly(conn);
+                    return false;
+                }
+                
+                // 5. Link transaction to the consumed batches (one JDBC batch)
+                recordBatchRetirementDetails(conn, transactionId, retirementDetails);
+                
+                // 6. RETIRED event for each batch (one chain-head lookup + one batched insert)
+                Map<Integer, JsonObject> eventsByBatch = new LinkedHashMap<>();
+                for (BatchRetirementInfo detail : retirementDetails) {
+                    JsonObject eventData = new JsonObject();
+                    eventData.addProperty("amount_retired", detail.amount);
+                    eventData.addProperty("transaction_id", transactionId);
+                    eventData.addProperty("wallet_id", walletId);
+                    eventData.addProperty("reference_note", referenceNote);
+                    eventsByBatch.put(detail.batchId, eventData);
+                }
+                eventService.recordEvents(conn, BatchEventType.RETIRED, eventsByBatch, actor);
+                
+                return true;
+            });
         } catch (SQLException ex) {
-            try {
-                conn.rollback();
-            } catch (SQLException e) {
-                e.printStackTrace();
-            }
             System.out.println("Error retiring credits: " + ex.getMessage());
             ex.printStackTrace();
             return false;
-        } finally {
-            try {
-                conn.setAutoCommit(true);
-            } catch (SQLException e) {
-                e.printStackTrace();
-            }
         }
     }
 
+    /**
+     * Allocate a retirement across batches in FIFO order (batches must be sorted oldest first).
+     * Pure in-memory step of retireCredits, public for the JMH benchmarks.
+     */
+    public static List<BatchRetirementInfo> allocateFifo(List<CarbonCreditBatch> batches, double amount) {
+        List<BatchRetirementInfo> allocations = new ArrayList<>();
+        double remainingToRetire = amount;
+        
+        for (CarbonCreditBatch batch : batches) {
+            if (remainingToRetire <= 0) break;
+            
+            double retireFromBatch = Math.min(remainingToRetire, batch.getRemainingAmount().doubleValue());
+            if (retireFromBatch <= 0) continue;
+            
+            allocations.add(new BatchRetirementInfo(batch.getId(), retireFromBatch));
+            remainingToRetire = remainingToRetire - retireFromBatch;
+        }
+        return allocations;
+    }
+
     /**
      * Helper class to track batch retirement info during FIFO processing.
      */
-    private static class BatchRetirementInfo {
+    public static class BatchRetirementInfo {
         int batchId;
         double amount;
         
@@ -559,6 +602,7 @@ public class WalletService {
             return false;
         }
 
+        // Fast rejection on unlocked reads; the balance is checked again under the guard
         Wallet fromWallet = getWalletById(fromWalletId);
         if (fromWallet == null || fromWallet.getAvailableCredits() < amount) {
             System.out.println("Insufficient credits in source wallet");
@@ -571,94 +615,65 @@ public class WalletService {
             return false;
         }
 
-        // Check if we're already in a transaction (autocommit is false)
-        boolean wasInTransaction = false;
-        try {
-            wasInTransaction = !conn.getAutoCommit();
-        } catch (SQLException e) {
-            e.printStackTrace();
-            return false;
-        }
-
         try {
-            // Only manage transaction if we're not already in one
-            if (!wasInTransaction) {
-                conn.setAutoCommit(false);
-            }
-            
-            BatchEventService eventService = new BatchEventService();
-            
-            // Generate transfer pair ID to link IN/OUT transactions
-            String transferPairId = java.util.UUID.randomUUID().toString();
-            
-            if (mode == TransferMode.DIRECT) {
-                // DIRECT MODE: Transfer existing batches (change wallet_id)
-                transferBatchesDirect(fromWalletId, toWalletId, amount, eventService, actor, referenceNote);
-            } else {
-                // SPLIT_CHILD MODE: Create child batches for destination
-                transferBatchesSplitChild(fromWalletId, toWalletId, amount, eventService, actor, referenceNote);
-            }
-            
-            // Deduct from source wallet
-            String deductSql = "UPDATE wallet SET available_credits = available_credits - ? WHERE id = ?";
-            try (PreparedStatement ps = conn.prepareStatement(deductSql)) {
-                ps.setDouble(1, amount);
-                ps.setInt(2, fromWalletId);
-                ps.executeUpdate();
-            }
-            
-            // Add to destination wallet
-            String addSql = "UPDATE wallet SET available_credits = available_credits + ? WHERE id = ?";
-            try (PreparedStatement ps = conn.prepareStatement(addSql)) {
-                ps.setDouble(1, amount);
-                ps.setInt(2, toWalletId);
-                ps.executeUpdate();
-            }
-            
-            // Record linked transactions with transfer_pair_id
-            String note = String.format("%s (Transfer to Wallet #%s)", referenceNote, safeWalletNumber(toWallet.getWalletNumber()));
-            recordTransferTransaction(fromWalletId, null, "TRANSFER_OUT", amount, note, transferPairId);
-            
-            String noteIn = String.format("%s (Transfer from Wallet #%s)", referenceNote, safeWalletNumber(fromWallet.getWalletNumber()));
-            recordTransferTransaction(toWalletId, null, "TRANSFER_IN", amount, noteIn, transferPairId);
-            
-            // Only commit if we started the transaction
-            if (!wasInTransaction) {
-                conn.commit();
-            }
-            return true;
-            
-        } catch (SQLException ex) {
-            // Only rollback if we started the transaction
-            if (!wasInTransaction) {
-                try {
-                    conn.rollback();
-                } catch (SQLException e) {
-                    e.printStackTrace();
+            return TransactionTemplate.execute(maxAttempts(), conn -> {
+                BatchEventService eventService = new BatchEventService();
+                boolean optimistic = useOptimisticLocking(conn);
+                
+                // Both wallets guarded in ascending id order: A->B and B->A cannot deadlock
+                Map<Integer, Wallet> guarded = guardWallets(conn, optimistic, fromWalletId, toWalletId);
+                Wallet source = guarded.get(fromWalletId);
+                Wallet destination = guarded.get(toWalletId);
+                if (source == null || source.getAvailableCredits() < amount) {
+                    System.out.println("Insufficient credits in source wallet");
+                    TransactionTemplate.setRollbackOnly(conn);
+                    return false;
                 }
-            }
+                if (destination == null) {
+                    System.out.println("Destination wallet not found");
+                    TransactionTemplate.setRollbackOnly(conn);
+                    return false;
+                }
+                
+                // Generate transfer pair ID to link IN/OUT transactions
+                String transferPairId = java.util.UUID.randomUUID().toString();
+                
+                if (mode == TransferMode.DIRECT) {
+                    // DIRECT MODE: Transfer existing batches (change wallet_id)
+                    transferBatchesDirect(conn, fromWalletId, toWalletId, amount, eventService, actor, referenceNote, optimistic);
+                } else {
+                    // SPLIT_CHILD MODE: Create child batches for destination
+                    transferBatchesSplitChild(conn, fromWalletId, toWalletId, amount, eventService, actor, referenceNote, optimistic);
+                }
+                
+                // Deduct from source wallet, add to destination wallet
+                updateWalletBalance(conn, source, -amount, 0, optimistic);
+                updateWalletBalance(conn, destination, amount, 0, optimistic);
+                
+                // Record linked transactions with transfer_pair_id
+                String note = String.format("%s (Transfer to Wallet #%s)", referenceNote, safeWalletNumber(toWallet.getWalletNumber()));
+                recordTransferTransaction(conn, fromWalletId, null, "TRANSFER_OUT", amount, note, transferPairId);
+                
+                String noteIn = String.format("%s (Transfer from Wallet #%s)", referenceNote, safeWalletNumber(fromWallet.getWalletNumber()));
+                recordTransferTransaction(conn, toWalletId, null, "TRANSFER_IN", amount, noteIn, transferPairId);
+                
+                return true;
+            });
+        } catch (SQLException ex) {
             System.out.println("Error transferring credits: " + ex.getMessage());
             ex.printStackTrace();
             return false;
-        } finally {
-            // Only restore autocommit if we changed it
-            if (!wasInTransaction) {
-                try {
-                    conn.setAutoCommit(true);
-                } catch (SQLException e) {
-                    e.printStackTrace();
-                }
-            }
         }
     }
 
     /**
      * Transfer batches directly (change wallet_id, maintain batch identity).
      */
-    private void transferBatchesDirect(int fromWalletId, int toWalletId, double amount,
-                                      BatchEventService eventService, String actor, String referenceNote) throws SQLException {
+    private void transferBatchesDirect(Connection conn, int fromWalletId, int toWalletId, double amount,
+                                      BatchEventService eventService, String actor, String referenceNote,
+                                      boolean optimistic) throws SQLException {
         double remainingToTransfer = amount;
-        List<CarbonCreditBatch> batches = getAvailableBatches(fromWalletId);
+        List<CarbonCreditBatch> batches = getAvailableBatches(conn, fromWalletId, !optimistic);
         
         for (CarbonCreditBatch batch : batches) {
             if (remainingToTransfer <= 0) break;
@@ -681,11 +696,11 @@ public class WalletService {
                 eventData.addProperty("amount", transferFromBatch);
                 eventData.addProperty("transfer_mode", "DIRECT_FULL");
                 eventData.addProperty("reference_note", referenceNote);
-                eventService.recordEvent(batch.getId(), BatchEventType.TRANSFERRED, eventData, actor);
+                eventService.recordEvent(conn, batch.getId(), BatchEventType.TRANSFERRED, eventData, actor);
                 
             } else {
                 // Partial transfer: split batch
-                int childBatchId = splitBatch(batch.getId(), transferFromBatch, toWalletId, actor);
+                int childBatchId = splitBatch(conn, batch.getId(), transferFromBatch, toWalletId, actor, null, optimistic);
                 if (childBatchId == -1) {
                     throw new SQLException("Failed to split batch during transfer");
                 }
@@ -698,10 +713,11 @@ public class WalletService {
     /**
      * Transfer batches by creating child batches (maintains full lineage).
      */
-    private void transferBatchesSplitChild(int fromWalletId, int toWalletId, double amount,
-                                          BatchEventService eventService, String actor, String referenceNote) throws SQLException {
+    private void transferBatchesSplitChild(Connection conn, int fromWalletId, int toWalletId, double amount,
+                                          BatchEventService eventService, String actor, String referenceNote,
+                                          boolean optimistic) throws SQLException {
         double remainingToTransfer = amount;
-        List<CarbonCreditBatch> batches = getAvailableBatches(fromWalletId);
+        List<CarbonCreditBatch> batches = getAvailableBatches(conn, fromWalletId, !optimistic);
         
         for (CarbonCreditBatch batch : batches) {
             if (remainingToTransfer <= 0) break;
@@ -709,7 +725,7 @@ public class WalletService {
             double transferFromBatch = Math.min(remainingToTransfer, batch.getRemainingAmount().doubleValue());
             
             // Create child batch for destination wallet
-            int childBatchId = splitBatch(batch.getId(), transferFromBatch, toWalletId, actor);
+            int childBatchId = splitBatch(conn, batch.getId(), transferFromBatch, toWalletId, actor, null, optimistic);
             if (childBatchId == -1) {
                 throw new SQLException("Failed to create child batch during transfer");
             }
@@ -722,7 +738,7 @@ public class WalletService {
             eventData.addProperty("amount", transferFromBatch);
             eventData.addProperty("transfer_mode", "SPLIT_CHILD");
             eventData.addProperty("reference_note", referenceNote);
-            eventService.recordEvent(batch.getId(), BatchEventType.MARKETPLACE_SOLD, eventData, actor);
+            eventService.recordEvent(conn, batch.getId(), BatchEventType.MARKETPLACE_SOLD, eventData, actor);
             
             remainingToTransfer -= transferFromBatch;
         }
@@ -731,7 +747,7 @@ public class WalletService {
     /**
      * Record transaction with transfer_pair_id for linking IN/OUT transactions.
      */
-    private void recordTransferTransaction(int walletId, Integer batchId, String type, double amount, 
+    private void recordTransferTransaction(Connection conn, int walletId, Integer batchId, String type, double amount, 
                                           String note, String transferPairId) throws SQLException {
         String sql = "INSERT INTO wallet_transactions " +
                      "(wallet_id, batch_id, type, amount, reference_note, transfer_pair_id, created_at) " +
@@ -751,7 +767,7 @@ public class WalletService {
         } catch (SQLException ex) {
             // Fallback if transfer_pair_id column doesn't exist yet
             if (isUnknownColumnError(ex, "transfer_pair_id")) {
-                recordTransaction(walletId, effectiveBatchId, effectiveType, amount, note);
+                recordTransaction(conn, walletId, effectiveBatchId, effectiveType, amount, note);
                 return;
             }
             throw ex;
@@ -768,7 +784,8 @@ public class WalletService {
         List<OperationWallet> transactions = new ArrayList<>();
         String sql = "SELECT * FROM wallet_transactions WHERE wallet_id = ? ORDER BY created_at DESC";
         
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+        try (Connection conn = MyConnection.openConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setInt(1, walletId);
             ResultSet rs = ps.executeQuery();
             while (rs.next()) {
@@ -787,7 +804,8 @@ public class WalletService {
         List<CarbonCreditBatch> batches = new ArrayList<>();
         String sql = "SELECT * FROM carbon_credit_batches WHERE wallet_id = ? ORDER BY issued_at DESC";
         
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+        try (Connection conn = MyConnection.openConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setInt(1, walletId);
             ResultSet rs = ps.executeQuery();
             while (rs.next()) {
@@ -812,13 +830,69 @@ public class WalletService {
      * @return ID of the newly created child batch, or -1 if failed
      */
     public int splitBatch(int batchId, double amountToSplit, int targetWalletId, String actor) {
+        try {
+            int childBatchId = TransactionTemplate.execute(maxAttempts(), conn -> {
+                boolean optimistic = useOptimisticLocking(conn);
+                
+                CarbonCreditBatch parentBatch = getBatchById(conn, batchId, false);
+                if (parentBatch == null) {
+                    System.err.println("Parent batch not found");
+                    return -1;
+                }
+                
+                // Guard the parent's wallet and the target wallet, then make sure the batch did not
+                // move to another wallet between the first read and the guard
+                int sourceWalletId = parentBatch.getWalletId();
+                Map<Integer, Wallet> guarded = guardWallets(conn, optimistic, sourceWalletId, targetWalletId);
+                CarbonCreditBatch current = getBatchById(conn, batchId, !optimistic);
+                if (current == null || current.getWalletId() != sourceWalletId) {
+                    throw new SQLException("Batch " + batchId + " moved during split", SERIALIZATION_FAILURE);
+                }
+                Wallet targetWallet = guarded.get(targetWalletId);
+                if (targetWallet == null) {
+                    System.err.println("Target wallet not found");
+                    return -1;
+                }
+                
+                int splitId = splitBatch(conn, batchId, amountToSplit, targetWalletId, actor, targetWallet, optimistic);
+                if (splitId == -1) {
+                    TransactionTemplate.setRollbackOnly(conn);
+                    return -1;
+                }
+                
+                // The parent batch changed: bump the source wallet version too
+                Wallet sourceWallet = guarded.get(sourceWalletId);
+                if (sourceWallet != null && sourceWallet != targetWallet) {
+                    updateWalletBalance(conn, sourceWallet, 0, 0, optimistic);
+                }
+                return splitId;
+            });
+            if (childBatchId != -1) {
+                System.out.println("Batch split successful. Child batch ID: " + childBatchId);
+            }
+            return childBatchId;
+        } catch (SQLException ex) {
+            System.err.println("Error splitting batch: " + ex.getMessage());
+            ex.printStackTrace();
+            return -1;
+        }
+    }
+
+    /**
+     * Split a batch inside the caller's transaction (used directly by transfers so the
+     * child batch is committed or rolled back together with the transfer).
+     * The caller must already guard both wallets. Transfers update both wallet balances
+     * themselves and pass creditTargetWallet = null.
+     */
+    private int splitBatch(Connection conn, int batchId, double amountToSplit, int targetWalletId, String actor,
+                           Wallet creditTargetWallet, boolean optimistic) throws SQLException {
         if (amountToSplit <= 0) {
             System.err.println("Split amount must be positive");
             return -1;
         }
 
-        // Get parent batch
-        CarbonCreditBatch parentBatch = getBatchById(batchId);
+        // Get parent batch (locking read in pessimistic mode: sees the latest committed amount)
+        CarbonCreditBatch parentBatch = getBatchById(conn, batchId, !optimistic);
         if (parentBatch == null) {
             System.err.println("Parent batch not found");
             return -1;
@@ -830,107 +904,83 @@ public class WalletService {
         }
 
         // Verify target wallet exists
-        Wallet targetWallet = getWalletById(targetWalletId);
+        Wallet targetWallet = getWalletById(conn, targetWalletId);
         if (targetWallet == null) {
             System.err.println("Target wallet not found");
             return -1;
         }
 
-        try {
-            conn.setAutoCommit(false);
-            BatchEventService eventService = new BatchEventService();
-
-            // 1. Create child batch
-            String insertSql = "INSERT INTO carbon_credit_batches " +
-                              "(project_id, wallet_id, total_amount, remaining_amount, status, " +
-                              "verification_standard, vintage_year, calculation_audit_id, " +
-                              "parent_batch_id, batch_type, issued_at) " +
-                              "VALUES (?, ?, ?, ?, 'AVAILABLE', ?, ?, ?, ?, 'SECONDARY', NOW())";
-            
-            int childBatchId = -1;
-            try (PreparedStatement ps = conn.prepareStatement(insertSql, Statement.RETURN_GENERATED_KEYS)) {
-                ps.setInt(1, parentBatch.getProjectId());
-                ps.setInt(2, targetWalletId);
-                ps.setDouble(3, amountToSplit);
-                ps.setDouble(4, amountToSplit);
-                ps.setString(5, parentBatch.getVerificationStandard());
-                ps.setObject(6, parentBatch.getVintageYear());
-                ps.setString(7, parentBatch.getCalculationAuditId());
-                ps.setInt(8, parentBatch.getId());
-                
-                ps.executeUpdate();
-                ResultSet rs = ps.getGeneratedKeys();
-                if (rs.next()) {
-                    childBatchId = rs.getInt(1);
-                }
-            }
+        BatchEventService eventService = new BatchEventService();
 
-            if (childBatchId == -1) {
-                conn.rollback();
-                return -1;
-            }
-
-            // 2. Update parent batch
-            double newRemainingAmount = parentBatch.getRemainingAmount().doubleValue() - amountToSplit;
-            String newStatus = newRemainingAmount == 0 ? "FULLY_RETIRED" : 
-                             (newRemainingAmount < parentBatch.getTotalAmount().doubleValue() ? "PARTIALLY_RETIRED" : "AVAILABLE");
+        // 1. Create child batch
+        String insertSql = "INSERT INTO carbon_credit_batches " +
+                          "(project_id, wallet_id, total_amount, remaining_amount, status, " +
+                          "verification_standard, vintage_year, calculation_audit_id, " +
+                          "parent_batch_id, batch_type, issued_at) " +
+                          "VALUES (?, ?, ?, ?, 'AVAILABLE', ?, ?, ?, ?, 'SECONDARY', NOW())";
+        
+        int childBatchId = -1;
+        try (PreparedStatement ps = conn.prepareStatement(insertSql, Statement.RETURN_GENERATED_KEYS)) {
+            ps.setInt(1, parentBatch.getProjectId());
+            ps.setInt(2, targetWalletId);
+            ps.setDouble(3, amountToSplit);
+            ps.setDouble(4, amountToSplit);
+            ps.setString(5, parentBatch.getVerificationStandard());
+            ps.setObject(6, parentBatch.getVintageYear());
+            ps.setString(7, parentBatch.getCalculationAuditId());
+            ps.setInt(8, parentBatch.getId());
             
-            String updateParent = "UPDATE carbon_credit_batches " +
-                                 "SET remaining_amount = ?, status = ? WHERE id = ?";
-            try (PreparedStatement ps = conn.prepareStatement(updateParent)) {
-                ps.setDouble(1, newRemainingAmount);
-                ps.setString(2, newStatus);
-                ps.setInt(3, batchId);
-                ps.executeUpdate();
+            ps.executeUpdate();
+            ResultSet rs = ps.getGeneratedKeys();
+            if (rs.next()) {
+                childBatchId = rs.getInt(1);
             }
+        }
 
-            // 3. Update parent's lineage JSON (add child batch ID)
-            updateParentLineage(batchId, childBatchId);
+        if (childBatchId == -1) {
+            return -1;
+        }
 
-            // 4. Update target wallet credits
-            String updateWallet = "UPDATE wallet SET available_credits = available_credits + ? WHERE id = ?";
-            try (PreparedStatement ps = conn.prepareStatement(updateWallet)) {
-                ps.setDouble(1, amountToSplit);
-                ps.setInt(2, targetWalletId);
-                ps.executeUpdate();
-            }
+        // 2. Update parent batch
+        double newRemainingAmount = parentBatch.getRemainingAmount().doubleValue() - amountToSplit;
+        String newStatus = newRemainingAmount == 0 ? "FULLY_RETIRED" : 
+                         (newRemainingAmount < parentBatch.getTotalAmount().doubleValue() ? "PARTIALLY_RETIRED" : "AVAILABLE");
+        
+        String updateParent = "UPDATE carbon_credit_batches " +
+                             "SET remaining_amount = ?, status = ? WHERE id = ?";
+        try (PreparedStatement ps = conn.prepareStatement(updateParent)) {
+            ps.setDouble(1, newRemainingAmount);
+            ps.setString(2, newStatus);
+            ps.setInt(3, batchId);
+            ps.executeUpdate();
+        }
 
-            // 5. Record SPLIT event on parent batch
-            JsonObject eventData = new JsonObject();
-            eventData.addProperty("child_batch_id", childBatchId);
-            eventData.addProperty("amount_split", amountToSplit);
-            eventData.addProperty("target_wallet_id", targetWalletId);
-            eventData.addProperty("target_wallet_name", targetWallet.getName());
-            eventService.recordEvent(batchId, BatchEventType.SPLIT, eventData, actor);
-
-            // 6. Record ISSUED event on child batch (it's a new issuance, though derived)
-            JsonObject childEventData = new JsonObject();
-            childEventData.addProperty("parent_batch_id", batchId);
-            childEventData.addProperty("amount", amountToSplit);
-            childEventData.addProperty("batch_type", "SECONDARY");
-            childEventData.addProperty("split_from_parent", true);
-            eventService.recordEvent(childBatchId, BatchEventType.ISSUED, childEventData, actor);
-
-            conn.commit();
-            System.out.println("Batch split successful. Child batch ID: " + childBatchId);
-            return childBatchId;
+        // 3. Update parent's lineage JSON (add child batch ID)
+        updateParentLineage(conn, batchId, childBatchId);
+        BatchLineageService.getInstance().invalidate(conn, batchId);
 
-        } catch (SQLException ex) {
-            try {
-                conn.rollback();
-            } catch (SQLException e) {
-                e.printStackTrace();
-            }
-            System.err.println("Error splitting batch: " + ex.getMessage());
-            ex.printStackTrace();
-            return -1;
-        } finally {
-            try {
-                conn.setAutoCommit(true);
-            } catch (SQLException e) {
-                e.printStackTrace();
-            }
+        // 4. Update target wallet credits
+        if (creditTargetWallet != null) {
+            updateWalletBalance(conn, creditTargetWallet, amountToSplit, 0, optimistic);
         }
+
+        // 5. Record SPLIT event on parent batch
+        JsonObject eventData = new JsonObject();
+        eventData.addProperty("child_batch_id", childBatchId);
+        eventData.addProperty("amount_split", amountToSplit);
+        eventData.addProperty("target_wallet_id", targetWalletId);
+        eventData.addProperty("target_wallet_name", targetWallet.getName());
+        eventService.recordEvent(conn, batchId, BatchEventType.SPLIT, eventData, actor);
+
+        // 6. Record ISSUED event on child batch (it's a new issuance, though derived)
+        JsonObject childEventData = new JsonObject();
+        childEventData.addProperty("parent_batch_id", batchId);
+        childEventData.addProperty("amount", amountToSplit);
+        childEventData.addProperty("batch_type", "SECONDARY");
+        childEventData.addProperty("split_from_parent", true);
+        eventService.recordEvent(conn, childBatchId, BatchEventType.ISSUED, childEventData, actor);
+
+        return childBatchId;
     }
 
     /**
@@ -940,37 +990,38 @@ public class WalletService {
      * @return List of batches in lineage tree
      */
     public List<CarbonCreditBatch> getBatchLineage(int batchId) {
-        List<CarbonCreditBatch> lineage = new ArrayList<>();
-        
-        // Use the view created in the migration
-        String sql = "SELECT ccb.* FROM v_batch_full_lineage vbl " +
-                    "INNER JOIN carbon_credit_batches ccb ON vbl.id = ccb.id " +
-                    "WHERE vbl.id = ? OR vbl.parent_batch_id = ? " +
-                    "OR vbl.id IN (SELECT parent_batch_id FROM carbon_credit_batches WHERE id = ?) " +
-                    "ORDER BY vbl.lineage_depth ASC, vbl.id ASC";
-        
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setInt(1, batchId);
-            ps.setInt(2, batchId);
-            ps.setInt(3, batchId);
-            ResultSet rs = ps.executeQuery();
-            while (rs.next()) {
-                lineage.add(mapResultSetToBatch(rs));
-            }
+        return getBatchLineage(batchId, BatchLineageService.DEFAULT_MAX_DEPTH, 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Get a page of the batch lineage: all ancestors up to the root and all descendants,
+     * ordered by depth (root first), loaded with a single recursive query.
+     * 
+     * @param batchId The batch ID
+     * @param maxDepth Maximum number of generations followed up and down
+     * @param offset Index of the first batch to return
+     * @param limit Maximum number of batches to return
+     * @return List of batches in lineage tree
+     */
+    public List<CarbonCreditBatch> getBatchLineage(int batchId, int maxDepth, int offset, int limit) {
+        try {
+            return BatchLineageService.getInstance().getLineage(batchId, maxDepth, offset, limit);
         } catch (SQLException ex) {
-            // Fallback to simple query if view doesn't exist
+            // Fallback if recursive CTEs (MySQL 8) or parent_batch_id are unavailable
             if (!lineageViewWarningShown) {
-                System.err.println("[Schema Info] Lineage view 'v_batch_full_lineage' not found. Using fallback query (basic lineage).");
-                System.err.println("[Schema Info] Run ADD_BATCH_METADATA_COLUMNS.sql for full lineage support.");
+                System.err.println("[Schema Info] Recursive lineage query failed (" + ex.getMessage() + "). Using fallback query (basic lineage).");
+                System.err.println("[Schema Info] Requires MySQL 8+ and ADD_BATCH_METADATA_COLUMNS.sql for full lineage support.");
                 lineageViewWarningShown = true;
             }
-            return getBatchLineageFallback(batchId);
+            List<CarbonCreditBatch> lineage = getBatchLineageFallback(batchId);
+            int from = Math.min(Math.max(offset, 0), lineage.size());
+            int to = (int) Math.min((long) from + Math.max(limit, 0), lineage.size());
+            return new ArrayList<>(lineage.subList(from, to));
         }
-        return lineage;
     }
 
     /**
-     * Fallback method for getBatchLineage if view is unavailable.
+     * Fallback method for getBatchLineage if the recursive query is unavailable (one level only).
      */
     private List<CarbonCreditBatch> getBatchLineageFallback(int batchId) {
         List<CarbonCreditBatch> lineage = new ArrayList<>();
@@ -1006,7 +1057,8 @@ public class WalletService {
         List<CarbonCreditBatch> children = new ArrayList<>();
         String sql = "SELECT * FROM carbon_credit_batches WHERE parent_batch_id = ? ORDER BY issued_at ASC";
         
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+        try (Connection conn = MyConnection.openConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setInt(1, parentBatchId);
             ResultSet rs = ps.executeQuery();
             while (rs.next()) {
@@ -1039,29 +1091,53 @@ public class WalletService {
      * @return JSON string with complete provenance data
      */
     public String getBatchProvenance(int batchId) {
-        JsonObject provenance = new JsonObject();
-        
+        StringWriter out = new StringWriter();
         try {
-            // 1. Batch details
-            CarbonCreditBatch batch = getBatchById(batchId);
-            if (batch == null) {
-                provenance.addProperty("error", "Batch not found");
-                return gson.toJson(provenance);
-            }
-            
-            // Manually serialize batch to avoid LocalDateTime reflection issues
-            JsonObject batchJson = new JsonObject();
-            batchJson.addProperty("id", batch.getId());
-            batchJson.addProperty("projectId", batch.getProjectId());
-            batchJson.addProperty("walletId", batch.getWalletId());
-            batchJson.addProperty("totalAmount", batch.getTotalAmount());
-            batchJson.addProperty("remainingAmount", batch.getRemainingAmount());
-            batchJson.addProperty("status", batch.getStatus());
-            if (batch.getIssuedAt() != null) {
-                batchJson.addProperty("issuedAt", batch.getIssuedAt().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
-            }
-            provenance.add("batch", batchJson);
-            
+            writeBatchProvenance(batchId, gson.newJsonWriter(out));
+            return out.toString();
+        } catch (SQLException | IOException ex) {
+            System.err.println("Error generating provenance: " + ex.getMessage());
+            JsonObject error = new JsonObject();
+            error.addProperty("error", ex.getMessage());
+            return gson.toJson(error);
+        }
+    }
+
+    /**
+     * Write the provenance document of {@link #getBatchProvenance(int)} to {@code writer}, the event
+     * timeline streamed from a forward-only cursor so the document is never held in memory.
+     * Fields keep the order of the in-memory document (batch, emission_calculation, events,
+     * event_count, chain_valid, lineage...): event_count and chain_valid already followed the
+     * events there, and are computed while the events are written.
+     * 
+     * @param batchId The batch ID
+     * @param writer Destination, from {@code Gson.newJsonWriter}
+     * @throws SQLException if a query fails (the document is then incomplete)
+     */
+    public void writeBatchProvenance(int batchId, JsonWriter writer) throws SQLException, IOException {
+        // 1. Batch details
+        CarbonCreditBatch batch = getBatchById(batchId);
+        writer.beginObject();
+        if (batch == null) {
+            writer.name("error").value("Batch not found");
+            writer.endObject();
+            return;
+        }
+        
+        // Manually serialize batch to avoid LocalDateTime reflection issues
+        writer.name("batch").beginObject();
+        writer.name("id").value(batch.getId());
+        writer.name("projectId").value(batch.getProjectId());
+        writer.name("walletId").value(batch.getWalletId());
+        writer.name("totalAmount").value(batch.getTotalAmount());
+        writer.name("remainingAmount").value(batch.getRemainingAmount());
+        writer.name("status").value(batch.getStatus());
+        if (batch.getIssuedAt() != null) {
+            writer.name("issuedAt").value(batch.getIssuedAt().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+        }
+        writer.endObject();
+        
+        try (Connection conn = MyConnection.openConnection()) {
             // 2. Emission calculation (if linked)
             if (batch.getCalculationAuditId() != null) {
                 String calcSql = "SELECT * FROM emission_calculations WHERE calculation_id = ?";
@@ -1069,68 +1145,60 @@ public class WalletService {
                     ps.setString(1, batch.getCalculationAuditId());
                     ResultSet rs = ps.executeQuery();
                     if (rs.next()) {
-                        JsonObject calculation = new JsonObject();
-                        calculation.addProperty("calculation_id", rs.getString("calculation_id"));
-                        calculation.addProperty("co2e_result", rs.getDouble("co2e_result"));
-                        calculation.addProperty("emission_factor_id", rs.getString("emission_factor_id"));
-                        calculation.addProperty("methodology_version", rs.getString("methodology_version"));
-                        calculation.addProperty("tier", rs.getInt("tier"));
-                        calculation.addProperty("actor", rs.getString("actor"));
-                        provenance.add("emission_calculation", calculation);
+                        writer.name("emission_calculation").beginObject();
+                        writer.name("calculation_id").value(rs.getString("calculation_id"));
+                        writer.name("co2e_result").value(rs.getDouble("co2e_result"));
+                        writer.name("emission_factor_id").value(rs.getString("emission_factor_id"));
+                        writer.name("methodology_version").value(rs.getString("methodology_version"));
+                        writer.name("tier").value(rs.getInt("tier"));
+                        writer.name("actor").value(rs.getString("actor"));
+                        writer.endObject();
                     }
                 }
             }
             
-            // 3. Event timeline
-            BatchEventService eventService = new BatchEventService();
-            List<Models.BatchEvent> events = eventService.getBatchEvents(batchId);
-            JsonArray eventsArray = new JsonArray();
-            for (Models.BatchEvent event : events) {
-                JsonObject eventJson = new JsonObject();
-                eventJson.addProperty("id", event.getId());
-                eventJson.addProperty("batchId", event.getBatchId());
+            // 3. Event timeline, checked while it is written
+            writer.name("events").beginArray();
+            BatchEventService.StreamedChain chain = new BatchEventService().streamBatchChain(conn, batchId, event -> {
+                writer.beginObject();
+                writer.name("id").value(event.getId());
+                writer.name("batchId").value(event.getBatchId());
                 if (event.getEventType() != null) {
-                    eventJson.addProperty("eventType", event.getEventType().name());
+                    writer.name("eventType").value(event.getEventType().name());
                 }
                 if (event.getEventDataJson() != null) {
-                    eventJson.addProperty("eventData", event.getEventDataJson());
+                    writer.name("eventData").value(event.getEventDataJson());
                 }
                 if (event.getCreatedAt() != null) {
-                    eventJson.addProperty("timestamp", event.getCreatedAt().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+                    writer.name("timestamp").value(event.getCreatedAt().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
                 }
-                eventsArray.add(eventJson);
-            }
-            provenance.add("events", eventsArray);
-            provenance.addProperty("event_count", events.size());
-            provenance.addProperty("chain_valid", eventService.validateEventChain(batchId));
-            
-            // 4. Lineage
-            List<CarbonCreditBatch> lineage = getBatchLineage(batchId);
-            JsonArray lineageArray = new JsonArray();
-            for (CarbonCreditBatch b : lineage) {
-                JsonObject lineageJson = new JsonObject();
-                lineageJson.addProperty("id", b.getId());
-                lineageJson.addProperty("totalAmount", b.getTotalAmount());
-                lineageJson.addProperty("status", b.getStatus());
-                if (b.getIssuedAt() != null) {
-                    lineageJson.addProperty("issuedAt", b.getIssuedAt().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
-                }
-                lineageArray.add(lineageJson);
-            }
-            provenance.add("lineage", lineageArray);
-            provenance.addProperty("lineage_depth", batch.getLineageDepth());
-            
-            // 5. Summary stats
-            provenance.addProperty("batch_type", batch.getBatchType() != null ? batch.getBatchType().name() : "PRIMARY");
-            provenance.addProperty("is_primary", batch.isPrimary());
-            provenance.addProperty("retirement_percentage", batch.getRetirementPercentage());
-            
-        } catch (SQLException ex) {
-            System.err.println("Error generating provenance: " + ex.getMessage());
-            provenance.addProperty("error", ex.getMessage());
+                writer.endObject();
+            });
+            writer.endArray();
+            writer.name("event_count").value(chain.events());
+            writer.name("chain_valid").value(chain.valid());
         }
         
-        return gson.toJson(provenance);
+        // 4. Lineage
+        writer.name("lineage").beginArray();
+        for (CarbonCreditBatch b : getBatchLineage(batchId)) {
+            writer.beginObject();
+            writer.name("id").value(b.getId());
+            writer.name("totalAmount").value(b.getTotalAmount());
+            writer.name("status").value(b.getStatus());
+            if (b.getIssuedAt() != null) {
+                writer.name("issuedAt").value(b.getIssuedAt().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+            }
+            writer.endObject();
+        }
+        writer.endArray();
+        writer.name("lineage_depth").value(batch.getLineageDepth());
+        
+        // 5. Summary stats
+        writer.name("batch_type").value(batch.getBatchType() != null ? batch.getBatchType().name() : "PRIMARY");
+        writer.name("is_primary").value(batch.isPrimary());
+        writer.name("retirement_percentage").value(batch.getRetirementPercentage());
+        writer.endObject();
     }
 
     /**
@@ -1140,7 +1208,16 @@ public class WalletService {
      * @return The batch, or null if not found
      */
     public CarbonCreditBatch getBatchById(int batchId) {
-        String sql = "SELECT * FROM carbon_credit_batches WHERE id = ?";
+        try (Connection conn = MyConnection.openConnection()) {
+            return getBatchById(conn, batchId, false);
+        } catch (SQLException ex) {
+            System.err.println("Error fetching batch: " + ex.getMessage());
+        }
+        return null;
+    }
+
+    private CarbonCreditBatch getBatchById(Connection conn, int batchId, boolean forUpdate) throws SQLException {
+        String sql = "SELECT * FROM carbon_credit_batches WHERE id = ?" + (forUpdate ? " FOR UPDATE" : "");
         
         try (PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setInt(1, batchId);
@@ -1148,8 +1225,6 @@ public class WalletService {
             if (rs.next()) {
                 return mapResultSetToBatch(rs);
             }
-        } catch (SQLException ex) {
-            System.err.println("Error fetching batch: " + ex.getMessage());
         }
         return null;
     }
@@ -1157,7 +1232,7 @@ public class WalletService {
     /**
      * Update parent batch's lineage JSON to include new child batch ID.
      */
-    private void updateParentLineage(int parentBatchId, int childBatchId) throws SQLException {
+    private void updateParentLineage(Connection conn, int parentBatchId, int childBatchId) throws SQLException {
         // Get current lineage JSON
         String selectSql = "SELECT lineage_json FROM carbon_credit_batches WHERE id = ?";
         String currentLineage = null;
@@ -1194,6 +1269,114 @@ public class WalletService {
         }
     }
 
+    // ==================== CONCURRENCY CONTROL ====================
+
+    private int maxAttempts() {
+        // Optimistic conflicts are expected under contention, give them more replays than deadlocks
+        return concurrencyMode == ConcurrencyMode.OPTIMISTIC ? OPTIMISTIC_MAX_ATTEMPTS : 3;
+    }
+
+    /**
+     * OPTIMISTIC needs the wallet.version column (sql/ADD_WALLET_VERSION_COLUMN.sql);
+     * without it the service falls back to PESSIMISTIC locking.
+     */
+    private boolean useOptimisticLocking(Connection conn) {
+        if (concurrencyMode != ConcurrencyMode.OPTIMISTIC) {
+            return false;
+        }
+        if (hasWalletVersionColumn(conn)) {
+            return true;
+        }
+        if (!versionColumnWarningShown) {
+            System.out.println("Note: wallet.version column missing, OPTIMISTIC mode falls back to row locks. " +
+                               "Run sql/ADD_WALLET_VERSION_COLUMN.sql to enable it.");
+            versionColumnWarningShown = true;
+        }
+        return false;
+    }
+
+    private static boolean hasWalletVersionColumn(Connection conn) {
+        Boolean cached = walletVersionColumn;
+        if (cached != null) {
+            return cached;
+        }
+        try (ResultSet rs = conn.getMetaData().getColumns(conn.getCatalog(), null, "wallet", "version")) {
+            cached = rs.next();
+            walletVersionColumn = cached;
+            return cached;
+        } catch (SQLException ex) {
+            System.err.println("Could not inspect wallet columns: " + ex.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Guard the given wallets for the current transaction and return them by ID
+     * (missing wallets are absent from the map).
+     *
+     * PESSIMISTIC: one SELECT ... ORDER BY id FOR UPDATE, so rows are always locked in ascending
+     * id order and two transfers A->B / B->A cannot deadlock on each other.
+     * OPTIMISTIC: plain read; the versions read here are checked by updateWalletBalance().
+     */
+    private Map<Integer, Wallet> guardWallets(Connection conn, boolean optimistic, int... walletIds) throws SQLException {
+        int[] ids = Arrays.stream(walletIds).distinct().sorted().toArray();
+        StringBuilder sql = new StringBuilder("SELECT * FROM wallet WHERE id IN (");
+        for (int i = 0; i < ids.length; i++) {
+            sql.append(i == 0 ? "?" : ", ?");
+        }
+        sql.append(") ORDER BY id");
+        if (!optimistic) {
+            sql.append(" FOR UPDATE");
+        }
+
+        Map<Integer, Wallet> wallets = new HashMap<>();
+        try (PreparedStatement ps = conn.prepareStatement(sql.toString())) {
+            for (int i = 0; i < ids.length; i++) {
+                ps.setInt(i + 1, ids[i]);
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    Wallet wallet = mapResultSetToWallet(rs);
+                    wallets.put(wallet.getId(), wallet);
+                }
+            }
+        }
+        return wallets;
+    }
+
+    /**
+     * Apply a relative balance change to a guarded wallet and bump its version.
+     * In OPTIMISTIC mode the update only matches the version read by guardWallets(); if another
+     * transaction got there first a SQLState 40001 is raised and TransactionTemplate replays the work.
+     */
+    private void updateWalletBalance(Connection conn, Wallet wallet, double availableDelta, double retiredDelta,
+                                     boolean optimistic) throws SQLException {
+        boolean versioned = hasWalletVersionColumn(conn);
+        String sql = "UPDATE wallet SET available_credits = available_credits + ?, " +
+                     "retired_credits = retired_credits + ?" +
+                     (versioned ? ", version = version + 1" : "") +
+                     " WHERE id = ?" +
+                     (optimistic ? " AND version = ?" : "");
+
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setDouble(1, availableDelta);
+            ps.setDouble(2, retiredDelta);
+            ps.setInt(3, wallet.getId());
+            if (optimistic) {
+                ps.setLong(4, wallet.getVersion());
+            }
+            if (ps.executeUpdate() == 0 && optimistic) {
+                throw new SQLException("Wallet " + wallet.getId() + " modified concurrently (version "
+                    + wallet.getVersion() + ")", SERIALIZATION_FAILURE);
+            }
+        }
+        wallet.setAvailableCredits(wallet.getAvailableCredits() + availableDelta);
+        wallet.setRetiredCredits(wallet.getRetiredCredits() + retiredDelta);
+        if (versioned) {
+            wallet.setVersion(wallet.getVersion() + 1);
+        }
+    }
+
     // ==================== HELPER METHODS ====================
 
     /**
@@ -1222,7 +1405,7 @@ public class WalletService {
      * Generate unique batch serial number.
      * Format: CC-YYYY-NNNNNN (e.g., CC-2024-000001)
      */
-    private String generateBatchSerialNumber() {
+    private String generateBatchSerialNumber(Connection conn) {
         int year = LocalDateTime.now().getYear();
         String sql = "SELECT MAX(CAST(SUBSTRING(serial_number, 9) AS UNSIGNED)) FROM carbon_credit_batches WHERE serial_number LIKE ?";
         
@@ -1244,7 +1427,8 @@ public class WalletService {
 
     private boolean walletNumberExists(int walletNumber) {
         String sql = "SELECT COUNT(*) FROM wallet WHERE wallet_number = ?";
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+        try (Connection conn = MyConnection.openConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setInt(1, walletNumber);
             ResultSet rs = ps.executeQuery();
             if (rs.next()) {
@@ -1263,8 +1447,8 @@ public class WalletService {
     /**
      * Create credit batch (legacy method without traceability).
      */
-    private int createCreditBatch(int projectId, int walletId, double amount) {
-        return createCreditBatch(projectId, walletId, amount, null, Models.BatchType.PRIMARY);
+    private int createCreditBatch(Connection conn, int projectId, int walletId, double amount) {
+        return createCreditBatch(conn, projectId, walletId, amount, null, Models.BatchType.PRIMARY);
     }
 
     /**
@@ -1277,16 +1461,16 @@ public class WalletService {
      * @param batchType PRIMARY or SECONDARY
      * @return Batch ID, or -1 if failed
      */
-    private int createCreditBatch(int projectId, int walletId, double amount, 
+    private int createCreditBatch(Connection conn, int projectId, int walletId, double amount, 
                                  String calculationAuditId, Models.BatchType batchType) {
-        return createCreditBatch(projectId, walletId, amount, calculationAuditId, batchType, null, null);
+        return createCreditBatch(conn, projectId, walletId, amount, calculationAuditId, batchType, null, null);
     }
     
-    private int createCreditBatch(int projectId, int walletId, double amount, 
+    private int createCreditBatch(Connection conn, int projectId, int walletId, double amount, 
                                  String calculationAuditId, Models.BatchType batchType,
                                  String verificationStandard, Integer vintageYear) {
         // Generate unique serial number
-        String serialNumber = generateBatchSerialNumber();
+        String serialNumber = generateBatchSerialNumber(conn);
         
         // Try with full schema first (includes metadata columns)
         String fullSql = "INSERT INTO carbon_credit_batches (project_id, wallet_id, total_amount, " +
@@ -1352,7 +1536,7 @@ public class WalletService {
         return -1;
     }
 
-    private void recordTransaction(int walletId, Integer batchId, String type, double amount, String note) throws SQLException {
+    private void recordTransaction(Connection conn, int walletId, Integer batchId, String type, double amount, String note) throws SQLException {
         String sql = "INSERT INTO wallet_transactions (wallet_id, batch_id, type, amount, reference_note, created_at) " +
                      "VALUES (?, ?, ?, ?, ?, ?)";
         Integer effectiveBatchId = batchId != null ? batchId : 0;
@@ -1368,14 +1552,14 @@ public class WalletService {
             ps.executeUpdate();
         } catch (SQLException ex) {
             if (isUnknownColumnError(ex, "created_at")) {
-                recordTransactionWithoutCreatedAt(walletId, effectiveBatchId, effectiveType, amount, note);
+                recordTransactionWithoutCreatedAt(conn, walletId, effectiveBatchId, effectiveType, amount, note);
                 return;
             }
             throw ex;
         }
     }
 
-    private void recordTransactionWithoutCreatedAt(int walletId, Integer batchId, String type, double amount, String note) throws SQLException {
+    private void recordTransactionWithoutCreatedAt(Connection conn, int walletId, Integer batchId, String type, double amount, String note) throws SQLException {
         String sql = "INSERT INTO wallet_transactions (wallet_id, batch_id, type, amount, reference_note) VALUES (?, ?, ?, ?, ?)";
         try (PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setInt(1, walletId);
@@ -1390,7 +1574,7 @@ public class WalletService {
     /**
      * Record transaction and return its ID for linking retirement details.
      */
-    private long recordTransactionWithId(int walletId, Integer batchId, String type, double amount, String note) throws SQLException {
+    private long recordTransactionWithId(Connection conn, int walletId, Integer batchId, String type, double amount, String note) throws SQLException {
         String sql = "INSERT INTO wallet_transactions (wallet_id, batch_id, type, amount, reference_note, created_at) " +
                      "VALUES (?, ?, ?, ?, ?, ?)";
         Integer effectiveBatchId = batchId != null ? batchId : 0;
@@ -1417,17 +1601,24 @@ public class WalletService {
     }
 
     /**
-     * Record batch retirement detail (links transaction to specific batch consumed).
+     * Record batch retirement details (links transaction to the specific batches consumed).
      */
-    private void recordBatchRetirementDetail(long transactionId, int batchId, double amountRetired) throws SQLException {
+    private void recordBatchRetirementDetails(Connection conn, long transactionId,
+                                              List<BatchRetirementInfo> details) throws SQLException {
+        if (details.isEmpty()) {
+            return;
+        }
         String sql = "INSERT INTO batch_retirement_details (transaction_id, batch_id, amount_retired) " +
                      "VALUES (?, ?, ?)";
         
         try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setLong(1, transactionId);
-            ps.setInt(2, batchId);
-            ps.setDouble(3, amountRetired);
-            ps.executeUpdate();
+            for (BatchRetirementInfo detail : details) {
+                ps.setLong(1, transactionId);
+                ps.setInt(2, detail.batchId);
+                ps.setDouble(3, detail.amount);
+                ps.addBatch();
+            }
+            ps.executeBatch();
         } catch (SQLException ex) {
             System.err.println("Error recording batch retirement detail: " + ex.getMessage());
             throw ex;
@@ -1438,16 +1629,22 @@ public class WalletService {
      * Get all available credit batches for a wallet (public method for marketplace).
      */
     public List<CarbonCreditBatch> getAvailableBatchesByWalletId(int walletId) {
-        return getAvailableBatches(walletId);
+        try (Connection conn = MyConnection.openConnection()) {
+            return getAvailableBatches(conn, walletId, false);
+        } catch (SQLException ex) {
+            System.out.println("Error fetching batches: " + ex.getMessage());
+        }
+        return new ArrayList<>();
     }
 
     /**
      * Get available credit batches for a wallet (internal method).
+     * forUpdate locks the rows; callers must already hold the wallet lock (wallet before batches).
      */
-    private List<CarbonCreditBatch> getAvailableBatches(int walletId) {
+    private List<CarbonCreditBatch> getAvailableBatches(Connection conn, int walletId, boolean forUpdate) {
         List<CarbonCreditBatch> batches = new ArrayList<>();
         String sql = "SELECT * FROM carbon_credit_batches WHERE wallet_id = ? AND remaining_amount > 0 " +
-                     "ORDER BY issued_at ASC";
+                     "ORDER BY issued_at ASC, id ASC" + (forUpdate ? " FOR UPDATE" : "");
         
         try (PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setInt(1, walletId);
@@ -1461,18 +1658,24 @@ public class WalletService {
         return batches;
     }
 
-    private void updateBatchRetirement(int batchId, double retireAmount) throws SQLException {
+    private void updateBatchRetirements(Connection conn, List<BatchRetirementInfo> retirements) throws SQLException {
+        if (retirements.isEmpty()) {
+            return;
+        }
         String sql = "UPDATE carbon_credit_batches SET remaining_amount = remaining_amount - ?, " +
                      "status = CASE WHEN remaining_amount - ? = 0 THEN 'FULLY_RETIRED' " +
                      "WHEN remaining_amount - ? < total_amount THEN 'PARTIALLY_RETIRED' " +
                      "ELSE status END WHERE id = ?";
         
         try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setDouble(1, retireAmount);
-            ps.setDouble(2, retireAmount);
-            ps.setDouble(3, retireAmount);
-            ps.setInt(4, batchId);
-            ps.executeUpdate();
+            for (BatchRetirementInfo retirement : retirements) {
+                ps.setDouble(1, retirement.amount);
+                ps.setDouble(2, retirement.amount);
+                ps.setDouble(3, retirement.amount);
+                ps.setInt(4, retirement.batchId);
+                ps.addBatch();
+            }
+            ps.executeBatch();
         }
     }
 
@@ -1487,10 +1690,11 @@ public class WalletService {
         wallet.setAvailableCredits(rs.getDouble("available_credits"));
         wallet.setRetiredCredits(rs.getDouble("retired_credits"));
         wallet.setCreatedAt(readLocalDateTime(rs, "created_at"));
+        wallet.setVersion(readLong(rs, "version"));
         return wallet;
     }
 
-    private CarbonCreditBatch mapResultSetToBatch(ResultSet rs) throws SQLException {
+    static CarbonCreditBatch mapResultSetToBatch(ResultSet rs) throws SQLException {
         CarbonCreditBatch batch = new CarbonCreditBatch();
         batch.setId(rs.getInt("id"));
         batch.setProjectId(rs.getInt("project_id"));
@@ -1499,6 +1703,27 @@ public class WalletService {
         batch.setRemainingAmount(rs.getBigDecimal("remaining_amount"));
         batch.setStatus(rs.getString("status"));
         batch.setIssuedAt(readLocalDateTime(rs, "issued_at"));
+
+        // Traceability columns (ADD_BATCH_METADATA_COLUMNS.sql), absent on older schemas
+        ResultSetMetaData meta = rs.getMetaData();
+        for (int i = 1; i <= meta.getColumnCount(); i++) {
+            String column = meta.getColumnLabel(i);
+            switch (column) {
+                case "parent_batch_id" -> batch.setParentBatchId(readInteger(rs, column));
+                case "serial_number" -> batch.setSerialNumber(rs.getString(i));
+                case "verification_standard" -> batch.setVerificationStandard(rs.getString(i));
+                case "vintage_year" -> batch.setVintageYear(readInteger(rs, column));
+                case "calculation_audit_id" -> batch.setCalculationAuditId(rs.getString(i));
+                case "lineage_json" -> batch.setLineageJson(rs.getString(i));
+                case "batch_type" -> {
+                    String type = rs.getString(i);
+                    if ("PRIMARY".equals(type) || "SECONDARY".equals(type)) {
+                        batch.setBatchType(Models.BatchType.valueOf(type));
+                    }
+                }
+                default -> { }
+            }
+        }
         return batch;
     }
 
@@ -1514,7 +1739,7 @@ public class WalletService {
         return transaction;
     }
 
-    private Integer readInteger(ResultSet rs, String columnName) throws SQLException {
+    private static Integer readInteger(ResultSet rs, String columnName) throws SQLException {
         Object value = rs.getObject(columnName);
         if (value == null) {
             return null;
@@ -1539,11 +1764,19 @@ public class WalletService {
         }
     }
 
-    private LocalDateTime readLocalDateTime(ResultSet rs, String columnName) throws SQLException {
+    private static LocalDateTime readLocalDateTime(ResultSet rs, String columnName) throws SQLException {
         Timestamp timestamp = rs.getTimestamp(columnName);
         return timestamp != null ? timestamp.toLocalDateTime() : null;
     }
 
+    private long readLong(ResultSet rs, String columnName) {
+        try {
+            return rs.getLong(columnName);
+        } catch (SQLException ex) {
+            return 0L;
+        }
+    }
+
     private String readString(ResultSet rs, String columnName) {
         try {
             return rs.getString(columnName);
@@ -0,0 +1,169 @@
+package Services;
+
+import Utils.EnvLoader;
+import weka.classifiers.AbstractClassifier;
+import weka.classifiers.Classifier;
+import weka.core.Instances;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Classifies a whole {@link Instances} set in parallel chunks.
+ *
+ * Chunks run on one small pool shared by all the ML services (ML_BATCH_THREADS, default
+ * min(4, cores)); its queue is bounded and a full queue makes the caller classify the chunk
+ * itself. Weka does not promise that classifyInstance is thread-safe, so each worker borrows
+ * its own deep copy of the model (copies are made once and reused across batches).
+ */
+public final class WekaBatchScorer {
+
+    private static final int THREADS = Math.max(1, parseInt(EnvLoader.get("ML_BATCH_THREADS", ""),
+        Math.min(4, Runtime.getRuntime().availableProcessors())));
+    private static final int MAX_QUEUED_CHUNKS = 256;
+    private static final int MIN_CHUNK = 64;
+
+    private static final ThreadPoolExecutor POOL = createPool();
+
+    private final String logTag;
+    private final Classifier model;
+    private final BlockingQueue<Classifier> copies = new ArrayBlockingQueue<>(THREADS + 1);
+
+    /**
+     * Result of a batch: one prediction per input record, in input order.
+     *
+     * @param <T> prediction type (risk label, taux...)
+     */
+    public record Result<T>(List<T> predictions, int failed, long elapsedNanos) {
+
+        public int size() {
+            return predictions.size();
+        }
+
+        public double instancesPerSecond() {
+            return elapsedNanos > 0 ? predictions.size() * 1_000_000_000.0 / elapsedNanos : 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d instances (%d failed) in %.1f ms, %.0f instances/s",
+                predictions.size(), failed, elapsedNanos / 1_000_000.0, instancesPerSecond());
+        }
+    }
+
+    WekaBatchScorer(String logTag, Classifier model) {
+        this.logTag = logTag;
+        this.model = model;
+    }
+
+    /**
+     * Classify every row of {@code data}.
+     *
+     * @param data    Rows to score (class attribute set, class value missing)
+     * @param invalid Rows that could not be built and must not be classified (may be empty)
+     * @return classifyInstance result per row, NaN for invalid or failed rows (every chunk has
+     *         finished: a chunk that fails leaves NaN for the rows it did not classify)
+     * @throws IllegalStateException if the calling thread is interrupted while waiting; the chunks
+     *         not started yet are cancelled
+     */
+    double[] classify(Instances data, BitSet invalid) {
+        int n = data.numInstances();
+        double[] predictions = new double[n];
+        Arrays.fill(predictions, Double.NaN);
+        if (n == 0) {
+            return predictions;
+        }
+
+        int chunk = Math.max(MIN_CHUNK, (n + THREADS * 4 - 1) / (THREADS * 4));
+        if (n <= chunk) {
+            classifyRange(data, invalid, predictions, 0, n);
+            return predictions;
+        }
+
+        List<Future<?>> futures = new ArrayList<>();
+        for (int from = 0; from < n; from += chunk) {
+            int start = from;
+            int end = Math.min(n, from + chunk);
+            futures.add(POOL.submit(() -> classifyRange(data, invalid, predictions, start, end)));
+        }
+        // Wait for every chunk, even after a failure: no chunk may still write into predictions
+        // once it is returned
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                futures.forEach(f -> f.cancel(true));
+                throw new IllegalStateException(logTag + " Batch scoring interrupted", ie);
+            } catch (ExecutionException ex) {
+                System.err.println(logTag + " Batch chunk failed: " + ex.getCause());
+            }
+        }
+        return predictions;
+    }
+
+    static int threads() {
+        return THREADS;
+    }
+
+    private void classifyRange(Instances data, BitSet invalid, double[] predictions, int from, int to) {
+        Classifier worker;
+        try {
+            worker = borrowModel();
+        } catch (Exception e) {
+            System.err.println(logTag + " Cannot copy model for batch scoring: " + e.getMessage());
+            return;
+        }
+        try {
+            for (int i = from; i < to; i++) {
+                if (invalid.get(i)) {
+                    continue;
+                }
+                try {
+                    predictions[i] = worker.classifyInstance(data.instance(i));
+                } catch (Exception e) {
+                    System.err.println(logTag + " Prediction failed for row " + i + ": " + e.getMessage());
+                }
+            }
+        } finally {
+            copies.offer(worker);
+        }
+    }
+
+    private Classifier borrowModel() throws Exception {
+        Classifier copy = copies.poll();
+        return copy != null ? copy : AbstractClassifier.makeCopy(model);
+    }
+
+    private static ThreadPoolExecutor createPool() {
+        AtomicInteger ids = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(THREADS, THREADS, 30, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(MAX_QUEUED_CHUNKS),
+            r -> {
+                Thread t = new Thread(r, "weka-batch-" + ids.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            },
+            new ThreadPoolExecutor.CallerRunsPolicy());
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    private static int parseInt(String value, int defaultValue) {
+        try {
+            return value == null ? defaultValue : Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+}
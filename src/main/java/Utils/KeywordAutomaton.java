@@ -0,0 +1,179 @@
+package Utils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * Aho-Corasick automaton over a fixed list of keywords: one pass over a text finds every keyword
+ * it contains, whatever the number of keywords.
+ *
+ * Matching is case-insensitive and on whole words (a keyword must not be preceded or followed by
+ * a letter or digit), keywords may contain spaces ("natural gas"). Transitions are stored in flat
+ * sorted arrays (one slice per state) and followed by binary search, so a catalogue of tens of
+ * thousands of keywords stays compact. Immutable and thread-safe once built.
+ */
+public final class KeywordAutomaton {
+
+    private final int[] transitionStart; // state -> first index in labels/targets (size states + 1)
+    private final char[] labels;
+    private final int[] targets;
+    private final int[] failure;
+    private final int[] keywordAt;       // keyword ending at this state, -1 if none
+    private final int[] outputLink;      // nearest state on the failure chain with a keyword, -1 if none
+    private final int[] keywordLength;
+
+    private KeywordAutomaton(int[] transitionStart, char[] labels, int[] targets, int[] failure,
+                             int[] keywordAt, int[] outputLink, int[] keywordLength) {
+        this.transitionStart = transitionStart;
+        this.labels = labels;
+        this.targets = targets;
+        this.failure = failure;
+        this.keywordAt = keywordAt;
+        this.outputLink = outputLink;
+        this.keywordLength = keywordLength;
+    }
+
+    /**
+     * @param keywords matched case-insensitively; the index in this list identifies the keyword
+     *                 in the results (a duplicate keyword keeps its first index)
+     */
+    public static KeywordAutomaton build(List<String> keywords) {
+        // 1. Trie with map transitions (build only)
+        List<TreeMap<Character, Integer>> trie = new ArrayList<>();
+        List<Integer> terminal = new ArrayList<>();
+        trie.add(new TreeMap<>());
+        terminal.add(-1);
+        int[] lengths = new int[keywords.size()];
+        for (int k = 0; k < keywords.size(); k++) {
+            String keyword = keywords.get(k);
+            lengths[k] = keyword.length();
+            if (keyword.isEmpty()) {
+                continue;
+            }
+            int state = 0;
+            for (int i = 0; i < keyword.length(); i++) {
+                // Same per-char folding as longestMatch (keeps keyword lengths unchanged)
+                char c = Character.toLowerCase(keyword.charAt(i));
+                Integer next = trie.get(state).get(c);
+                if (next == null) {
+                    next = trie.size();
+                    trie.add(new TreeMap<>());
+                    terminal.add(-1);
+                    trie.get(state).put(c, next);
+                }
+                state = next;
+            }
+            if (terminal.get(state) < 0) {
+                terminal.set(state, k);
+            }
+        }
+
+        // 2. Flatten the transitions (sorted by label in each slice)
+        int states = trie.size();
+        int[] start = new int[states + 1];
+        for (int s = 0; s < states; s++) {
+            start[s + 1] = start[s] + trie.get(s).size();
+        }
+        char[] labels = new char[start[states]];
+        int[] targets = new int[start[states]];
+        for (int s = 0; s < states; s++) {
+            int i = start[s];
+            for (var entry : trie.get(s).entrySet()) {
+                labels[i] = entry.getKey();
+                targets[i] = entry.getValue();
+                i++;
+            }
+        }
+
+        // 3. Failure and output links, breadth first
+        int[] keywordAt = new int[states];
+        int[] failure = new int[states];
+        int[] outputLink = new int[states];
+        for (int s = 0; s < states; s++) {
+            keywordAt[s] = terminal.get(s);
+        }
+        outputLink[0] = -1;
+        KeywordAutomaton automaton = new KeywordAutomaton(start, labels, targets, failure, keywordAt, outputLink, lengths);
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int i = start[0]; i < start[1]; i++) {
+            failure[targets[i]] = 0;
+            outputLink[targets[i]] = -1;
+            queue.add(targets[i]);
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            for (int i = start[state]; i < start[state + 1]; i++) {
+                int child = targets[i];
+                int f = failure[state];
+                int next;
+                while ((next = automaton.transition(f, labels[i])) < 0 && f != 0) {
+                    f = failure[f];
+                }
+                failure[child] = next >= 0 && next != child ? next : 0;
+                int fs = failure[child];
+                outputLink[child] = keywordAt[fs] >= 0 ? fs : outputLink[fs];
+                queue.add(child);
+            }
+        }
+        return automaton;
+    }
+
+    public int stateCount() {
+        return failure.length;
+    }
+
+    /**
+     * Index of the longest keyword occurring as a whole word in {@code text} (the first one in the
+     * text on equal length), -1 if none.
+     */
+    public int longestMatch(CharSequence text) {
+        if (text == null) {
+            return -1;
+        }
+        int best = -1;
+        int bestLength = 0;
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = Character.toLowerCase(text.charAt(i));
+            int next;
+            while ((next = transition(state, c)) < 0 && state != 0) {
+                state = failure[state];
+            }
+            state = Math.max(next, 0);
+
+            boolean endsWord = i + 1 == text.length() || !Character.isLetterOrDigit(text.charAt(i + 1));
+            if (!endsWord) {
+                continue;
+            }
+            for (int s = keywordAt[state] >= 0 ? state : outputLink[state]; s >= 0; s = outputLink[s]) {
+                int keyword = keywordAt[s];
+                int length = keywordLength[keyword];
+                int begin = i - length + 1;
+                if (length > bestLength && (begin == 0 || !Character.isLetterOrDigit(text.charAt(begin - 1)))) {
+                    best = keyword;
+                    bestLength = length;
+                }
+            }
+        }
+        return best;
+    }
+
+    private int transition(int state, char c) {
+        int low = transitionStart[state];
+        int high = transitionStart[state + 1] - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            char label = labels[mid];
+            if (label < c) {
+                low = mid + 1;
+            } else if (label > c) {
+                high = mid - 1;
+            } else {
+                return targets[mid];
+            }
+        }
+        return -1;
+    }
+}
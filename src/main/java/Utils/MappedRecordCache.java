@@ -0,0 +1,334 @@
+package Utils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.zip.CRC32;
+
+/**
+ * Small persistent key/value cache in a memory-mapped file, for local caches that must survive a
+ * restart (prices, air quality...).
+ *
+ * Every record has the same size: a String key of at most {@code keyBytes} UTF-8 bytes and a
+ * value of exactly {@code valueBytes} bytes written by the caller. A put overwrites the record of
+ * the key in place (or takes a free slot), so it costs a memory copy; the pages are forced to disk
+ * by a background thread every {@value #FLUSH_INTERVAL_MS} ms and at JVM shutdown.
+ *
+ * File layout: a 64-byte header (magic, version, record layout, capacity, generation, CRC32 of the
+ * header) followed by {@code capacity} slots {@code [state:1][keyLength:2][key][value][crc32:4]}.
+ * On open, slots whose CRC does not match (write torn by a crash) are dropped, and a damaged header
+ * is rebuilt from the file size, so a crash loses at most the entries being written.
+ *
+ * One instance per file and per JVM ({@link #open} returns the shared one); methods are
+ * synchronized, values are read and written through a {@link ByteBuffer} positioned on the slot.
+ */
+public final class MappedRecordCache implements AutoCloseable {
+
+    private static final String LOG_TAG = "[MappedCache]";
+    private static final int MAGIC = 0x474C4D43; // "GLMC"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 64;
+    private static final int HEADER_CRC_OFFSET = 32;
+    private static final long FLUSH_INTERVAL_MS = 1_000;
+    private static final byte SLOT_FREE = 0;
+    private static final byte SLOT_USED = 1;
+
+    private static final Map<Path, MappedRecordCache> OPEN = new ConcurrentHashMap<>();
+    private static final ScheduledExecutorService FLUSHER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "mapped-cache-flush");
+        t.setDaemon(true);
+        return t;
+    });
+
+    static {
+        FLUSHER.scheduleWithFixedDelay(() -> OPEN.values().forEach(MappedRecordCache::flushQuietly),
+            FLUSH_INTERVAL_MS, FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(
+            () -> OPEN.values().forEach(MappedRecordCache::flushQuietly), "mapped-cache-shutdown"));
+    }
+
+    private final Path path;
+    private final int keyBytes;
+    private final int valueBytes;
+    private final int slotBytes;
+    private final byte[] zeros;
+    private final FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int capacity;
+    private long generation;
+    private boolean dirty;
+    private boolean closed;
+
+    private final Map<String, Integer> index = new HashMap<>();
+    private final ArrayDeque<Integer> freeSlots = new ArrayDeque<>();
+
+    /**
+     * Shared cache backed by {@code path}, created if missing.
+     *
+     * @param keyBytes        maximum key length in UTF-8 bytes
+     * @param valueBytes      size of every value
+     * @param initialCapacity number of slots of a new file (the file grows when full)
+     */
+    public static MappedRecordCache open(Path path, int keyBytes, int valueBytes, int initialCapacity) throws IOException {
+        Path key = path.toAbsolutePath().normalize();
+        try {
+            MappedRecordCache cache = OPEN.computeIfAbsent(key, p -> {
+                try {
+                    return new MappedRecordCache(p, keyBytes, valueBytes, initialCapacity);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            if (cache.keyBytes != keyBytes || cache.valueBytes != valueBytes) {
+                throw new IllegalArgumentException(path + " is already open with another record layout");
+            }
+            return cache;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private MappedRecordCache(Path path, int keyBytes, int valueBytes, int initialCapacity) throws IOException {
+        this.path = path;
+        this.keyBytes = keyBytes;
+        this.valueBytes = valueBytes;
+        this.slotBytes = 1 + 2 + keyBytes + valueBytes + 4;
+        this.zeros = new byte[Math.max(keyBytes, valueBytes)];
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        long size = channel.size();
+        int existing = size > HEADER_BYTES ? (int) ((size - HEADER_BYTES) / slotBytes) : 0;
+        if (existing > 0 && layoutMatches()) {
+            map(existing);
+            if (!headerValid()) {
+                System.err.println(LOG_TAG + " " + path.getFileName() + ": damaged header, rebuilt from " + existing + " slots");
+                writeHeader();
+            }
+            scanSlots();
+        } else {
+            if (size > 0) {
+                System.out.println(LOG_TAG + " " + path.getFileName() + ": unknown or old layout, starting fresh");
+                channel.truncate(0);
+            }
+            map(Math.max(1, initialCapacity));
+            writeHeader();
+        }
+        System.out.println(LOG_TAG + " " + path.getFileName() + ": " + index.size() + " entries, capacity " + capacity);
+    }
+
+    // ==================== API ====================
+
+    /**
+     * Insert or overwrite {@code key}. {@code writer} gets a buffer positioned at the start of the
+     * value and must write at most {@code valueBytes} bytes (the rest is zeroed).
+     */
+    public synchronized void put(String key, Consumer<ByteBuffer> writer) {
+        ensureOpen();
+        byte[] keyUtf8 = key.getBytes(StandardCharsets.UTF_8);
+        if (keyUtf8.length > keyBytes) {
+            throw new IllegalArgumentException("Key longer than " + keyBytes + " bytes: " + key);
+        }
+        Integer slot = index.get(key);
+        if (slot == null) {
+            if (freeSlots.isEmpty()) {
+                grow();
+            }
+            slot = freeSlots.poll();
+        }
+
+        int base = slotOffset(slot);
+        // Invalidate first: a crash in the middle leaves a slot that fails its CRC check
+        buffer.put(base, SLOT_FREE);
+        buffer.putShort(base + 1, (short) keyUtf8.length);
+        buffer.put(base + 3, zeros, 0, keyBytes);
+        buffer.put(base + 3, keyUtf8);
+        int valueOffset = base + 3 + keyBytes;
+        buffer.put(valueOffset, zeros, 0, valueBytes);
+        ByteBuffer value = buffer.slice(valueOffset, valueBytes);
+        writer.accept(value);
+        buffer.put(base, SLOT_USED);
+        buffer.putInt(base + slotBytes - 4, crc(base));
+
+        index.put(key, slot);
+        dirty = true;
+    }
+
+    /**
+     * @return {@code reader} applied to a read-only view of the value, or null if absent
+     */
+    public synchronized <T> T get(String key, Function<ByteBuffer, T> reader) {
+        ensureOpen();
+        Integer slot = index.get(key);
+        return slot == null ? null : reader.apply(valueView(slot));
+    }
+
+    public synchronized boolean remove(String key) {
+        ensureOpen();
+        Integer slot = index.remove(key);
+        if (slot == null) {
+            return false;
+        }
+        buffer.put(slotOffset(slot), SLOT_FREE);
+        freeSlots.add(slot);
+        dirty = true;
+        return true;
+    }
+
+    public synchronized void forEach(BiConsumer<String, ByteBuffer> consumer) {
+        ensureOpen();
+        index.forEach((key, slot) -> consumer.accept(key, valueView(slot)));
+    }
+
+    public synchronized int size() {
+        return index.size();
+    }
+
+    public synchronized int capacity() {
+        return capacity;
+    }
+
+    /** Force the mapped pages to disk now (normally done in the background). */
+    public synchronized void flush() {
+        if (!closed && dirty) {
+            buffer.force();
+            dirty = false;
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        flush();
+        closed = true;
+        OPEN.remove(path, this);
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.err.println(LOG_TAG + " ERROR closing " + path.getFileName() + ": " + e.getMessage());
+        }
+    }
+
+    // ==================== INTERNALS ====================
+
+    private void map(int slots) throws IOException {
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES + (long) slots * slotBytes);
+        for (int slot = capacity; slot < slots; slot++) {
+            freeSlots.add(slot);
+        }
+        capacity = slots;
+    }
+
+    private void grow() {
+        try {
+            map(capacity * 2);
+            writeHeader();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot grow " + path, e);
+        }
+    }
+
+    private void scanSlots() {
+        freeSlots.clear();
+        for (int slot = 0; slot < capacity; slot++) {
+            int base = slotOffset(slot);
+            if (buffer.get(base) == SLOT_USED && buffer.getInt(base + slotBytes - 4) == crc(base)) {
+                int length = buffer.getShort(base + 1);
+                if (length >= 0 && length <= keyBytes) {
+                    byte[] keyUtf8 = new byte[length];
+                    buffer.get(base + 3, keyUtf8);
+                    Integer previous = index.put(new String(keyUtf8, StandardCharsets.UTF_8), slot);
+                    if (previous != null) {
+                        clearSlot(previous);
+                    }
+                    continue;
+                }
+            }
+            clearSlot(slot);
+        }
+    }
+
+    private void clearSlot(int slot) {
+        if (buffer.get(slotOffset(slot)) != SLOT_FREE) {
+            buffer.put(slotOffset(slot), SLOT_FREE);
+            dirty = true;
+        }
+        freeSlots.add(slot);
+    }
+
+    private boolean layoutMatches() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        channel.read(header, 0);
+        return header.getInt(0) == MAGIC && header.getInt(4) == VERSION
+            && header.getInt(8) == keyBytes && header.getInt(12) == valueBytes;
+    }
+
+    private boolean headerValid() {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(0, HEADER_CRC_OFFSET));
+        generation = buffer.getLong(24);
+        return buffer.getInt(16) == capacity && buffer.getLong(HEADER_CRC_OFFSET) == crc.getValue();
+    }
+
+    private void writeHeader() {
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(8, keyBytes);
+        buffer.putInt(12, valueBytes);
+        buffer.putInt(16, capacity);
+        buffer.putInt(20, slotBytes);
+        buffer.putLong(24, ++generation);
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(0, HEADER_CRC_OFFSET));
+        buffer.putLong(HEADER_CRC_OFFSET, crc.getValue());
+        buffer.force();
+    }
+
+    private int crc(int base) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(base, slotBytes - 4));
+        return (int) crc.getValue();
+    }
+
+    private ByteBuffer valueView(int slot) {
+        return buffer.slice(slotOffset(slot) + 3 + keyBytes, valueBytes).asReadOnlyBuffer();
+    }
+
+    private int slotOffset(int slot) {
+        return HEADER_BYTES + slot * slotBytes;
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException(path + " is closed");
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            System.err.println(LOG_TAG + " ERROR flushing " + path.getFileName() + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package Utils;
+
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * SHA-256 Merkle tree over a list of leaves, with inclusion proofs of O(log n) hashes.
+ *
+ * Hashing follows RFC 6962 (Certificate Transparency): leaf = SHA-256(0x00 || data),
+ * node = SHA-256(0x01 || left || right), the domain prefixes keep a leaf from being passed off as
+ * a node. Levels are built by pairing left to right, a last unpaired node moves up unchanged,
+ * which gives the RFC 6962 tree shape (so the roots can be checked with standard CT tooling).
+ *
+ * Every level is kept as one flat byte array (32 bytes per node, ~64 bytes per leaf in total), so
+ * a built tree answers any number of proofs without rehashing.
+ */
+public final class MerkleTree {
+
+    public static final int HASH_BYTES = 32;
+    private static final byte LEAF_PREFIX = 0x00;
+    private static final byte NODE_PREFIX = 0x01;
+
+    private final byte[][] levels; // levels[0] = leaf hashes, last = root
+    private final int leafCount;
+
+    /**
+     * One step of an inclusion proof: the sibling hash and whether it sits left of the running hash.
+     */
+    public record ProofStep(String siblingHex, boolean siblingOnLeft) {
+    }
+
+    private MerkleTree(byte[][] levels, int leafCount) {
+        this.levels = levels;
+        this.leafCount = leafCount;
+    }
+
+    /**
+     * @param leaves leaf data in order (e.g. raw event hashes), at least one
+     */
+    public static MerkleTree build(List<byte[]> leaves) {
+        if (leaves.isEmpty()) {
+            throw new IllegalArgumentException("A Merkle tree needs at least one leaf");
+        }
+        MessageDigest digest = sha256();
+        List<byte[]> built = new ArrayList<>();
+        byte[] level = new byte[leaves.size() * HASH_BYTES];
+        for (int i = 0; i < leaves.size(); i++) {
+            hashLeaf(digest, leaves.get(i), level, i * HASH_BYTES);
+        }
+        built.add(level);
+
+        int count = leaves.size();
+        while (count > 1) {
+            int parents = (count + 1) / 2;
+            byte[] parent = new byte[parents * HASH_BYTES];
+            for (int i = 0; i < count / 2; i++) {
+                hashNode(digest, level, 2 * i * HASH_BYTES, level, (2 * i + 1) * HASH_BYTES, parent, i * HASH_BYTES);
+            }
+            if ((count & 1) == 1) {
+                System.arraycopy(level, (count - 1) * HASH_BYTES, parent, (parents - 1) * HASH_BYTES, HASH_BYTES);
+            }
+            built.add(parent);
+            level = parent;
+            count = parents;
+        }
+        return new MerkleTree(built.toArray(new byte[0][]), leaves.size());
+    }
+
+    public int leafCount() {
+        return leafCount;
+    }
+
+    public String rootHex() {
+        return HexFormat.of().formatHex(levels[levels.length - 1]);
+    }
+
+    /**
+     * Sibling hashes from the leaf up to the root (at most ceil(log2 n) steps).
+     */
+    public List<ProofStep> proof(int leafIndex) {
+        if (leafIndex < 0 || leafIndex >= leafCount) {
+            throw new IndexOutOfBoundsException("Leaf " + leafIndex + " of " + leafCount);
+        }
+        List<ProofStep> steps = new ArrayList<>();
+        HexFormat hex = HexFormat.of();
+        int index = leafIndex;
+        int count = leafCount;
+        for (int level = 0; level < levels.length - 1; level++) {
+            int sibling = index ^ 1;
+            if (sibling < count) {
+                int offset = sibling * HASH_BYTES;
+                steps.add(new ProofStep(hex.formatHex(levels[level], offset, offset + HASH_BYTES), sibling < index));
+            }
+            index >>= 1;
+            count = (count + 1) / 2;
+        }
+        return steps;
+    }
+
+    /**
+     * Recompute the root from a leaf and its proof; what an external verifier does.
+     */
+    public static boolean verify(byte[] leafData, List<ProofStep> proof, String expectedRootHex) {
+        MessageDigest digest = sha256();
+        byte[] running = new byte[HASH_BYTES];
+        hashLeaf(digest, leafData, running, 0);
+        HexFormat hex = HexFormat.of();
+        for (ProofStep step : proof) {
+            byte[] sibling = hex.parseHex(step.siblingHex());
+            byte[] parent = new byte[HASH_BYTES];
+            if (step.siblingOnLeft()) {
+                hashNode(digest, sibling, 0, running, 0, parent, 0);
+            } else {
+                hashNode(digest, running, 0, sibling, 0, parent, 0);
+            }
+            running = parent;
+        }
+        return expectedRootHex != null && Arrays.equals(running, hex.parseHex(expectedRootHex.toLowerCase()));
+    }
+
+    private static void hashLeaf(MessageDigest digest, byte[] data, byte[] out, int outOffset) {
+        digest.update(LEAF_PREFIX);
+        digest.update(data);
+        finish(digest, out, outOffset);
+    }
+
+    private static void hashNode(MessageDigest digest, byte[] left, int leftOffset, byte[] right, int rightOffset,
+                                 byte[] out, int outOffset) {
+        digest.update(NODE_PREFIX);
+        digest.update(left, leftOffset, HASH_BYTES);
+        digest.update(right, rightOffset, HASH_BYTES);
+        finish(digest, out, outOffset);
+    }
+
+    private static void finish(MessageDigest digest, byte[] out, int outOffset) {
+        try {
+            digest.digest(out, outOffset, HASH_BYTES);
+        } catch (DigestException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 algorithm not available", e);
+        }
+    }
+}
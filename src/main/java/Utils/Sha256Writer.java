@@ -0,0 +1,281 @@
+package Utils;
+
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+
+/**
+ * SHA-256 of a canonical text encoding written field by field, without building the text.
+ *
+ * The bytes fed to the digest are exactly the UTF-8 encoding of the text the same appends would
+ * build in a StringBuilder (ints in ASCII digits, {@link LocalDateTime} as its ISO
+ * {@code toString()}, unpaired surrogates as '?' like {@code String.getBytes(UTF_8)}), so hashes
+ * stay identical to the ones computed from {@code String.format(...).getBytes(UTF_8)}.
+ *
+ * One writer per thread ({@link #begin()}), holding its digest, a 4 KB byte buffer flushed into
+ * the digest when full, a char scratch for String input and the result arrays: apart from the
+ * returned hex String, hashing allocates nothing. A writer must be finished before
+ * {@link #begin()} is called again on the same thread.
+ */
+public final class Sha256Writer {
+
+    private static final int BUFFER_BYTES = 4096;
+    private static final int CHUNK_CHARS = 1024;
+    private static final int DIGEST_BYTES = 32;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final ThreadLocal<Sha256Writer> WRITERS = ThreadLocal.withInitial(Sha256Writer::new);
+
+    private final MessageDigest digest;
+    private final byte[] buffer = new byte[BUFFER_BYTES];
+    private final char[] chars = new char[CHUNK_CHARS];
+    private final byte[] hash = new byte[DIGEST_BYTES];
+    private final char[] hex = new char[DIGEST_BYTES * 2];
+    private int length;
+
+    private Sha256Writer() {
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 algorithm not available", e);
+        }
+    }
+
+    /**
+     * The calling thread's writer, reset.
+     */
+    public static Sha256Writer begin() {
+        Sha256Writer writer = WRITERS.get();
+        writer.digest.reset();
+        writer.length = 0;
+        return writer;
+    }
+
+    public Sha256Writer append(char c) {
+        if (c < 0x80) {
+            put((byte) c);
+        } else {
+            appendChar(c, -1);
+        }
+        return this;
+    }
+
+    public Sha256Writer append(int value) {
+        if (value < 0) {
+            put((byte) '-');
+            if (value == Integer.MIN_VALUE) {
+                // -2147483648 has no positive counterpart
+                put((byte) '2');
+                value = -147_483_648;
+            }
+            value = -value;
+        }
+        appendDigits(value, 1);
+        return this;
+    }
+
+    /**
+     * UTF-8 of {@code text} ("null" for null, as StringBuilder.append).
+     */
+    public Sha256Writer append(CharSequence text) {
+        if (text == null) {
+            return append("null");
+        }
+        if (text instanceof String string) {
+            // Bulk copy into the char scratch (String.getChars is an intrinsic), then encode the array
+            int n = string.length();
+            for (int start = 0; start < n; ) {
+                int end = Math.min(n, start + CHUNK_CHARS);
+                if (end < n && Character.isHighSurrogate(string.charAt(end - 1))) {
+                    end--; // keep surrogate pairs in one chunk
+                }
+                string.getChars(start, end, chars, 0);
+                encode(chars, end - start);
+                start = end;
+            }
+            return this;
+        }
+        int n = text.length();
+        for (int i = 0; i < n; i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                put((byte) c);
+            } else {
+                int next = i + 1 < n ? text.charAt(i + 1) : -1;
+                if (appendChar(c, next)) {
+                    i++;
+                }
+            }
+        }
+        return this;
+    }
+
+    /**
+     * {@code dateTime.toString()} (uuuu-MM-dd'T'HH:mm[:ss[.SSS|.SSSSSS|.SSSSSSSSS]]).
+     */
+    public Sha256Writer append(LocalDateTime dateTime) {
+        if (dateTime == null) {
+            return append("null");
+        }
+        int year = dateTime.getYear();
+        if (year < 0 || year > 9999) {
+            // Signed / expanded years: rare, keep the JDK formatting
+            return append(dateTime.toString());
+        }
+        appendDigits(year, 4);
+        put((byte) '-');
+        appendDigits(dateTime.getMonthValue(), 2);
+        put((byte) '-');
+        appendDigits(dateTime.getDayOfMonth(), 2);
+        put((byte) 'T');
+        appendDigits(dateTime.getHour(), 2);
+        put((byte) ':');
+        appendDigits(dateTime.getMinute(), 2);
+        int second = dateTime.getSecond();
+        int nano = dateTime.getNano();
+        if (second > 0 || nano > 0) {
+            put((byte) ':');
+            appendDigits(second, 2);
+            if (nano > 0) {
+                put((byte) '.');
+                if (nano % 1_000_000 == 0) {
+                    appendDigits(nano / 1_000_000, 3);
+                } else if (nano % 1_000 == 0) {
+                    appendDigits(nano / 1_000, 6);
+                } else {
+                    appendDigits(nano, 9);
+                }
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Lowercase hex of the SHA-256 of everything appended since {@link #begin()}.
+     */
+    public String toHex() {
+        finish();
+        for (int i = 0; i < DIGEST_BYTES; i++) {
+            hex[2 * i] = HEX[(hash[i] >> 4) & 0xF];
+            hex[2 * i + 1] = HEX[hash[i] & 0xF];
+        }
+        return new String(hex);
+    }
+
+    /**
+     * Whether the SHA-256 of everything appended equals {@code expectedHex} (hex, any case),
+     * without building the hex String.
+     */
+    public boolean matchesHex(String expectedHex) {
+        finish();
+        if (expectedHex == null || expectedHex.length() != DIGEST_BYTES * 2) {
+            return false;
+        }
+        for (int i = 0; i < DIGEST_BYTES; i++) {
+            int high = Character.digit(expectedHex.charAt(2 * i), 16);
+            int low = Character.digit(expectedHex.charAt(2 * i + 1), 16);
+            if (high < 0 || low < 0 || (byte) ((high << 4) | low) != hash[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // ==================== ENCODING ====================
+
+    private void encode(char[] source, int count) {
+        int i = 0;
+        while (i < count) {
+            if (length == BUFFER_BYTES) {
+                flush();
+            }
+            // ASCII run, as far as the buffer allows
+            int limit = Math.min(count, i + BUFFER_BYTES - length);
+            byte[] out = buffer;
+            int position = length;
+            while (i < limit) {
+                char c = source[i];
+                if (c >= 0x80) {
+                    break;
+                }
+                out[position++] = (byte) c;
+                i++;
+            }
+            length = position;
+            if (i < limit) {
+                int next = i + 1 < count ? source[i + 1] : -1;
+                i += appendChar(source[i], next) ? 2 : 1;
+            }
+        }
+    }
+
+    /**
+     * Non-ASCII char; returns true when {@code next} (low surrogate) was consumed too.
+     */
+    private boolean appendChar(char c, int next) {
+        if (c < 0x800) {
+            put((byte) (0xC0 | (c >> 6)));
+            put((byte) (0x80 | (c & 0x3F)));
+            return false;
+        }
+        if (Character.isHighSurrogate(c) && next >= 0 && Character.isLowSurrogate((char) next)) {
+            int codePoint = Character.toCodePoint(c, (char) next);
+            put((byte) (0xF0 | (codePoint >> 18)));
+            put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+            put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+            put((byte) (0x80 | (codePoint & 0x3F)));
+            return true;
+        }
+        if (Character.isSurrogate(c)) {
+            // Unpaired surrogate: replacement byte of String.getBytes(UTF_8)
+            put((byte) '?');
+            return false;
+        }
+        put((byte) (0xE0 | (c >> 12)));
+        put((byte) (0x80 | ((c >> 6) & 0x3F)));
+        put((byte) (0x80 | (c & 0x3F)));
+        return false;
+    }
+
+    /**
+     * Non-negative {@code value} in decimal, left-padded with zeros to {@code minDigits}.
+     */
+    private void appendDigits(int value, int minDigits) {
+        int digits = 1;
+        for (int v = value; v >= 10; v /= 10) {
+            digits++;
+        }
+        for (int i = digits; i < minDigits; i++) {
+            put((byte) '0');
+        }
+        if (length + digits > BUFFER_BYTES) {
+            flush();
+        }
+        for (int i = length + digits - 1; i >= length; i--) {
+            buffer[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        length += digits;
+    }
+
+    private void put(byte b) {
+        if (length == BUFFER_BYTES) {
+            flush();
+        }
+        buffer[length++] = b;
+    }
+
+    private void flush() {
+        digest.update(buffer, 0, length);
+        length = 0;
+    }
+
+    private void finish() {
+        flush();
+        try {
+            digest.digest(hash, 0, DIGEST_BYTES);
+        } catch (DigestException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package dao;
 
 import Models.AuditLog;
+import java.sql.SQLException;
 import java.time.LocalDateTime;
 import java.util.List;
 
@@ -16,6 +17,14 @@ public interface AuditLogDAO {
      */
     void log(AuditLog auditLog);
     
+    /**
+     * Enregistre plusieurs entrées en un seul lot JDBC et une seule transaction
+     * (écriture groupée de AuditLogWriter)
+     * 
+     * @throws SQLException si le lot échoue (aucune entrée n'est alors enregistrée)
+     */
+    void logBatch(List<AuditLog> auditLogs) throws SQLException;
+    
     /**
      * Récupère tous les logs (avec pagination)
      */
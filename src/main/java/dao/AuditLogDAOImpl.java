@@ -18,33 +18,17 @@ public class AuditLogDAOImpl implements AuditLogDAO {
         return MyConnection.getInstance().getConnection();
     }
     
+    private static final String INSERT_SQL = "INSERT INTO audit_log (user_id, user_email, user_name, action_type, action_description, " +
+                "target_user_id, target_user_email, ip_address, user_agent, browser, operating_system, " +
+                "status, error_message, old_value, new_value, created_at) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    
     @Override
     public void log(AuditLog auditLog) {
-        String sql = "INSERT INTO audit_log (user_id, user_email, user_name, action_type, action_description, " +
-                    "target_user_id, target_user_email, ip_address, user_agent, browser, operating_system, " +
-                    "status, error_message, old_value, new_value, created_at) " +
-                    "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
-        
         try (Connection conn = getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-            
-            stmt.setObject(1, auditLog.getUserId());
-            stmt.setString(2, auditLog.getUserEmail());
-            stmt.setString(3, auditLog.getUserName());
-            stmt.setString(4, auditLog.getActionType() != null ? auditLog.getActionType().name() : null);
-            stmt.setString(5, auditLog.getActionDescription());
-            stmt.setObject(6, auditLog.getTargetUserId());
-            stmt.setString(7, auditLog.getTargetUserEmail());
-            stmt.setString(8, auditLog.getIpAddress());
-            stmt.setString(9, auditLog.getUserAgent());
-            stmt.setString(10, auditLog.getBrowser());
-            stmt.setString(11, auditLog.getOperatingSystem());
-            stmt.setString(12, auditLog.getStatus() != null ? auditLog.getStatus().name() : "SUCCESS");
-            stmt.setString(13, auditLog.getErrorMessage());
-            stmt.setString(14, auditLog.getOldValue());
-            stmt.setString(15, auditLog.getNewValue());
-            stmt.setTimestamp(16, Timestamp.valueOf(auditLog.getCreatedAt()));
+             PreparedStatement stmt = conn.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
             
+            bindInsert(stmt, auditLog);
             stmt.executeUpdate();
             
             ResultSet rs = stmt.getGeneratedKeys();
@@ -58,6 +42,56 @@ public class AuditLogDAOImpl implements AuditLogDAO {
         }
     }
     
+    @Override
+    public void logBatch(List<AuditLog> auditLogs) throws SQLException {
+        if (auditLogs.isEmpty()) {
+            return;
+        }
+        // openConnection lève une SQLException si le pool ne peut pas prêter de connexion (jamais null)
+        try (Connection conn = MyConnection.openConnection()) {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            // rewriteBatchedStatements (pool) : le lot part en INSERT multi-lignes, un seul aller-retour
+            try (PreparedStatement stmt = conn.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
+                for (AuditLog auditLog : auditLogs) {
+                    bindInsert(stmt, auditLog);
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+                conn.commit();
+                
+                ResultSet rs = stmt.getGeneratedKeys();
+                for (int i = 0; i < auditLogs.size() && rs.next(); i++) {
+                    auditLogs.get(i).setId(rs.getLong(1));
+                }
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        }
+    }
+    
+    private void bindInsert(PreparedStatement stmt, AuditLog auditLog) throws SQLException {
+        stmt.setObject(1, auditLog.getUserId());
+        stmt.setString(2, auditLog.getUserEmail());
+        stmt.setString(3, auditLog.getUserName());
+        stmt.setString(4, auditLog.getActionType() != null ? auditLog.getActionType().name() : null);
+        stmt.setString(5, auditLog.getActionDescription());
+        stmt.setObject(6, auditLog.getTargetUserId());
+        stmt.setString(7, auditLog.getTargetUserEmail());
+        stmt.setString(8, auditLog.getIpAddress());
+        stmt.setString(9, auditLog.getUserAgent());
+        stmt.setString(10, auditLog.getBrowser());
+        stmt.setString(11, auditLog.getOperatingSystem());
+        stmt.setString(12, auditLog.getStatus() != null ? auditLog.getStatus().name() : "SUCCESS");
+        stmt.setString(13, auditLog.getErrorMessage());
+        stmt.setString(14, auditLog.getOldValue());
+        stmt.setString(15, auditLog.getNewValue());
+        stmt.setTimestamp(16, Timestamp.valueOf(auditLog.getCreatedAt()));
+    }
+    
     @Override
     public List<AuditLog> findAll(int limit, int offset) {
         List<AuditLog> logs = new ArrayList<>();
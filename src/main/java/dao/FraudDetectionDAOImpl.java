@@ -15,10 +15,7 @@ import java.util.Optional;
  */
 public class FraudDetectionDAOImpl implements IFraudDetectionDAO {
     
-    private final Connection connection;
-    
     public FraudDetectionDAOImpl() {
-        this.connection = MyConnection.getInstance().getConnection();
     }
     
     @Override
@@ -26,7 +23,8 @@ public class FraudDetectionDAOImpl implements IFraudDetectionDAO {
         String sql = "INSERT INTO fraud_detection_results (user_id, risk_score, risk_level, is_fraudulent, " +
                     "recommendation, analysis_details, analyzed_at) VALUES (?, ?, ?, ?, ?, ?, ?)";
         
-        try (PreparedStatement stmt = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+        try (Connection connection = MyConnection.openConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
             stmt.setLong(1, result.getUserId());
             stmt.setDouble(2, result.getRiskScore());
             stmt.setString(3, result.getRiskLevel().name());
@@ -58,7 +56,8 @@ public class FraudDetectionDAOImpl implements IFraudDetectionDAO {
     public Optional<FraudDetectionResult> findById(Long id) {
         String sql = "SELECT * FROM fraud_detection_results WHERE id = ?";
         
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = MyConnection.openConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setLong(1, id);
             
             try (ResultSet rs = stmt.executeQuery()) {
@@ -77,7 +76,8 @@ public class FraudDetectionDAOImpl implements IFraudDetectionDAO {
     public Optional<FraudDetectionResult> findByUserId(Long userId) {
         String sql = "SELECT * FROM fraud_detection_results WHERE user_id = ? ORDER BY analyzed_at DESC LIMIT 1";
         
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = MyConnection.openConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setLong(1, userId);
             
             try (ResultSet rs = stmt.executeQuery()) {
@@ -97,7 +97,8 @@ public class FraudDetectionDAOImpl implements IFraudDetectionDAO {
         List<FraudDetectionResult> results = new ArrayList<>();
         String sql = "SELECT * FROM fraud_detection_results ORDER BY analyzed_at DESC";
         
-        try (Statement stmt = connection.createStatement();
+        try (Connection connection = MyConnection.openConnection();
+             Statement stmt = connection.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
             
             while (rs.next()) {
@@ -115,7 +116,8 @@ public class FraudDetectionDAOImpl implements IFraudDetectionDAO {
         List<FraudDetectionResult> results = new ArrayList<>();
         String sql = "SELECT * FROM fraud_detection_results WHERE risk_level = ? ORDER BY analyzed_at DESC";
         
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = MyConnection.openConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setString(1, riskLevel.name());
             
             try (ResultSet rs = stmt.executeQuery()) {
@@ -135,7 +137,8 @@ public class FraudDetectionDAOImpl implements IFraudDetectionDAO {
         List<FraudDetectionResult> results = new ArrayList<>();
         String sql = "SELECT * FROM fraud_detection_results WHERE is_fraudulent = TRUE ORDER BY analyzed_at DESC";
         
-        try (Statement stmt = connection.createStatement();
+        try (Connection connection = MyConnection.openConnection();
+             Statement stmt = connection.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
             
             while (rs.next()) {
@@ -153,7 +156,8 @@ public class FraudDetectionDAOImpl implements IFraudDetectionDAO {
         List<FraudDetectionResult> results = new ArrayList<>();
         String sql = "SELECT * FROM fraud_detection_results WHERE recommendation LIKE '%EXAMINER%' ORDER BY analyzed_at DESC";
         
-        try (Statement stmt = connection.createStatement();
+        try (Connection connection = MyConnection.openConnection();
+             Statement stmt = connection.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
             
             while (rs.next()) {
@@ -171,7 +175,8 @@ public class FraudDetectionDAOImpl implements IFraudDetectionDAO {
         String sql = "UPDATE fraud_detection_results SET risk_score = ?, risk_level = ?, " +
                     "is_fraudulent = ?, recommendation = ?, analysis_details = ? WHERE id = ?";
         
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = MyConnection.openConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setDouble(1, result.getRiskScore());
             stmt.setString(2, result.getRiskLevel().name());
             stmt.setBoolean(3, result.isFraudulent());
@@ -196,7 +201,8 @@ public class FraudDetectionDAOImpl implements IFraudDetectionDAO {
     public boolean delete(Long id) {
         String sql = "DELETE FROM fraud_detection_results WHERE id = ?";
         
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (Connection connection = MyConnection.openConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setLong(1, id);
             int affectedRows = stmt.executeUpdate();
             
@@ -215,7 +221,8 @@ public class FraudDetectionDAOImpl implements IFraudDetectionDAO {
     public long count() {
         String sql = "SELECT COUNT(*) FROM fraud_detection_results";
         
-        try (Statement stmt = connection.createStatement();
+        try (Connection connection = MyConnection.openConnection();
+             Statement stmt = connection.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
             
             if (rs.next()) {
@@ -232,7 +239,8 @@ public class FraudDetectionDAOImpl implements IFraudDetectionDAO {
     public long countFraudulent() {
         String sql = "SELECT COUNT(*) FROM fraud_detection_results WHERE is_fraudulent = TRUE";
         
-        try (Statement stmt = connection.createStatement();
+        try (Connection connection = MyConnection.openConnection();
+             Statement stmt = connection.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
             
             if (rs.next()) {
@@ -12,7 +12,6 @@ import java.util.Optional;
 
 public class UserDAOImpl implements IUserDAO {
 
-    private final Connection connection;
     // Indique si la colonne token_expiry est disponible dans la table
     private final boolean hasTokenExpiryColumn;
     // Indique si la colonne token_hash est disponible dans la table
@@ -22,14 +21,13 @@ public class UserDAOImpl implements IUserDAO {
     private final boolean hasFraudCheckedColumn;
 
     public UserDAOImpl() {
-        this.connection = MyConnection.getInstance().getConnection();
         boolean hasTokenExpiry = false;
         boolean hasTokenHash = false;
         boolean hasFraudScore = false;
         boolean hasFraudChecked = false;
         
         // Tentative d'ajout de la colonne token_expiry si elle n'existe pas (migration légère)
-        try {
+        try (Connection connection = MyConnection.openConnection()) {
             DatabaseMetaData md = connection.getMetaData();
             try (ResultSet rs = md.getColumns(null, null, "user", "token_expiry")) {
                 if (!rs.next()) {
@@ -108,7 +106,8 @@ public class UserDAOImpl implements IUserDAO {
         }
         sql += ")";
 
-        try (PreparedStatement ps = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+        try (Connection connection = MyConnection.openConnection();
+             PreparedStatement ps = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
 
             ps.setString(1, user.getNom());
             ps.setString(2, user.getPrenom());
@@ -173,7 +172,8 @@ public class UserDAOImpl implements IUserDAO {
     public Optional<User> findById(Long id) {
         String sql = "SELECT * FROM `user` WHERE id = ?";
 
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+        try (Connection connection = MyConnection.openConnection();
+             PreparedStatement ps = connection.prepareStatement(sql)) {
             ps.setLong(1, id);
             ResultSet rs = ps.executeQuery();
 
@@ -193,7 +193,8 @@ public class UserDAOImpl implements IUserDAO {
         List<User> users = new ArrayList<>();
         String sql = "SELECT * FROM `user` ORDER BY date_inscription DESC";
 
-        try (PreparedStatement ps = connection.prepareStatement(sql);
+        try (Connection connection = MyConnection.openConnection();
+             PreparedStatement ps = connection.prepareStatement(sql);
              ResultSet rs = ps.executeQuery()) {
 
             while (rs.next()) {
@@ -230,7 +231,8 @@ public class UserDAOImpl implements IUserDAO {
         }
         sql += " WHERE id = ?";
 
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+        try (Connection connection = MyConnection.openConnection();
+             PreparedStatement ps = connection.prepareStatement(sql)) {
 
             ps.setString(1, user.getNom());
             ps.setString(2, user.getPrenom());
@@ -309,7 +311,8 @@ public class UserDAOImpl implements IUserDAO {
     public boolean delete(Long id) {
         String sql = "DELETE FROM `user` WHERE id = ?";
 
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+        try (Connection connection = MyConnection.openConnection();
+             PreparedStatement ps = connection.prepareStatement(sql)) {
             ps.setLong(1, id);
             int affectedRows = ps.executeUpdate();
 
@@ -330,7 +333,8 @@ public class UserDAOImpl implements IUserDAO {
     public Optional<User> findByEmail(String email) {
         String sql = "SELECT * FROM `user` WHERE LOWER(TRIM(email)) = LOWER(TRIM(?))";
 
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+        try (Connection connection = MyConnection.openConnection();
+             PreparedStatement ps = connection.prepareStatement(sql)) {
             ps.setString(1, email);
             ResultSet rs = ps.executeQuery();
 
@@ -354,7 +358,8 @@ public class UserDAOImpl implements IUserDAO {
         if (telephone == null) return Optional.empty();
         String sql = "SELECT * FROM `user` WHERE REPLACE(REPLACE(telephone, ' ', ''), '-', '') = REPLACE(REPLACE(?, ' ', ''), '-', '') LIMIT 1";
 
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+        try (Connection connection = MyConnection.openConnection();
+             PreparedStatement ps = connection.prepareStatement(sql)) {
             ps.setString(1, telephone);
             ResultSet rs = ps.executeQuery();
 
@@ -378,7 +383,8 @@ public class UserDAOImpl implements IUserDAO {
         if (token == null) return Optional.empty();
         String sql = "SELECT * FROM `user` WHERE token_verification = ? LIMIT 1";
 
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+        try (Connection connection = MyConnection.openConnection();
+             PreparedStatement ps = connection.prepareStatement(sql)) {
             ps.setString(1, token);
             ResultSet rs = ps.executeQuery();
 
@@ -398,7 +404,8 @@ public class UserDAOImpl implements IUserDAO {
         List<User> users = new ArrayList<>();
         String sql = "SELECT * FROM `user` WHERE type_utilisateur = ?";
 
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+        try (Connection connection = MyConnection.openConnection();
+             PreparedStatement ps = connection.prepareStatement(sql)) {
             ps.setString(1, type.name());
             ResultSet rs = ps.executeQuery();
 
@@ -419,7 +426,8 @@ public class UserDAOImpl implements IUserDAO {
         List<User> users = new ArrayList<>();
         String sql = "SELECT * FROM `user` WHERE statut = ?";
 
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+        try (Connection connection = MyConnection.openConnection();
+             PreparedStatement ps = connection.prepareStatement(sql)) {
             ps.setString(1, statut.name());
             ResultSet rs = ps.executeQuery();
 
@@ -439,7 +447,8 @@ public class UserDAOImpl implements IUserDAO {
     public boolean emailExists(String email) {
         String sql = "SELECT COUNT(*) FROM `user` WHERE LOWER(TRIM(email)) = LOWER(TRIM(?))";
 
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+        try (Connection connection = MyConnection.openConnection();
+             PreparedStatement ps = connection.prepareStatement(sql)) {
             ps.setString(1, email);
             ResultSet rs = ps.executeQuery();
 
@@ -458,7 +467,8 @@ public class UserDAOImpl implements IUserDAO {
     public long count() {
         String sql = "SELECT COUNT(*) FROM `user`";
 
-        try (PreparedStatement ps = connection.prepareStatement(sql);
+        try (Connection connection = MyConnection.openConnection();
+             PreparedStatement ps = connection.prepareStatement(sql);
              ResultSet rs = ps.executeQuery()) {
 
             if (rs.next()) {
@@ -476,7 +486,8 @@ public class UserDAOImpl implements IUserDAO {
     public long countByStatut(StatutUtilisateur statut) {
         String sql = "SELECT COUNT(*) FROM `user` WHERE statut = ?";
 
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+        try (Connection connection = MyConnection.openConnection();
+             PreparedStatement ps = connection.prepareStatement(sql)) {
             ps.setString(1, statut.name());
             ResultSet rs = ps.executeQuery();
 
@@ -495,7 +506,8 @@ public class UserDAOImpl implements IUserDAO {
     public long countByType(TypeUtilisateur type) {
         String sql = "SELECT COUNT(*) FROM `user` WHERE type_utilisateur = ?";
 
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+        try (Connection connection = MyConnection.openConnection();
+             PreparedStatement ps = connection.prepareStatement(sql)) {
             ps.setString(1, type.name());
             ResultSet rs = ps.executeQuery();
 
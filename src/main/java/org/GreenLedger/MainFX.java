@@ -1,6 +1,9 @@
 package org.GreenLedger;
 
 import DataBase.MyConnection;
+import Services.AuditLogWriter;
+import Services.BatchMerkleService;
+import Services.EscrowReleaseScheduler;
 import javafx.application.Application;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
@@ -79,6 +82,15 @@ public class MainFX extends Application {
                 System.err.println("[CLEAN] Impossible de demarrer ResetHttpServer: " + e.getMessage());
             }
 
+            // Liberation automatique des escrows arrives a echeance
+            EscrowReleaseScheduler.getInstance().start();
+
+            // Racines de Merkle periodiques sur batch_events (preuves d'inclusion)
+            BatchMerkleService.getInstance().start();
+
+            // Journal d'activite ecrit par lots, hors du thread UI
+            AuditLogWriter.getInstance().start();
+
             System.out.println("[CLEAN] Application demarree avec succes");
 
         } catch (Exception e) {
@@ -113,6 +125,10 @@ public class MainFX extends Application {
     }
 
     public void stop() {
+        EscrowReleaseScheduler.getInstance().stop();
+        BatchMerkleService.getInstance().stop();
+        // Vider le journal d'activite avant la fermeture du pool
+        AuditLogWriter.getInstance().stop();
         // Fermer la connexion a la base de donnees lors de la fermeture
         MyConnection.getInstance().closeConnection();
         // Arreter le serveur reset si demarr
@@ -0,0 +1,74 @@
+package tools;
+
+import Services.RiskAnalysisService;
+import Services.TauxRecommendationService;
+import Services.WekaBatchScorer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compare le scoring ligne par ligne (predictRisk / predictTaux) au scoring par lot
+ * (predictRiskBatch / predictTauxBatch) sur un portefeuille aléatoire. Aucune base requise.
+ *
+ * Usage: BatchScoringBenchmark [records=20000] [rounds=5]
+ */
+public class BatchScoringBenchmark {
+
+    private static final String[] SECTORS = {"solar", "wind", "agriculture", "recycling"};
+    private static final String[] STATUTS = {"SUBMITTED", "IN_PROGRESS", "APPROVED", "CANCELLED", "DRAFT"};
+    private static final String[] OFFRES = {"Solaire", "Eolien", "Agricole", "Microcredit", "PME", "Long terme"};
+
+    public static void main(String[] args) {
+        int records = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        Random random = new Random(42);
+        List<RiskAnalysisService.RiskInput> risks = new ArrayList<>(records);
+        List<TauxRecommendationService.TauxInput> taux = new ArrayList<>(records);
+        for (int i = 0; i < records; i++) {
+            risks.add(new RiskAnalysisService.RiskInput(
+                10_000 + random.nextInt(990_000), 1 + random.nextInt(20), SECTORS[random.nextInt(SECTORS.length)],
+                random.nextDouble() * 100, random.nextDouble() * 10, random.nextDouble()));
+            taux.add(new TauxRecommendationService.TauxInput(
+                random.nextInt(101), 10_000 + random.nextInt(990_000), STATUTS[random.nextInt(STATUTS.length)],
+                6 + random.nextInt(115), OFFRES[random.nextInt(OFFRES.length)], random.nextInt(30)));
+        }
+
+        RiskAnalysisService riskService = new RiskAnalysisService();
+        TauxRecommendationService tauxService = new TauxRecommendationService();
+
+        // Ligne par ligne : predictRisk journalise chaque appel, on le mesure sur un échantillon réduit
+        int sample = Math.min(records, 1_000);
+        long start = System.nanoTime();
+        for (int i = 0; i < sample; i++) {
+            RiskAnalysisService.RiskInput r = risks.get(i);
+            riskService.predictRisk(r.budget(), r.duration(), r.type(), r.co2Impact(), r.maturity(), r.fundingRatio());
+        }
+        double riskSingle = sample * 1e9 / (System.nanoTime() - start);
+
+        start = System.nanoTime();
+        for (int i = 0; i < sample; i++) {
+            TauxRecommendationService.TauxInput t = taux.get(i);
+            tauxService.predictTaux(t.scoreEsg(), t.budgetMontant(), t.statut(), t.duree(), t.typeOffre(),
+                t.ancienneteEntreprise());
+        }
+        double tauxSingle = sample * 1e9 / (System.nanoTime() - start);
+
+        // Par lot : le premier tour chauffe le JIT et crée les copies du modèle
+        double riskBatch = 0;
+        double tauxBatch = 0;
+        for (int round = 0; round <= rounds; round++) {
+            WekaBatchScorer.Result<String> riskResult = riskService.predictRiskBatch(risks);
+            WekaBatchScorer.Result<Double> tauxResult = tauxService.predictTauxBatch(taux);
+            if (round > 0) {
+                riskBatch = Math.max(riskBatch, riskResult.instancesPerSecond());
+                tauxBatch = Math.max(tauxBatch, tauxResult.instancesPerSecond());
+            }
+        }
+
+        System.out.printf("[BENCH] risk : %,.0f inst/s unitaire, %,.0f inst/s par lot%n", riskSingle, riskBatch);
+        System.out.printf("[BENCH] taux : %,.0f inst/s unitaire, %,.0f inst/s par lot%n", tauxSingle, tauxBatch);
+    }
+}
@@ -0,0 +1,196 @@
+package tools;
+
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Faux serveur Stripe local pour tester le pipeline de paiement sans réseau ni compte Stripe.
+ *
+ * Répond à {@code POST /v1/payment_intents} comme l'API Stripe (objet payment_intent, metadata
+ * recopiées) et respecte l'en-tête {@code Idempotency-Key} : une clé déjà vue renvoie l'intent
+ * créé la première fois. On peut injecter une latence et un taux d'erreurs 500 / 429 pour
+ * exercer les reprises de PaymentOutboxService.
+ *
+ * Utilisation depuis l'application : {@code STRIPE_API_BASE=http://localhost:12111}.
+ * Usage: FakeStripeServer [port=12111] [latenceMs=0] [tauxErreur=0.0]
+ */
+public class FakeStripeServer implements AutoCloseable {
+
+    private final HttpServer server;
+    private final long latencyMs;
+    private final double failureRate;
+    private final Map<String, String> byIdempotencyKey = new ConcurrentHashMap<>();
+    private final AtomicInteger sequence = new AtomicInteger();
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger created = new AtomicInteger();
+    private final AtomicInteger replayed = new AtomicInteger();
+    private final AtomicInteger injectedFailures = new AtomicInteger();
+
+    public FakeStripeServer(int port, long latencyMs, double failureRate) throws IOException {
+        this.latencyMs = latencyMs;
+        this.failureRate = failureRate;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        this.server.createContext("/v1/payment_intents", this::handlePaymentIntents);
+        this.server.setExecutor(Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "fake-stripe");
+            t.setDaemon(true);
+            return t;
+        }));
+        this.server.start();
+    }
+
+    public String getApiBase() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    /** Requêtes reçues, y compris les erreurs injectées et les rejeux. */
+    public int getRequests() {
+        return requests.get();
+    }
+
+    /** Payment intents réellement créés (une par clé d'idempotence). */
+    public int getCreated() {
+        return created.get();
+    }
+
+    public int getReplayed() {
+        return replayed.get();
+    }
+
+    public int getInjectedFailures() {
+        return injectedFailures.get();
+    }
+
+    private void handlePaymentIntents(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        try (InputStream in = exchange.getRequestBody()) {
+            String form = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                send(exchange, 405, error("invalid_request_error", "Only POST is supported"));
+                return;
+            }
+            if (latencyMs > 0) {
+                Thread.sleep(latencyMs);
+            }
+
+            String key = exchange.getRequestHeaders().getFirst("Idempotency-Key");
+            if (key != null) {
+                String previous = byIdempotencyKey.get(key);
+                if (previous != null) {
+                    replayed.incrementAndGet();
+                    exchange.getResponseHeaders().set("Idempotent-Replayed", "true");
+                    send(exchange, 200, previous);
+                    return;
+                }
+            }
+
+            // Erreur injectée avant toute création, comme une panne côté Stripe
+            double roll = ThreadLocalRandom.current().nextDouble();
+            if (roll < failureRate) {
+                injectedFailures.incrementAndGet();
+                if (roll < failureRate / 2) {
+                    send(exchange, 429, error("rate_limit_error", "Too many requests (injected)"));
+                } else {
+                    send(exchange, 500, error("api_error", "Internal error (injected)"));
+                }
+                return;
+            }
+
+            String body = paymentIntent(parseForm(form));
+            if (key != null) {
+                String winner = byIdempotencyKey.putIfAbsent(key, body);
+                if (winner != null) {
+                    replayed.incrementAndGet();
+                    send(exchange, 200, winner);
+                    return;
+                }
+            }
+            created.incrementAndGet();
+            send(exchange, 200, body);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            send(exchange, 500, error("api_error", "Interrupted"));
+        }
+    }
+
+    private String paymentIntent(Map<String, String> form) {
+        String id = "pi_fake_" + sequence.incrementAndGet();
+        JsonObject intent = new JsonObject();
+        intent.addProperty("id", id);
+        intent.addProperty("object", "payment_intent");
+        intent.addProperty("amount", Long.parseLong(form.getOrDefault("amount", "0")));
+        intent.addProperty("currency", form.getOrDefault("currency", "usd"));
+        intent.addProperty("description", form.get("description"));
+        intent.addProperty("status", "requires_payment_method");
+        intent.addProperty("client_secret", id + "_secret_fake");
+        intent.addProperty("created", System.currentTimeMillis() / 1000);
+        intent.addProperty("livemode", false);
+        JsonObject metadata = new JsonObject();
+        form.forEach((name, value) -> {
+            if (name.startsWith("metadata[") && name.endsWith("]")) {
+                metadata.addProperty(name.substring(9, name.length() - 1), value);
+            }
+        });
+        intent.add("metadata", metadata);
+        return intent.toString();
+    }
+
+    private static Map<String, String> parseForm(String form) {
+        Map<String, String> values = new ConcurrentHashMap<>();
+        for (String pair : form.split("&")) {
+            int idx = pair.indexOf('=');
+            if (idx > 0) {
+                values.put(URLDecoder.decode(pair.substring(0, idx), StandardCharsets.UTF_8),
+                    URLDecoder.decode(pair.substring(idx + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return values;
+    }
+
+    private static String error(String type, String message) {
+        JsonObject error = new JsonObject();
+        error.addProperty("type", type);
+        error.addProperty("message", message);
+        JsonObject body = new JsonObject();
+        body.add("error", error);
+        return body.toString();
+    }
+
+    private static void send(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.getResponseHeaders().set("Request-Id", "req_fake_" + System.nanoTime());
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(bytes);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 12111;
+        long latencyMs = args.length > 1 ? Long.parseLong(args[1]) : 0;
+        double failureRate = args.length > 2 ? Double.parseDouble(args[2]) : 0.0;
+        FakeStripeServer fake = new FakeStripeServer(port, latencyMs, failureRate);
+        System.out.println("[FAKE-STRIPE] " + fake.getApiBase() + " (latence " + latencyMs + "ms, erreurs "
+            + (failureRate * 100) + "%) - Ctrl+C pour arrêter");
+        Thread.currentThread().join();
+    }
+}
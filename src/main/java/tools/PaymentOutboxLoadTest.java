@@ -0,0 +1,165 @@
+package tools;
+
+import DataBase.MyConnection;
+import Services.MarketplaceOrderService;
+import Services.PaymentOutboxService;
+import Services.StripePaymentService;
+import com.stripe.Stripe;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Test de charge du pipeline de paiement par outbox (nécessite MySQL et sql/ADD_PAYMENT_OUTBOX.sql).
+ *
+ * Démarre un {@link FakeStripeServer} (latence et erreurs injectées), passe N commandes en
+ * parallèle sur une annonce ACTIVE puis attend que les workers aient traité l'outbox. Vérifie :
+ * - la latence de placeOrder (un seul commit local, indépendante de la latence Stripe)
+ * - chaque commande finit PAYMENT_PROCESSING (intent créé) ou CANCELLED (échec définitif)
+ * - une seule payment intent par commande malgré les reprises (clé d'idempotence)
+ * Les commandes de test sont annulées à la fin.
+ *
+ * Usage: PaymentOutboxLoadTest [commandes=50] [threads=8] [latenceStripeMs=300] [tauxErreur=0.2] [buyerId=2]
+ */
+public class PaymentOutboxLoadTest {
+
+    private static final double ORDER_QUANTITY = 0.01;
+
+    public static void main(String[] args) throws Exception {
+        int orders = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        long stripeLatencyMs = args.length > 2 ? Long.parseLong(args[2]) : 300;
+        double failureRate = args.length > 3 ? Double.parseDouble(args[3]) : 0.2;
+        int buyerId = args.length > 4 ? Integer.parseInt(args[4]) : 2;
+
+        PaymentOutboxService outbox = PaymentOutboxService.getInstance();
+        if (!outbox.isEnabled()) {
+            System.err.println("[OUTBOX-TEST] Table payment_outbox absente ou PAYMENT_OUTBOX=false");
+            return;
+        }
+
+        try (FakeStripeServer fake = new FakeStripeServer(0, stripeLatencyMs, failureRate)) {
+            StripePaymentService.getInstance();
+            Stripe.overrideApiBase(fake.getApiBase());
+            System.out.println("[OUTBOX-TEST] Faux Stripe sur " + fake.getApiBase());
+
+            int listingId = findListing(buyerId);
+            if (listingId <= 0) {
+                System.err.println("[OUTBOX-TEST] Aucune annonce ACTIVE d'un autre vendeur que " + buyerId);
+                return;
+            }
+
+            // 1. Placement des commandes en parallèle
+            MarketplaceOrderService orderService = MarketplaceOrderService.getInstance();
+            List<Integer> orderIds = Collections.synchronizedList(new ArrayList<>());
+            List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+            ExecutorService pool = Executors.newFixedThreadPool(threads);
+            long start = System.nanoTime();
+            for (int i = 0; i < orders; i++) {
+                pool.submit(() -> {
+                    long t0 = System.nanoTime();
+                    int orderId = orderService.placeOrder(listingId, buyerId, ORDER_QUANTITY);
+                    latencies.add(System.nanoTime() - t0);
+                    if (orderId > 0) {
+                        orderIds.add(orderId);
+                    }
+                });
+            }
+            pool.shutdown();
+            pool.awaitTermination(5, TimeUnit.MINUTES);
+            long placedMs = (System.nanoTime() - start) / 1_000_000;
+
+            // 2. Attente du traitement de l'outbox
+            long deadline = System.currentTimeMillis() + 120_000;
+            Map<String, Integer> outboxStatus;
+            do {
+                Thread.sleep(250);
+                outboxStatus = countByStatus("payment_outbox", "order_id", orderIds);
+            } while (System.currentTimeMillis() < deadline
+                && (outboxStatus.getOrDefault("PENDING", 0) + outboxStatus.getOrDefault("IN_FLIGHT", 0)) > 0);
+            long drainedMs = (System.nanoTime() - start) / 1_000_000;
+
+            // 3. Vérifications
+            Map<String, Integer> orderStatus = countByStatus("marketplace_orders", "id", orderIds);
+            int processing = orderStatus.getOrDefault("PAYMENT_PROCESSING", 0);
+            int cancelled = orderStatus.getOrDefault("CANCELLED", 0);
+            List<Long> sorted = new ArrayList<>(latencies);
+            Collections.sort(sorted);
+
+            System.out.println("[OUTBOX-TEST] Commandes passées: " + orderIds.size() + "/" + orders + " en " + placedMs + "ms");
+            System.out.printf("[OUTBOX-TEST] placeOrder p50=%.1fms p99=%.1fms (latence Stripe simulée %dms)%n",
+                percentile(sorted, 0.50), percentile(sorted, 0.99), stripeLatencyMs);
+            System.out.println("[OUTBOX-TEST] Outbox traitée en " + drainedMs + "ms: " + outboxStatus);
+            System.out.println("[OUTBOX-TEST] Commandes: " + orderStatus);
+            System.out.println("[OUTBOX-TEST] Faux Stripe: requêtes=" + fake.getRequests() + ", créées=" + fake.getCreated()
+                + ", rejouées=" + fake.getReplayed() + ", erreurs injectées=" + fake.getInjectedFailures());
+            System.out.println("[OUTBOX-TEST] " + outbox.stats());
+
+            boolean ok = processing + cancelled == orderIds.size() && fake.getCreated() == processing;
+            System.out.println(ok ? "[OUTBOX-TEST] OK" : "[OUTBOX-TEST] ÉCHEC : commandes non traitées ou intents en double");
+
+            cancelOrders(orderIds);
+        } finally {
+            outbox.stop();
+        }
+    }
+
+    private static int findListing(int buyerId) throws Exception {
+        String sql = "SELECT id FROM marketplace_listings WHERE status = 'ACTIVE' AND seller_id <> ? " +
+            "AND (expires_at IS NULL OR expires_at > NOW()) ORDER BY id LIMIT 1";
+        try (Connection conn = MyConnection.openConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, buyerId);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : -1;
+            }
+        }
+    }
+
+    private static Map<String, Integer> countByStatus(String table, String idColumn, List<Integer> ids) throws Exception {
+        Map<String, Integer> counts = new HashMap<>();
+        if (ids.isEmpty()) {
+            return counts;
+        }
+        String in = ids.stream().map(String::valueOf).collect(Collectors.joining(","));
+        String sql = "SELECT status, COUNT(*) FROM " + table + " WHERE " + idColumn + " IN (" + in + ") GROUP BY status";
+        try (Connection conn = MyConnection.openConnection();
+             PreparedStatement ps = conn.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                counts.put(rs.getString(1), rs.getInt(2));
+            }
+        }
+        return counts;
+    }
+
+    private static void cancelOrders(List<Integer> ids) throws Exception {
+        if (ids.isEmpty()) {
+            return;
+        }
+        String in = ids.stream().map(String::valueOf).collect(Collectors.joining(","));
+        try (Connection conn = MyConnection.openConnection();
+             PreparedStatement ps = conn.prepareStatement(
+                 "UPDATE marketplace_orders SET status = 'CANCELLED' WHERE id IN (" + in + ")")) {
+            System.out.println("[OUTBOX-TEST] Commandes de test annulées: " + ps.executeUpdate());
+        }
+    }
+
+    private static double percentile(List<Long> sortedNanos, double p) {
+        if (sortedNanos.isEmpty()) {
+            return 0;
+        }
+        int idx = (int) Math.min(sortedNanos.size() - 1, Math.ceil(p * sortedNanos.size()) - 1);
+        return sortedNanos.get(Math.max(idx, 0)) / 1e6;
+    }
+}
@@ -0,0 +1,96 @@
+package tools;
+
+import Models.climatiq.EmissionResult;
+import Services.ClimatiqApiService;
+import Services.StreamingScopeCalculator;
+
+import java.io.BufferedWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Débit du calcul Scope 1/2/3 en flux ({@link StreamingScopeCalculator}) sur un gros fichier CSV
+ * généré (10 millions de lignes par défaut, ~500 Mo). Aucune base requise ; sans clé Climatiq les
+ * facteurs de repli sont utilisés, on mesure donc le pipeline (lecture, parsing, agrégation).
+ *
+ * Affiche la progression, le débit en lignes/s et le tas utilisé maximal observé, qui doit
+ * rester stable quelle que soit la taille du fichier.
+ *
+ * Usage: ScopeStreamingBenchmark [lignes=10000000] [fichier=target/scope_benchmark.csv]
+ */
+public class ScopeStreamingBenchmark {
+
+    private static final String[] FUELS = {"diesel", "gasoline", "natural_gas", "propane", "jet_fuel"};
+    private static final String[] REGIONS = {"US-CA", "US-TX", "FR", "DE", "TN", "GB"};
+    private static final String[] UNSPSC = {"25101500", "15101500", "25171500", "44101500", "72141100", "78111500", "43211500", "30101700"};
+    private static final String[] CURRENCIES = {"USD", "EUR", "GBP", "CAD"};
+
+    public static void main(String[] args) throws Exception {
+        long rows = args.length > 0 ? Long.parseLong(args[0]) : 10_000_000L;
+        Path file = Paths.get(args.length > 1 ? args[1] : "target/scope_benchmark.csv");
+
+        if (!Files.exists(file)) {
+            long start = System.nanoTime();
+            generate(file, rows);
+            System.out.printf("[BENCH] Fichier généré : %s (%d lignes, %d Mo) en %.1f s%n",
+                file, rows, Files.size(file) >> 20, (System.nanoTime() - start) / 1e9);
+        }
+
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long[] maxHeap = {0};
+        StreamingScopeCalculator calculator = new StreamingScopeCalculator(new ClimatiqApiService());
+        StreamingScopeCalculator.Result result = calculator.calculateFile(file, progress -> {
+            maxHeap[0] = Math.max(maxHeap[0], memory.getHeapMemoryUsage().getUsed());
+            System.out.printf("[BENCH] %5.1f %%  %,d lignes  %,.0f lignes/s  tas %d Mo%n",
+                progress.fraction() * 100, progress.rows(), progress.rowsPerSecond(),
+                memory.getHeapMemoryUsage().getUsed() >> 20);
+        });
+
+        System.out.printf("%n[BENCH] %,d lignes (%,d ignorées) en %.1f s : %,.0f lignes/s, %d groupes, tas max observé %d Mo%n",
+            result.rows(), result.skipped(), result.durationMillis() / 1000.0,
+            result.rows() * 1000.0 / Math.max(1, result.durationMillis()), result.groups().size(), maxHeap[0] >> 20);
+        for (Map.Entry<String, EmissionResult> entry : result.totalsByScope().entrySet()) {
+            EmissionResult total = entry.getValue();
+            System.out.printf("[BENCH] %-7s %,.1f t CO2e (±%.2f %%)%n", entry.getKey(),
+                total.getCo2eAmount().doubleValue() / 1000, total.getUncertaintyPercent());
+        }
+    }
+
+    /**
+     * Fichier d'activités aléatoires (graine fixe) : 20 % Scope 1, 30 % Scope 2, 50 % Scope 3.
+     */
+    private static void generate(Path file, long rows) throws Exception {
+        if (file.toAbsolutePath().getParent() != null) {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+        }
+        Random random = new Random(42);
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("scope,facility,region,fuel_type,unspsc,amount,currency,date\n");
+            StringBuilder line = new StringBuilder(96);
+            for (long i = 0; i < rows; i++) {
+                int kind = random.nextInt(10);
+                int scope = kind < 2 ? 1 : kind < 5 ? 2 : 3;
+                line.setLength(0);
+                line.append(scope).append(",site-").append(random.nextInt(200)).append(',')
+                    .append(REGIONS[random.nextInt(REGIONS.length)]).append(',');
+                if (scope == 1) {
+                    line.append(FUELS[random.nextInt(FUELS.length)]);
+                }
+                line.append(',');
+                if (scope == 3) {
+                    line.append(UNSPSC[random.nextInt(UNSPSC.length)]);
+                }
+                line.append(',').append(random.nextInt(100_000) / 10.0).append(',')
+                    .append(scope == 3 ? CURRENCIES[random.nextInt(CURRENCIES.length)] : "").append(',')
+                    .append(2020 + random.nextInt(5)).append("-0").append(1 + random.nextInt(9)).append("-15\n");
+                writer.append(line);
+            }
+        }
+    }
+}
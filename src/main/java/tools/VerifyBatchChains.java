@@ -0,0 +1,33 @@
+package tools;
+
+import DataBase.MyConnection;
+import Services.BatchEventService;
+
+/**
+ * Vérifie en parallèle toutes les chaînes de hachage de batch_events (nécessite une base MySQL).
+ *
+ * Par défaut seuls les événements ajoutés depuis le dernier checkpoint sont recalculés ;
+ * --full ignore les checkpoints et recalcule toutes les chaînes depuis l'événement genesis.
+ *
+ * Usage: VerifyBatchChains [threads=nb coeurs] [--full]
+ */
+public class VerifyBatchChains {
+
+    public static void main(String[] args) {
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean full = false;
+        for (String arg : args) {
+            if ("--full".equals(arg)) {
+                full = true;
+            } else {
+                threads = Integer.parseInt(arg);
+            }
+        }
+
+        BatchEventService.ChainVerificationReport report = new BatchEventService().verifyAllChains(threads, full);
+        System.out.println("[VERIFY] " + (full ? "complet" : "incrémental") + ", " + threads + " threads: " + report);
+        System.out.println("[VERIFY] " + MyConnection.getPoolStats());
+        MyConnection.getInstance().closeConnection();
+        System.exit(report.allValid() ? 0 : 1);
+    }
+}
@@ -0,0 +1,149 @@
+package tools;
+
+import DataBase.MyConnection;
+import Models.OperationWallet;
+import Models.Wallet;
+import Services.WalletService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.DoubleAdder;
+
+/**
+ * Test de charge concurrent pour WalletService (nécessite une base MySQL accessible).
+ *
+ * Lance N threads qui partagent une seule instance de WalletService et enchaînent des
+ * émissions, retraits et transferts aléatoires sur un petit groupe de wallets de test,
+ * puis vérifie que les soldes sont cohérents :
+ * - somme(disponible + retiré) == crédits émis
+ * - somme(retiré) == retraits réussis
+ * - pour chaque wallet, disponible == somme(ISSUE) - somme(RETIRE) dans wallet_transactions
+ *
+ * Usage: WalletConcurrencyStressTest [threads=8] [opsParThread=50] [wallets=4]
+ */
+public class WalletConcurrencyStressTest {
+
+    private static final double INITIAL_CREDITS = 1000.0;
+    private static final double EPSILON = 0.0001;
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int opsPerThread = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        int walletCount = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+
+        WalletService walletService = new WalletService();
+        String runId = "STRESS-" + System.currentTimeMillis();
+
+        // 1. Wallets de test avec un solde initial
+        List<Integer> walletIds = new ArrayList<>();
+        for (int i = 0; i < walletCount; i++) {
+            Wallet wallet = new Wallet("ENTERPRISE", 0);
+            wallet.setName(runId + "-" + i);
+            int id = walletService.createWallet(wallet);
+            if (id <= 0 || !walletService.quickIssueCredits(id, INITIAL_CREDITS, runId + " initial")) {
+                System.err.println("[STRESS] Impossible de préparer le wallet de test " + i);
+                return;
+            }
+            walletIds.add(id);
+        }
+        System.out.println("[STRESS] Wallets de test: " + walletIds);
+
+        DoubleAdder issued = new DoubleAdder();
+        issued.add(INITIAL_CREDITS * walletCount);
+        DoubleAdder retired = new DoubleAdder();
+        AtomicInteger issues = new AtomicInteger();
+        AtomicInteger retirements = new AtomicInteger();
+        AtomicInteger transfers = new AtomicInteger();
+        AtomicInteger failures = new AtomicInteger();
+
+        // 2. Opérations mixtes en parallèle sur la même instance de service
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            pool.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < opsPerThread; i++) {
+                    int from = walletIds.get(random.nextInt(walletIds.size()));
+                    double amount = 1 + random.nextInt(10);
+                    int op = random.nextInt(3);
+                    boolean ok;
+                    if (op == 0) {
+                        ok = walletService.quickIssueCredits(from, amount, runId + " issue");
+                        if (ok) {
+                            issued.add(amount);
+                            issues.incrementAndGet();
+                        }
+                    } else if (op == 1) {
+                        ok = walletService.retireCredits(from, amount, runId + " retire", "STRESS");
+                        if (ok) {
+                            retired.add(amount);
+                            retirements.incrementAndGet();
+                        }
+                    } else {
+                        int to = walletIds.get(random.nextInt(walletIds.size()));
+                        if (to == from) {
+                            continue;
+                        }
+                        ok = walletService.transferCredits(from, to, amount, runId + " transfer");
+                        if (ok) {
+                            transfers.incrementAndGet();
+                        }
+                    }
+                    if (!ok) {
+                        failures.incrementAndGet();
+                    }
+                }
+            });
+        }
+        pool.shutdown();
+        pool.awaitTermination(10, TimeUnit.MINUTES);
+        double elapsedSec = (System.nanoTime() - start) / 1_000_000_000.0;
+
+        int totalOps = issues.get() + retirements.get() + transfers.get();
+        System.out.printf("[STRESS] %d opérations réussies en %.2fs (%.1f ops/s) - issue=%d retire=%d transfer=%d échecs=%d%n",
+            totalOps, elapsedSec, totalOps / elapsedSec,
+            issues.get(), retirements.get(), transfers.get(), failures.get());
+        System.out.println("[STRESS] " + MyConnection.getPoolStats());
+
+        // 3. Vérification des invariants
+        boolean consistent = true;
+        double totalAvailable = 0;
+        double totalRetired = 0;
+        for (int walletId : walletIds) {
+            Wallet wallet = walletService.getWalletById(walletId);
+            totalAvailable += wallet.getAvailableCredits();
+            totalRetired += wallet.getRetiredCredits();
+
+            double ledger = 0;
+            for (OperationWallet op : walletService.getWalletTransactions(walletId)) {
+                double value = op.getAmount().doubleValue();
+                ledger += "ISSUE".equals(op.getType()) ? value : -value;
+            }
+            if (Math.abs(ledger - wallet.getAvailableCredits()) > EPSILON) {
+                System.err.printf("[STRESS] Wallet %d: disponible=%.4f mais journal=%.4f%n",
+                    walletId, wallet.getAvailableCredits(), ledger);
+                consistent = false;
+            }
+        }
+
+        double expectedRetired = retired.sum();
+        if (Math.abs((totalAvailable + totalRetired) - issued.sum()) > EPSILON) {
+            System.err.printf("[STRESS] Total disponible+retiré=%.4f, attendu %.4f%n",
+                totalAvailable + totalRetired, issued.sum());
+            consistent = false;
+        }
+        if (Math.abs(totalRetired - expectedRetired) > EPSILON) {
+            System.err.printf("[STRESS] Total retiré=%.4f, attendu %.4f%n", totalRetired, expectedRetired);
+            consistent = false;
+        }
+
+        System.out.println(consistent ? "[STRESS] OK - soldes cohérents" : "[STRESS] ÉCHEC - soldes incohérents");
+        MyConnection.getInstance().closeConnection();
+        System.exit(consistent ? 0 : 1);
+    }
+}
@@ -0,0 +1,109 @@
+package tools;
+
+import DataBase.MyConnection;
+import Models.Wallet;
+import Services.WalletService;
+import Services.WalletService.ConcurrencyMode;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Benchmark de débit : verrous pessimistes (FOR UPDATE) contre versionnement optimiste
+ * pour les mises à jour de solde de WalletService (nécessite une base MySQL accessible).
+ *
+ * Pour chaque stratégie, N threads enchaînent des transferts et des retraits aléatoires sur un
+ * petit groupe de wallets (peu de wallets = forte contention). Le mode OPTIMISTIC demande la
+ * colonne wallet.version (sql/ADD_WALLET_VERSION_COLUMN.sql), sinon il retombe en PESSIMISTIC.
+ *
+ * Usage: WalletLockingBenchmark [threads=16] [opsParThread=100] [wallets=2]
+ */
+public class WalletLockingBenchmark {
+
+    private static final double INITIAL_CREDITS = 100000.0;
+    private static final double EPSILON = 0.0001;
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int opsPerThread = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        int walletCount = args.length > 2 ? Integer.parseInt(args[2]) : 2;
+
+        boolean consistent = true;
+        for (ConcurrencyMode mode : ConcurrencyMode.values()) {
+            consistent &= run(mode, threads, opsPerThread, walletCount);
+        }
+
+        System.out.println("[BENCH] " + MyConnection.getPoolStats());
+        MyConnection.getInstance().closeConnection();
+        System.exit(consistent ? 0 : 1);
+    }
+
+    private static boolean run(ConcurrencyMode mode, int threads, int opsPerThread, int walletCount)
+            throws InterruptedException {
+        WalletService walletService = new WalletService(mode);
+        String runId = "BENCH-" + mode + "-" + System.currentTimeMillis();
+
+        // 1. Wallets de test, identiques pour les deux stratégies
+        List<Integer> walletIds = new ArrayList<>();
+        for (int i = 0; i < walletCount; i++) {
+            Wallet wallet = new Wallet("ENTERPRISE", 0);
+            wallet.setName(runId + "-" + i);
+            int id = walletService.createWallet(wallet);
+            if (id <= 0 || !walletService.quickIssueCredits(id, INITIAL_CREDITS, runId + " initial")) {
+                System.err.println("[BENCH] Impossible de préparer le wallet de test " + i);
+                return false;
+            }
+            walletIds.add(id);
+        }
+
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+
+        // 2. Transferts (2/3) et retraits (1/3) concurrents
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            pool.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < opsPerThread; i++) {
+                    int from = walletIds.get(random.nextInt(walletIds.size()));
+                    int to = walletIds.get(random.nextInt(walletIds.size()));
+                    double amount = 1 + random.nextInt(5);
+                    boolean ok = (random.nextInt(3) == 0 || from == to)
+                        ? walletService.retireCredits(from, amount, runId + " retire", "BENCH")
+                        : walletService.transferCredits(from, to, amount, runId + " transfer");
+                    (ok ? succeeded : failed).incrementAndGet();
+                }
+            });
+        }
+        pool.shutdown();
+        pool.awaitTermination(10, TimeUnit.MINUTES);
+        double elapsedSec = (System.nanoTime() - start) / 1_000_000_000.0;
+
+        // 3. Aucun crédit créé ni perdu, aucun solde négatif
+        double total = 0;
+        boolean consistent = true;
+        for (int walletId : walletIds) {
+            Wallet wallet = walletService.getWalletById(walletId);
+            total += wallet.getTotalCredits();
+            if (wallet.getAvailableCredits() < -EPSILON) {
+                System.err.printf("[BENCH] Wallet %d négatif: %.4f%n", walletId, wallet.getAvailableCredits());
+                consistent = false;
+            }
+        }
+        if (Math.abs(total - INITIAL_CREDITS * walletCount) > EPSILON) {
+            System.err.printf("[BENCH] Total=%.4f, attendu %.4f%n", total, INITIAL_CREDITS * walletCount);
+            consistent = false;
+        }
+
+        System.out.printf("[BENCH] %-11s %d threads, %d wallets: %d ok / %d échecs en %.2fs -> %.1f ops/s %s%n",
+            mode, threads, walletCount, succeeded.get(), failed.get(), elapsedSec,
+            succeeded.get() / elapsedSec, consistent ? "OK" : "INCOHÉRENT");
+        return consistent;
+    }
+}
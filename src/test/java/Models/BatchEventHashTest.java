@@ -0,0 +1,96 @@
+package Models;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Random;
+
+/**
+ * Hashes stored in batch_events were computed with String.format + getBytes(UTF_8): the streamed
+ * encoding of BatchEvent.computeHash must give the same hash for every event.
+ */
+public class BatchEventHashTest {
+
+    private static final String[] TEXTS = {
+        null, "", "wallet-service", "{\"amount\":125.5,\"wallet_id\":42}",
+        "Crédits retirés — compensation Q3 à Sfax", "émissions CO₂ 🌍 forêt 🌳", "中文 العربية",
+        "broken \uD83C surrogate", "trailing \uDC00", "|pipe|inside|",
+    };
+
+    @Test
+    public void matchesLegacyHashes() throws Exception {
+        Random random = new Random(20240601);
+        BatchEventType[] types = BatchEventType.values();
+        for (int i = 0; i < 5_000; i++) {
+            BatchEvent event = new BatchEvent();
+            event.setBatchId(i == 1 ? Integer.MIN_VALUE : i % 50 == 0 ? -random.nextInt(1000) : random.nextInt(Integer.MAX_VALUE));
+            event.setEventType(i % 17 == 0 ? null : types[random.nextInt(types.length)]);
+            event.setEventDataJson(i % 13 == 0 ? largeText(random) : TEXTS[random.nextInt(TEXTS.length)]);
+            event.setPreviousEventHash(i % 7 == 0 ? null : legacyHash(event));
+            event.setActor(TEXTS[random.nextInt(TEXTS.length)]);
+            event.setCreatedAt(i % 97 == 0 ? null : randomDateTime(random));
+
+            String expected = legacyHash(event);
+            Assert.assertEquals("event " + i, expected, event.computeHash());
+            event.setEventHash(expected);
+            Assert.assertTrue("event " + i, event.isValid());
+        }
+    }
+
+    @Test
+    public void knownStoredHash() throws Exception {
+        BatchEvent event = new BatchEvent();
+        event.setBatchId(12);
+        event.setEventType(BatchEventType.ISSUED);
+        event.setEventDataJson("{\"amount\":100}");
+        event.setActor("system");
+        event.setCreatedAt(LocalDateTime.of(2025, 3, 14, 9, 26, 53, 589_000_000));
+        Assert.assertEquals(legacyHash(event), event.computeHash());
+    }
+
+    @Test
+    public void detectsTampering() {
+        BatchEvent event = new BatchEvent(7, BatchEventType.TRANSFERRED, "{\"amount\":10}", null, "alice");
+        Assert.assertTrue(event.isValid());
+        event.setActor("mallory");
+        Assert.assertFalse(event.isValid());
+        event.setActor("alice");
+        event.setEventHash(event.getEventHash().toUpperCase());
+        Assert.assertTrue(event.isValid());
+        event.setEventHash("abc");
+        Assert.assertFalse(event.isValid());
+    }
+
+    /** BatchEvent.computeHash before the streamed encoding. */
+    private static String legacyHash(BatchEvent event) throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        String toHash = String.format("%d|%s|%s|%s|%s|%s",
+            event.getBatchId(),
+            event.getEventType() != null ? event.getEventType().name() : "",
+            event.getEventDataJson() != null ? event.getEventDataJson() : "",
+            event.getPreviousEventHash() != null ? event.getPreviousEventHash() : "GENESIS",
+            event.getActor() != null ? event.getActor() : "",
+            event.getCreatedAt() != null ? event.getCreatedAt().toString() : "");
+        return HexFormat.of().formatHex(digest.digest(toHash.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static String largeText(Random random) {
+        StringBuilder text = new StringBuilder();
+        int length = 4_000 + random.nextInt(6_000);
+        while (text.length() < length) {
+            text.append(TEXTS[1 + random.nextInt(TEXTS.length - 1)]).append(' ');
+        }
+        return text.toString();
+    }
+
+    private static LocalDateTime randomDateTime(Random random) {
+        int[] nanos = {0, 0, 5_000_000, 123_456_000, 1, 999_999_999};
+        int second = random.nextInt(4) == 0 ? 0 : random.nextInt(60);
+        return LocalDateTime.of(2020 + random.nextInt(8), 1 + random.nextInt(12), 1 + random.nextInt(28),
+            random.nextInt(24), random.nextInt(60), second, nanos[random.nextInt(nanos.length)]);
+    }
+}
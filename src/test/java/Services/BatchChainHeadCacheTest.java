@@ -0,0 +1,183 @@
+package Services;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+public class BatchChainHeadCacheTest {
+
+    private final BatchChainHeadCache cache = BatchChainHeadCache.getInstance();
+
+    @Test
+    public void testMissesLoadedInOneCall() throws Exception {
+        int batchA = 1_000_001;
+        int batchB = 1_000_002;
+        forget(batchA, batchB);
+        RecordingLoader loader = new RecordingLoader(Map.of(batchA, "hashA"));
+
+        try (BatchChainHeadCache.Append append = cache.begin(connection(true), List.of(batchA, batchB))) {
+            Map<Integer, String> previous = append.previousHashes(Set.of(batchA, batchB), loader);
+            Assert.assertEquals("hashA", previous.get(batchA));
+            Assert.assertNull(previous.get(batchB)); // no event yet
+        }
+        Assert.assertEquals(1, loader.calls.size());
+        Assert.assertEquals(2, loader.calls.get(0).size());
+    }
+
+    @Test
+    public void testCommittedHeadIsCached() throws Exception {
+        int batchId = 1_000_011;
+        forget(batchId);
+        Connection conn = connection(true); // autocommit: the append is committed on close
+
+        try (BatchChainHeadCache.Append append = cache.begin(conn, List.of(batchId))) {
+            Assert.assertEquals("h0", append.previousHash(batchId, new RecordingLoader(Map.of(batchId, "h0"))));
+            append.appended(batchId, "h1");
+        }
+        RecordingLoader loader = new RecordingLoader(Map.of());
+        try (BatchChainHeadCache.Append append = cache.begin(conn, List.of(batchId))) {
+            Assert.assertEquals("h1", append.previousHash(batchId, loader));
+        }
+        Assert.assertTrue(loader.calls.isEmpty());
+    }
+
+    @Test
+    public void testUncommittedHeadIsForgotten() throws Exception {
+        int batchId = 1_000_021;
+        forget(batchId);
+
+        // Manual transaction outside TransactionTemplate: outcome unknown on close
+        try (BatchChainHeadCache.Append append = cache.begin(connection(false), List.of(batchId))) {
+            append.previousHash(batchId, new RecordingLoader(Map.of(batchId, "h0")));
+            append.appended(batchId, "h1");
+        }
+        RecordingLoader loader = new RecordingLoader(Map.of(batchId, "h0"));
+        try (BatchChainHeadCache.Append append = cache.begin(connection(true), List.of(batchId))) {
+            Assert.assertEquals("h0", append.previousHash(batchId, loader));
+        }
+        Assert.assertEquals(1, loader.calls.size());
+    }
+
+    @Test
+    public void testPendingHeadChainsWithinAppend() throws Exception {
+        int batchId = 1_000_031;
+        forget(batchId);
+
+        try (BatchChainHeadCache.Append append = cache.begin(connection(true), List.of(batchId))) {
+            append.previousHash(batchId, new RecordingLoader(Map.of(batchId, "h0")));
+            append.appended(batchId, "h1");
+            append.appended(batchId, "h2");
+            RecordingLoader loader = new RecordingLoader(Map.of());
+            Assert.assertEquals("h2", append.previousHash(batchId, loader));
+            Assert.assertTrue(loader.calls.isEmpty());
+        }
+    }
+
+    @Test
+    public void testAppendsToSameBatchAreSerialized() throws Exception {
+        int batchId = 1_000_041;
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            CountDownLatch acquired = new CountDownLatch(1);
+            Future<?> second;
+            try (BatchChainHeadCache.Append append = cache.begin(connection(true), List.of(batchId))) {
+                second = executor.submit(() -> {
+                    try (BatchChainHeadCache.Append other = cache.begin(connection(true), List.of(batchId))) {
+                        acquired.countDown();
+                    }
+                    return null;
+                });
+                Assert.assertFalse(acquired.await(200, TimeUnit.MILLISECONDS));
+            }
+            Assert.assertTrue(acquired.await(1, TimeUnit.SECONDS));
+            second.get(1, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testLockTimeoutIsRetryable() throws Exception {
+        int batchId = 1_000_051;
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try (BatchChainHeadCache.Append append = cache.begin(connection(true), List.of(batchId))) {
+            Future<?> second = executor.submit(() -> {
+                cache.begin(connection(true), List.of(batchId)).close();
+                return null;
+            });
+            try {
+                second.get(5, TimeUnit.SECONDS);
+                Assert.fail("Expected a lock timeout");
+            } catch (ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof SQLException);
+                Assert.assertEquals("40001", ((SQLException) e.getCause()).getSQLState());
+            } catch (TimeoutException e) {
+                Assert.fail("Lock wait did not time out");
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void forget(int... batchIds) {
+        for (int batchId : batchIds) {
+            cache.invalidate(batchId);
+        }
+    }
+
+    /** Connection stub: only getAutoCommit is used outside a TransactionTemplate transaction. */
+    private static Connection connection(boolean autoCommit) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+            (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "getAutoCommit":
+                        return autoCommit;
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "equals":
+                        return proxy == args[0];
+                    case "toString":
+                        return "Connection(autoCommit=" + autoCommit + ")";
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                }
+            });
+    }
+
+    private static final class RecordingLoader implements BatchChainHeadCache.HeadLoader {
+        private final Map<Integer, String> database;
+        final List<List<Integer>> calls = new ArrayList<>();
+
+        RecordingLoader(Map<Integer, String> database) {
+            this.database = database;
+        }
+
+        @Override
+        public Map<Integer, String> load(Connection conn, Collection<Integer> batchIds) {
+            calls.add(new ArrayList<>(batchIds));
+            Map<Integer, String> found = new HashMap<>();
+            for (Integer batchId : batchIds) {
+                if (database.containsKey(batchId)) {
+                    found.put(batchId, database.get(batchId));
+                }
+            }
+            return found;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package Services;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+public class CarbonPriceTimeseriesTest {
+
+    private static final long HOUR = CarbonPriceTimeseries.Resolution.HOUR.getMillis();
+    private static final long DAY = CarbonPriceTimeseries.Resolution.DAY.getMillis();
+    private static final long T0 = 1_700_000_000_000L - 1_700_000_000_000L % DAY; // UTC midnight
+
+    @Test
+    public void testBucketStartIsEpochAligned() {
+        Assert.assertEquals(T0 + 5 * HOUR, CarbonPriceTimeseries.Resolution.HOUR.bucketStart(T0 + 5 * HOUR + 59_999));
+        Assert.assertEquals(T0, CarbonPriceTimeseries.Resolution.DAY.bucketStart(T0 + DAY - 1));
+        Assert.assertEquals(-HOUR, CarbonPriceTimeseries.Resolution.HOUR.bucketStart(-1));
+    }
+
+    @Test
+    public void testResolutionForDays() {
+        Assert.assertEquals(CarbonPriceTimeseries.Resolution.HOUR, CarbonPriceTimeseries.Resolution.forDays(1));
+        Assert.assertEquals(CarbonPriceTimeseries.Resolution.HOUR, CarbonPriceTimeseries.Resolution.forDays(7));
+        Assert.assertEquals(CarbonPriceTimeseries.Resolution.DAY, CarbonPriceTimeseries.Resolution.forDays(8));
+    }
+
+    @Test
+    public void testOhlcWithinOneBucket() {
+        CarbonPriceTimeseries.CandleBuilder builder = new CarbonPriceTimeseries.CandleBuilder(CarbonPriceTimeseries.Resolution.HOUR);
+        builder.add(T0 + 60_000, 20.0);
+        builder.add(T0 + 120_000, 25.0);
+        builder.add(T0 + 180_000, 18.0);
+        builder.add(T0 + 240_000, 22.0);
+
+        List<CarbonPriceTimeseries.Candle> candles = builder.build();
+        Assert.assertEquals(1, candles.size());
+        assertCandle(candles.get(0), T0, 20.0, 25.0, 18.0, 22.0, 4);
+    }
+
+    @Test
+    public void testTicksSplitAcrossBuckets() {
+        CarbonPriceTimeseries.CandleBuilder hourly = new CarbonPriceTimeseries.CandleBuilder(CarbonPriceTimeseries.Resolution.HOUR);
+        CarbonPriceTimeseries.CandleBuilder daily = new CarbonPriceTimeseries.CandleBuilder(CarbonPriceTimeseries.Resolution.DAY);
+        long[] times = {T0 + 10, T0 + HOUR - 1, T0 + HOUR, T0 + 3 * HOUR + 5, T0 + DAY};
+        double[] prices = {10.0, 11.0, 12.0, 9.0, 15.0};
+        for (int i = 0; i < times.length; i++) {
+            hourly.add(times[i], prices[i]);
+            daily.add(times[i], prices[i]);
+        }
+
+        List<CarbonPriceTimeseries.Candle> hours = hourly.build();
+        Assert.assertEquals(4, hours.size());
+        assertCandle(hours.get(0), T0, 10.0, 11.0, 10.0, 11.0, 2);
+        assertCandle(hours.get(1), T0 + HOUR, 12.0, 12.0, 12.0, 12.0, 1);
+        assertCandle(hours.get(2), T0 + 3 * HOUR, 9.0, 9.0, 9.0, 9.0, 1);
+        assertCandle(hours.get(3), T0 + DAY, 15.0, 15.0, 15.0, 15.0, 1);
+
+        List<CarbonPriceTimeseries.Candle> days = daily.build();
+        Assert.assertEquals(2, days.size());
+        assertCandle(days.get(0), T0, 10.0, 12.0, 9.0, 9.0, 4);
+        assertCandle(days.get(1), T0 + DAY, 15.0, 15.0, 15.0, 15.0, 1);
+    }
+
+    @Test
+    public void testOutOfOrderTicksMergeLikeInOrder() {
+        List<long[]> ticks = new ArrayList<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 500; i++) {
+            long time = T0 + i * 791_900L; // ~13 min apart, spans several days
+            ticks.add(new long[] {time, Double.doubleToLongBits(10 + random.nextInt(2_000) / 100.0)});
+        }
+        List<CarbonPriceTimeseries.Candle> expected = fold(ticks, CarbonPriceTimeseries.Resolution.HOUR);
+        List<CarbonPriceTimeseries.Candle> expectedDaily = fold(ticks, CarbonPriceTimeseries.Resolution.DAY);
+
+        Collections.shuffle(ticks, random);
+        Assert.assertEquals(expected, fold(ticks, CarbonPriceTimeseries.Resolution.HOUR));
+        Assert.assertEquals(expectedDaily, fold(ticks, CarbonPriceTimeseries.Resolution.DAY));
+    }
+
+    @Test
+    public void testLateTickDoesNotMoveOpenOrClose() {
+        CarbonPriceTimeseries.CandleBuilder builder = new CarbonPriceTimeseries.CandleBuilder(CarbonPriceTimeseries.Resolution.HOUR);
+        builder.add(T0 + 1_000, 20.0);
+        builder.add(T0 + 3_000, 30.0);
+        builder.add(T0 + 2_000, 40.0); // late tick between open and close: only high changes
+
+        assertCandle(builder.build().get(0), T0, 20.0, 40.0, 20.0, 30.0, 3);
+    }
+
+    @Test
+    public void testSameTimestampCloseTakesLastAdded() {
+        // Matches the upsert: close_usd is replaced when VALUES(last_at) >= last_at
+        CarbonPriceTimeseries.CandleBuilder builder = new CarbonPriceTimeseries.CandleBuilder(CarbonPriceTimeseries.Resolution.HOUR);
+        builder.add(T0 + 1_000, 20.0);
+        builder.add(T0 + 1_000, 21.0);
+
+        assertCandle(builder.build().get(0), T0, 20.0, 21.0, 20.0, 21.0, 2);
+    }
+
+    private static List<CarbonPriceTimeseries.Candle> fold(List<long[]> ticks, CarbonPriceTimeseries.Resolution resolution) {
+        CarbonPriceTimeseries.CandleBuilder builder = new CarbonPriceTimeseries.CandleBuilder(resolution);
+        for (long[] tick : ticks) {
+            builder.add(tick[0], Double.longBitsToDouble(tick[1]));
+        }
+        return builder.build();
+    }
+
+    private static void assertCandle(CarbonPriceTimeseries.Candle candle, long bucketStart, double open, double high,
+                                     double low, double close, int samples) {
+        Assert.assertEquals(bucketStart, candle.bucketStart());
+        Assert.assertEquals(open, candle.open(), 0.0);
+        Assert.assertEquals(high, candle.high(), 0.0);
+        Assert.assertEquals(low, candle.low(), 0.0);
+        Assert.assertEquals(close, candle.close(), 0.0);
+        Assert.assertEquals(samples, candle.samples());
+    }
+}
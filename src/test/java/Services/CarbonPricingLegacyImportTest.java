@@ -0,0 +1,84 @@
+package Services;
+
+import Utils.MappedRecordCache;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.stream.Stream;
+
+public class CarbonPricingLegacyImportTest {
+
+    private static final long FILE_TIME = 1_700_000_000_000L;
+
+    private Path dir;
+    private File legacy;
+    private MappedRecordCache store;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("price-cache-test");
+        legacy = dir.resolve("price_cache.dat").toFile();
+        store = MappedRecordCache.open(dir.resolve("price_cache.bin"), 64, Double.BYTES + Long.BYTES, 4);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        store.close();
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    @Test
+    public void testImportsMissingPricesAndDeletesFile() throws IOException {
+        store.put("GOLD_STANDARD", value -> value.putDouble(20.0).putLong(FILE_TIME + 1));
+        HashMap<String, Double> prices = new HashMap<>();
+        prices.put("GOLD_STANDARD", 12.5);
+        prices.put("NATURE_BASED", 8.0);
+        writeLegacy(prices);
+
+        Assert.assertEquals(1, CarbonPricingService.importLegacyPriceCache(legacy, store));
+
+        Assert.assertFalse(legacy.exists());
+        Assert.assertEquals(2, store.size());
+        // Already in the store: kept
+        Assert.assertEquals(20.0, store.get("GOLD_STANDARD", ByteBuffer::getDouble), 0.0);
+        // Imported with the file date
+        Assert.assertEquals(8.0, store.get("NATURE_BASED", ByteBuffer::getDouble), 0.0);
+        Assert.assertEquals(Long.valueOf(FILE_TIME), store.get("NATURE_BASED", value -> value.getLong(Double.BYTES)));
+    }
+
+    @Test
+    public void testUnreadableFileIsDeleted() throws IOException {
+        Files.writeString(legacy.toPath(), "not a serialized map");
+
+        Assert.assertEquals(0, CarbonPricingService.importLegacyPriceCache(legacy, store));
+
+        Assert.assertFalse(legacy.exists());
+        Assert.assertEquals(0, store.size());
+    }
+
+    @Test
+    public void testNoFile() {
+        Assert.assertEquals(0, CarbonPricingService.importLegacyPriceCache(legacy, store));
+    }
+
+    private void writeLegacy(HashMap<String, Double> prices) throws IOException {
+        try (ObjectOutputStream out = new ObjectOutputStream(Files.newOutputStream(legacy.toPath()))) {
+            out.writeObject(prices);
+        }
+        Assert.assertTrue(legacy.setLastModified(FILE_TIME));
+    }
+}
@@ -0,0 +1,93 @@
+package Services;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+public class EscrowTimingWheelTest {
+
+    private static final long TICK = 1_000;
+    private static final int WHEEL_SIZE = 8;
+    private static final long START = 1_000_000;
+
+    @Test
+    public void testNeverFiresEarly() {
+        EscrowTimingWheel wheel = new EscrowTimingWheel(TICK, WHEEL_SIZE, START);
+        wheel.schedule(1, START + 2_500); // mid-tick due date
+
+        Assert.assertArrayEquals(new int[0], wheel.advance(START + 2_000));
+        Assert.assertArrayEquals(new int[0], wheel.advance(START + 2_999));
+        Assert.assertArrayEquals(new int[]{1}, wheel.advance(START + 3_000));
+        Assert.assertFalse(wheel.contains(1));
+    }
+
+    @Test
+    public void testDueOnTickBoundary() {
+        EscrowTimingWheel wheel = new EscrowTimingWheel(TICK, WHEEL_SIZE, START);
+        wheel.schedule(1, START + 2_000);
+
+        Assert.assertArrayEquals(new int[0], wheel.advance(START + 1_999));
+        Assert.assertArrayEquals(new int[]{1}, wheel.advance(START + 2_000));
+    }
+
+    @Test
+    public void testPastDueFiresOnNextAdvance() {
+        EscrowTimingWheel wheel = new EscrowTimingWheel(TICK, WHEEL_SIZE, START);
+        wheel.schedule(1, START - 60_000);
+
+        Assert.assertArrayEquals(new int[0], wheel.advance(START + 999));
+        Assert.assertArrayEquals(new int[]{1}, wheel.advance(START + 1_000));
+    }
+
+    @Test
+    public void testRebuiltWheelReleasesOverdueOnFirstAdvance() {
+        // As EscrowReleaseScheduler builds it: one tick behind the database clock
+        EscrowTimingWheel wheel = new EscrowTimingWheel(TICK, WHEEL_SIZE, START - TICK);
+        wheel.schedule(1, START - 60_000);
+        wheel.schedule(2, START + 500);
+
+        Assert.assertArrayEquals(new int[]{1}, wheel.advance(START));
+        Assert.assertTrue(wheel.contains(2));
+    }
+
+    @Test
+    public void testLateAdvanceCollectsEverything() {
+        EscrowTimingWheel wheel = new EscrowTimingWheel(TICK, WHEEL_SIZE, START);
+        wheel.schedule(1, START + 1_000);
+        wheel.schedule(2, START + 3_000);
+        wheel.schedule(3, START + 20_000); // more than one revolution ahead
+
+        // Several revolutions late: every bucket visited once, nothing lost
+        int[] due = wheel.advance(START + 100_000);
+        Arrays.sort(due);
+        Assert.assertArrayEquals(new int[]{1, 2, 3}, due);
+        Assert.assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void testLaterLapStaysInBucket() {
+        EscrowTimingWheel wheel = new EscrowTimingWheel(TICK, WHEEL_SIZE, START);
+        long lap = TICK * WHEEL_SIZE;
+        wheel.schedule(1, START + 2_000);
+        wheel.schedule(2, START + 2_000 + lap); // same bucket, next lap
+
+        Assert.assertArrayEquals(new int[]{1}, wheel.advance(START + 2_000));
+        Assert.assertTrue(wheel.contains(2));
+        Assert.assertArrayEquals(new int[0], wheel.advance(START + 2_000 + lap - 1));
+        Assert.assertArrayEquals(new int[]{2}, wheel.advance(START + 2_000 + lap));
+    }
+
+    @Test
+    public void testRemoveAndReschedule() {
+        EscrowTimingWheel wheel = new EscrowTimingWheel(TICK, WHEEL_SIZE, START);
+        wheel.schedule(1, START + 1_000);
+        wheel.schedule(2, START + 1_000);
+        wheel.remove(1);
+        wheel.schedule(2, START + 5_000); // moved to a later tick
+
+        Assert.assertEquals(1, wheel.size());
+        Assert.assertArrayEquals(new int[0], wheel.advance(START + 4_000));
+        Assert.assertArrayEquals(new int[]{2}, wheel.advance(START + 5_000));
+    }
+}
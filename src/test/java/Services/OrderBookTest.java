@@ -0,0 +1,103 @@
+package Services;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+public class OrderBookTest {
+
+    private static final long BUYER = 99;
+
+    @Test
+    public void testPriceTimePriority() {
+        OrderBook book = new OrderBook("CARBON_CREDITS");
+        book.addAsk(1, 10, OrderBook.toTicks(12.0), OrderBook.toQuantity(5.0));
+        book.addAsk(2, 11, OrderBook.toTicks(10.0), OrderBook.toQuantity(3.0));
+        book.addAsk(3, 12, OrderBook.toTicks(10.0), OrderBook.toQuantity(4.0)); // same price, later
+
+        List<OrderBook.Fill> fills = book.match(BUYER, OrderBook.toQuantity(8.0), OrderBook.MARKET);
+
+        Assert.assertEquals(3, fills.size());
+        Assert.assertEquals(2, fills.get(0).listingId());
+        Assert.assertEquals(3, fills.get(1).listingId());
+        Assert.assertEquals(1, fills.get(2).listingId());
+        Assert.assertEquals(1.0, fills.get(2).quantityUnits(), 0.0);
+    }
+
+    @Test
+    public void testLimitPriceStopsMatching() {
+        OrderBook book = new OrderBook("CARBON_CREDITS");
+        book.addAsk(1, 10, OrderBook.toTicks(10.0), OrderBook.toQuantity(2.0));
+        book.addAsk(2, 11, OrderBook.toTicks(10.5), OrderBook.toQuantity(2.0));
+
+        List<OrderBook.Fill> fills = book.match(BUYER, OrderBook.toQuantity(5.0), OrderBook.toTicks(10.25));
+
+        Assert.assertEquals(1, fills.size());
+        Assert.assertEquals(1, fills.get(0).listingId());
+        Assert.assertEquals(2.0, fills.get(0).quantityUnits(), 0.0);
+    }
+
+    @Test
+    public void testSkipsBuyerOwnListings() {
+        OrderBook book = new OrderBook("CARBON_CREDITS");
+        book.addAsk(1, BUYER, OrderBook.toTicks(9.0), OrderBook.toQuantity(10.0));
+        book.addAsk(2, 11, OrderBook.toTicks(11.0), OrderBook.toQuantity(10.0));
+
+        List<OrderBook.Fill> fills = book.match(BUYER, OrderBook.toQuantity(4.0), OrderBook.MARKET);
+
+        Assert.assertEquals(1, fills.size());
+        Assert.assertEquals(2, fills.get(0).listingId());
+        Assert.assertTrue(book.match(BUYER, OrderBook.toQuantity(4.0), OrderBook.toTicks(10.0)).isEmpty());
+    }
+
+    @Test
+    public void testPartialFillsAreApplied() {
+        OrderBook book = new OrderBook("CARBON_CREDITS");
+        book.addAsk(1, 10, OrderBook.toTicks(10.0), OrderBook.toQuantity(5.0));
+        book.addAsk(2, 11, OrderBook.toTicks(11.0), OrderBook.toQuantity(5.0));
+
+        // match does not change the book
+        List<OrderBook.Fill> fills = book.match(BUYER, OrderBook.toQuantity(7.5), OrderBook.MARKET);
+        Assert.assertEquals(2, book.askCount());
+
+        book.apply(fills);
+        Assert.assertEquals(1, book.askCount());
+        Assert.assertEquals(OrderBook.toTicks(11.0), book.bestAsk());
+        List<OrderBook.Level> depth = book.askDepth(5);
+        Assert.assertEquals(1, depth.size());
+        Assert.assertEquals(2.5, depth.get(0).quantity(), 0.0);
+
+        // requested more than available: every ask is filled, the rest is left unfilled
+        fills = book.match(BUYER, OrderBook.toQuantity(100.0), OrderBook.MARKET);
+        Assert.assertEquals(1, fills.size());
+        Assert.assertEquals(2.5, fills.get(0).quantityUnits(), 0.0);
+        book.apply(fills);
+        Assert.assertEquals(-1, book.bestAsk());
+    }
+
+    @Test
+    public void testFixedPointRounding() {
+        Assert.assertEquals(12346, OrderBook.toTicks(1.23455));
+        Assert.assertEquals(1000, OrderBook.toTicks(new BigDecimal("0.1000")));
+        Assert.assertEquals(30, OrderBook.toQuantity(0.1 + 0.2)); // 0.30000000000000004
+        Assert.assertEquals(101, OrderBook.toQuantity(new BigDecimal("1.005")));
+        Assert.assertEquals(0.3, OrderBook.fromQuantity(OrderBook.toQuantity(0.1) * 3), 0.0);
+        Assert.assertEquals(12.5, OrderBook.fromTicks(125_000), 0.0);
+    }
+
+    @Test
+    public void testBidDepthHighestFirst() {
+        OrderBook book = new OrderBook("CARBON_CREDITS");
+        book.addBid(1, 20, OrderBook.toTicks(8.0), OrderBook.toQuantity(1.0));
+        book.addBid(2, 21, OrderBook.toTicks(9.0), OrderBook.toQuantity(2.0));
+        book.addBid(3, 22, OrderBook.toTicks(9.0), OrderBook.toQuantity(3.0));
+
+        Assert.assertEquals(OrderBook.toTicks(9.0), book.bestBid());
+        List<OrderBook.Level> depth = book.bidDepth(1);
+        Assert.assertEquals(1, depth.size());
+        Assert.assertEquals(5.0, depth.get(0).quantity(), 0.0);
+        Assert.assertEquals(2, depth.get(0).orders());
+    }
+}
@@ -0,0 +1,103 @@
+package Services;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+public class UnspscIndexTest {
+
+    private static final String INDEX = String.join("\n",
+        "# test index",
+        "activity\t43000000\tsegment_activity",
+        "activity\t43210000\tfamily_activity",
+        "activity\t432115\tclass_activity",
+        "activity\t43211503\tcommodity_activity",
+        "default_activity\tdefault_activity",
+        "",
+        "keyword\tlaptop\t43211503",
+        "keyword\tlaptop bag\t53121706",
+        "keyword\tpaper\t14111500",
+        "default_code\t99000000");
+
+    private static UnspscIndex index() throws IOException {
+        return UnspscIndex.load(new StringReader(INDEX));
+    }
+
+    @Test
+    public void testMostSpecificLevelFirst() throws IOException {
+        UnspscIndex index = index();
+
+        Assert.assertEquals("commodity_activity", index.activityFor("43211503"));
+        Assert.assertEquals("class_activity", index.activityFor("43211599"));
+        Assert.assertEquals("family_activity", index.activityFor("43219999"));
+        Assert.assertEquals("segment_activity", index.activityFor("43999999"));
+        Assert.assertEquals("default_activity", index.activityFor("44000000"));
+        Assert.assertEquals(4, index.activityCount());
+    }
+
+    @Test
+    public void testShortCodes() throws IOException {
+        UnspscIndex index = index();
+
+        Assert.assertEquals("class_activity", index.activityFor("432115"));
+        Assert.assertEquals("family_activity", index.activityFor("4321"));
+        Assert.assertEquals("segment_activity", index.activityFor("4399"));
+        Assert.assertEquals("default_activity", index.activityFor("43"));
+    }
+
+    @Test
+    public void testSevenDigitCodeIsLookedUpAsClass() throws IOException {
+        UnspscIndex index = index();
+
+        // "4321150" is the class 432115 plus an incomplete commodity digit, not commodity 43211503
+        Assert.assertEquals("class_activity", index.activityFor("4321150"));
+        Assert.assertEquals("family_activity", index.activityFor("4321990"));
+        Assert.assertEquals("segment_activity", index.activityFor("43999"));
+    }
+
+    @Test
+    public void testOnlyFirstEightDigitsRead() throws IOException {
+        Assert.assertEquals("commodity_activity", index().activityFor("4321150399"));
+    }
+
+    @Test
+    public void testInvalidCodes() throws IOException {
+        UnspscIndex index = index();
+
+        Assert.assertEquals("default_activity", index.activityFor(null));
+        Assert.assertEquals("default_activity", index.activityFor(""));
+        Assert.assertEquals("default_activity", index.activityFor("4321x503"));
+    }
+
+    @Test
+    public void testClassify() throws IOException {
+        UnspscIndex index = index();
+
+        Assert.assertEquals("43211503", index.classify("Laptop for the finance team"));
+        Assert.assertEquals("53121706", index.classify("Dell laptop bag, black"));
+        Assert.assertEquals("14111500", index.classify("A4 paper, 5 reams"));
+        Assert.assertEquals("99000000", index.classify("notepaper"));
+        Assert.assertEquals("99000000", index.classify(null));
+    }
+
+    @Test
+    public void testEmptyIndexUsesFallbacks() throws IOException {
+        UnspscIndex index = UnspscIndex.load(new StringReader(""));
+
+        Assert.assertEquals(0, index.activityCount());
+        Assert.assertNotNull(index.activityFor("43211503"));
+        Assert.assertNotNull(index.classify("laptop"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsOddLengthCode() throws IOException {
+        UnspscIndex.load(new StringReader("activity\t432\tsome_activity"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsUnknownEntry() throws IOException {
+        UnspscIndex.load(new StringReader("synonym\tlaptop\tnotebook"));
+    }
+}
@@ -0,0 +1,84 @@
+package Utils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+
+public class KeywordAutomatonTest {
+
+    @Test
+    public void testMatchesWholeWordsOnly() {
+        KeywordAutomaton automaton = KeywordAutomaton.build(List.of("gas"));
+
+        Assert.assertEquals(0, automaton.longestMatch("natural gas supply"));
+        Assert.assertEquals(0, automaton.longestMatch("gas"));
+        Assert.assertEquals(0, automaton.longestMatch("fuel: gas, diesel"));
+        Assert.assertEquals(-1, automaton.longestMatch("gasoline purchase"));
+        Assert.assertEquals(-1, automaton.longestMatch("biogas plant"));
+        Assert.assertEquals(-1, automaton.longestMatch("gas2"));
+    }
+
+    @Test
+    public void testCaseInsensitive() {
+        KeywordAutomaton automaton = KeywordAutomaton.build(List.of("Natural Gas"));
+
+        Assert.assertEquals(0, automaton.longestMatch("NATURAL GAS delivery"));
+        Assert.assertEquals(0, automaton.longestMatch("natural gas"));
+    }
+
+    @Test
+    public void testLongestMatchWins() {
+        KeywordAutomaton automaton = KeywordAutomaton.build(List.of("gas", "natural gas", "steel", "steel pipe"));
+
+        Assert.assertEquals(1, automaton.longestMatch("natural gas"));
+        Assert.assertEquals(3, automaton.longestMatch("steel pipe and gas"));
+        Assert.assertEquals(2, automaton.longestMatch("steel pipes"));
+    }
+
+    @Test
+    public void testFirstInTextOnEqualLength() {
+        KeywordAutomaton automaton = KeywordAutomaton.build(List.of("paper", "steel"));
+
+        Assert.assertEquals(1, automaton.longestMatch("steel and paper"));
+        Assert.assertEquals(0, automaton.longestMatch("paper and steel"));
+    }
+
+    @Test
+    public void testOverlappingKeywords() {
+        KeywordAutomaton automaton = KeywordAutomaton.build(List.of("steel pipe", "pipe fittings", "he", "she", "hers"));
+
+        // Both overlapping keywords are found, the longer one is kept
+        Assert.assertEquals(1, automaton.longestMatch("steel pipe fittings"));
+        // Found through failure links, but not on word boundaries
+        Assert.assertEquals(-1, automaton.longestMatch("ushers"));
+        Assert.assertEquals(4, automaton.longestMatch("she hers"));
+        Assert.assertEquals(3, automaton.longestMatch("she"));
+    }
+
+    @Test
+    public void testShorterKeywordOnOutputLink() {
+        KeywordAutomaton automaton = KeywordAutomaton.build(List.of("ab gas", "gas"));
+
+        // "ab gas" starts inside a word, its suffix "gas" still matches
+        Assert.assertEquals(1, automaton.longestMatch("xab gas"));
+        Assert.assertEquals(0, automaton.longestMatch("x ab gas"));
+    }
+
+    @Test
+    public void testDuplicateAndEmptyKeywords() {
+        KeywordAutomaton automaton = KeywordAutomaton.build(List.of("", "gas", "GAS"));
+
+        Assert.assertEquals(1, automaton.longestMatch("gas"));
+        Assert.assertEquals(-1, automaton.longestMatch(""));
+        Assert.assertEquals(-1, automaton.longestMatch(null));
+    }
+
+    @Test
+    public void testNoKeywords() {
+        KeywordAutomaton automaton = KeywordAutomaton.build(List.of());
+
+        Assert.assertEquals(1, automaton.stateCount());
+        Assert.assertEquals(-1, automaton.longestMatch("anything"));
+    }
+}
@@ -0,0 +1,182 @@
+package Utils;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+public class MappedRecordCacheTest {
+
+    private static final int KEY_BYTES = 16;
+    private static final int VALUE_BYTES = Long.BYTES;
+    private static final int HEADER_BYTES = 64;
+    private static final int SLOT_BYTES = 1 + 2 + KEY_BYTES + VALUE_BYTES + 4;
+
+    private Path dir;
+    private Path file;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("mapped-cache-test");
+        file = dir.resolve("cache.bin");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    @Test
+    public void testRecordsSurviveReopen() throws IOException {
+        try (MappedRecordCache cache = open(4)) {
+            cache.put("a", value -> value.putLong(1));
+            cache.put("b", value -> value.putLong(2));
+            cache.put("a", value -> value.putLong(10));
+            Assert.assertTrue(cache.remove("b"));
+        }
+
+        try (MappedRecordCache cache = open(4)) {
+            Assert.assertEquals(1, cache.size());
+            Assert.assertEquals(Long.valueOf(10), read(cache, "a"));
+            Assert.assertNull(read(cache, "b"));
+        }
+    }
+
+    @Test
+    public void testCorruptSlotAndHeaderAreRecovered() throws IOException {
+        try (MappedRecordCache cache = open(4)) {
+            cache.put("a", value -> value.putLong(1));
+            cache.put("b", value -> value.putLong(2));
+            cache.put("c", value -> value.putLong(3));
+        }
+        long generation = header().getLong(24);
+
+        // Torn write in the value of "b" (slot 1), then a bad capacity in the header
+        flipByte(HEADER_BYTES + SLOT_BYTES + 3 + KEY_BYTES);
+        flipByte(16);
+        Assert.assertFalse(headerCrcMatches(header()));
+
+        try (MappedRecordCache cache = open(4)) {
+            Assert.assertEquals(2, cache.size());
+            Assert.assertEquals(4, cache.capacity());
+            Assert.assertEquals(Long.valueOf(1), read(cache, "a"));
+            Assert.assertNull(read(cache, "b"));
+            Assert.assertEquals(Long.valueOf(3), read(cache, "c"));
+
+            // The dropped slot is free again: no growth for two more keys
+            cache.put("d", value -> value.putLong(4));
+            cache.put("e", value -> value.putLong(5));
+            Assert.assertEquals(4, cache.capacity());
+        }
+
+        ByteBuffer header = header();
+        Assert.assertTrue(headerCrcMatches(header));
+        Assert.assertEquals(4, header.getInt(16));
+        Assert.assertEquals(SLOT_BYTES, header.getInt(20));
+        Assert.assertTrue(header.getLong(24) > generation);
+    }
+
+    @Test
+    public void testGrowRemapsAndKeepsRecords() throws IOException {
+        try (MappedRecordCache cache = open(2)) {
+            for (int i = 0; i < 5; i++) {
+                long n = i;
+                cache.put("k" + i, value -> value.putLong(n));
+            }
+            Assert.assertEquals(8, cache.capacity());
+            Assert.assertEquals(Long.valueOf(0), read(cache, "k0"));
+        }
+        Assert.assertEquals(HEADER_BYTES + 8L * SLOT_BYTES, Files.size(file));
+
+        try (MappedRecordCache cache = open(2)) {
+            Assert.assertEquals(8, cache.capacity());
+            Assert.assertEquals(5, cache.size());
+            for (int i = 0; i < 5; i++) {
+                Assert.assertEquals(Long.valueOf(i), read(cache, "k" + i));
+            }
+            Assert.assertEquals(8, header().getInt(16));
+            Assert.assertTrue(headerCrcMatches(header()));
+        }
+    }
+
+    @Test
+    public void testOtherLayoutStartsFresh() throws IOException {
+        try (MappedRecordCache cache = open(4)) {
+            cache.put("a", value -> value.putLong(1));
+        }
+
+        try (MappedRecordCache cache = MappedRecordCache.open(file, KEY_BYTES, 2 * VALUE_BYTES, 4)) {
+            Assert.assertEquals(0, cache.size());
+            Assert.assertNull(cache.get("a", ByteBuffer::getLong));
+        }
+    }
+
+    @Test
+    public void testLegacySerializedFileStartsFresh() throws IOException {
+        HashMap<String, Double> legacy = new HashMap<>();
+        legacy.put("GOLD_STANDARD", 12.5);
+        try (ObjectOutputStream out = new ObjectOutputStream(Files.newOutputStream(file))) {
+            out.writeObject(legacy);
+        }
+
+        try (MappedRecordCache cache = open(4)) {
+            Assert.assertEquals(0, cache.size());
+            Assert.assertEquals(4, cache.capacity());
+            cache.put("a", value -> value.putLong(1));
+        }
+        Assert.assertTrue(headerCrcMatches(header()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsLongKey() throws IOException {
+        try (MappedRecordCache cache = open(4)) {
+            cache.put("k".repeat(KEY_BYTES + 1), value -> value.putLong(1));
+        }
+    }
+
+    private MappedRecordCache open(int initialCapacity) throws IOException {
+        return MappedRecordCache.open(file, KEY_BYTES, VALUE_BYTES, initialCapacity);
+    }
+
+    private static Long read(MappedRecordCache cache, String key) {
+        return cache.get(key, ByteBuffer::getLong);
+    }
+
+    private ByteBuffer header() throws IOException {
+        byte[] bytes = new byte[HEADER_BYTES];
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "r")) {
+            raf.readFully(bytes);
+        }
+        return ByteBuffer.wrap(bytes);
+    }
+
+    private static boolean headerCrcMatches(ByteBuffer header) {
+        CRC32 crc = new CRC32();
+        crc.update(header.array(), 0, 32);
+        return header.getLong(32) == crc.getValue();
+    }
+
+    private void flipByte(long offset) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.seek(offset);
+            int b = raf.read();
+            raf.seek(offset);
+            raf.write(b ^ 0xFF);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package Utils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+
+public class MerkleTreeTest {
+
+    private static final int MAX_LEAVES = 17;
+
+    @Test
+    public void testRootMatchesRfc6962Reference() throws Exception {
+        for (int n = 1; n <= MAX_LEAVES; n++) {
+            List<byte[]> leaves = leaves(n);
+            String expected = HexFormat.of().formatHex(referenceRoot(leaves));
+            Assert.assertEquals("root of " + n + " leaves", expected, MerkleTree.build(leaves).rootHex());
+        }
+    }
+
+    @Test
+    public void testProofRoundTrip() {
+        for (int n = 1; n <= MAX_LEAVES; n++) {
+            List<byte[]> leaves = leaves(n);
+            MerkleTree tree = MerkleTree.build(leaves);
+            int maxSteps = 32 - Integer.numberOfLeadingZeros(n - 1); // ceil(log2 n)
+            for (int i = 0; i < n; i++) {
+                List<MerkleTree.ProofStep> proof = tree.proof(i);
+                Assert.assertTrue("proof length " + i + "/" + n, proof.size() <= maxSteps);
+                Assert.assertTrue("leaf " + i + "/" + n, MerkleTree.verify(leaves.get(i), proof, tree.rootHex()));
+            }
+        }
+    }
+
+    @Test
+    public void testProofRejectsOtherLeafOrRoot() {
+        List<byte[]> leaves = leaves(MAX_LEAVES);
+        MerkleTree tree = MerkleTree.build(leaves);
+        String otherRoot = MerkleTree.build(leaves(MAX_LEAVES - 1)).rootHex();
+
+        for (int i = 0; i < MAX_LEAVES; i++) {
+            List<MerkleTree.ProofStep> proof = tree.proof(i);
+            byte[] otherLeaf = leaves.get((i + 1) % MAX_LEAVES);
+            Assert.assertFalse(MerkleTree.verify(otherLeaf, proof, tree.rootHex()));
+            Assert.assertFalse(MerkleTree.verify(leaves.get(i), proof, otherRoot));
+        }
+        Assert.assertFalse(MerkleTree.verify(leaves.get(0), tree.proof(0), null));
+    }
+
+    @Test
+    public void testLeafIsNotANode() {
+        // Domain separation: a node hash passed off as leaf data does not verify
+        List<byte[]> leaves = leaves(2);
+        MerkleTree tree = MerkleTree.build(leaves);
+        byte[] forged = HexFormat.of().parseHex(tree.rootHex());
+        Assert.assertFalse(MerkleTree.verify(forged, List.of(), tree.rootHex()));
+    }
+
+    @Test
+    public void testProofIndexOutOfRange() {
+        MerkleTree tree = MerkleTree.build(leaves(3));
+        try {
+            tree.proof(3);
+            Assert.fail("Expected IndexOutOfBoundsException");
+        } catch (IndexOutOfBoundsException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testEmptyTreeRejected() {
+        try {
+            MerkleTree.build(List.of());
+            Assert.fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testReferenceKnownVector() throws Exception {
+        // A single empty leaf: the root is SHA-256(0x00)
+        byte[] expected = MessageDigest.getInstance("SHA-256").digest(new byte[]{0});
+        Assert.assertTrue(Arrays.equals(expected, referenceRoot(List.of(new byte[0]))));
+        Assert.assertEquals(HexFormat.of().formatHex(expected), MerkleTree.build(List.of(new byte[0])).rootHex());
+    }
+
+    private static List<byte[]> leaves(int n) {
+        List<byte[]> leaves = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            leaves.add(("event-" + i).getBytes(StandardCharsets.UTF_8));
+        }
+        return leaves;
+    }
+
+    /**
+     * RFC 6962 section 2.1, written recursively: MTH(D[n]) = SHA-256(0x01 || MTH(D[0:k]) || MTH(D[k:n]))
+     * with k the largest power of two smaller than n.
+     */
+    private static byte[] referenceRoot(List<byte[]> leaves) throws NoSuchAlgorithmException {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        if (leaves.size() == 1) {
+            digest.update((byte) 0x00);
+            return digest.digest(leaves.get(0));
+        }
+        int k = Integer.highestOneBit(leaves.size() - 1);
+        byte[] left = referenceRoot(leaves.subList(0, k));
+        byte[] right = referenceRoot(leaves.subList(k, leaves.size()));
+        digest.update((byte) 0x01);
+        digest.update(left);
+        return digest.digest(right);
+    }
+}